@@ -37,6 +37,12 @@ import javax.annotation.Nullable;
  * WHERE namespace='ns1' AND app='myApp' AND program='myFlow' AND   {@literal <<} dimensionValues
  *       ts>=1423370200 AND ts{@literal <}1423398198                           {@literal <<} startTs and endTs
  * LIMIT 100                                                        {@literal <<} limit
+ * </code>
+ * </pre>
+ * Optionally, only the time series with the largest aggregated values can be returned, ordered by these values,
+ * which maps to:
+ * <pre><code>
+ * ORDER BY count('read.ops') DESC LIMIT 10                         {@literal <<} seriesLimit
  *
  * </code>
  * </pre>
@@ -51,6 +57,7 @@ public final class CubeQuery {
   private final long endTs;
   private final int resolution;
   private final int limit;
+  private final int seriesLimit;
   private final Map<String, AggregationFunction> measurements;
   private final Map<String, String> dimensionValues;
   private final List<String> groupByDimensions;
@@ -74,11 +81,40 @@ public final class CubeQuery {
                    Map<String, AggregationFunction> measurements,
                    Map<String, String> dimensionValues, List<String> groupByDimensions,
                    @Nullable Interpolator interpolator) {
+    this(aggregation, startTs, endTs, resolution, limit, 0,
+         measurements, dimensionValues, groupByDimensions, interpolator);
+  }
+
+  /**
+   * Creates {@link CubeQuery} with given parameters.
+   * @param aggregation (optional) aggregation name to query in; if {@code null}, the aggregation will be auto-selected
+   *                    based on rest of query parameters
+   * @param startTs start (inclusive) of the time range to query
+   * @param endTs end (exclusive) of the time range to query
+   * @param resolution resolution of the aggregation to query in
+   * @param limit max number of returned data points
+   * @param seriesLimit max number of returned time series per measure, which are the ones with the largest values
+   *                    of the measure aggregated over the time range, in descending order; {@code 0} means all time
+   *                    series, in no particular order
+   * @param measurements map of measure name, measure type to query for, empty map means "all measures"
+   * @param dimensionValues dimension values to filter by
+   * @param groupByDimensions dimensions to group by
+   * @param interpolator {@link Interpolator} to use
+   */
+  public CubeQuery(@Nullable String aggregation,
+                   long startTs, long endTs, int resolution, int limit, int seriesLimit,
+                   Map<String, AggregationFunction> measurements,
+                   Map<String, String> dimensionValues, List<String> groupByDimensions,
+                   @Nullable Interpolator interpolator) {
+    if (seriesLimit < 0) {
+      throw new IllegalArgumentException("seriesLimit must not be negative: " + seriesLimit);
+    }
     this.aggregation = aggregation;
     this.startTs = startTs;
     this.endTs = endTs;
     this.resolution = resolution;
     this.limit = limit;
+    this.seriesLimit = seriesLimit;
     this.measurements = measurements;
     this.dimensionValues = Collections.unmodifiableMap(new HashMap<>(dimensionValues));
     this.groupByDimensions = Collections.unmodifiableList(new ArrayList<>(groupByDimensions));
@@ -119,6 +155,13 @@ public final class CubeQuery {
     return limit;
   }
 
+  /**
+   * @return max number of returned time series per measure, or {@code 0} for all time series
+   */
+  public int getSeriesLimit() {
+    return seriesLimit;
+  }
+
   public Interpolator getInterpolator() {
     return interpolator;
   }
@@ -132,6 +175,7 @@ public final class CubeQuery {
     sb.append(", endTs=").append(endTs);
     sb.append(", resolution=").append(resolution);
     sb.append(", limit=").append(limit);
+    sb.append(", seriesLimit=").append(seriesLimit);
     sb.append(", measurements=").append(measurements);
     sb.append(", dimensionValues=").append(dimensionValues);
     sb.append(", groupByDimensions=").append(groupByDimensions);
@@ -156,6 +200,7 @@ public final class CubeQuery {
     private long endTs;
     private int resolution;
     private int limit;
+    private int seriesLimit;
     private Map<String, AggregationFunction> measurements = new HashMap<>();
     private Map<String, String> dimensionValues = new HashMap<>();
     private List<String> groupByDimensions = new ArrayList<>();
@@ -172,7 +217,7 @@ public final class CubeQuery {
      * @return instance of {@link CubeQuery}
      */
     private CubeQuery build() {
-      return new CubeQuery(aggregation, startTs, endTs, resolution, limit,
+      return new CubeQuery(aggregation, startTs, endTs, resolution, limit, seriesLimit,
                            measurements, dimensionValues, groupByDimensions, interpolator);
     }
 
@@ -390,6 +435,17 @@ public final class CubeQuery {
     public final class Limit {
       private Limit() {}
 
+      /**
+       * Sets a limit on returned time series per measure. Only the time series with the largest values of the
+       * measure, aggregated over the time range with its aggregation function, are returned, in descending order.
+       * @param seriesLimit limit value
+       * @return builder for configuring {@link CubeQuery}
+       */
+      public Limit seriesLimit(int seriesLimit) {
+        Builder.this.seriesLimit = seriesLimit;
+        return this;
+      }
+
       /**
        * Sets {@link Interpolator} to use for {@link CubeQuery}.
        * @param interpolator interpolator to use
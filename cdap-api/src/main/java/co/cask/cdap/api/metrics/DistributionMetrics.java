@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.metrics;
+
+import co.cask.cdap.api.annotation.Beta;
+
+/**
+ * {@link Metrics} that can also record distributions of values.
+ * To use it, add a DistributionMetrics field in a CDAP application element instead of a Metrics field.
+ */
+@Beta
+public interface DistributionMetrics extends Metrics {
+  /**
+   * Records a value in the distribution of the specific metric, so that percentiles of the values recorded,
+   * such as the 99th percentile of a latency, can be queried.
+   * @param metricName Name of the metric. Use alphanumeric characters in metric names.
+   * @param value The value to record. Negative values are recorded as zero.
+   */
+  void distribution(String metricName, long value);
+}
@@ -16,16 +16,16 @@
 
 package co.cask.cdap.app.metrics;
 
-import co.cask.cdap.api.metrics.Metrics;
+import co.cask.cdap.api.metrics.DistributionMetrics;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
 
 /**
- * Implementation of {@link Metrics} for user-defined metrics.
+ * Implementation of {@link DistributionMetrics} for user-defined metrics.
  * Metrics will be emitted through {@link MetricsCollectionService}.
  */
-public class ProgramUserMetrics implements Metrics {
+public class ProgramUserMetrics implements DistributionMetrics {
 
   private final MetricsContext metricsContext;
 
@@ -42,4 +42,9 @@ public class ProgramUserMetrics implements Metrics {
   public void gauge(String metricName, long value) {
     metricsContext.gauge(metricName, value);
   }
+
+  @Override
+  public void distribution(String metricName, long value) {
+    metricsContext.getDistribution(metricName).record(value);
+  }
 }
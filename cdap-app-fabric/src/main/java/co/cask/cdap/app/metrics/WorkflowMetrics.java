@@ -16,17 +16,17 @@
 
 package co.cask.cdap.app.metrics;
 
-import co.cask.cdap.api.metrics.Metrics;
+import co.cask.cdap.api.metrics.DistributionMetrics;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
 
 /**
- * Implementation of {@link Metrics}, context used by programs, if they are a part of a workflow.
+ * Implementation of {@link DistributionMetrics}, context used by programs, if they are a part of a workflow.
  * we emit metrics in two context, program context and workflow context.
  * Metrics will be emitted through {@link MetricsCollectionService}
  */
-public class WorkflowMetrics implements Metrics {
+public class WorkflowMetrics implements DistributionMetrics {
   private final MetricsContext programMetricsContext;
   private final MetricsContext workflowMetricsContext;
 
@@ -46,4 +46,10 @@ public class WorkflowMetrics implements Metrics {
     programMetricsContext.gauge(metricName, value);
     workflowMetricsContext.gauge(metricName, value);
   }
+
+  @Override
+  public void distribution(String metricName, long value) {
+    programMetricsContext.getDistribution(metricName).record(value);
+    workflowMetricsContext.getDistribution(metricName).record(value);
+  }
 }
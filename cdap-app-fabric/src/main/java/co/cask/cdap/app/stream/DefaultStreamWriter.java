@@ -20,8 +20,8 @@ import co.cask.cdap.api.data.stream.StreamBatchWriter;
 import co.cask.cdap.api.data.stream.StreamWriter;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.conf.Constants;
-import co.cask.cdap.common.discovery.EndpointStrategy;
-import co.cask.cdap.common.discovery.RandomEndpointStrategy;
+import co.cask.cdap.common.discovery.LoadBalancingEndpointStrategy;
+import co.cask.cdap.common.discovery.PowerOfTwoChoicesEndpointStrategy;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.metadata.writer.LineageWriter;
 import co.cask.cdap.data2.registry.UsageRegistry;
@@ -56,7 +56,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class DefaultStreamWriter implements StreamWriter {
 
-  private final EndpointStrategy endpointStrategy;
+  private final LoadBalancingEndpointStrategy endpointStrategy;
   private final ConcurrentMap<Id.Stream, Boolean> isStreamRegistered;
   private final UsageRegistry usageRegistry;
 
@@ -81,22 +81,22 @@ public class DefaultStreamWriter implements StreamWriter {
     this.namespace = run.getNamespace();
     this.owners = owners;
     this.lineageWriter = lineageWriter;
-    this.endpointStrategy = new RandomEndpointStrategy(discoveryServiceClient.discover(Constants.Service.STREAMS));
+    this.endpointStrategy =
+      new PowerOfTwoChoicesEndpointStrategy(discoveryServiceClient.discover(Constants.Service.STREAMS));
     this.isStreamRegistered = Maps.newConcurrentMap();
     this.usageRegistry = usageRegistry;
   }
 
-  private URL getStreamURL(String stream) throws IOException {
-    return getStreamURL(stream, false);
-  }
-
-  private URL getStreamURL(String stream, boolean batch) throws IOException {
+  private Discoverable pickEndpoint() throws IOException {
     Discoverable discoverable = endpointStrategy.pick(1, TimeUnit.SECONDS);
     if (discoverable == null) {
       throw new IOException("Stream Service Endpoint not found");
     }
+    return discoverable;
+  }
 
-    InetSocketAddress address = discoverable.getSocketAddress();
+  private URL getStreamURL(Discoverable endpoint, String stream, boolean batch) throws IOException {
+    InetSocketAddress address = endpoint.getSocketAddress();
     String path = String.format("http://%s:%d%s/namespaces/%s/streams/%s", address.getHostName(), address.getPort(),
                                 Constants.Gateway.API_VERSION_3, namespace.getId(), stream);
     if (batch) {
@@ -105,8 +105,17 @@ public class DefaultStreamWriter implements StreamWriter {
     return new URL(path);
   }
 
-  private void writeToStream(Id.Stream stream, HttpRequest request) throws IOException {
-    HttpResponse response = HttpRequests.execute(request);
+  private void writeToStream(Id.Stream stream, Discoverable endpoint, HttpRequest request) throws IOException {
+    // Tell the endpoint strategy about the request, so that it picks less loaded stream handlers
+    LoadBalancingEndpointStrategy.Request endpointRequest = endpointStrategy.requestStarted(endpoint);
+    HttpResponse response;
+    try {
+      response = HttpRequests.execute(request);
+      endpointRequest.completed();
+    } finally {
+      // Has no effect if the request completed
+      endpointRequest.failed();
+    }
     int responseCode = response.getResponseCode();
     if (responseCode == HttpResponseStatus.NOT_FOUND.getCode()) {
       throw new IOException(String.format("Stream %s not found", stream));
@@ -121,12 +130,13 @@ public class DefaultStreamWriter implements StreamWriter {
   }
 
   private void write(String stream, ByteBuffer data, Map<String, String> headers) throws IOException {
-    URL streamURL = getStreamURL(stream);
+    Discoverable endpoint = pickEndpoint();
+    URL streamURL = getStreamURL(endpoint, stream, false);
     HttpRequest.Builder requestBuilder = HttpRequest.post(streamURL).withBody(data);
     for (Map.Entry<String, String> header : headers.entrySet()) {
       requestBuilder.addHeader(stream + "." + header.getKey(), header.getValue());
     }
-    writeToStream(Id.Stream.from(namespace, stream), requestBuilder.build());
+    writeToStream(Id.Stream.from(namespace, stream), endpoint, requestBuilder.build());
   }
 
   @Override
@@ -151,14 +161,15 @@ public class DefaultStreamWriter implements StreamWriter {
 
   @Override
   public void writeFile(String stream, File file, String contentType) throws IOException {
-    URL url = getStreamURL(stream, true);
+    Discoverable endpoint = pickEndpoint();
+    URL url = getStreamURL(endpoint, stream, true);
     HttpRequest request = HttpRequest.post(url).withBody(file).addHeader(HttpHeaders.CONTENT_TYPE, contentType).build();
-    writeToStream(Id.Stream.from(namespace, stream), request);
+    writeToStream(Id.Stream.from(namespace, stream), endpoint, request);
   }
 
   @Override
   public StreamBatchWriter createBatchWriter(String stream, String contentType) throws IOException {
-    URL url = getStreamURL(stream, true);
+    URL url = getStreamURL(pickEndpoint(), stream, true);
     HttpURLConnection connection = (HttpURLConnection) url.openConnection();
     connection.setRequestMethod(HttpMethod.POST.name());
     connection.setReadTimeout(15000);
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.queue;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link InputDatum} that contains the events of another {@link InputDatum}, except the events that are skipped.
+ * It is used for processing a micro batch again without the events that failed. Reclaiming it reclaims all the
+ * events of the original {@link InputDatum}, including the skipped ones.
+ *
+ * @param <T> Type of input.
+ */
+public final class SkippingInputDatum<T> implements InputDatum<T> {
+
+  private final InputDatum<T> input;
+  private final List<T> events;
+  private final AtomicInteger retries = new AtomicInteger(0);
+  private final InputContext inputContext;
+
+  /**
+   * Creates a {@link SkippingInputDatum} that contains the events of the given input, except the first one that is
+   * the same instance as the given event.
+   */
+  public static <T> SkippingInputDatum<T> skip(InputDatum<T> input, Object event) {
+    List<T> events = Lists.newArrayListWithCapacity(input.size());
+    boolean skipped = false;
+    for (T e : input) {
+      if (!skipped && e == event) {
+        skipped = true;
+      } else {
+        events.add(e);
+      }
+    }
+    // Always wrap the original input, so that skipping multiple times doesn't nest
+    InputDatum<T> original = input instanceof SkippingInputDatum ? ((SkippingInputDatum<T>) input).input : input;
+    return new SkippingInputDatum<>(original, events);
+  }
+
+  private SkippingInputDatum(final InputDatum<T> input, List<T> events) {
+    this.input = input;
+    this.events = events;
+    this.inputContext = new InputContext() {
+      @Override
+      public String getOrigin() {
+        return input.getInputContext().getOrigin();
+      }
+
+      @Override
+      public int getRetryCount() {
+        return retries.get();
+      }
+
+      @Override
+      public String toString() {
+        return input.getInputContext().toString();
+      }
+    };
+  }
+
+  @Override
+  public boolean needProcess() {
+    return !events.isEmpty();
+  }
+
+  @Override
+  public void incrementRetry() {
+    retries.incrementAndGet();
+  }
+
+  @Override
+  public int getRetry() {
+    return retries.get();
+  }
+
+  @Override
+  public InputContext getInputContext() {
+    return inputContext;
+  }
+
+  @Override
+  public QueueName getQueueName() {
+    return input.getQueueName();
+  }
+
+  @Override
+  public void reclaim() {
+    input.reclaim();
+  }
+
+  @Override
+  public int size() {
+    return events.size();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return events.iterator();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("input", input)
+      .add("skipped", input.size() - events.size())
+      .add("retries", retries.get())
+      .toString();
+  }
+}
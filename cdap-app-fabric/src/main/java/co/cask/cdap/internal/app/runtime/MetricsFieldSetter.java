@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.internal.app.runtime;
 
+import co.cask.cdap.api.metrics.DistributionMetrics;
 import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.internal.lang.FieldVisitor;
 
@@ -22,7 +23,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 
 /**
- * A {@link FieldVisitor} that set Metrics fields.
+ * A {@link FieldVisitor} that set Metrics and DistributionMetrics fields.
  */
 public final class MetricsFieldSetter extends FieldVisitor {
 
@@ -34,7 +35,8 @@ public final class MetricsFieldSetter extends FieldVisitor {
 
   @Override
   public void visit(Object instance, Type inspectType, Type declareType, Field field) throws Exception {
-    if (Metrics.class.equals(field.getType())) {
+    if (Metrics.class.equals(field.getType())
+      || (DistributionMetrics.class.equals(field.getType()) && metrics instanceof DistributionMetrics)) {
       field.set(instance, metrics);
     }
   }
@@ -18,56 +18,79 @@ package co.cask.cdap.internal.app.runtime.flow;
 
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.OutputEmitter;
-import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteArrayEncoder;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.internal.io.DatumWriter;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
 
 /**
- * @param <T>
+ * An {@link OutputEmitter} that encodes the data with {@link DatumWriter} and enqueues it to a queue.
+ * The encoding buffer is reused across calls to avoid garbage in the steady state.
+ *
+ * @param <T> Type of data emitted.
  */
+@NotThreadSafe
 public final class DatumOutputEmitter<T> implements OutputEmitter<T> {
 
   public static final Function<Object, Integer> PARTITION_MAP_TRANSFORMER = new PartitionMapTransformer();
 
   private final Supplier<QueueProducer> producerSupplier;
-  private final byte[] schemaHash;
   private final DatumWriter<T> writer;
+  private final byte[] schemaHash;
+  private final ByteArrayEncoder encoder;
 
   public DatumOutputEmitter(Supplier<QueueProducer> producerSupplier, Schema schema, DatumWriter<T> writer) {
     this.producerSupplier = producerSupplier;
-    this.schemaHash = schema.getSchemaHash().toByteArray();
     this.writer = writer;
+    this.schemaHash = schema.getSchemaHash().toByteArray();
+    this.encoder = new ByteArrayEncoder();
   }
 
   @Override
   public void emit(T data) {
-    emit(data, ImmutableMap.<String, Object>of());
+    enqueue(new QueueEntry(encode(data)));
   }
 
   @Override
   public void emit(T data, String partitionKey, Object partitionValue) {
-    emit(data, ImmutableMap.of(partitionKey, partitionValue));
+    enqueue(new QueueEntry(partitionKey, PARTITION_MAP_TRANSFORMER.apply(partitionValue), encode(data)));
   }
 
   @Override
   public void emit(T data, Map<String, Object> partitions) {
+    byte[] bytes = encode(data);
+    if (partitions.isEmpty()) {
+      enqueue(new QueueEntry(bytes));
+    } else {
+      enqueue(new QueueEntry(Maps.transformValues(partitions, PARTITION_MAP_TRANSFORMER), bytes));
+    }
+  }
+
+  /**
+   * Encodes the given data, prefixed with the schema hash.
+   */
+  private byte[] encode(T data) {
+    encoder.reset();
+    try {
+      writer.encode(data, encoder.writeRaw(schemaHash));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return encoder.toByteArray();
+  }
+
+  private void enqueue(QueueEntry entry) {
     try {
-      ByteArrayOutputStream output = new ByteArrayOutputStream();
-      output.write(schemaHash);
-      writer.encode(data, new BinaryEncoder(output));
-      producerSupplier.get().enqueue(new QueueEntry(Maps.transformValues(partitions, PARTITION_MAP_TRANSFORMER),
-                                                    output.toByteArray()));
+      producerSupplier.get().enqueue(entry);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -27,7 +27,9 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.internal.app.queue.SingleItemQueueReader;
+import co.cask.cdap.internal.app.queue.SkippingInputDatum;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import co.cask.tephra.TransactionContext;
 import co.cask.tephra.TransactionFailureException;
@@ -37,21 +39,27 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.twill.common.Cancellable;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class responsible invoking process methods of a {@link Flowlet}.
@@ -65,6 +73,12 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   private final Callback txCallback;
   private final LoggingContext loggingContext;
   private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+  private final QueueNotifier queueNotifier;
+  // Signals set by enqueue notification, keyed by the process specification that consumes from the queues
+  private final Map<ProcessSpecification<?>, AtomicBoolean> enqueueSignals;
+  // For waking up the run thread on enqueue notification
+  private final Semaphore wakeup;
+  private final List<Cancellable> subscriptions;
 
   private Thread runThread;
   private ExecutorService processExecutor;
@@ -72,15 +86,23 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   FlowletProcessDriver(BasicFlowletContext flowletContext,
                        DataFabricFacade dataFabricFacade,
                        Callback txCallback,
-                       Collection<? extends ProcessSpecification<?>> processSpecifications) {
+                       Collection<? extends ProcessSpecification<?>> processSpecifications,
+                       QueueNotifier queueNotifier) {
     this.flowletContext = flowletContext;
     this.dataFabricFacade = dataFabricFacade;
     this.txCallback = txCallback;
     this.loggingContext = flowletContext.getLoggingContext();
+    this.queueNotifier = queueNotifier;
+    this.enqueueSignals = new IdentityHashMap<>();
+    this.wakeup = new Semaphore(0);
+    this.subscriptions = Lists.newArrayList();
 
     processQueue = new PriorityQueue<>(processSpecifications.size());
     for (ProcessSpecification<?> spec : processSpecifications) {
       processQueue.offer(FlowletProcessEntry.create(spec));
+      if (queueNotifier != QueueNotifier.NOOP_QUEUE_NOTIFIER && !spec.getNotifyQueues().isEmpty()) {
+        enqueueSignals.put(spec, new AtomicBoolean());
+      }
     }
   }
 
@@ -97,6 +119,10 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     this.loggingContext = other.loggingContext;
     this.processQueue = new PriorityQueue<>(other.processQueue.size());
     Iterables.addAll(processQueue, other.processQueue);
+    this.queueNotifier = other.queueNotifier;
+    this.enqueueSignals = other.enqueueSignals;
+    this.wakeup = new Semaphore(0);
+    this.subscriptions = Lists.newArrayList();
   }
 
   @Override
@@ -109,10 +135,29 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     runThread = Thread.currentThread();
     processExecutor = Executors.newSingleThreadExecutor(
       Threads.createDaemonThreadFactory(getServiceName() + "-executor"));
+
+    for (Map.Entry<ProcessSpecification<?>, AtomicBoolean> entry : enqueueSignals.entrySet()) {
+      final AtomicBoolean signal = entry.getValue();
+      // Entries could have been enqueued while not subscribed, hence always dequeue once after subscription.
+      signal.set(true);
+      for (QueueName queueName : entry.getKey().getNotifyQueues()) {
+        subscriptions.add(queueNotifier.subscribe(queueName, new Runnable() {
+          @Override
+          public void run() {
+            signal.set(true);
+            wakeup.release();
+          }
+        }));
+      }
+    }
   }
 
   @Override
   protected void shutDown() throws Exception {
+    for (Cancellable subscription : subscriptions) {
+      subscription.cancel();
+    }
+    subscriptions.clear();
     processExecutor.shutdown();
   }
 
@@ -131,8 +176,12 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
                                                  flowletContext.getProgram().getClassLoader());
     while (isRunning()) {
       try {
-        // If the queue head need to wait, we had to wait.
-        processQueue.peek().await();
+        // If the queue head need to wait, we had to wait, unless being woken up by enqueue notification.
+        long waitTime = processQueue.peek().getNextDeque() - System.nanoTime();
+        if (waitTime > 0) {
+          wakeup.tryAcquire(waitTime, TimeUnit.NANOSECONDS);
+        }
+        wakeup.drainPermits();
       } catch (InterruptedException e) {
         // Triggered by shutdown, simply continue and let the isRunning() check to deal with that.
         continue;
@@ -208,9 +257,18 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
    */
   private <T> boolean handleProcessEntry(FlowletProcessEntry<T> entry,
                                          PriorityQueue<FlowletProcessEntry<?>> processQueue) {
-    if (!entry.shouldProcess()) {
+    AtomicBoolean enqueueSignal = enqueueSignals.get(entry.getProcessSpec());
+    if (!entry.shouldProcess() && (enqueueSignal == null || !enqueueSignal.get())) {
       return false;
     }
+    if (enqueueSignal != null) {
+      // Clear the signal before dequeue so that enqueue notified after this point will trigger another dequeue
+      enqueueSignal.set(false);
+      long avoided = entry.unpark();
+      if (avoided > 0) {
+        flowletContext.getProgramMetrics().increment("process.dequeue.empty.avoided", avoided);
+      }
+    }
 
     ProcessMethod<T> processMethod = entry.getProcessSpec().getProcessMethod();
     if (processMethod.needsInput()) {
@@ -225,7 +283,12 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
       try {
         InputDatum<T> input = entry.getProcessSpec().getQueueReader().dequeue(0, TimeUnit.MILLISECONDS);
         if (!input.needProcess()) {
-          entry.backOff();
+          if (enqueueSignal != null) {
+            // Wait for enqueue notification instead of polling the queue
+            entry.park();
+          } else {
+            entry.backOff();
+          }
           // End the transaction if nothing in the queue
           txContext.finish();
           return false;
@@ -318,8 +381,12 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   private <T> ProcessMethodCallback processMethodCallback(final PriorityQueue<FlowletProcessEntry<?>> processQueue,
                                                           final FlowletProcessEntry<T> processEntry,
                                                           final InputDatum<T> input) {
+    final ProcessMethod<T> processMethod = processEntry.getProcessSpec().getProcessMethod();
     // If it is generator flowlet, processCount is 1.
-    final int processedCount = processEntry.getProcessSpec().getProcessMethod().needsInput() ? input.size() : 1;
+    final int processedCount = processMethod.needsInput() ? input.size() : 1;
+    // A process method without @Batch can be given multiple events as a micro batch. Callback is per event,
+    // and a failed event is ignored without ignoring the other events of the micro batch.
+    final boolean microBatch = processMethod.needsInput() && !processMethod.isBatch() && input.size() > 1;
 
     return new ProcessMethodCallback() {
       private final LoadingCache<String, MetricsContext> queueMetricsCollectors = CacheBuilder.newBuilder()
@@ -334,8 +401,14 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
       @Override
       public void onSuccess(Object object, InputContext inputContext) {
         try {
-          gaugeEventProcessed(input.getQueueName());
-          txCallback.onSuccess(object, inputContext);
+          gaugeEventProcessed(input.getQueueName(), processedCount);
+          if (microBatch) {
+            for (T event : input) {
+              txCallback.onSuccess(event, inputContext);
+            }
+          } else {
+            txCallback.onSuccess(object, inputContext);
+          }
         } catch (Throwable t) {
           LOG.error("Exception on onSuccess call: {}", flowletContext, t);
         } finally {
@@ -376,8 +449,17 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
           processQueue.offer(retryEntry);
 
         } else if (failurePolicy == FailurePolicy.IGNORE) {
+          if (microBatch && reason.getType() == FailureReason.Type.USER) {
+            // Process the micro batch again in a new transaction without the failed event. The failed event
+            // is acked when that transaction commits.
+            gaugeEventProcessed(input.getQueueName(), 1);
+            InputDatum<T> remaining = SkippingInputDatum.skip(input, inputObject);
+            processQueue.offer(processEntry.retryWith(
+              new ProcessSpecification<>(new SingleItemQueueReader<>(remaining), processMethod, null)));
+            return;
+          }
           try {
-            gaugeEventProcessed(input.getQueueName());
+            gaugeEventProcessed(input.getQueueName(), processedCount);
             inputAcknowledger.ack();
           } catch (Throwable t) {
             LOG.error("Fatal problem, fail to ack an input: {}", flowletContext, t);
@@ -391,14 +473,14 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
         processQueue.offer(processEntry.resetRetry());
       }
 
-      private void gaugeEventProcessed(QueueName inputQueueName) {
+      private void gaugeEventProcessed(QueueName inputQueueName, int count) {
         if (processEntry.isTick()) {
-          flowletContext.getProgramMetrics().increment("process.ticks.processed", processedCount);
+          flowletContext.getProgramMetrics().increment("process.ticks.processed", count);
         } else if (inputQueueName == null) {
-          flowletContext.getProgramMetrics().increment("process.events.processed", processedCount);
+          flowletContext.getProgramMetrics().increment("process.events.processed", count);
         } else {
           queueMetricsCollectors.getUnchecked(inputQueueName.getSimpleName())
-            .increment("process.events.processed", processedCount);
+            .increment("process.events.processed", count);
         }
       }
     };
@@ -40,6 +40,10 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   // Doubling back-off time during exponential increase, up to maximum back-off time.
   private static final int BACKOFF_EXP = 2;
 
+  // Maximum park time in nanoseconds when waiting for enqueue notification, 1s. Notifications can be lost,
+  // hence still dequeue at this interval.
+  private static final long PARK_MAX = TimeUnit.SECONDS.toNanos(1);
+
   private final ProcessSpecification<T> processSpec;
   private final ProcessSpecification<T> retrySpec;
   private final boolean isTick;
@@ -50,6 +54,11 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   private long nextDeque;
   private long currentBackOff = BACKOFF_MIN;
 
+  /**
+   * {@code System.nanoTime} when the entry was parked, or {@code 0} if it is not parked.
+   */
+  private long parkTime;
+
   static <T> FlowletProcessEntry<T> create(ProcessSpecification<T> processSpec) {
     long nextDeque;
     try {
@@ -81,13 +90,6 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
     return retrySpec != null;
   }
 
-  public void await() throws InterruptedException {
-    long waitTime = nextDeque - System.nanoTime();
-    if (waitTime > 0) {
-      TimeUnit.NANOSECONDS.sleep(waitTime);
-    }
-  }
-
   public boolean shouldProcess() {
     return nextDeque - System.nanoTime() <= 0;
   }
@@ -111,10 +113,41 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
     }
   }
 
+  /**
+   * Parks this entry until the maximum park time. It is used instead of {@link #backOff()} when the entry
+   * can be woken up by enqueue notification.
+   */
+  public void park() {
+    parkTime = System.nanoTime();
+    nextDeque = parkTime + PARK_MAX;
+    currentBackOff = BACKOFF_MIN;
+  }
+
+  /**
+   * Unparks this entry.
+   *
+   * @return estimated number of empty dequeue that {@link #backOff()} would have performed while the entry was parked
+   */
+  public long unpark() {
+    if (parkTime == 0) {
+      return 0L;
+    }
+    long parked = System.nanoTime() - parkTime;
+    parkTime = 0;
+    return parked / BACKOFF_MAX;
+  }
+
   public ProcessSpecification<T> getProcessSpec() {
     return retrySpec == null ? processSpec : retrySpec;
   }
 
+  /**
+   * Creates a retry entry of this entry that processes with the given {@link ProcessSpecification}.
+   */
+  public FlowletProcessEntry<T> retryWith(ProcessSpecification<T> retrySpec) {
+    return new FlowletProcessEntry<>(processSpec, retrySpec, 0);
+  }
+
   public FlowletProcessEntry<T> resetRetry() {
     return retrySpec == null ? this : new FlowletProcessEntry<>(processSpec, null, processSpec.getCallDelay());
   }
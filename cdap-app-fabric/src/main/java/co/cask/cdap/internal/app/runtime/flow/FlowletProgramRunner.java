@@ -20,6 +20,8 @@ import co.cask.cdap.api.annotation.Batch;
 import co.cask.cdap.api.annotation.ProcessInput;
 import co.cask.cdap.api.annotation.Tick;
 import co.cask.cdap.api.app.ApplicationSpecification;
+import co.cask.cdap.api.common.RuntimeArguments;
+import co.cask.cdap.api.common.Scope;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.FlowSpecification;
@@ -45,7 +47,8 @@ import co.cask.cdap.app.runtime.ProgramOptions;
 import co.cask.cdap.app.runtime.ProgramRunner;
 import co.cask.cdap.common.async.ExecutorUtils;
 import co.cask.cdap.common.conf.Constants;
-import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.lang.InstantiatorFactory;
 import co.cask.cdap.common.lang.PropertyFieldSetter;
 import co.cask.cdap.common.logging.common.LogWriter;
@@ -61,6 +64,7 @@ import co.cask.cdap.data2.queue.ConsumerGroupConfig;
 import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.registry.UsageRegistry;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.stream.StreamConsumer;
@@ -72,15 +76,16 @@ import co.cask.cdap.internal.app.runtime.DataFabricFacadeFactory;
 import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.DatumWriterFactory;
-import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.internal.lang.Reflections;
 import co.cask.cdap.internal.specification.FlowletMethod;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
-import co.cask.common.io.ByteBufferInputStream;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -125,8 +130,15 @@ public final class FlowletProgramRunner implements ProgramRunner {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlowletProgramRunner.class);
 
+  /**
+   * Runtime argument for the number of events to dequeue and process in one transaction for process methods
+   * that are not annotated with {@link Batch}. It can be scoped to a flowlet with the "flowlet.&lt;name>." prefix.
+   */
+  public static final String PROCESS_BATCH_SIZE = "process.batch.size";
+
   private final SchemaGenerator schemaGenerator;
   private final DatumWriterFactory datumWriterFactory;
+  private final DatumReaderFactory datumReaderFactory;
   private final DataFabricFacadeFactory dataFabricFacadeFactory;
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final QueueReaderFactory queueReaderFactory;
@@ -135,10 +147,12 @@ public final class FlowletProgramRunner implements ProgramRunner {
   private final TransactionSystemClient txClient;
   private final DatasetFramework dsFramework;
   private final UsageRegistry usageRegistry;
+  private QueueNotifier queueNotifier = QueueNotifier.NOOP_QUEUE_NOTIFIER;
 
   @Inject
   public FlowletProgramRunner(SchemaGenerator schemaGenerator,
                               DatumWriterFactory datumWriterFactory,
+                              DatumReaderFactory datumReaderFactory,
                               DataFabricFacadeFactory dataFabricFacadeFactory,
                               StreamCoordinatorClient streamCoordinatorClient,
                               QueueReaderFactory queueReaderFactory,
@@ -149,6 +163,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                               UsageRegistry usageRegistry) {
     this.schemaGenerator = schemaGenerator;
     this.datumWriterFactory = datumWriterFactory;
+    this.datumReaderFactory = datumReaderFactory;
     this.dataFabricFacadeFactory = dataFabricFacadeFactory;
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.queueReaderFactory = queueReaderFactory;
@@ -165,6 +180,12 @@ public final class FlowletProgramRunner implements ProgramRunner {
     CAppender.logWriter = logWriter;
   }
 
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setQueueNotifier(QueueNotifier queueNotifier) {
+    this.queueNotifier = queueNotifier;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public ProgramController run(Program program, ProgramOptions options) {
@@ -251,6 +272,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
       ImmutableList.Builder<ConsumerSupplier<?>> queueConsumerSupplierBuilder = ImmutableList.builder();
       Collection<ProcessSpecification<?>> processSpecs =
         createProcessSpecification(flowletContext, flowletType,
+                                   getProcessBatchSize(flowletName, options.getUserArguments().asMap()),
                                    processMethodFactory(flowlet),
                                    processSpecificationFactory(flowletContext, dataFabricFacade, queueReaderFactory,
                                                                flowletName, queueSpecs, queueConsumerSupplierBuilder,
@@ -263,7 +285,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
       Service serviceHook = createServiceHook(flowletName, consumerSuppliers, controllerRef);
       FlowletRuntimeService driver = new FlowletRuntimeService(flowlet, flowletContext, processSpecs,
                                                              createCallback(flowlet, flowletDef.getFlowletSpec()),
-                                                             dataFabricFacade, serviceHook);
+                                                             dataFabricFacade, serviceHook, queueNotifier);
 
       FlowletProgramController controller = new FlowletProgramController(program.getId(), flowletName,
                                                                          flowletContext, driver,
@@ -291,6 +313,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
    * Creates all {@link ProcessSpecification} for the process methods of the flowlet class.
    *
    * @param flowletType Type of the flowlet class represented by {@link TypeToken}.
+   * @param processBatchSize Number of events to dequeue per transaction for methods without {@link Batch}.
    * @param processMethodFactory A {@link ProcessMethodFactory} for creating {@link ProcessMethod}.
    * @param processSpecFactory A {@link ProcessSpecificationFactory} for creating {@link ProcessSpecification}.
    * @param result A {@link Collection} for storing newly created {@link ProcessSpecification}.
@@ -298,7 +321,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
    */
   @SuppressWarnings("unchecked")
   private <T extends Collection<ProcessSpecification<?>>> T createProcessSpecification(
-    BasicFlowletContext flowletContext, TypeToken<? extends Flowlet> flowletType,
+    BasicFlowletContext flowletContext, TypeToken<? extends Flowlet> flowletType, int processBatchSize,
     ProcessMethodFactory processMethodFactory, ProcessSpecificationFactory processSpecFactory, T result)
     throws NoSuchMethodException {
 
@@ -353,14 +376,16 @@ public final class FlowletProgramRunner implements ProgramRunner {
           // If batch mode then generate schema for Iterator's parameter type
           dataType = flowletType.resolveType(method.getGenericParameterTypes()[0]);
           consumerConfig = getConsumerConfig(flowletContext, method);
-          Integer processBatchSize = getBatchSize(method);
+          Integer annotatedBatchSize = getBatchSize(method);
 
-          if (processBatchSize != null) {
+          if (annotatedBatchSize != null) {
             if (dataType.getRawType().equals(Iterator.class)) {
               Preconditions.checkArgument(dataType.getType() instanceof ParameterizedType,
                                           "Only ParameterizedType is supported for batch Iterator.");
               dataType = flowletType.resolveType(((ParameterizedType) dataType.getType()).getActualTypeArguments()[0]);
             }
+            batchSize = annotatedBatchSize;
+          } else {
             batchSize = processBatchSize;
           }
 
@@ -398,6 +423,22 @@ public final class FlowletProgramRunner implements ProgramRunner {
     return new ConsumerConfig(groupConfig, flowletContext.getInstanceId());
   }
 
+  /**
+   * Returns the number of events to process per transaction for process methods without {@link Batch},
+   * as specified by the {@link #PROCESS_BATCH_SIZE} runtime argument.
+   */
+  @VisibleForTesting
+  static int getProcessBatchSize(String flowletName, Map<String, String> userArguments) {
+    Map<String, String> arguments = RuntimeArguments.extractScope(Scope.FLOWLET, flowletName, userArguments);
+    String batchSize = arguments.get(PROCESS_BATCH_SIZE);
+    if (batchSize == null) {
+      return 1;
+    }
+    int result = Integer.parseInt(batchSize);
+    Preconditions.checkArgument(result > 0, "Runtime argument %s should be > 0: %s", PROCESS_BATCH_SIZE, result);
+    return result;
+  }
+
   /**
    * Returns the user specify batch size or {@code null} if not specified.
    */
@@ -532,6 +573,9 @@ public final class FlowletProgramRunner implements ProgramRunner {
                                              ProcessMethod<T> method, ConsumerConfig consumerConfig, int batchSize,
                                              Tick tickAnnotation) {
         List<QueueReader<T>> queueReaders = Lists.newLinkedList();
+        // Queues that notify on enqueue. Streams don't, hence it is only used if there is no stream input.
+        Set<QueueName> notifyQueues = Sets.newHashSet();
+        boolean hasStreamInput = false;
 
         for (Map.Entry<Node, Set<QueueSpecification>> entry : queueSpecs.column(flowletName).entrySet()) {
           for (QueueSpecification queueSpec : entry.getValue()) {
@@ -559,6 +603,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                 });
 
                 queueReaders.add(queueReaderFactory.createStreamReader(consumerSupplier, batchSize, decoder));
+                hasStreamInput = true;
 
               } else {
                 int numGroups = getNumGroups(Iterables.concat(queueSpecs.row(entry.getKey()).values()), queueName);
@@ -573,6 +618,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                                                                                            consumerConfig, numGroups);
                 queueConsumerSupplierBuilder.add(consumerSupplier);
                 queueReaders.add(queueReaderFactory.createQueueReader(consumerSupplier, batchSize, decoder));
+                notifyQueues.add(queueName);
               }
             }
           }
@@ -582,26 +628,25 @@ public final class FlowletProgramRunner implements ProgramRunner {
         if (!inputNames.isEmpty() && queueReaders.isEmpty()) {
           return null;
         }
-        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, tickAnnotation);
+        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, tickAnnotation,
+                                          hasStreamInput ? ImmutableSet.<QueueName>of() : notifyQueues);
       }
     };
   }
 
   private <T> Function<ByteBuffer, T> createInputDatumDecoder(final TypeToken<T> dataType, final Schema schema,
                                                               final SchemaCache schemaCache) {
-    final ReflectionDatumReader<T> datumReader = new ReflectionDatumReader<>(schema, dataType);
-    final ByteBufferInputStream byteBufferInput = new ByteBufferInputStream(null);
-    final BinaryDecoder decoder = new BinaryDecoder(byteBufferInput);
+    final DatumReader<T> datumReader = datumReaderFactory.create(dataType, schema);
+    final ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffers.EMPTY_BUFFER);
 
     return new Function<ByteBuffer, T>() {
       @Nullable
       @Override
       public T apply(ByteBuffer input) {
-        byteBufferInput.reset(input);
         try {
           final Schema sourceSchema = schemaCache.get(input);
           Preconditions.checkNotNull(sourceSchema, "Fail to find source schema.");
-          return datumReader.read(decoder, sourceSchema);
+          return datumReader.read(decoder.reset(input), sourceSchema);
         } catch (IOException e) {
           throw Throwables.propagate(e);
         }
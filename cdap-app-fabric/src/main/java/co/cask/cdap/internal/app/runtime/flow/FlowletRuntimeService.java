@@ -21,6 +21,7 @@ import co.cask.cdap.api.flow.flowlet.Flowlet;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.CombineClassLoader;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionFailureException;
@@ -46,26 +47,29 @@ final class FlowletRuntimeService extends AbstractIdleService {
   private final Callback txCallback;
   private final DataFabricFacade dataFabricFacade;
   private final Service serviceHook;
+  private final QueueNotifier queueNotifier;
 
   private FlowletProcessDriver flowletProcessDriver;
 
   FlowletRuntimeService(Flowlet flowlet, BasicFlowletContext flowletContext,
                         Collection<? extends ProcessSpecification<?>> processSpecs,
                         Callback txCallback, DataFabricFacade dataFabricFacade,
-                        Service serviceHook) {
+                        Service serviceHook, QueueNotifier queueNotifier) {
     this.flowlet = flowlet;
     this.flowletContext = flowletContext;
     this.processSpecs = processSpecs;
     this.txCallback = txCallback;
     this.dataFabricFacade = dataFabricFacade;
     this.serviceHook = serviceHook;
+    this.queueNotifier = queueNotifier;
   }
 
   @Override
   protected void startUp() throws Exception {
     LoggingContextAccessor.setLoggingContext(flowletContext.getLoggingContext());
     flowletContext.getProgramMetrics().increment("process.instance", 1);
-    flowletProcessDriver = new FlowletProcessDriver(flowletContext, dataFabricFacade, txCallback, processSpecs);
+    flowletProcessDriver = new FlowletProcessDriver(flowletContext, dataFabricFacade, txCallback, processSpecs,
+                                                    queueNotifier);
 
     serviceHook.startAndWait();
     initFlowlet();
@@ -36,6 +36,13 @@ interface ProcessMethod<T> {
 
   boolean needsInput();
 
+  /**
+   * Returns {@code true} if the method is annotated with {@link co.cask.cdap.api.annotation.Batch}, in which case
+   * all events in an input are given to the {@link co.cask.cdap.api.flow.flowlet.Callback} as one
+   * {@link java.util.Iterator}.
+   */
+  boolean isBatch();
+
   /**
    * Returns the max failure retries on this process method.
    */
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+
+/**
+ * Calls a flowlet process or tick method. Implementations are generated by {@link ProcessMethodInvokerGenerator},
+ * hence this interface needs to be public.
+ */
+public interface ProcessMethodInvoker {
+
+  /**
+   * Invokes the method.
+   *
+   * @param flowlet the flowlet instance to invoke the method on
+   * @param event the event to pass as the first argument, ignored if the method takes no argument
+   * @param inputContext the {@link InputContext} to pass as the second argument,
+   *                     ignored if the method takes less than two arguments
+   * @throws Exception the exception thrown by the method
+   */
+  void invoke(Object flowlet, Object event, InputContext inputContext) throws Exception;
+}
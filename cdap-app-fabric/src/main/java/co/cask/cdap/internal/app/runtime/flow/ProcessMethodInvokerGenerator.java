@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Generates a class bytecode that implements {@link ProcessMethodInvoker} for a given flowlet process or tick method.
+ * The generated class calls the method directly, without going through Java reflection:
+ *
+ * <pre>{@code
+ * public final class FlowletClass$ProcessMethodInvoker<md5> implements ProcessMethodInvoker {
+ *
+ *   public void invoke(Object flowlet, Object event, InputContext inputContext) throws Exception {
+ *     ((FlowletClass) flowlet).process((EventType) event, inputContext);
+ *   }
+ * }
+ * }</pre>
+ *
+ * The generated class is expected to be loaded by a different ClassLoader than the flowlet class,
+ * hence it can only be generated for public method in public class with public parameter types.
+ */
+@NotThreadSafe
+final class ProcessMethodInvokerGenerator {
+
+  /**
+   * Returns {@code true} if an invoker can be generated for the given method.
+   */
+  static boolean isSupported(Method method) {
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())
+      || !Modifier.isPublic(declaringClass.getModifiers()) || declaringClass.isInterface()
+      || method.getParameterTypes().length > 2) {
+      return false;
+    }
+    for (Class<?> paramType : method.getParameterTypes()) {
+      while (paramType.isArray()) {
+        paramType = paramType.getComponentType();
+      }
+      if (!Modifier.isPublic(paramType.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Generates the {@link ProcessMethodInvoker} class for the given method.
+   *
+   * @return a {@link ClassDefinition} of the generated class. The flowlet class and all classes in the method
+   *         signature are preserved, so that they won't be loaded again by the ClassLoader of the generated class.
+   */
+  ClassDefinition generate(Method method) {
+    Preconditions.checkArgument(isSupported(method), "Cannot generate invoker for method %s", method);
+
+    Class<?> declaringClass = method.getDeclaringClass();
+    String methodDesc = Type.getMethodDescriptor(method);
+    String className = String.format("%s$ProcessMethodInvoker%s%s", Type.getInternalName(declaringClass),
+                                     method.getName(), Hashing.md5().hashString(methodDesc));
+
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL, className, null,
+                      Type.getInternalName(Object.class),
+                      new String[] { Type.getInternalName(ProcessMethodInvoker.class) });
+
+    generateConstructor(classWriter);
+    generateInvoke(classWriter, method);
+
+    classWriter.visitEnd();
+
+    // All classes in the method signature need to be preserved since they can be defined by user,
+    // hence in the user ClassLoader.
+    List<Class<?>> preservedClasses = Lists.newArrayList();
+    preservedClasses.add(declaringClass);
+    List<Class<?>> signatureClasses = Lists.newArrayList(method.getParameterTypes());
+    signatureClasses.add(method.getReturnType());
+    for (Class<?> cls : signatureClasses) {
+      while (cls.isArray()) {
+        cls = cls.getComponentType();
+      }
+      // Classes loaded by bootstrap classloader are having null ClassLoader. They don't need to be preserved.
+      if (!cls.isPrimitive() && cls.getClassLoader() != null) {
+        preservedClasses.add(cls);
+      }
+    }
+
+    return new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+  }
+
+  private void generateConstructor(ClassWriter classWriter) {
+    org.objectweb.asm.commons.Method constructor = Methods.getMethod(void.class, "<init>");
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, new Type[0], classWriter);
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), constructor);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link ProcessMethodInvoker#invoke(Object, Object, InputContext)} method.
+   */
+  private void generateInvoke(ClassWriter classWriter, Method method) {
+    org.objectweb.asm.commons.Method invokeMethod = Methods.getMethod(void.class, "invoke", Object.class,
+                                                                      Object.class, InputContext.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, invokeMethod, null,
+                                               new Type[] { Type.getType(Exception.class) }, classWriter);
+
+    Type flowletType = Type.getType(method.getDeclaringClass());
+    Class<?>[] paramTypes = method.getParameterTypes();
+
+    // ((FlowletClass) flowlet)
+    mg.loadArg(0);
+    mg.checkCast(flowletType);
+
+    // (EventType) event, unboxed if the parameter is primitive
+    if (paramTypes.length > 0) {
+      mg.loadArg(1);
+      Type paramType = Type.getType(paramTypes[0]);
+      if (paramTypes[0].isPrimitive()) {
+        mg.unbox(paramType);
+      } else {
+        mg.checkCast(paramType);
+      }
+    }
+    // (InputContext) inputContext
+    if (paramTypes.length > 1) {
+      mg.loadArg(2);
+      mg.checkCast(Type.getType(paramTypes[1]));
+    }
+
+    mg.invokeVirtual(flowletType, org.objectweb.asm.commons.Method.getMethod(method));
+
+    // Discard the return value, if any
+    Type returnType = Type.getReturnType(method);
+    if (returnType.getSize() == 2) {
+      mg.pop2();
+    } else if (returnType.getSize() == 1) {
+      mg.pop();
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+}
@@ -18,8 +18,11 @@ package co.cask.cdap.internal.app.runtime.flow;
 
 import co.cask.cdap.api.annotation.Tick;
 import co.cask.cdap.app.queue.QueueReader;
+import co.cask.cdap.common.queue.QueueName;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
 
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,12 +34,19 @@ final class ProcessSpecification<T> {
   private final ProcessMethod<T> processMethod;
   private final Tick tickAnnotation;
   private final boolean isTick;
+  private final Set<QueueName> notifyQueues;
 
   ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod, Tick tickAnnotation) {
+    this(queueReader, processMethod, tickAnnotation, ImmutableSet.<QueueName>of());
+  }
+
+  ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod, Tick tickAnnotation,
+                       Set<QueueName> notifyQueues) {
     this.queueReader = queueReader;
     this.processMethod = processMethod;
     this.tickAnnotation = tickAnnotation;
     this.isTick = tickAnnotation != null;
+    this.notifyQueues = ImmutableSet.copyOf(notifyQueues);
   }
 
   QueueReader<T> getQueueReader() {
@@ -63,6 +73,14 @@ final class ProcessSpecification<T> {
     return isTick;
   }
 
+  /**
+   * Returns the set of queues to subscribe for enqueue notifications. If it is non-empty, all inputs of the
+   * process method are from those queues, hence there is no need to dequeue until a notification is received.
+   */
+  Set<QueueName> getNotifyQueues() {
+    return notifyQueues;
+  }
+
   private long convertToNano(long time, TimeUnit unit) {
     return TimeUnit.NANOSECONDS.convert(time, unit);
   }
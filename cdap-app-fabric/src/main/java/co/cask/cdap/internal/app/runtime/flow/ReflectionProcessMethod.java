@@ -20,17 +20,25 @@ import co.cask.cdap.api.annotation.Batch;
 import co.cask.cdap.api.flow.flowlet.Flowlet;
 import co.cask.cdap.api.flow.flowlet.InputContext;
 import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.reflect.TypeToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Iterator;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
- * Represents a {@link ProcessMethod} that invocation is done through reflection.
+ * Represents a {@link ProcessMethod} of a flowlet method discovered through reflection. The invocation is done
+ * through a {@link ProcessMethodInvoker} generated by {@link ProcessMethodInvokerGenerator} if possible,
+ * otherwise through Java reflection.
  * @param <T> Type of input accepted by this process method.
  */
 @NotThreadSafe
@@ -40,17 +48,22 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
 
   private final Flowlet flowlet;
   private final Method method;
+  private final ProcessMethodInvoker invoker;
   private final boolean hasParam;
   private final boolean batch;
   private final boolean needsIterator;
-  private final boolean needContext;
   private final int maxRetries;
 
   public static <T> ReflectionProcessMethod<T> create(Flowlet flowlet, Method method, int maxRetries) {
-    return new ReflectionProcessMethod<>(flowlet, method, maxRetries);
+    return new ReflectionProcessMethod<>(flowlet, method, maxRetries, true);
   }
 
-  private ReflectionProcessMethod(Flowlet flowlet, Method method, int maxRetries) {
+  @VisibleForTesting
+  static <T> ReflectionProcessMethod<T> create(Flowlet flowlet, Method method, int maxRetries, boolean generate) {
+    return new ReflectionProcessMethod<>(flowlet, method, maxRetries, generate);
+  }
+
+  private ReflectionProcessMethod(Flowlet flowlet, Method method, int maxRetries, boolean generate) {
     this.flowlet = flowlet;
     this.method = method;
     this.maxRetries = maxRetries;
@@ -59,11 +72,8 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
     this.batch = method.isAnnotationPresent(Batch.class);
     this.needsIterator = hasParam &&
       TypeToken.of(method.getGenericParameterTypes()[0]).getRawType().equals(Iterator.class);
-    this.needContext = method.getGenericParameterTypes().length == 2;
 
-    if (!this.method.isAccessible()) {
-      this.method.setAccessible(true);
-    }
+    this.invoker = generate ? createInvoker(method) : new ReflectionInvoker(method);
   }
 
   @Override
@@ -71,6 +81,11 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
     return hasParam;
   }
 
+  @Override
+  public boolean isBatch() {
+    return batch;
+  }
+
   @Override
   public int getMaxRetries() {
     return maxRetries;
@@ -79,25 +94,28 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
   @SuppressWarnings("unchecked")
   @Override
   public ProcessResult<T> invoke(InputDatum<T> input) {
+    // The event being processed. It is reported as the failed event if the method fails on it.
+    T currentEvent = null;
     try {
       Preconditions.checkState(!hasParam || input.needProcess(), "Empty input provided to method that needs input.");
       InputContext inputContext = input.getInputContext();
 
       if (hasParam) {
         if (needsIterator) {
-          invoke(method, input.iterator(), inputContext);
+          invoker.invoke(flowlet, input.iterator(), inputContext);
         } else {
           for (T event : input) {
-            invoke(method, event, inputContext);
+            currentEvent = event;
+            invoker.invoke(flowlet, event, inputContext);
           }
         }
       } else {
-        method.invoke(flowlet);
+        invoker.invoke(flowlet, null, null);
       }
 
-      return createResult(input, null);
+      return createResult(input, null, null);
     } catch (Throwable t) {
-      return createResult(input, t.getCause());
+      return createResult(input, currentEvent, t);
     }
   }
 
@@ -106,24 +124,83 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
     return flowlet.getClass() + "." + method.toString();
   }
 
+  @VisibleForTesting
+  boolean isGenerated() {
+    return !(invoker instanceof ReflectionInvoker);
+  }
+
   /**
-   * Calls the user process method.
+   * Creates a {@link ProcessMethodInvoker} from generated bytecode for the given method. If failed to do so,
+   * a reflection based {@link ProcessMethodInvoker} will be returned.
    */
-  private void invoke(Method method, Object event, InputContext inputContext) throws Exception {
-    if (needContext) {
-      method.invoke(flowlet, event, inputContext);
-    } else {
-      method.invoke(flowlet, event);
+  private static ProcessMethodInvoker createInvoker(Method method) {
+    if (ProcessMethodInvokerGenerator.isSupported(method)) {
+      try {
+        ClassDefinition classDef = new ProcessMethodInvokerGenerator().generate(method);
+        // The ClassLoader of the generated class has the CDAP system ClassLoader as parent.
+        // The flowlet class and parameter classes are preserved in the class definition.
+        ByteCodeClassLoader classLoader = new ByteCodeClassLoader(ProcessMethodInvoker.class.getClassLoader());
+        classLoader.addClass(classDef);
+        return (ProcessMethodInvoker) classLoader.loadClass(classDef.getClassName()).newInstance();
+      } catch (Throwable t) {
+        LOG.debug("Failed to generate invoker for method {}. Fallback to use reflection.", method, t);
+      }
     }
+    return new ReflectionInvoker(method);
   }
 
+  /**
+   * Creates the {@link ProcessResult}. If the method has param, then object for the result would be the iterator
+   * for batch. For no-batch, it is the failed event if there is failure, otherwise the first event.
+   */
   @SuppressWarnings("unchecked")
-  private ProcessResult<T> createResult(InputDatum<T> input, Throwable failureCause) {
-    // If the method has param, then object for the result would be iterator or the first event (batch vs no-batch)
-    T event = hasParam ? (batch ? (T) input.iterator() : input.iterator().next()) : null;
+  private ProcessResult<T> createResult(InputDatum<T> input, @Nullable T failedEvent,
+                                        @Nullable Throwable failureCause) {
+    T event = null;
+    if (hasParam) {
+      if (batch) {
+        event = (T) input.iterator();
+      } else {
+        event = failedEvent == null ? input.iterator().next() : failedEvent;
+      }
+    }
     return new ReflectionProcessResult<>(event, failureCause);
   }
 
+  /**
+   * A {@link ProcessMethodInvoker} that calls the method through Java reflection.
+   */
+  private static final class ReflectionInvoker implements ProcessMethodInvoker {
+
+    private final Method method;
+    private final boolean needContext;
+
+    private ReflectionInvoker(Method method) {
+      this.method = method;
+      this.needContext = method.getGenericParameterTypes().length == 2;
+      if (!this.method.isAccessible()) {
+        this.method.setAccessible(true);
+      }
+    }
+
+    @Override
+    public void invoke(Object flowlet, Object event, InputContext inputContext) throws Exception {
+      try {
+        if (needContext) {
+          method.invoke(flowlet, event, inputContext);
+        } else if (method.getParameterTypes().length == 1) {
+          method.invoke(flowlet, event);
+        } else {
+          method.invoke(flowlet);
+        }
+      } catch (InvocationTargetException e) {
+        // Throws the exception raised by the method
+        Throwables.propagateIfPossible(e.getCause(), Exception.class);
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+  }
+
   private static final class ReflectionProcessResult<V> implements ProcessResult<V> {
 
     private final V event;
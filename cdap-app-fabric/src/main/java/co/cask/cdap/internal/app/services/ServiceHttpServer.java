@@ -25,6 +25,7 @@ import co.cask.cdap.api.service.http.HttpServiceHandlerSpecification;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.Arguments;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.http.RoutingFailureHandler;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.CombineClassLoader;
 import co.cask.cdap.common.lang.InstantiatorFactory;
@@ -49,6 +50,7 @@ import co.cask.http.NettyHttpService;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionSystemClient;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -64,6 +66,7 @@ import org.apache.twill.api.RunId;
 import org.apache.twill.api.ServiceAnnouncer;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -182,7 +185,14 @@ public class ServiceHttpServer extends AbstractIdleService {
     NettyHttpService.Builder builder = NettyHttpService.builder()
       .setHost(host)
       .setPort(0)
-      .addHttpHandlers(nettyHttpHandlers);
+      .addHttpHandlers(nettyHttpHandlers)
+      .modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+        @Override
+        public ChannelPipeline apply(ChannelPipeline input) {
+          // The router reuses connections, hence requests without a matching handler must be answered on them too
+          return RoutingFailureHandler.addTo(input);
+        }
+      });
 
     // These properties are for unit-test only. Currently they are not controllable by the user program
     String threadPoolSize = System.getProperty(THREAD_POOL_SIZE);
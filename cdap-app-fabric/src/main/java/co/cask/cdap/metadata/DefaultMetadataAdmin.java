@@ -26,6 +26,7 @@ import co.cask.cdap.data2.metadata.store.MetadataStore;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import com.google.common.base.CharMatcher;
@@ -34,6 +35,7 @@ import com.google.inject.Inject;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataAdmin} that interacts directly with {@link MetadataStore}.
@@ -157,6 +159,13 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
     return metadataStore.searchMetadataOnType(scope, namespaceId, searchQuery, types);
   }
 
+  @Override
+  public MetadataSearchResponse searchMetadata(String namespaceId, String searchQuery,
+                                               Set<MetadataSearchTargetType> types, int limit,
+                                               @Nullable String cursor) {
+    return metadataStore.search(namespaceId, searchQuery, types, limit, cursor);
+  }
+
   // Helper methods to validate the metadata entries.
 
   private void validateProperties(Id.NamespacedId entityId,
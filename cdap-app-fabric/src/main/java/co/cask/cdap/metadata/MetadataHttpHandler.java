@@ -24,6 +24,7 @@ import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.http.AbstractHttpHandler;
@@ -838,12 +839,30 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
   public void searchMetadata(HttpRequest request, HttpResponder responder,
                              @PathParam("namespace-id") String namespaceId,
                              @QueryParam("query") String searchQuery,
-                             @QueryParam("target") List<String> targets) throws Exception {
+                             @QueryParam("target") List<String> targets,
+                             @QueryParam("limit") String limit,
+                             @QueryParam("cursor") String cursor) throws Exception {
     Set<MetadataSearchTargetType> types = ImmutableSet.of();
     if (targets != null) {
       types = ImmutableSet.copyOf(Iterables.transform(targets, STRING_TO_TARGET_TYPE));
     }
 
+    // Only respond with a page of results if asked for, to stay compatible with existing clients
+    if (limit != null || cursor != null) {
+      if (limit == null) {
+        throw new BadRequestException("A limit must be specified together with the cursor.");
+      }
+      MetadataSearchResponse response;
+      try {
+        response = metadataAdmin.searchMetadata(namespaceId, URLDecoder.decode(searchQuery, "UTF-8"), types,
+                                                parseLimit(limit), cursor);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException(e.getMessage(), e);
+      }
+      responder.sendJson(HttpResponseStatus.OK, response, MetadataSearchResponse.class, GSON);
+      return;
+    }
+
     Set<MetadataSearchResultRecord> results = metadataAdmin.searchMetadata(namespaceId,
                                                                            URLDecoder.decode(searchQuery, "UTF-8"),
                                                                            types);
@@ -868,6 +887,18 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
     return  (scope == null) ? metadataAdmin.getTags(entityId) : metadataAdmin.getTags(validateScope(scope), entityId);
   }
 
+  private int parseLimit(String limit) throws BadRequestException {
+    try {
+      int result = Integer.parseInt(limit);
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to throw BadRequestException
+    }
+    throw new BadRequestException(String.format("Invalid limit '%s'. Expected a positive number.", limit));
+  }
+
   private MetadataScope validateScope(String scope) throws BadRequestException {
     try {
       return MetadataScope.valueOf(scope.toUpperCase());
@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.flow.flowlet.OutputEmitter;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Benchmark for measuring the time and heap allocation per emit of {@link DatumOutputEmitter}. It also
+ * runs the emit logic used before the encoding buffer was reused, for comparison. Allocation is measured
+ * with the per thread allocation counter of the HotSpot JVM.
+ *
+ * Usage: {@code DatumOutputEmitterBenchmark [emits_per_round] [rounds]}
+ */
+public final class DatumOutputEmitterBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int emits = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    Schema schema = new ReflectionSchemaGenerator().generate(Record.class);
+    DatumWriter<Record> writer = new ASMDatumWriterFactory(new ASMFieldAccessorFactory())
+      .create(TypeToken.of(Record.class), schema);
+    CountingProducer producer = new CountingProducer();
+    Supplier<QueueProducer> producerSupplier = Suppliers.<QueueProducer>ofInstance(producer);
+
+    Map<String, OutputEmitter<Record>> emitters = ImmutableMap.of(
+      "legacy", new LegacyOutputEmitter<>(producerSupplier, schema, writer),
+      "reuse", new DatumOutputEmitter<>(producerSupplier, schema, writer));
+
+    Record record = new Record(1234567L, "user12345", 42.5d);
+    System.out.printf("%-8s %-10s %10s %14s%n", "emitter", "partition", "ns/emit", "bytes/emit");
+    for (Map.Entry<String, OutputEmitter<Record>> entry : emitters.entrySet()) {
+      for (boolean partitioned : new boolean[] { false, true }) {
+        // Warm up
+        run(entry.getValue(), record, emits, partitioned);
+
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+          long bytes = getAllocatedBytes();
+          long nanos = run(entry.getValue(), record, emits, partitioned);
+          bytes = getAllocatedBytes() - bytes;
+          bestNanos = Math.min(bestNanos, nanos);
+          bestBytes = Math.min(bestBytes, bytes);
+        }
+        System.out.printf("%-8s %-10s %10.2f %14.2f%n", entry.getKey(), partitioned,
+                          (double) bestNanos / emits, (double) bestBytes / emits);
+      }
+    }
+
+    if (producer.bytes == 0) {
+      throw new IllegalStateException("Nothing was emitted");
+    }
+  }
+
+  private static long run(OutputEmitter<Record> emitter, Record record, int emits, boolean partitioned) {
+    long startTime = System.nanoTime();
+    for (int i = 0; i < emits; i++) {
+      if (partitioned) {
+        emitter.emit(record, "user", record.user);
+      } else {
+        emitter.emit(record);
+      }
+    }
+    return System.nanoTime() - startTime;
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * The record type being emitted.
+   */
+  public static final class Record {
+    private final long timestamp;
+    private final String user;
+    private final double value;
+
+    public Record(long timestamp, String user, double value) {
+      this.timestamp = timestamp;
+      this.user = user;
+      this.value = value;
+    }
+  }
+
+  /**
+   * A {@link QueueProducer} that only counts the bytes enqueued.
+   */
+  private static final class CountingProducer implements QueueProducer {
+
+    private long bytes;
+
+    @Override
+    public void enqueue(QueueEntry entry) throws IOException {
+      bytes += entry.getData().length;
+    }
+
+    @Override
+    public void enqueue(Iterable<QueueEntry> entries) throws IOException {
+      for (QueueEntry entry : entries) {
+        enqueue(entry);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      // No-op
+    }
+  }
+
+  /**
+   * The emit logic before encoding buffer reuse, which allocates a new output stream and encoder per emit.
+   */
+  private static final class LegacyOutputEmitter<T> implements OutputEmitter<T> {
+
+    private final Supplier<QueueProducer> producerSupplier;
+    private final byte[] schemaHash;
+    private final DatumWriter<T> writer;
+
+    private LegacyOutputEmitter(Supplier<QueueProducer> producerSupplier, Schema schema, DatumWriter<T> writer) {
+      this.producerSupplier = producerSupplier;
+      this.schemaHash = schema.getSchemaHash().toByteArray();
+      this.writer = writer;
+    }
+
+    @Override
+    public void emit(T data) {
+      emit(data, ImmutableMap.<String, Object>of());
+    }
+
+    @Override
+    public void emit(T data, String partitionKey, Object partitionValue) {
+      emit(data, ImmutableMap.of(partitionKey, partitionValue));
+    }
+
+    @Override
+    public void emit(T data, Map<String, Object> partitions) {
+      try {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(schemaHash);
+        writer.encode(data, new BinaryEncoder(output));
+        producerSupplier.get().enqueue(
+          new QueueEntry(Maps.transformValues(partitions, DatumOutputEmitter.PARTITION_MAP_TRANSFORMER),
+                         output.toByteArray()));
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+
+  private DatumOutputEmitterBenchmark() {
+  }
+}
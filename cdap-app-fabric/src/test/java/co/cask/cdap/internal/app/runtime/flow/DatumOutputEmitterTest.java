@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Strings;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for {@link DatumOutputEmitter}.
+ */
+public class DatumOutputEmitterTest {
+
+  @Test
+  public void testEmit() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(String.class);
+    ListProducer producer = new ListProducer();
+    DatumOutputEmitter<String> emitter = new DatumOutputEmitter<>(
+      Suppliers.<QueueProducer>ofInstance(producer), schema,
+      new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(TypeToken.of(String.class), schema));
+
+    // Emits data of different sizes, so that the reusable buffer needs to grow and shrink
+    List<String> data = Lists.newArrayList("small", Strings.repeat("medium", 100),
+                                           Strings.repeat("large", 300000), "", "small again");
+    for (String str : data) {
+      emitter.emit(str);
+    }
+    emitter.emit("partition", "key", "value");
+    emitter.emit("partitions", ImmutableMap.<String, Object>of("k1", 1, "k2", "v2"));
+    emitter.emit("no partitions", ImmutableMap.<String, Object>of());
+
+    Assert.assertEquals(data.size() + 3, producer.entries.size());
+
+    ReflectionDatumReader<String> reader = new ReflectionDatumReader<>(schema, TypeToken.of(String.class));
+    for (int i = 0; i < data.size(); i++) {
+      Assert.assertEquals(data.get(i), decode(reader, schema, producer.entries.get(i)));
+      Assert.assertTrue(producer.entries.get(i).getHashKeys().isEmpty());
+    }
+
+    QueueEntry entry = producer.entries.get(data.size());
+    Assert.assertEquals("partition", decode(reader, schema, entry));
+    Assert.assertEquals(ImmutableMap.of("key", "value".hashCode()), entry.getHashKeys());
+
+    entry = producer.entries.get(data.size() + 1);
+    Assert.assertEquals("partitions", decode(reader, schema, entry));
+    Assert.assertEquals(ImmutableMap.of("k1", 1, "k2", "v2".hashCode()), entry.getHashKeys());
+
+    entry = producer.entries.get(data.size() + 2);
+    Assert.assertEquals("no partitions", decode(reader, schema, entry));
+    Assert.assertTrue(entry.getHashKeys().isEmpty());
+  }
+
+  private String decode(ReflectionDatumReader<String> reader, Schema schema, QueueEntry entry) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(entry.getData());
+    Assert.assertEquals(schema.getSchemaHash(), new SchemaHash(buffer));
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(buffer.array(), buffer.position(),
+                                                                  buffer.remaining())), schema);
+  }
+
+  /**
+   * A {@link QueueProducer} that collects entries in a list.
+   */
+  private static final class ListProducer implements QueueProducer {
+
+    private final List<QueueEntry> entries = Lists.newArrayList();
+
+    @Override
+    public void enqueue(QueueEntry entry) throws IOException {
+      entries.add(entry);
+    }
+
+    @Override
+    public void enqueue(Iterable<QueueEntry> entries) throws IOException {
+      Iterables.addAll(this.entries, entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+      // No-op
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Test for {@link FlowletProgramRunner}.
+ */
+public class FlowletProgramRunnerTest {
+
+  @Test
+  public void testProcessBatchSize() {
+    // Default is one event per transaction
+    Assert.assertEquals(1, FlowletProgramRunner.getProcessBatchSize("f1", ImmutableMap.<String, String>of()));
+
+    Map<String, String> arguments = ImmutableMap.of(
+      FlowletProgramRunner.PROCESS_BATCH_SIZE, "10",
+      "flowlet.f1." + FlowletProgramRunner.PROCESS_BATCH_SIZE, "100"
+    );
+    // Flowlet scoped argument overrides the global one
+    Assert.assertEquals(100, FlowletProgramRunner.getProcessBatchSize("f1", arguments));
+    Assert.assertEquals(10, FlowletProgramRunner.getProcessBatchSize("f2", arguments));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testInvalidProcessBatchSize() {
+    FlowletProgramRunner.getProcessBatchSize("f1", ImmutableMap.of(FlowletProgramRunner.PROCESS_BATCH_SIZE, "0"));
+  }
+}
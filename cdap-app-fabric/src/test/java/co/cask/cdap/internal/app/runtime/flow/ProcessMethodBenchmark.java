@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import com.google.common.collect.Lists;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Benchmark for comparing the per event invocation cost of {@link ReflectionProcessMethod} when calling
+ * through a generated {@link ProcessMethodInvoker} and through Java reflection.
+ *
+ * Usage: {@code ProcessMethodBenchmark [events_per_round] [rounds]}
+ */
+public final class ProcessMethodBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int eventsPerRound = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    // Each input carries 100 events, as a batch dequeue would do
+    List<Long> events = Lists.newArrayList();
+    for (long i = 0; i < 100; i++) {
+      events.add(i);
+    }
+    ReflectionProcessMethodTest.ListInputDatum<Long> input = new ReflectionProcessMethodTest.ListInputDatum<>(events);
+
+    System.out.printf("%-12s %-16s %12s%n", "invoker", "method", "ns/event");
+    for (String methodName : new String[] { "process", "processContext" }) {
+      for (boolean generate : new boolean[] { false, true }) {
+        CountingFlowlet flowlet = new CountingFlowlet();
+        Method method = methodName.equals("process")
+          ? CountingFlowlet.class.getMethod(methodName, Long.class)
+          : CountingFlowlet.class.getMethod(methodName, Long.class, InputContext.class);
+        ReflectionProcessMethod<Long> processMethod = ReflectionProcessMethod.create(flowlet, method, 0, generate);
+
+        // Warm up, then take the best round
+        run(processMethod, input, eventsPerRound);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+          bestNanos = Math.min(bestNanos, run(processMethod, input, eventsPerRound));
+        }
+        System.out.printf("%-12s %-16s %12.2f%n", generate ? "generated" : "reflection", methodName,
+                          (double) bestNanos / eventsPerRound);
+
+        if (flowlet.sum == 0) {
+          throw new IllegalStateException("Process method never called");
+        }
+      }
+    }
+  }
+
+  private static long run(ReflectionProcessMethod<Long> processMethod,
+                          ReflectionProcessMethodTest.ListInputDatum<Long> input, int events) {
+    long startTime = System.nanoTime();
+    for (int i = 0; i < events; i += input.size()) {
+      if (!processMethod.invoke(input).isSuccess()) {
+        throw new IllegalStateException("Process method failed");
+      }
+    }
+    return System.nanoTime() - startTime;
+  }
+
+  /**
+   * Flowlet that sums up all events.
+   */
+  public static final class CountingFlowlet extends AbstractFlowlet {
+
+    private long sum;
+
+    public void process(Long event) {
+      sum += event;
+    }
+
+    public void processContext(Long event, InputContext context) {
+      sum += event + context.getRetryCount();
+    }
+  }
+
+  private ProcessMethodBenchmark() {
+  }
+}
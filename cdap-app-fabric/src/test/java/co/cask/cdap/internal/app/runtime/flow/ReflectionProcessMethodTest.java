@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.Batch;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tests for {@link ReflectionProcessMethod}, with and without generated invoker.
+ */
+public class ReflectionProcessMethodTest {
+
+  @Test
+  public void testGenerated() throws Exception {
+    testProcessMethods(true);
+  }
+
+  @Test
+  public void testReflection() throws Exception {
+    testProcessMethods(false);
+  }
+
+  @Test
+  public void testFallback() throws Exception {
+    // Non-public method cannot be called by generated class, hence it should fallback to reflection
+    TestFlowlet flowlet = new TestFlowlet();
+    ReflectionProcessMethod<String> processMethod = createProcessMethod(flowlet, "hidden", true, String.class);
+    Assert.assertFalse(processMethod.isGenerated());
+    Assert.assertTrue(processMethod.invoke(new ListInputDatum<>(ImmutableList.of("a", "b"))).isSuccess());
+    Assert.assertEquals(ImmutableList.of("hidden:a", "hidden:b"), flowlet.calls);
+  }
+
+  private void testProcessMethods(boolean generate) throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+
+    // Object parameter
+    ReflectionProcessMethod<String> stringMethod = createProcessMethod(flowlet, "process", generate, String.class);
+    Assert.assertEquals(generate, stringMethod.isGenerated());
+    ProcessMethod.ProcessResult<String> result = stringMethod.invoke(new ListInputDatum<>(ImmutableList.of("a", "b")));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+    Assert.assertEquals(ImmutableList.of("process:a", "process:b"), flowlet.calls);
+
+    // Primitive parameter and return value
+    flowlet.calls.clear();
+    ReflectionProcessMethod<Integer> intMethod = createProcessMethod(flowlet, "processInt", generate, int.class);
+    Assert.assertEquals(generate, intMethod.isGenerated());
+    Assert.assertTrue(intMethod.invoke(new ListInputDatum<>(ImmutableList.of(1, 2))).isSuccess());
+    Assert.assertEquals(ImmutableList.of("processInt:1", "processInt:2"), flowlet.calls);
+
+    // With InputContext
+    flowlet.calls.clear();
+    ReflectionProcessMethod<String> contextMethod = createProcessMethod(flowlet, "processContext", generate,
+                                                                        String.class, InputContext.class);
+    Assert.assertTrue(contextMethod.invoke(new ListInputDatum<>(ImmutableList.of("c"))).isSuccess());
+    Assert.assertEquals(ImmutableList.of("processContext:c:origin"), flowlet.calls);
+
+    // Batch with Iterator
+    flowlet.calls.clear();
+    ReflectionProcessMethod<String> batchMethod = createProcessMethod(flowlet, "processBatch", generate,
+                                                                      Iterator.class);
+    Assert.assertTrue(batchMethod.isBatch());
+    Assert.assertTrue(batchMethod.invoke(new ListInputDatum<>(ImmutableList.of("x", "y"))).isSuccess());
+    Assert.assertEquals(ImmutableList.of("processBatch:x", "processBatch:y"), flowlet.calls);
+
+    // Tick method without parameter
+    flowlet.calls.clear();
+    ReflectionProcessMethod<Object> tickMethod = createProcessMethod(flowlet, "tick", generate);
+    Assert.assertFalse(tickMethod.needsInput());
+    Assert.assertTrue(tickMethod.invoke(new ListInputDatum<>(ImmutableList.of())).isSuccess());
+    Assert.assertEquals(ImmutableList.of("tick"), flowlet.calls);
+
+    // Exception thrown by the method should be the failure cause
+    ReflectionProcessMethod<String> failMethod = createProcessMethod(flowlet, "fail", generate, String.class);
+    result = failMethod.invoke(new ListInputDatum<>(ImmutableList.of("f")));
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals("f", result.getEvent());
+    Assert.assertTrue(result.getCause() instanceof IOException);
+    Assert.assertEquals("fail:f", result.getCause().getMessage());
+
+    // For multiple events given to a method without @Batch, the failed event should be reported
+    flowlet.calls.clear();
+    ReflectionProcessMethod<String> failOnMethod = createProcessMethod(flowlet, "failOn", generate, String.class);
+    Assert.assertFalse(failOnMethod.isBatch());
+    result = failOnMethod.invoke(new ListInputDatum<>(ImmutableList.of("a", "bad", "c")));
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals("bad", result.getEvent());
+    Assert.assertEquals(ImmutableList.of("failOn:a"), flowlet.calls);
+
+    result = failOnMethod.invoke(new ListInputDatum<>(ImmutableList.of("a", "b")));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+  }
+
+  private <T> ReflectionProcessMethod<T> createProcessMethod(TestFlowlet flowlet, String name,
+                                                             boolean generate, Class<?>...paramTypes) throws Exception {
+    Method method = TestFlowlet.class.getDeclaredMethod(name, paramTypes);
+    return ReflectionProcessMethod.create(flowlet, method, 0, generate);
+  }
+
+  /**
+   * Flowlet for testing.
+   */
+  public static final class TestFlowlet extends AbstractFlowlet {
+
+    private final List<String> calls = Lists.newArrayList();
+
+    public void process(String event) {
+      calls.add("process:" + event);
+    }
+
+    public long processInt(int event) {
+      calls.add("processInt:" + event);
+      return event;
+    }
+
+    public void processContext(String event, InputContext context) {
+      calls.add("processContext:" + event + ":" + context.getOrigin());
+    }
+
+    @Batch(10)
+    public void processBatch(Iterator<String> events) {
+      while (events.hasNext()) {
+        calls.add("processBatch:" + events.next());
+      }
+    }
+
+    public void tick() {
+      calls.add("tick");
+    }
+
+    public void fail(String event) throws IOException {
+      throw new IOException("fail:" + event);
+    }
+
+    public void failOn(String event) throws IOException {
+      if ("bad".equals(event)) {
+        throw new IOException("fail:" + event);
+      }
+      calls.add("failOn:" + event);
+    }
+
+    void hidden(String event) {
+      calls.add("hidden:" + event);
+    }
+  }
+
+  /**
+   * A {@link InputDatum} backed by a list.
+   */
+  static final class ListInputDatum<T> implements InputDatum<T> {
+
+    private final List<T> events;
+    private final InputContext inputContext;
+
+    ListInputDatum(List<T> events) {
+      this.events = events;
+      this.inputContext = new InputContext() {
+        @Override
+        public String getOrigin() {
+          return "origin";
+        }
+
+        @Override
+        public int getRetryCount() {
+          return 0;
+        }
+      };
+    }
+
+    @Override
+    public boolean needProcess() {
+      return !events.isEmpty();
+    }
+
+    @Override
+    public void incrementRetry() {
+      // No-op
+    }
+
+    @Override
+    public int getRetry() {
+      return 0;
+    }
+
+    @Override
+    public InputContext getInputContext() {
+      return inputContext;
+    }
+
+    @Override
+    public QueueName getQueueName() {
+      return null;
+    }
+
+    @Override
+    public void reclaim() {
+      // No-op
+    }
+
+    @Override
+    public int size() {
+      return events.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return events.iterator();
+    }
+  }
+}
@@ -19,6 +19,9 @@ package co.cask.cdap.runtime;
 import co.cask.cdap.ArgumentCheckApp;
 import co.cask.cdap.InvalidFlowOutputApp;
 import co.cask.cdap.WordCountApp;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetDefinition;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
@@ -37,21 +40,31 @@ import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.namespace.NamespaceAdmin;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.stream.StreamEventCodec;
+import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
+import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.DynamicDatasetCache;
+import co.cask.cdap.data2.dataset2.SingleThreadDatasetCache;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.internal.DefaultId;
 import co.cask.cdap.internal.app.deploy.pipeline.ApplicationWithPrograms;
 import co.cask.cdap.internal.app.runtime.BasicArguments;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.SimpleProgramOptions;
+import co.cask.cdap.internal.app.runtime.flow.FlowletProgramRunner;
 import co.cask.cdap.proto.NamespaceMeta;
 import co.cask.cdap.proto.ProgramType;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.runtime.app.MicroBatchApp;
 import co.cask.cdap.runtime.app.PendingMetricTestApp;
 import co.cask.cdap.test.SlowTests;
 import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionExecutor;
+import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionSystemClient;
 import com.google.common.base.Charsets;
 import com.google.common.base.Supplier;
@@ -248,6 +261,66 @@ public class FlowTest {
     }
   }
 
+  @Test
+  public void testMicroBatchIgnoreFailure() throws Exception {
+    final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(MicroBatchApp.class,
+                                                                                         TEMP_FOLDER_SUPPLIER);
+    ProgramRunnerFactory runnerFactory = AppFabricTestHelper.getInjector().getInstance(ProgramRunnerFactory.class);
+
+    ProgramDescriptor programDescriptor = Iterables.getOnlyElement(app.getPrograms());
+    ProgramRunner runner = runnerFactory.create(programDescriptor.getProgramId().getType());
+    BasicArguments systemArgs = new BasicArguments(ImmutableMap.of(ProgramOptionConstants.RUN_ID,
+                                                                   RunIds.generate().getId()));
+    // Process all events emitted by the generator in one micro batch
+    BasicArguments userArgs = new BasicArguments(ImmutableMap.of(
+      "flowlet.consumer." + FlowletProgramRunner.PROCESS_BATCH_SIZE, String.valueOf(MicroBatchApp.EVENTS)));
+    Program program = AppFabricTestHelper.createProgram(programDescriptor, app.getArtifactLocation(),
+                                                        runner, TEMP_FOLDER_SUPPLIER);
+    ProgramController controller = runner.run(program, new SimpleProgramOptions(program.getName(), systemArgs,
+                                                                                 userArgs));
+    try {
+      DatasetFramework datasetFramework = AppFabricTestHelper.getInjector().getInstance(DatasetFramework.class);
+      DynamicDatasetCache datasetCache = new SingleThreadDatasetCache(
+        new SystemDatasetInstantiator(datasetFramework, getClass().getClassLoader(), null),
+        AppFabricTestHelper.getInjector().getInstance(TransactionSystemClient.class),
+        NamespaceId.DEFAULT, DatasetDefinition.NO_ARGUMENTS, null, null);
+      final KeyValueTable processed = datasetCache.getDataset("processed");
+      TransactionExecutorFactory txExecutorFactory =
+        AppFabricTestHelper.getInjector().getInstance(TransactionExecutorFactory.class);
+
+      // Events that failed are ignored, while all other events in the same micro batch are processed
+      final List<Integer> expected = Lists.newArrayList();
+      for (int i = 0; i < MicroBatchApp.EVENTS; i++) {
+        if (!MicroBatchApp.isFailure(i)) {
+          expected.add(i);
+        }
+      }
+      final List<Integer> actual = Lists.newArrayList();
+      int trials = 0;
+      while (trials++ < 20) {
+        actual.clear();
+        Transactions.createTransactionExecutor(txExecutorFactory, processed)
+          .execute(new TransactionExecutor.Subroutine() {
+            @Override
+            public void apply() throws Exception {
+              for (int i = 0; i < MicroBatchApp.EVENTS; i++) {
+                if (processed.read(Bytes.toBytes(i)) != null) {
+                  actual.add(i);
+                }
+              }
+            }
+          });
+        if (expected.equals(actual)) {
+          break;
+        }
+        TimeUnit.MILLISECONDS.sleep(500);
+      }
+      Assert.assertEquals(expected, actual);
+    } finally {
+      controller.stop().get();
+    }
+  }
+
   @Test (expected = IllegalArgumentException.class)
   public void testInvalidOutputEmitter() throws Throwable {
     try {
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.runtime.app;
+
+import co.cask.cdap.api.annotation.ProcessInput;
+import co.cask.cdap.api.annotation.Tick;
+import co.cask.cdap.api.annotation.UseDataSet;
+import co.cask.cdap.api.app.AbstractApplication;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import co.cask.cdap.api.flow.AbstractFlow;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.Callback;
+import co.cask.cdap.api.flow.flowlet.FailurePolicy;
+import co.cask.cdap.api.flow.flowlet.FailureReason;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.api.flow.flowlet.OutputEmitter;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * An app with a flowlet that fails on some events and ignores the failures, for testing micro batch processing.
+ */
+public final class MicroBatchApp extends AbstractApplication {
+
+  public static final int EVENTS = 10;
+
+  @Override
+  public void configure() {
+    setName("MicroBatchApp");
+    setDescription("MicroBatchApp");
+    createDataset("processed", KeyValueTable.class);
+    addFlow(new MicroBatchFlow());
+  }
+
+  /**
+   * Returns {@code true} if processing of the given event fails.
+   */
+  public static boolean isFailure(int event) {
+    return event % 4 == 3;
+  }
+
+  /**
+   *
+   */
+  public static final class MicroBatchFlow extends AbstractFlow {
+
+    @Override
+    protected void configure() {
+      setName("MicroBatchFlow");
+      setDescription("MicroBatchFlow");
+      addFlowlet("gen", new Generator());
+      addFlowlet("consumer", new Consumer());
+      connect("gen", "consumer");
+    }
+  }
+
+  /**
+   * Emits all events in one transaction.
+   */
+  public static final class Generator extends AbstractFlowlet {
+
+    private OutputEmitter<Integer> output;
+    private boolean emitted;
+
+    @Tick(delay = 1L, unit = TimeUnit.MILLISECONDS)
+    public void generate() throws Exception {
+      if (!emitted) {
+        for (int i = 0; i < EVENTS; i++) {
+          output.emit(i);
+        }
+        emitted = true;
+      }
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Consumer extends AbstractFlowlet implements Callback {
+    @UseDataSet("processed")
+    private KeyValueTable processed;
+
+    @ProcessInput
+    public void process(int event) {
+      processed.write(Bytes.toBytes(event), Bytes.toBytes(event));
+      if (isFailure(event)) {
+        throw new IllegalArgumentException("Failure on event " + event);
+      }
+    }
+
+    @Override
+    public void onSuccess(@Nullable Object input, @Nullable InputContext inputContext) {
+    }
+
+    @Override
+    public FailurePolicy onFailure(@Nullable Object input, @Nullable InputContext inputContext, FailureReason reason) {
+      return FailurePolicy.IGNORE;
+    }
+  }
+}
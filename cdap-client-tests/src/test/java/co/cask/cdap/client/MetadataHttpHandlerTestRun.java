@@ -49,11 +49,13 @@ import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.common.http.HttpRequest;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -1076,6 +1078,50 @@ public class MetadataHttpHandlerTestRun extends MetadataTestBase {
     Assert.assertEquals(ImmutableSet.of(), searchMetadata(namespace, "tag1"));
   }
 
+  @Test
+  public void testPagedSearchMetadata() throws Exception {
+    Id.Namespace namespace = Id.Namespace.from("pagedsearch");
+    namespaceClient.create(new NamespaceMeta.Builder().setName(namespace).build());
+    Id.Stream stream1 = Id.Stream.from(namespace, "s1");
+    Id.Stream stream2 = Id.Stream.from(namespace, "s2");
+    Id.Stream stream3 = Id.Stream.from(namespace, "s3");
+    streamClient.create(stream1);
+    streamClient.create(stream2);
+    streamClient.create(stream3);
+    // stream1 matches exactly, the others by prefix only
+    addTags(stream3, ImmutableSet.of("pagedtag3"));
+    addTags(stream2, ImmutableSet.of("pagedtag2"));
+    addTags(stream1, ImmutableSet.of("pagedtag"));
+
+    Set<MetadataSearchTargetType> targets = ImmutableSet.of();
+    MetadataSearchResponse response = searchMetadata(namespace, "pagedtag*", targets, 2, null);
+    Assert.assertEquals(3, response.getTotal());
+    Assert.assertEquals(2, response.getResults().size());
+    Assert.assertEquals(stream1, response.getResults().get(0).getEntityId());
+    Assert.assertEquals(stream2, response.getResults().get(1).getEntityId());
+    Assert.assertNotNull(response.getResults().get(0).getMetadata().get(MetadataScope.SYSTEM));
+    Assert.assertNotNull(response.getCursor());
+
+    response = searchMetadata(namespace, "pagedtag*", targets, 2, response.getCursor());
+    Assert.assertEquals(3, response.getTotal());
+    Assert.assertEquals(1, response.getResults().size());
+    Assert.assertEquals(stream3, response.getResults().get(0).getEntityId());
+    Assert.assertNull(response.getCursor());
+
+    // invalid limit and cursor
+    RESTClient restClient = new RESTClient(clientConfig);
+    for (String params : ImmutableList.of("limit=0", "limit=abc", "cursor=1:stream", "limit=2&cursor=invalid")) {
+      URL url = clientConfig.resolveNamespacedURLV3(namespace, "metadata/search?query=pagedtag*&" + params);
+      Assert.assertEquals(
+        HttpResponseStatus.BAD_REQUEST.getCode(),
+        restClient.execute(HttpRequest.get(url).build(), null,
+                           HttpResponseStatus.BAD_REQUEST.getCode()).getResponseCode()
+      );
+    }
+
+    namespaceClient.delete(namespace);
+  }
+
   private Set<Id.NamespacedId> getEntities(Set<MetadataSearchResultRecord> results) {
     return Sets.newHashSet(
       Iterables.transform(results, new Function<MetadataSearchResultRecord, Id.NamespacedId>() {
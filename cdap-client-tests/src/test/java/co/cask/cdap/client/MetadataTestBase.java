@@ -23,6 +23,7 @@ import co.cask.cdap.proto.artifact.ArtifactRange;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.proto.metadata.lineage.CollapseType;
@@ -456,6 +457,12 @@ public abstract class MetadataTestBase extends ClientTestBase {
     return metadataClient.searchMetadata(namespaceId, query, targets);
   }
 
+  protected MetadataSearchResponse searchMetadata(Id.Namespace namespaceId, String query,
+                                                  Set<MetadataSearchTargetType> targets, int limit,
+                                                  @Nullable String cursor) throws Exception {
+    return metadataClient.searchMetadata(namespaceId, query, targets, limit, cursor);
+  }
+
   protected Set<String> getTags(Id.Application app, MetadataScope scope) throws Exception {
     return Iterators.getOnlyElement(getMetadata(app, scope).iterator()).getTags();
   }
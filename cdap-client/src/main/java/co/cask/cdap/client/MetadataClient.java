@@ -25,6 +25,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.common.http.HttpMethod;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -110,6 +112,35 @@ public class MetadataClient {
     return GSON.fromJson(response.getResponseBodyAsString(), SET_METADATA_SEARCH_RESULT_TYPE);
   }
 
+  /**
+   * Searches entities in the specified namespace whose metadata matches the specified query, returning a single page
+   * of results ranked by relevance.
+   *
+   * @param namespace the namespace to search in
+   * @param query the query string with which to search
+   * @param targets {@link MetadataSearchTargetType}s to search. If empty, all possible types will be searched
+   * @param limit the maximum number of results to return
+   * @param cursor the cursor of the previous {@link MetadataSearchResponse}, or {@code null} to fetch the first page
+   * @return A {@link MetadataSearchResponse} containing the requested page of results.
+   */
+  public MetadataSearchResponse searchMetadata(Id.Namespace namespace, String query,
+                                               Set<MetadataSearchTargetType> targets, int limit,
+                                               @Nullable String cursor)
+    throws IOException, UnauthenticatedException {
+
+    String path = String.format("metadata/search?query=%s&limit=%d", query, limit);
+    for (MetadataSearchTargetType t : targets) {
+      path += "&target=" + t;
+    }
+    if (cursor != null) {
+      path += "&cursor=" + URLEncoder.encode(cursor, "UTF-8");
+    }
+    URL searchURL = config.resolveNamespacedURLV3(namespace, path);
+    HttpResponse response = restClient.execute(HttpRequest.get(searchURL).build(),
+                                               config.getAccessToken());
+    return GSON.fromJson(response.getResponseBodyAsString(), MetadataSearchResponse.class);
+  }
+
   /**
    * @param id the entity for which to retrieve metadata across {@link MetadataScope#SYSTEM} and
    * {@link MetadataScope#USER}
@@ -82,6 +82,7 @@ public final class Constants {
     /** Scheduler queue name to submit the master service app. */
     public static final String SCHEDULER_QUEUE = "master.services.scheduler.queue";
     public static final String METADATA_SERVICE = "metadata.service";
+    public static final String ROUTER = "router";
   }
 
   /**
@@ -246,6 +247,12 @@ public final class Constants {
 
     public static final String DATASET_UNCHECKED_UPGRADE = "dataset.unchecked.upgrade";
 
+    // Number of threads shared by all HBase tables in a process for persisting changes to regions in parallel
+    public static final String TABLE_HBASE_PERSIST_THREADS = "dataset.table.hbase.persist.threads";
+
+    // Seconds for which dataset metadata and types fetched from the dataset service are reused by the client
+    public static final String CLIENT_CACHE_TTL_SECS = "dataset.client.cache.ttl.secs";
+
     /**
      * Constants for PartitionedFileSet's DynamicPartitioner
      */
@@ -329,6 +336,7 @@ public final class Constants {
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String COMPRESSION_CODEC = "stream.compression.codec";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -336,6 +344,8 @@ public final class Constants {
     public static final String WORKER_THREADS = "stream.worker.threads";
     public static final String ASYNC_WORKER_THREADS = "stream.async.worker.threads";
     public static final String ASYNC_QUEUE_SIZE = "stream.async.queue.size";
+    public static final String GROUP_COMMIT_MAX_LATENCY_US = "stream.group.commit.max.latency.us";
+    public static final String GROUP_COMMIT_MAX_BYTES = "stream.group.commit.max.bytes";
 
     // YARN container configurations.
     public static final String CONTAINER_VIRTUAL_CORES = "stream.container.num.cores";
@@ -414,7 +424,9 @@ public final class Constants {
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
+    public static final String CLIENT_MAX_CONNECTIONS_PER_ENDPOINT = "router.client.max.connections.per.endpoint";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String ENDPOINT_STRATEGY = "router.endpoint.strategy";
 
     /**
      * Defaults.
@@ -458,6 +470,13 @@ public final class Constants {
 
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
+    public static final String QUERY_CACHE_MAX_VALUES = "metrics.query.cache.max.values";
+    public static final String QUERY_CACHE_MUTABLE_SECONDS = "metrics.query.cache.mutable.seconds";
+    public static final String QUERY_CACHE_EXPIRE_SECONDS = "metrics.query.cache.expire.seconds";
+    public static final String QUERY_THREADS = "metrics.query.threads";
+    public static final String ROLLUP_RESOLUTIONS = "metrics.rollup.resolutions";
+    public static final String ROLLUP_DELAY_SECONDS = "metrics.rollup.delay.seconds";
+    public static final String ROLLUP_INTERVAL_SECONDS = "metrics.rollup.interval.seconds";
 
     public static final String KAFKA_TOPIC_PREFIX = "metrics.kafka.topic.prefix";
     public static final String KAFKA_PARTITION_SIZE = "metrics.kafka.partition.size";
@@ -472,6 +491,12 @@ public final class Constants {
     public static final String DEFAULT_METRIC_TABLE_PREFIX = "metrics.v2.table";
     public static final int DEFAULT_TIME_SERIES_TABLE_ROLL_TIME = 3600;
     public static final long DEFAULT_RETENTION_HOURS = 2;
+    public static final long DEFAULT_QUERY_CACHE_MAX_VALUES = 0;
+    public static final long DEFAULT_QUERY_CACHE_MUTABLE_SECONDS = 300;
+    public static final long DEFAULT_QUERY_CACHE_EXPIRE_SECONDS = 300;
+    public static final int DEFAULT_QUERY_THREADS = 4;
+    public static final long DEFAULT_ROLLUP_DELAY_SECONDS = 60;
+    public static final long DEFAULT_ROLLUP_INTERVAL_SECONDS = 30;
 
     public static final int DEFAULT_KAFKA_CONSUMER_PERSIST_THRESHOLD = 100;
     public static final int DEFAULT_KAFKA_PARTITION_SIZE = 1;
@@ -564,6 +589,10 @@ public final class Constants {
         public static final String OP_COUNT = "dataset.store.ops";
         public static final String WRITE_COUNT = "dataset.store.writes";
         public static final String WRITE_BYTES = "dataset.store.bytes";
+        public static final String COMMIT_COUNT = "dataset.store.commits";
+        public static final String PERSIST_PREPARE_TIME = "dataset.store.persist.prepare.us";
+        public static final String PERSIST_TIME = "dataset.store.persist.us";
+        public static final String UNDO_TIME = "dataset.store.undo.us";
       }
 
       /**
@@ -659,6 +688,9 @@ public final class Constants {
     public static final String TOKEN_DIGEST_KEY_EXPIRATION = "security.token.digest.key.expiration.ms";
     /** Parent znode used for secret key distribution in ZooKeeper. */
     public static final String DIST_KEY_PARENT_ZNODE = "security.token.distributed.parent.znode";
+    /** Maximum number of validated access tokens to cache. */
+    public static final String TOKEN_VALIDATION_CACHE_SIZE = "security.token.validation.cache.size";
+    public static final int DEFAULT_TOKEN_VALIDATION_CACHE_SIZE = 10000;
     /** Deprecated. Use AUTH_SERVER_BIND_ADDRESS instead. **/
     @Deprecated
     public static final String AUTH_SERVER_ADDRESS = "security.auth.server.address";
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.discovery;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.util.Set;
+
+/**
+ * Creates {@link EndpointStrategy} by name, for choosing the strategy through configuration.
+ */
+public final class EndpointStrategies {
+
+  /**
+   * Picks endpoints at random, see {@link RandomEndpointStrategy}.
+   */
+  public static final String RANDOM = "random";
+
+  /**
+   * Keeps picking the same endpoint while it is available, see {@link StickyEndpointStrategy}.
+   */
+  public static final String STICKY = "sticky";
+
+  /**
+   * Picks the endpoint with the least requests in flight, see {@link LeastRequestsEndpointStrategy}.
+   */
+  public static final String LEAST_REQUESTS = "least-requests";
+
+  /**
+   * Picks the less loaded of two random endpoints, see {@link PowerOfTwoChoicesEndpointStrategy}.
+   */
+  public static final String POWER_OF_TWO_CHOICES = "power-of-two-choices";
+
+  private static final Set<String> NAMES = ImmutableSet.of(RANDOM, STICKY, LEAST_REQUESTS, POWER_OF_TWO_CHOICES);
+
+  /**
+   * Returns {@code true} if there is a strategy with the given name.
+   */
+  public static boolean isSupported(String name) {
+    return NAMES.contains(name);
+  }
+
+  /**
+   * Creates the strategy with the given name.
+   *
+   * @throws IllegalArgumentException if there is no strategy with the given name
+   */
+  public static EndpointStrategy create(String name, ServiceDiscovered serviceDiscovered) {
+    switch (name) {
+      case RANDOM:
+        return new RandomEndpointStrategy(serviceDiscovered);
+      case STICKY:
+        return new StickyEndpointStrategy(serviceDiscovered);
+      case LEAST_REQUESTS:
+        return new LeastRequestsEndpointStrategy(serviceDiscovered);
+      case POWER_OF_TWO_CHOICES:
+        return new PowerOfTwoChoicesEndpointStrategy(serviceDiscovered);
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported endpoint strategy '%s'. Must be one of %s",
+                                                         name, NAMES));
+    }
+  }
+
+  private EndpointStrategies() {
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.discovery;
+
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link EndpointStrategy} that picks the endpoint with the least requests in flight. Among endpoints with
+ * the same number of requests in flight, the one with the lowest latency is picked, and a random one if that is
+ * the same too. Endpoints that haven't served any request yet have zero latency, so that they are tried first.
+ *
+ * @see LoadBalancingEndpointStrategy
+ */
+public final class LeastRequestsEndpointStrategy extends LoadBalancingEndpointStrategy {
+
+  public LeastRequestsEndpointStrategy(ServiceDiscovered serviceDiscovered) {
+    super(serviceDiscovered);
+  }
+
+  @Override
+  protected Discoverable select(List<Discoverable> endpoints) {
+    Random random = ThreadLocalRandom.current();
+    Discoverable result = null;
+    int minInFlight = Integer.MAX_VALUE;
+    double minLatency = Double.MAX_VALUE;
+    int ties = 0;
+    for (Discoverable endpoint : endpoints) {
+      EndpointLoad load = getLoad(endpoint);
+      int inFlight = load.getInFlight();
+      if (inFlight > minInFlight) {
+        continue;
+      }
+      double latency = load.getLatency();
+      if (inFlight < minInFlight || latency < minLatency) {
+        result = endpoint;
+        minInFlight = inFlight;
+        minLatency = latency;
+        ties = 1;
+      } else if (latency == minLatency && random.nextInt(++ties) == 0) {
+        // Reservoir sampling among the ties
+        result = endpoint;
+      }
+    }
+    return result;
+  }
+}
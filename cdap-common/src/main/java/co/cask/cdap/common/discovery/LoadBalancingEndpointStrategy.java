@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.discovery;
+
+import com.google.common.collect.Lists;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Base class for {@link EndpointStrategy} that picks endpoints based on the load observed on them. Callers tell
+ * the strategy about every request sent to an endpoint it picked with {@link #requestStarted(Discoverable)},
+ * and about the outcome of the request through the returned {@link Request}. From that the strategy keeps, per
+ * endpoint address, the number of requests in flight and a moving average of the request latency.
+ * <p>
+ * The latency average is a peak-sensitive exponentially weighted moving average (EWMA): a sample higher than the
+ * current average replaces it right away, while lower samples and the passing of time decay it, with a time
+ * constant of {@link #DECAY_NANOS}. This lets slow endpoints be avoided quickly and tried again once they had
+ * time to recover.
+ * <p>
+ * Statistics are only shared by callers of the same instance, hence the same instance should be used for all
+ * requests to a service.
+ */
+public abstract class LoadBalancingEndpointStrategy extends AbstractEndpointStrategy {
+
+  /**
+   * The time constant of the latency moving average, in nanoseconds.
+   */
+  public static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  // The latency recorded for a failed request if it failed faster than that, so that failing endpoints don't
+  // look better than the healthy ones
+  private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final ConcurrentMap<InetSocketAddress, EndpointLoad> loads;
+
+  protected LoadBalancingEndpointStrategy(ServiceDiscovered serviceDiscovered) {
+    super(serviceDiscovered);
+    this.loads = new ConcurrentHashMap<>();
+  }
+
+  @Nullable
+  @Override
+  public final Discoverable pick() {
+    List<Discoverable> endpoints = Lists.newArrayList(serviceDiscovered);
+    if (endpoints.isEmpty()) {
+      return null;
+    }
+    if (loads.size() > endpoints.size()) {
+      // Some endpoints are gone, forget about them
+      Set<InetSocketAddress> addresses = new HashSet<>();
+      for (Discoverable endpoint : endpoints) {
+        addresses.add(endpoint.getSocketAddress());
+      }
+      loads.keySet().retainAll(addresses);
+    }
+    return endpoints.size() == 1 ? endpoints.get(0) : select(endpoints);
+  }
+
+  /**
+   * Tells that a request is being sent to the given endpoint. The caller must end the returned {@link Request}
+   * once the request completed or failed.
+   */
+  public final Request requestStarted(Discoverable endpoint) {
+    EndpointLoad load = getLoad(endpoint);
+    load.inFlight.incrementAndGet();
+    return new Request(load);
+  }
+
+  /**
+   * Selects the endpoint to use among the given ones. There are always at least two of them.
+   */
+  protected abstract Discoverable select(List<Discoverable> endpoints);
+
+  /**
+   * Returns the load observed on the given endpoint.
+   */
+  protected final EndpointLoad getLoad(Discoverable endpoint) {
+    InetSocketAddress address = endpoint.getSocketAddress();
+    EndpointLoad load = loads.get(address);
+    if (load == null) {
+      load = new EndpointLoad();
+      EndpointLoad existing = loads.putIfAbsent(address, load);
+      if (existing != null) {
+        load = existing;
+      }
+    }
+    return load;
+  }
+
+  /**
+   * The load observed on an endpoint.
+   */
+  protected static final class EndpointLoad {
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Guarded by this
+    private double latency;
+    private long lastUpdate;
+
+    /**
+     * Returns the number of requests sent to the endpoint that have not ended yet.
+     */
+    public int getInFlight() {
+      return inFlight.get();
+    }
+
+    /**
+     * Returns the moving average of the request latency in nanoseconds, or {@code 0} if no request to the
+     * endpoint has ended yet.
+     */
+    public synchronized double getLatency() {
+      return latency == 0 ? 0 : latency * getWeight(System.nanoTime());
+    }
+
+    private synchronized void record(long sample) {
+      long now = System.nanoTime();
+      if (latency == 0 || sample > latency) {
+        latency = sample;
+      } else {
+        // The weight of the current average decays with the time passed since the last update
+        double weight = getWeight(now);
+        latency = latency * weight + sample * (1 - weight);
+      }
+      lastUpdate = now;
+    }
+
+    /**
+     * Returns the weight of the current average at the given time. Reading the average at some time is the same as
+     * updating it with a zero latency sample, so that the average of an endpoint without requests decays.
+     */
+    private double getWeight(long now) {
+      return Math.exp(-(double) (now - lastUpdate) / DECAY_NANOS);
+    }
+  }
+
+  /**
+   * A request sent to an endpoint, which must be ended by calling exactly one of its methods. Calls after the
+   * first one are ignored.
+   */
+  public static final class Request {
+    private final EndpointLoad load;
+    private final long startTime;
+    private final AtomicBoolean ended;
+
+    private Request(EndpointLoad load) {
+      this.load = load;
+      this.startTime = System.nanoTime();
+      this.ended = new AtomicBoolean();
+    }
+
+    /**
+     * Tells that the endpoint responded to the request.
+     */
+    public void completed() {
+      if (end()) {
+        load.record(System.nanoTime() - startTime);
+      }
+    }
+
+    /**
+     * Tells that the request failed because of the endpoint, such as when it could not be connected to.
+     */
+    public void failed() {
+      if (end()) {
+        load.record(Math.max(System.nanoTime() - startTime, FAILURE_PENALTY_NANOS));
+      }
+    }
+
+    /**
+     * Tells that the request was abandoned for reasons that have nothing to do with the endpoint, such as when
+     * the client went away.
+     */
+    public void cancelled() {
+      end();
+    }
+
+    private boolean end() {
+      if (!ended.compareAndSet(false, true)) {
+        return false;
+      }
+      load.inFlight.decrementAndGet();
+      return true;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.discovery;
+
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link EndpointStrategy} that picks two endpoints at random and uses the less loaded one of them. The load
+ * of an endpoint is its latency times the number of requests in flight to it, plus one. Comparing two random
+ * endpoints instead of all of them avoids that many clients rush to the same least loaded endpoint, while still
+ * steering requests away from slow or busy ones.
+ * <p>
+ * An endpoint that hasn't served any request yet has no load if nothing is in flight to it, so that it is tried
+ * early, and otherwise has the highest load until its first request ended, so that an endpoint that never
+ * responds doesn't take all the requests.
+ *
+ * @see LoadBalancingEndpointStrategy
+ */
+public final class PowerOfTwoChoicesEndpointStrategy extends LoadBalancingEndpointStrategy {
+
+  // Load of an endpoint with requests in flight but no latency yet
+  private static final double PENALTY = Double.MAX_VALUE / 2;
+
+  public PowerOfTwoChoicesEndpointStrategy(ServiceDiscovered serviceDiscovered) {
+    super(serviceDiscovered);
+  }
+
+  @Override
+  protected Discoverable select(List<Discoverable> endpoints) {
+    Random random = ThreadLocalRandom.current();
+    int first = random.nextInt(endpoints.size());
+    int second = random.nextInt(endpoints.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    Discoverable firstEndpoint = endpoints.get(first);
+    Discoverable secondEndpoint = endpoints.get(second);
+    return getCost(secondEndpoint) < getCost(firstEndpoint) ? secondEndpoint : firstEndpoint;
+  }
+
+  private double getCost(Discoverable endpoint) {
+    EndpointLoad load = getLoad(endpoint);
+    int inFlight = load.getInFlight();
+    double latency = load.getLatency();
+    if (latency == 0 && inFlight != 0) {
+      return PENALTY + inFlight;
+    }
+    return latency * (inFlight + 1);
+  }
+}
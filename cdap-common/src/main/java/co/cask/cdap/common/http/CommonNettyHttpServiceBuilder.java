@@ -28,15 +28,17 @@ import org.jboss.netty.channel.ChannelPipeline;
 public class CommonNettyHttpServiceBuilder extends NettyHttpService.Builder {
   public CommonNettyHttpServiceBuilder(CConfiguration configuration) {
     super();
-    if (configuration.getBoolean(Constants.Security.ENABLED)) {
-      this.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
-        @Override
-        public ChannelPipeline apply(ChannelPipeline input) {
+    final boolean securityEnabled = configuration.getBoolean(Constants.Security.ENABLED);
+    this.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+      @Override
+      public ChannelPipeline apply(ChannelPipeline input) {
+        RoutingFailureHandler.addTo(input);
+        if (securityEnabled) {
           input.addBefore("dispatcher", "authenticator", new AuthenticationChannelHandler());
-          return input;
         }
-      });
-    }
+        return input;
+      }
+    });
     this.setExceptionHandler(new HttpExceptionHandler());
   }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.http;
+
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * An UpstreamHandler that responds to requests that the netty-http router fails to route to a handler method, for
+ * example because no handler matches the path.
+ * <p>
+ * The netty-http router only responds to such a request if it is the first one on the connection. Otherwise it tries
+ * to respond through the responder of the previous request, which fails, and ignores the connection from then on,
+ * leaving the client waiting for a response. This handler responds instead, with the status of the routing failure,
+ * and keeps the connection open if the request asks for it, so that clients which reuse connections, such as the
+ * router, get the response.
+ */
+public class RoutingFailureHandler extends SimpleChannelUpstreamHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(RoutingFailureHandler.class);
+
+  private static final String ROUTER_NAME = "router";
+
+  // The request being routed, guarded by the I/O thread of the channel
+  private HttpRequest routingRequest;
+  // Whether the chunks of a request that failed routing are being discarded
+  private boolean discarding;
+
+  /**
+   * Adds a {@link RoutingFailureHandler} in front of the router of the given netty-http pipeline.
+   *
+   * @return the given pipeline
+   */
+  public static ChannelPipeline addTo(ChannelPipeline pipeline) {
+    pipeline.addBefore(ROUTER_NAME, "routing-failure", new RoutingFailureHandler());
+    return pipeline;
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof HttpRequest) {
+      discarding = false;
+      // The router attaches the handler method to its context if it routes the request
+      ctx.getPipeline().getContext(ROUTER_NAME).setAttachment(null);
+      routingRequest = (HttpRequest) message;
+      try {
+        super.messageReceived(ctx, e);
+      } finally {
+        routingRequest = null;
+      }
+      return;
+    }
+
+    if (discarding) {
+      if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+        discarding = false;
+      }
+      return;
+    }
+    super.messageReceived(ctx, e);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+    // Exceptions raised by the router while routing are delivered synchronously, within messageReceived above
+    HttpRequest request = routingRequest;
+    if (request == null || ctx.getPipeline().getContext(ROUTER_NAME).getAttachment() != null) {
+      super.exceptionCaught(ctx, e);
+      return;
+    }
+
+    LOG.trace("Failed to route request {} {}", request.getMethod(), request.getUri(), e.getCause());
+    HttpResponse response = createFailureResponse(e.getCause());
+    boolean keepAlive = HttpHeaders.isKeepAlive(request);
+    HttpHeaders.setContentLength(response, response.getContent().readableBytes());
+    HttpHeaders.setKeepAlive(response, keepAlive);
+    discarding = request.isChunked();
+
+    ChannelFuture future = Channels.future(ctx.getChannel());
+    if (!keepAlive) {
+      future.addListener(ChannelFutureListener.CLOSE);
+    }
+    Channels.write(ctx, future, response);
+  }
+
+  /**
+   * Creates the response for the given routing failure. The router fails with a {@code co.cask.http.HandlerException},
+   * which carries the response status but is not public, hence its response is created reflectively.
+   */
+  private static HttpResponse createFailureResponse(Throwable cause) {
+    try {
+      Method method = cause.getClass().getDeclaredMethod("createFailureResponse");
+      method.setAccessible(true);
+      return (HttpResponse) method.invoke(cause);
+    } catch (Exception ex) {
+      LOG.debug("Failed to create the response for routing failure {}", cause, ex);
+      return new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+}
@@ -16,8 +16,6 @@
 
 package co.cask.cdap.common.io;
 
-import com.google.common.base.Charsets;
-
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -112,7 +110,10 @@ public final class BinaryEncoder implements Encoder {
 
   @Override
   public Encoder writeString(String s) throws IOException {
-    return writeBytes(Charsets.UTF_8.encode(s));
+    // Encode into an array of the exact size, instead of through a CharsetEncoder and its oversized buffer
+    byte[] bytes = new byte[Utf8.encodedLength(s)];
+    Utf8.encode(s, bytes, 0);
+    return writeBytes(bytes);
   }
 
   @Override
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link Encoder} for binary-format data, as read by {@link BinaryDecoder} or {@link ByteBufferDecoder}, that
+ * writes to a growable byte array. Compared to {@link BinaryEncoder} over an output stream, it writes varints,
+ * floats and doubles without a call per byte, and encodes strings to UTF-8 directly into the array instead of
+ * into a temporary buffer.
+ * <p>
+ * The array is reused after {@link #reset()}, so that encoding in a loop doesn't create garbage in the steady state.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class ByteArrayEncoder implements Encoder {
+
+  // Maximum number of bytes of a varint encoded long
+  private static final int MAX_VARINT_SIZE = 10;
+  private static final int DEFAULT_INITIAL_SIZE = 256;
+  // Don't keep an array bigger than this after reset, so that a single big datum won't hold memory forever
+  private static final int MAX_RETAIN_SIZE = 1024 * 1024;
+
+  private final int initialSize;
+  private byte[] buffer;
+  private int size;
+
+  public ByteArrayEncoder() {
+    this(DEFAULT_INITIAL_SIZE);
+  }
+
+  public ByteArrayEncoder(int initialSize) {
+    this.initialSize = initialSize;
+    this.buffer = new byte[initialSize];
+  }
+
+  /**
+   * Discards all encoded bytes.
+   */
+  public void reset() {
+    if (buffer.length > Math.max(initialSize, MAX_RETAIN_SIZE)) {
+      buffer = new byte[initialSize];
+    }
+    size = 0;
+  }
+
+  /**
+   * Returns the number of encoded bytes.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a copy of the encoded bytes.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Returns a {@link ByteBuffer} over the encoded bytes, without copying. The buffer is only valid until this
+   * encoder is reset or written to.
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(buffer, 0, size);
+  }
+
+  /**
+   * Writes all the encoded bytes to the given {@link OutputStream}.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Writes raw bytes without encoding.
+   */
+  public ByteArrayEncoder writeRaw(byte[] rawBytes) {
+    return writeRaw(rawBytes, 0, rawBytes.length);
+  }
+
+  /**
+   * Writes raw bytes without encoding.
+   *
+   * @param rawBytes the bytes to write
+   * @param off offset to start in the byte array
+   * @param len number of bytes to write starting from the offset
+   */
+  public ByteArrayEncoder writeRaw(byte[] rawBytes, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(rawBytes, off, buffer, size, len);
+    size += len;
+    return this;
+  }
+
+  @Override
+  public Encoder writeNull() throws IOException {
+    // No-op
+    return this;
+  }
+
+  @Override
+  public Encoder writeBool(boolean b) throws IOException {
+    ensureCapacity(1);
+    buffer[size++] = (byte) (b ? 1 : 0);
+    return this;
+  }
+
+  @Override
+  public Encoder writeInt(int i) throws IOException {
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    writeVarInt((i << 1) ^ (i >> 31));
+    return this;
+  }
+
+  @Override
+  public Encoder writeLong(long l) throws IOException {
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    long val = (l << 1) ^ (l >> 63);
+    ensureCapacity(MAX_VARINT_SIZE);
+    byte[] buf = buffer;
+    int pos = size;
+    while ((val & ~0x7fL) != 0) {
+      buf[pos++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buf[pos++] = (byte) val;
+    size = pos;
+    return this;
+  }
+
+  @Override
+  public Encoder writeFloat(float f) throws IOException {
+    ensureCapacity(4);
+    writeLittleEndianInt(Float.floatToIntBits(f));
+    return this;
+  }
+
+  @Override
+  public Encoder writeDouble(double d) throws IOException {
+    long bits = Double.doubleToLongBits(d);
+    ensureCapacity(8);
+    writeLittleEndianInt((int) bits);
+    writeLittleEndianInt((int) (bits >> 32));
+    return this;
+  }
+
+  @Override
+  public Encoder writeString(String s) throws IOException {
+    int len = s.length();
+    // Strings that are all ASCII are written directly, as their UTF-8 bytes are the same as their chars
+    ensureCapacity(MAX_VARINT_SIZE + len);
+    int start = size;
+    writeInt(len);
+    byte[] buf = buffer;
+    int pos = size;
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        // Otherwise rewrite the length prefix with the UTF-8 length and encode in place
+        int utf8Length = Utf8.encodedLength(s);
+        size = start;
+        writeInt(utf8Length);
+        ensureCapacity(utf8Length);
+        size = Utf8.encode(s, buffer, size);
+        return this;
+      }
+      buf[pos++] = (byte) c;
+    }
+    size = pos;
+    return this;
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes) throws IOException {
+    return writeBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes, int off, int len) throws IOException {
+    writeInt(len);
+    return writeRaw(bytes, off, len);
+  }
+
+  @Override
+  public Encoder writeBytes(ByteBuffer buffer) throws IOException {
+    int len = buffer.remaining();
+    writeInt(len);
+    if (buffer.hasArray()) {
+      return writeRaw(buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+    }
+    ensureCapacity(len);
+    buffer.duplicate().get(this.buffer, size, len);
+    size += len;
+    return this;
+  }
+
+  /**
+   * Writes an unsigned varint.
+   */
+  private void writeVarInt(int val) {
+    ensureCapacity(5);
+    byte[] buf = buffer;
+    int pos = size;
+    while ((val & ~0x7f) != 0) {
+      buf[pos++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buf[pos++] = (byte) val;
+    size = pos;
+  }
+
+  private void writeLittleEndianInt(int bits) {
+    byte[] buf = buffer;
+    int pos = size;
+    buf[pos] = (byte) bits;
+    buf[pos + 1] = (byte) (bits >> 8);
+    buf[pos + 2] = (byte) (bits >> 16);
+    buf[pos + 3] = (byte) (bits >> 24);
+    size = pos + 4;
+  }
+
+  /**
+   * Makes sure the buffer has room for the given number of bytes after the encoded ones.
+   */
+  private void ensureCapacity(int len) {
+    int capacity = size + len;
+    if (capacity < 0) {
+      throw new OutOfMemoryError("Encoded size exceeds the maximum array size");
+    }
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Interner;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Decoder} for binary-format data, as written by {@link BinaryEncoder} or {@link ByteArrayEncoder}, that
+ * reads directly from a {@link ByteBuffer}. Compared to {@link BinaryDecoder} over an input stream, it decodes
+ * varints, floats and doubles without a call per byte, decodes strings without copying the bytes first, and returns
+ * bytes fields as slices of the buffer instead of copies.
+ * <p>
+ * Decoding starts from the position of the buffer and advances it, as reading through an input stream over the
+ * buffer would. Since bytes fields share content with the buffer, the buffer must not be modified while they are
+ * in use, and {@link ByteBuffer#array()} of a bytes field returns the whole backing array of the buffer. Callers that
+ * hand bytes fields to user code should copy them with {@link ByteBuffers#toExactArrayBuffer(ByteBuffer)}.
+ * The decoder can be reused for another buffer with {@link #reset(ByteBuffer)}.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class ByteBufferDecoder implements Decoder {
+
+  // Maximum number of bytes of a varint encoded long
+  private static final int MAX_VARINT_SIZE = 10;
+
+  private final Interner<String> stringInterner;
+  private ByteBuffer buffer;
+  private byte[] array;
+  private int arrayOffset;
+
+  public ByteBufferDecoder(ByteBuffer buffer) {
+    this(buffer, null);
+  }
+
+  /**
+   * Creates a decoder that passes every decoded string through the given {@link Interner}, so that repeated values,
+   * such as names and tags, are shared by the decoded objects.
+   *
+   * @param buffer the buffer to decode from
+   * @param stringInterner the interner for decoded strings, or {@code null} to not intern strings
+   */
+  public ByteBufferDecoder(ByteBuffer buffer, @Nullable Interner<String> stringInterner) {
+    this.stringInterner = stringInterner;
+    reset(buffer);
+  }
+
+  /**
+   * Sets the buffer to decode from.
+   *
+   * @return this decoder
+   */
+  public ByteBufferDecoder reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.array = buffer.hasArray() ? buffer.array() : null;
+    this.arrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+    return this;
+  }
+
+  @Override
+  public Object readNull() throws IOException {
+    // No-op
+    return null;
+  }
+
+  @Override
+  public boolean readBool() throws IOException {
+    return readByte() == 1;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    int val = (int) readVarLong();
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    long val = readVarLong();
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readLittleEndianInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    int low = readLittleEndianInt();
+    int high = readLittleEndianInt();
+    return Double.longBitsToDouble(((long) high << 32) | (low & 0xffffffffL));
+  }
+
+  @Override
+  public String readString() throws IOException {
+    int len = readLength();
+    int pos = buffer.position();
+    String str;
+    if (array != null) {
+      str = new String(array, arrayOffset + pos, len, Charsets.UTF_8);
+    } else {
+      byte[] bytes = new byte[len];
+      buffer.get(bytes);
+      str = new String(bytes, Charsets.UTF_8);
+    }
+    buffer.position(pos + len);
+    return stringInterner == null ? str : stringInterner.intern(str);
+  }
+
+  /**
+   * Reads a bytes field, returning a slice of the buffer that shares content with it.
+   */
+  @Override
+  public ByteBuffer readBytes() throws IOException {
+    int len = readLength();
+    int pos = buffer.position();
+    ByteBuffer bytes = buffer.slice();
+    bytes.limit(len);
+    buffer.position(pos + len);
+    return bytes;
+  }
+
+  @Override
+  public void skipFloat() throws IOException {
+    skip(4);
+  }
+
+  @Override
+  public void skipDouble() throws IOException {
+    skip(8);
+  }
+
+  @Override
+  public void skipString() throws IOException {
+    skipBytes();
+  }
+
+  @Override
+  public void skipBytes() throws IOException {
+    skip(readLength());
+  }
+
+  /**
+   * Reads the length of a string or bytes field, checking that the buffer has enough bytes for the field.
+   */
+  private int readLength() throws IOException {
+    int len = readInt();
+    if (len < 0 || len > buffer.remaining()) {
+      throw new EOFException("Invalid length " + len + " with " + buffer.remaining() + " bytes remaining");
+    }
+    return len;
+  }
+
+  private void skip(int len) throws IOException {
+    if (buffer.remaining() < len) {
+      throw new EOFException();
+    }
+    buffer.position(buffer.position() + len);
+  }
+
+  /**
+   * Reads an unsigned varint. If the buffer is backed by an array and has enough bytes for the longest varint,
+   * the bytes are read from the array without checking for the end of the buffer.
+   */
+  private long readVarLong() throws IOException {
+    int pos = buffer.position();
+    if (array == null || buffer.limit() - pos < MAX_VARINT_SIZE) {
+      long val = 0;
+      int shift = 0;
+      int b = readByte();
+      while (b > 0x7f) {
+        val ^= (long) (b & 0x7f) << shift;
+        shift += 7;
+        b = readByte();
+      }
+      return val ^ ((long) b << shift);
+    }
+
+    int idx = arrayOffset + pos;
+    int b = array[idx++];
+    long val = b & 0x7f;
+    int shift = 7;
+    while (b < 0 && shift < 7 * MAX_VARINT_SIZE) {
+      b = array[idx++];
+      val ^= (long) (b & 0x7f) << shift;
+      shift += 7;
+    }
+    buffer.position(idx - arrayOffset);
+    return val;
+  }
+
+  private int readLittleEndianInt() throws IOException {
+    int pos = buffer.position();
+    if (buffer.limit() - pos < 4) {
+      throw new EOFException();
+    }
+    int bits;
+    if (array != null) {
+      int idx = arrayOffset + pos;
+      bits = (array[idx] & 0xff) | (array[idx + 1] & 0xff) << 8 | (array[idx + 2] & 0xff) << 16 | array[idx + 3] << 24;
+    } else {
+      bits = (buffer.get(pos) & 0xff) | (buffer.get(pos + 1) & 0xff) << 8
+        | (buffer.get(pos + 2) & 0xff) << 16 | buffer.get(pos + 3) << 24;
+    }
+    buffer.position(pos + 4);
+    return bits;
+  }
+
+  private int readByte() throws IOException {
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    return buffer.get() & 0xff;
+  }
+}
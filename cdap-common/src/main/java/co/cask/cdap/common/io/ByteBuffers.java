@@ -68,6 +68,42 @@ public final class ByteBuffers {
     return ByteBuffer.wrap(bytes);
   }
 
+  /**
+   * Returns a {@link ByteBuffer} with the remaining bytes of the given {@link ByteBuffer}, backed by an array that
+   * holds exactly those bytes, so that {@link ByteBuffer#array()} gives the content. The given buffer is returned
+   * if it already is one, such as a buffer that wraps a whole array. Otherwise, such as for a slice of a bigger
+   * buffer, the content is copied. The position and limit of the given buffer will not be modified after this call.
+   */
+  public static ByteBuffer toExactArrayBuffer(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() == 0
+      && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+      return buffer;
+    }
+    return ByteBuffer.wrap(getByteArray(buffer));
+  }
+
+  /**
+   * Returns the remaining bytes of the given {@link ByteBuffer} as a byte array. If the buffer is backed by an
+   * array that contains exactly the remaining bytes, the backing array is returned without copying. The position
+   * and limit of the buffer will not be modified after this call.
+   */
+  public static byte[] getByteArray(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      if (buffer.remaining() == array.length) {
+        return array;
+      }
+      byte[] bytes = new byte[buffer.remaining()];
+      System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+      return bytes;
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.mark();
+    buffer.get(bytes);
+    buffer.reset();
+    return bytes;
+  }
+
   private ByteBuffers() {
   }
 }
@@ -18,6 +18,10 @@ package co.cask.cdap.common.metrics;
 
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.MetricsDistribution;
+import co.cask.cdap.api.metrics.MetricsGauge;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import com.google.common.util.concurrent.AbstractIdleService;
 
 import java.util.Collections;
@@ -28,6 +32,8 @@ import java.util.Map;
  */
 public class NoOpMetricsCollectionService extends AbstractIdleService implements MetricsCollectionService {
 
+  private static final MetricsContext NOOP_CONTEXT = new NoopMetricsContext();
+
   @Override
   protected void startUp() throws Exception {
     // no-op
@@ -65,6 +71,21 @@ public class NoOpMetricsCollectionService extends AbstractIdleService implements
       public Map<String, String> getTags() {
         return Collections.emptyMap();
       }
+
+      @Override
+      public MetricsCounter getCounter(String metricName) {
+        return NOOP_CONTEXT.getCounter(metricName);
+      }
+
+      @Override
+      public MetricsGauge getGauge(String metricName) {
+        return NOOP_CONTEXT.getGauge(metricName);
+      }
+
+      @Override
+      public MetricsDistribution getDistribution(String metricName) {
+        return NOOP_CONTEXT.getDistribution(metricName);
+      }
     };
   }
 }
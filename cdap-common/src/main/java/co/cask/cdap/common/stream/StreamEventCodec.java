@@ -21,16 +21,13 @@ import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
-import co.cask.cdap.common.io.BinaryDecoder;
-import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteArrayEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.common.io.Decoder;
-import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
-import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
@@ -68,16 +65,15 @@ public final class StreamEventCodec {
 
     // Some assumption on the header size to minimize array copying
     // 16 bytes Schema hash + body size + (header size) * (50 bytes key/value pair) + 9 bytes timestamp (vlong encoding)
-    ByteArrayOutputStream os = new ByteArrayOutputStream(16 + body.remaining() + headers.size() * 50 + 9);
-    Encoder encoder = new BinaryEncoder(os);
+    ByteArrayEncoder encoder = new ByteArrayEncoder(16 + body.remaining() + headers.size() * 50 + 9);
 
     try {
       // Write the schema hash
-      os.write(STREAM_EVENT_SCHEMA.getSchemaHash().toByteArray());
+      encoder.writeRaw(STREAM_EVENT_SCHEMA.getSchemaHash().toByteArray());
 
       StreamEventDataCodec.encode(event, encoder);
       encoder.writeLong(timestamp);
-      return os.toByteArray();
+      return encoder.toByteArray();
 
     } catch (IOException e) {
       // It should never happens, otherwise something very wrong.
@@ -98,7 +94,7 @@ public final class StreamEventCodec {
     Preconditions.checkArgument(schemaHash.equals(STREAM_EVENT_SCHEMA.getSchemaHash()),
                                 "Schema from payload not matching StreamEvent schema.");
 
-    Decoder decoder = new BinaryDecoder(new ByteBufferInputStream(buffer));
+    Decoder decoder = new ByteBufferDecoder(buffer);
 
     try {
       StreamEventData data = StreamEventDataCodec.decode(decoder);
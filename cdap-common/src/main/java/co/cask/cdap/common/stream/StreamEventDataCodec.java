@@ -18,6 +18,7 @@ package co.cask.cdap.common.stream;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Decoder;
 import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
@@ -109,8 +110,9 @@ public final class StreamEventDataCodec {
    * @throws IOException If there is any IO error during decoding.
    */
   public static StreamEventData decode(Decoder decoder, Map<String, String> defaultHeaders) throws IOException {
-    // Reads the body
-    ByteBuffer body = decoder.readBytes();
+    // Reads the body. Decoders such as ByteBufferDecoder return a slice of the payload, which is copied
+    // so that the body of the event can be used with ByteBuffer.array(), as user code often does.
+    ByteBuffer body = ByteBuffers.toExactArrayBuffer(decoder.readBytes());
 
     // Reads the headers
     int len = decoder.readInt();
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * It serves as an in memory cache for generated {@link DatumReader} {@link Class} using ASM.
+ * A generated class is specific to the schema that the data was written with, hence the {@link DatumReader}
+ * returned by this factory uses a generated class for each source schema that it reads.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private final LoadingCache<CacheKey, Class<DatumReader<?>>> datumReaderClasses;
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = new InstantiatorFactory(true);
+    this.datumReaderClasses = CacheBuilder.newBuilder().build(new ASMCacheLoader());
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode given data type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new SchemaResolvingDatumReader<>(type, schema);
+  }
+
+  /**
+   * Creates a {@link DatumReader} from the generated class for decoding data written with the given source schema.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> DatumReader<T> create(TypeToken<T> type, Schema schema, Schema sourceSchema) {
+    try {
+      Class<DatumReader<?>> readerClass = datumReaderClasses.getUnchecked(new CacheKey(schema, sourceSchema, type));
+      return (DatumReader<T>) readerClass.getConstructor(Schema.class, Schema.class,
+                                                         FieldAccessorFactory.class, InstantiatorFactory.class)
+                                         .newInstance(schema, sourceSchema, fieldAccessorFactory, instantiatorFactory);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the generated {@link DatumReader} for the source schema. The generated
+   * one for the last source schema is kept, as data is mostly read with the same source schema.
+   *
+   * @param <T> Type of the data type.
+   */
+  private final class SchemaResolvingDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema schema;
+    private volatile ResolvedReader<T> resolvedReader;
+
+    private SchemaResolvingDatumReader(TypeToken<T> type, Schema schema) {
+      this.type = type;
+      this.schema = schema;
+    }
+
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader<T> resolved = resolvedReader;
+      if (resolved == null || (resolved.sourceSchema != sourceSchema && !resolved.sourceSchema.equals(sourceSchema))) {
+        resolved = new ResolvedReader<>(sourceSchema, create(type, schema, sourceSchema));
+        resolvedReader = resolved;
+      }
+      return resolved.reader.read(decoder, sourceSchema);
+    }
+  }
+
+  /**
+   * A generated {@link DatumReader} together with the source schema that it reads.
+   *
+   * @param <T> Type of the data type.
+   */
+  private static final class ResolvedReader<T> {
+    private final Schema sourceSchema;
+    private final DatumReader<T> reader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReader<T> reader) {
+      this.sourceSchema = sourceSchema;
+      this.reader = reader;
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class}.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Class<DatumReader<?>>> {
+
+    private final Map<TypeToken<?>, ByteCodeClassLoader> classloaders = Maps.newIdentityHashMap();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Class<DatumReader<?>> load(CacheKey key) throws Exception {
+      ClassDefinition classDef = new DatumReaderGenerator().generate(key.getType(), key.getSchema(),
+                                                                     key.getSourceSchema());
+
+      ByteCodeClassLoader classloader = classloaders.get(key.getType());
+      if (classloader == null) {
+        // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+        // The ClassDefinition contains list of classes that should not be loaded by the generated class ClassLoader
+        classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+        classloaders.put(key.getType(), classloader);
+      }
+
+      return (Class<DatumReader<?>>) classloader.addClass(classDef).loadClass(classDef.getClassName());
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final Schema sourceSchema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema schema, Schema sourceSchema, TypeToken<?> type) {
+      this.schema = schema;
+      this.sourceSchema = sourceSchema;
+      this.type = type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public Schema getSourceSchema() {
+      return sourceSchema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return schema.equals(cacheKey.schema) && sourceSchema.equals(cacheKey.sourceSchema)
+        && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(schema, sourceSchema, type);
+    }
+  }
+}
@@ -0,0 +1,1347 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.ByteBuffers;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.asm.Signatures;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. A generated class decodes data that was written
+ * with one source schema into the given input type with the given target schema. Resolution between the two schemas
+ * follows the same rules as {@link ReflectionDatumReader}, but is done once when the class is generated instead of
+ * on every read:
+ *
+ * <ul>
+ *   <li>Record fields are matched by name. Source fields that are not in the target are skipped, and target
+ *       fields that are not in the source are left untouched.</li>
+ *   <li>Simple types are promoted from int to long, float, double or string, from long to float, double or string,
+ *       from float to double or string, and from boolean and double to string.</li>
+ *   <li>A non-union source is read with the first branch of a union target that it can be resolved to. A union
+ *       source is read with the target branch of the same index if it is of the same type, otherwise with the
+ *       first target branch that it can be resolved to.</li>
+ * </ul>
+ *
+ * Values that cannot be resolved throw {@link IOException} when they are read. The class generated will have a
+ * skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    private static final String SCHEMA_HASH = "schema_hash_as_hex_string";
+ *    private static final String SOURCE_SCHEMA_HASH = "source_schema_hash_as_hex_string";
+ *
+ *    public generatedClassName(Schema schema, Schema sourceSchema,
+ *                              FieldAccessorFactory accessorFactory, InstantiatorFactory instantiatorFactory) {
+ *      if (!SCHEMA_HASH.equals(schema.getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Schema not match.");
+ *      }
+ *      if (!SOURCE_SCHEMA_HASH.equals(sourceSchema.getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Source schema not match.");
+ *      }
+ *      // Gets the FieldAccessor and Instantiator for the records, collections and maps to read.
+ *    }
+ *
+ *    @Override
+ *    public InputType read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedReadMethod(decoder);
+ *    }
+ *
+ *    private InputType generatedReadMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source and target schemas.
+ *    }
+ *
+ *    private void generatedSkipMethod(Decoder decoder) throws IOException {
+ *      // Skips a source record field that is not in the target schema.
+ *    }
+ *
+ *    // Could have more generatedReadMethods and generatedSkipMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * For example, to decode type int[] written with the same schema, a generated {@link DatumReader} will looks like
+ * this after decompile.
+ * <pre>
+ * {@code
+ *
+ *   public final class intArrayDatumReader07D4F780E3528DB8C539EE5C21FDDEAE07D4F780E3528DB8C539EE5C21FDDEAE
+ *     implements DatumReader<int[]> {
+ *     private static final String SCHEMA_HASH = "07D4F780E3528DB8C539EE5C21FDDEAE";
+ *     private static final String SOURCE_SCHEMA_HASH = "07D4F780E3528DB8C539EE5C21FDDEAE";
+ *
+ *     // Constructor omitted
+ *
+ *     public Object read(Decoder paramDecoder, Schema paramSchema) throws IOException {
+ *       return readArray1int07D4F780E3528DB8C539EE5C21FDDEAE07D4F780E3528DB8C539EE5C21FDDEAE(paramDecoder);
+ *     }
+ *
+ *     private Object readArray1int07D4F780E3528DB8C539EE5C21FDDEAE07D4F780E3528DB8C539EE5C21FDDEAE(
+ *       Decoder paramDecoder) throws IOException {
+ *       int[] arrayOfInt = new int[0];
+ *       int i = 0;
+ *       for (int j = paramDecoder.readInt(); j != 0; j = paramDecoder.readInt()) {
+ *         j += i;
+ *         arrayOfInt = Arrays.copyOf(arrayOfInt, j);
+ *         for (; i < j; i++) {
+ *           arrayOfInt[i] = readint9E688C58A5487B8EAF69C9E1005AD0BF9E688C58A5487B8EAF69C9E1005AD0BF(paramDecoder);
+ *         }
+ *       }
+ *       return arrayOfInt;
+ *     }
+ *
+ *     private int readint9E688C58A5487B8EAF69C9E1005AD0BF9E688C58A5487B8EAF69C9E1005AD0BF(Decoder paramDecoder)
+ *       throws IOException {
+ *       return paramDecoder.readInt();
+ *     }
+ *   }
+ * }
+ * </pre>
+ *
+ * All values other than primitives are passed around as {@link Object} in the generated class, so that it doesn't
+ * need access to the classes being decoded, which could be private. Records, collections and maps are created with
+ * {@link Instantiator} and record fields are set with {@link FieldAccessor}.
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type IO_EXCEPTION_TYPE = Type.getType(IOException.class);
+
+  // Schema type of simple values to the Java type that carries the value in the generated code
+  private static final Map<Schema.Type, Class<?>> SIMPLE_TYPES = ImmutableMap.<Schema.Type, Class<?>>builder()
+    .put(Schema.Type.BOOLEAN, boolean.class)
+    .put(Schema.Type.INT, int.class)
+    .put(Schema.Type.LONG, long.class)
+    .put(Schema.Type.FLOAT, float.class)
+    .put(Schema.Type.DOUBLE, double.class)
+    .put(Schema.Type.STRING, String.class)
+    .build();
+
+  private final Map<String, Method> readMethods = Maps.newHashMap();
+  private final Map<String, Method> skipMethods = Maps.newHashMap();
+  private final Map<String, Boolean> resolvable = Maps.newHashMap();
+  private final Multimap<TypeToken<?>, String> fieldAccessorRequests = HashMultimap.create();
+  private final Map<String, Class<?>> instantiatorRequests = Maps.newHashMap();
+  private final Map<String, Class<?>> classRequests = Maps.newHashMap();
+  private final Map<String, Map.Entry<Class<?>, List<String>>> enumRequests = Maps.newHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+  private List<Class<?>> preservedClasses;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given source schema into the given input type
+   * with the given schema.
+   *
+   * @param inputType Type information of the input data type.
+   * @param schema Schema of the input data type.
+   * @param sourceSchema Schema that the data was written with.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Lists.newArrayList();
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, schema, sourceSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Static schema hash fields, for verification
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, schema.getSchemaHash().toString()).visitEnd();
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SOURCE_SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, sourceSchema.getSchemaHash().toString())
+               .visitEnd();
+
+    // Read method
+    generateRead(inputType, schema, sourceSchema);
+
+    // Constructor
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (Schema, Schema, FieldAccessorFactory, InstantiatorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Schema.class, Schema.class,
+                                   FieldAccessorFactory.class, InstantiatorFactory.class);
+
+    // Constructor(Schema schema, Schema sourceSchema,
+    //             FieldAccessorFactory accessorFactory, InstantiatorFactory instantiatorFactory)
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), getMethod(void.class, "<init>"));
+
+    // Verify the schema hashes, throw IllegalArgumentException if not match.
+    verifySchemaHash(mg, "SCHEMA_HASH", 0, "Schema not match.");
+    verifySchemaHash(mg, "SOURCE_SCHEMA_HASH", 1, "Source schema not match.");
+
+    // For each record field that needs an accessor, get the accessor and store it in field.
+    for (Map.Entry<TypeToken<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldAccessorName = getFieldAccessorName(entry.getKey(), entry.getValue());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             fieldAccessorName,
+                             Type.getDescriptor(FieldAccessor.class), null, null);
+      // this.fieldAccessorName
+      //  = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("className")), "fieldName");
+      mg.loadThis();
+      mg.loadArg(2);
+      loadTypeToken(mg, entry.getKey().getRawType());
+      mg.push(entry.getValue());
+      mg.invokeInterface(Type.getType(FieldAccessorFactory.class),
+                         getMethod(FieldAccessor.class, "getFieldAccessor", TypeToken.class, String.class));
+      mg.putField(classType, fieldAccessorName, Type.getType(FieldAccessor.class));
+    }
+
+    // For each record, collection and map type, get the instantiator and store it in field.
+    for (Map.Entry<String, Class<?>> entry : instantiatorRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Instantiator.class), null, null);
+      // this.instantiatorName = instantiatorFactory.get(TypeToken.of(Class.forName("className")));
+      mg.loadThis();
+      mg.loadArg(3);
+      loadTypeToken(mg, entry.getValue());
+      mg.invokeVirtual(Type.getType(InstantiatorFactory.class),
+                       getMethod(Instantiator.class, "get", TypeToken.class));
+      mg.putField(classType, entry.getKey(), Type.getType(Instantiator.class));
+    }
+
+    // For each component type of arrays of objects, store the component class in field.
+    for (Map.Entry<String, Class<?>> entry : classRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Class.class), null, null);
+      // this.className = Class.forName("className");
+      mg.loadThis();
+      loadClass(mg, entry.getValue());
+      mg.putField(classType, entry.getKey(), Type.getType(Class.class));
+    }
+
+    // For each enum, store the enum constants indexed by the source enum index in field.
+    // A missing constant in the target enum is stored as null.
+    for (Map.Entry<String, Map.Entry<Class<?>, List<String>>> entry : enumRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Object[].class), null, null);
+      Class<?> enumClass = entry.getValue().getKey();
+      List<String> values = entry.getValue().getValue();
+
+      // this.enumName = new Object[size];
+      // this.enumName[idx] = Enum.valueOf(Class.forName("className"), "value");
+      mg.loadThis();
+      mg.push(values.size());
+      mg.newArray(Type.getType(Object.class));
+      for (int i = 0; i < values.size(); i++) {
+        if (values.get(i) == null) {
+          continue;
+        }
+        mg.dup();
+        mg.push(i);
+        loadClass(mg, enumClass);
+        mg.push(values.get(i));
+        mg.invokeStatic(Type.getType(Enum.class), getMethod(Enum.class, "valueOf", Class.class, String.class));
+        mg.arrayStore(Type.getType(Object.class));
+      }
+      mg.putField(classType, entry.getKey(), Type.getType(Object[].class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates code to verify the hash of the schema given in a constructor argument.
+   */
+  private void verifySchemaHash(GeneratorAdapter mg, String hashField, int schemaArg, String message) {
+    // if (!HASH_FIELD.equals(schema.getSchemaHash().toString())) { throw IllegalArgumentException }
+    mg.getStatic(classType, hashField, Type.getType(String.class));
+    mg.loadArg(schemaArg);
+    mg.invokeVirtual(Type.getType(Schema.class), getMethod(SchemaHash.class, "getSchemaHash"));
+    mg.invokeVirtual(Type.getType(SchemaHash.class), getMethod(String.class, "toString"));
+    mg.invokeVirtual(Type.getType(String.class), getMethod(boolean.class, "equals", Object.class));
+    Label hashEquals = mg.newLabel();
+    mg.ifZCmp(GeneratorAdapter.NE, hashEquals);
+    mg.throwException(Type.getType(IllegalArgumentException.class), message);
+    mg.mark(hashEquals);
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   *
+   * @param inputType Type information of the data type for input
+   * @param schema Schema of the input data type.
+   * @param sourceSchema Schema that the data was written with.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    Method method = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, method, null,
+                                               new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+
+    // Delegate to the actual read method(decoder). The source schema is known at generation time.
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(inputType, sourceSchema, schema));
+    if (inputType.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(inputType.getRawType()));
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the read method for the given type, source and target schema. The same method will be returned if the
+   * same type and schemas has been passed to the method before.
+   *
+   * @param inputType Type information of the data type for input
+   * @param sourceSchema Schema that the data was written with.
+   * @param schema Schema of the input data type.
+   * @return A method for decoding data of the given source schema into the given input type.
+   */
+  private Method getReadMethod(TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), schema.getSchemaHash());
+
+    Method method = readMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    // Generate the read method (decoder)
+    String methodName = String.format("read%s", key);
+    method = getMethod(getCallType(inputType), methodName, Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    readMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+
+    generateReadBody(mg, inputType, sourceSchema, schema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the read method body, which leaves the value read on the stack.
+   */
+  private void generateReadBody(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    if (sourceSchema.getType() != Schema.Type.UNION && schema.getType() == Schema.Type.UNION) {
+      // Read with the first target schema that the source schema resolves to
+      for (Schema targetSchema : schema.getUnionSchemas()) {
+        if (isResolvable(inputType, sourceSchema, targetSchema)) {
+          generateReadBody(mg, inputType, sourceSchema, targetSchema);
+          return;
+        }
+      }
+      throwResolveException(mg, sourceSchema, schema);
+      return;
+    }
+    if (!isResolvable(inputType, sourceSchema, schema)) {
+      throwResolveException(mg, sourceSchema, schema);
+      return;
+    }
+
+    switch (sourceSchema.getType()) {
+      case NULL:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        break;
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        readSimple(mg, inputType, sourceSchema.getType(), schema.getType());
+        break;
+      case BYTES:
+        readBytes(mg, inputType);
+        break;
+      case ENUM:
+        readEnum(mg, inputType, sourceSchema, schema);
+        break;
+      case ARRAY:
+        if (inputType.isArray()) {
+          readArray(mg, inputType, sourceSchema.getComponentSchema(), schema.getComponentSchema());
+        } else {
+          readCollection(mg, inputType, sourceSchema.getComponentSchema(), schema.getComponentSchema());
+        }
+        break;
+      case MAP:
+        readMap(mg, inputType, sourceSchema.getMapSchema(), schema.getMapSchema());
+        break;
+      case RECORD:
+        readRecord(mg, inputType, sourceSchema, schema);
+        break;
+      case UNION:
+        readUnion(mg, inputType, sourceSchema, schema);
+        break;
+    }
+  }
+
+  /**
+   * Generates method body for reading simple type value, with type promotion from the source to the target schema
+   * type and conversion to the input type.
+   */
+  private void readSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                          Schema.Type sourceType, Schema.Type targetType) {
+    Class<?> sourceClass = SIMPLE_TYPES.get(sourceType);
+    Class<?> targetClass = SIMPLE_TYPES.get(targetType);
+
+    // decoder.readXXX();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(sourceClass, "read" + getTypeName(sourceType)));
+
+    if (targetClass == String.class) {
+      if (sourceClass != String.class) {
+        // String.valueOf(value);
+        mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", sourceClass));
+      }
+
+      Class<?> rawType = inputType.getRawType();
+      if (URI.class.equals(rawType)) {
+        // URI.create(value);
+        mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+      } else if (URL.class.equals(rawType)) {
+        // new URL(value);
+        int value = mg.newLocal(Type.getType(String.class));
+        mg.storeLocal(value);
+        mg.newInstance(Type.getType(URL.class));
+        mg.dup();
+        mg.loadLocal(value);
+        mg.invokeConstructor(Type.getType(URL.class), getMethod(void.class, "<init>", String.class));
+      }
+      return;
+    }
+
+    // Promote the value to the target type, then to the primitive type of the input type.
+    // A special case since INT type represents (byte, char, short and int).
+    Class<?> primitiveType = Primitives.unwrap(inputType.getRawType());
+    if (!primitiveType.isPrimitive()) {
+      primitiveType = targetClass;
+    }
+    mg.cast(Type.getType(sourceClass), Type.getType(targetClass));
+    mg.cast(Type.getType(targetClass), Type.getType(primitiveType));
+
+    if (!inputType.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(primitiveType));
+    }
+  }
+
+  /**
+   * Generates method body for reading bytes value, which is converted to byte[] or {@link UUID} if needed.
+   * A {@link ByteBuffer} value is passed through {@link ByteBuffers#toExactArrayBuffer(ByteBuffer)}, so that
+   * the decoded object doesn't get a slice of the decoder buffer.
+   */
+  private void readBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    // decoder.readBytes();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+
+    Class<?> rawType = inputType.getRawType();
+    if (byte[].class.equals(rawType)) {
+      // ByteBuffers.getByteArray(buffer);
+      mg.invokeStatic(Type.getType(ByteBuffers.class), getMethod(byte[].class, "getByteArray", ByteBuffer.class));
+    } else if (UUID.class.equals(rawType)) {
+      // buffer.remaining() == Longs.BYTES * 2 ? new UUID(buffer.getLong(), buffer.getLong())
+      //                                       : ByteBuffers.toExactArrayBuffer(buffer);
+      Type byteBufferType = Type.getType(ByteBuffer.class);
+      int buffer = mg.newLocal(byteBufferType);
+      mg.storeLocal(buffer);
+
+      Label notUUID = mg.newLabel();
+      Label end = mg.newLabel();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(int.class, "remaining"));
+      mg.push(Longs.BYTES * 2);
+      mg.ifICmp(GeneratorAdapter.NE, notUUID);
+
+      mg.newInstance(Type.getType(UUID.class));
+      mg.dup();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.invokeConstructor(Type.getType(UUID.class), getMethod(void.class, "<init>", long.class, long.class));
+      mg.checkCast(Type.getType(Object.class));
+      mg.goTo(end);
+
+      mg.mark(notUUID);
+      mg.loadLocal(buffer);
+      invokeToExactArrayBuffer(mg);
+      mg.checkCast(Type.getType(Object.class));
+      mg.mark(end);
+    } else {
+      invokeToExactArrayBuffer(mg);
+    }
+  }
+
+  /**
+   * Generates the call to {@code ByteBuffers.toExactArrayBuffer(buffer)} for the buffer on the stack.
+   */
+  private void invokeToExactArrayBuffer(GeneratorAdapter mg) {
+    mg.invokeStatic(Type.getType(ByteBuffers.class),
+                    getMethod(ByteBuffer.class, "toExactArrayBuffer", ByteBuffer.class));
+  }
+
+  /**
+   * Generates method body for reading enum value. The enum constants are looked up from a field that has the
+   * constants indexed by the source enum index.
+   *
+   * <pre>
+   * {@code
+   *
+   * Object value = this.enumField[decoder.readInt()];
+   * if (value == null) {
+   *   throw new IOException(...);
+   * }
+   * }
+   * </pre>
+   */
+  private void readEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Class<?> enumClass = inputType.getRawType();
+    // Enum type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(enumClass);
+
+    String fieldName = String.format("enum$%s%s%s", normalizeTypeName(inputType),
+                                     sourceSchema.getSchemaHash(), schema.getSchemaHash());
+    if (!enumRequests.containsKey(fieldName)) {
+      List<String> values = Lists.newArrayList();
+      for (String value : sourceSchema.getEnumValues()) {
+        values.add(schema.getEnumValues().contains(value) ? value : null);
+      }
+      enumRequests.put(fieldName, Maps.<Class<?>, List<String>>immutableEntry(enumClass, values));
+    }
+
+    mg.loadThis();
+    mg.getField(classType, fieldName, Type.getType(Object[].class));
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.arrayLoad(Type.getType(Object.class));
+
+    Label notNull = mg.newLabel();
+    mg.dup();
+    mg.ifNonNull(notNull);
+    mg.throwException(IO_EXCEPTION_TYPE, "Enum value missing in target.");
+    mg.mark(notNull);
+  }
+
+  /**
+   * Generates method body for reading array into a Java array. Each block of the array value grows the
+   * array by the block size.
+   *
+   * <pre>
+   * {@code
+   *
+   * T[] array = new T[0];
+   * int size = 0;
+   * for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+   *   len += size;
+   *   array = Arrays.copyOf(array, len);
+   *   for (; size < len; size++) {
+   *     array[size] = readComponent(decoder);
+   *   }
+   * }
+   * }
+   * </pre>
+   */
+  private void readArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceComponentSchema,
+                         Schema componentSchema) {
+    TypeToken<?> componentType = inputType.getComponentType();
+    Class<?> componentClass = componentType.getRawType();
+    Type arrayType;
+    int array;
+    if (componentClass.isPrimitive()) {
+      // array = new T[0];
+      arrayType = Type.getType(inputType.getRawType());
+      array = mg.newLocal(arrayType);
+      mg.push(0);
+      mg.newArray(Type.getType(componentClass));
+    } else {
+      // The component class could be private, hence create the array with the class stored in field.
+      // array = (Object[]) Array.newInstance(this.componentClassField, 0);
+      arrayType = Type.getType(Object[].class);
+      array = mg.newLocal(arrayType);
+      String fieldName = getClassFieldName(componentClass);
+      classRequests.put(fieldName, componentClass);
+      mg.loadThis();
+      mg.getField(classType, fieldName, Type.getType(Class.class));
+      mg.push(0);
+      mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+      mg.checkCast(arrayType);
+    }
+    mg.storeLocal(array);
+
+    // int size = 0;
+    int size = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    // int len = decoder.readInt();
+    int len = mg.newLocal(Type.INT_TYPE);
+    readLength(mg, len);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // len += size;
+    mg.loadLocal(len);
+    mg.loadLocal(size);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.storeLocal(len);
+
+    // array = Arrays.copyOf(array, len);
+    mg.loadLocal(array);
+    mg.loadLocal(len);
+    Class<?> copyType = componentClass.isPrimitive() ? inputType.getRawType() : Object[].class;
+    mg.invokeStatic(Type.getType(Arrays.class), getMethod(copyType, "copyOf", copyType, int.class));
+    mg.storeLocal(array);
+
+    // for (; size < len; size++) array[size] = readComponent(decoder);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(componentType, sourceComponentSchema, componentSchema));
+    mg.arrayStore(Type.getType(getCallType(componentType)));
+
+    mg.iinc(size, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    readLength(mg, len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(array);
+  }
+
+  /**
+   * Generates method body for reading array into a {@link Collection}.
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = (Collection) this.instantiatorField.create();
+   * for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(readComponent(decoder));
+   *   }
+   * }
+   * }
+   * </pre>
+   */
+  private void readCollection(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceComponentSchema,
+                              Schema componentSchema) {
+    TypeToken<?> componentType = TypeToken.of(((ParameterizedType) inputType.getType()).getActualTypeArguments()[0]);
+    Type collectionType = Type.getType(Collection.class);
+
+    int collection = mg.newLocal(collectionType);
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(collectionType);
+    mg.storeLocal(collection);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label[] loops = readBlockStart(mg, len, idx);
+
+    mg.loadLocal(collection);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(componentType, sourceComponentSchema, componentSchema));
+    mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+    mg.pop();
+
+    readBlockEnd(mg, len, idx, loops);
+
+    mg.loadLocal(collection);
+  }
+
+  /**
+   * Generates method body for reading map value. The logic is similar to the one in {@link #readCollection},
+   * with each entry read as a key followed by a value.
+   */
+  private void readMap(GeneratorAdapter mg, TypeToken<?> inputType,
+                       Map.Entry<Schema, Schema> sourceMapSchema, Map.Entry<Schema, Schema> mapSchema) {
+    java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+    TypeToken<?> keyType = TypeToken.of(mapArgs[0]);
+    TypeToken<?> valueType = TypeToken.of(mapArgs[1]);
+    Type mapType = Type.getType(Map.class);
+
+    int map = mg.newLocal(mapType);
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(mapType);
+    mg.storeLocal(map);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label[] loops = readBlockStart(mg, len, idx);
+
+    // map.put(readKey(decoder), readValue(decoder));
+    mg.loadLocal(map);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(keyType, sourceMapSchema.getKey(), mapSchema.getKey()));
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(valueType, sourceMapSchema.getValue(), mapSchema.getValue()));
+    mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+    mg.pop();
+
+    readBlockEnd(mg, len, idx, loops);
+
+    mg.loadLocal(map);
+  }
+
+  /**
+   * Generates method body for reading record value. Fields of the source schema are read in order, with the
+   * ones that are not in the target schema skipped.
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = this.instantiatorField.create();
+   * this.fieldAccessorField.set(record, readField(decoder));
+   * skipField(decoder);
+   * ...
+   * }
+   * </pre>
+   */
+  private void readRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    // Record type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(inputType.getRawType());
+
+    int record = mg.newLocal(Type.getType(Object.class));
+    createInstance(mg, inputType.getRawType());
+    mg.storeLocal(record);
+
+    for (Schema.Field sourceField : sourceSchema.getFields()) {
+      Schema.Field field = schema.getField(sourceField.getName());
+      if (field == null) {
+        // this.skipField(decoder);
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, getSkipMethod(sourceField.getSchema()));
+        continue;
+      }
+
+      // this.fieldAccessorField.setXXX(record, readField(decoder));
+      TypeToken<?> fieldType = getFieldType(inputType, field.getName());
+      fieldAccessorRequests.put(inputType, field.getName());
+      mg.loadThis();
+      mg.getField(classType, getFieldAccessorName(inputType, field.getName()), Type.getType(FieldAccessor.class));
+      mg.loadLocal(record);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, getReadMethod(fieldType, sourceField.getSchema(), field.getSchema()));
+      mg.invokeInterface(Type.getType(FieldAccessor.class), getAccessorMethod(fieldType));
+    }
+
+    mg.loadLocal(record);
+  }
+
+  /**
+   * Generates method body for reading union value. The branch to read is selected by the union index, with
+   * the target schema of each branch resolved at generation time.
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * if (idx == 0) {
+   *   return readBranch0(decoder);
+   * }
+   * if (idx == 1) {
+   *   return readBranch1(decoder);
+   * }
+   * ...
+   * throw new IOException(...);
+   * }
+   * </pre>
+   */
+  private void readUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(idx);
+
+    Label end = mg.newLabel();
+    List<Schema> sourceSchemas = sourceSchema.getUnionSchemas();
+    for (int i = 0; i < sourceSchemas.size(); i++) {
+      Label nextBranch = mg.newLabel();
+      mg.loadLocal(idx);
+      mg.push(i);
+      mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+
+      Schema sourceValueSchema = sourceSchemas.get(i);
+      Schema targetSchema = getUnionTargetSchema(inputType, sourceValueSchema, schema, i);
+      if (targetSchema == null) {
+        throwResolveException(mg, sourceValueSchema, schema);
+      } else {
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, getReadMethod(inputType, sourceValueSchema, targetSchema));
+        mg.goTo(end);
+      }
+      mg.mark(nextBranch);
+    }
+    mg.throwException(IO_EXCEPTION_TYPE, "Invalid union index.");
+    mg.mark(end);
+  }
+
+  /**
+   * Returns the target schema to read a branch of a source union with, or {@code null} if it cannot be resolved.
+   */
+  private Schema getUnionTargetSchema(TypeToken<?> inputType, Schema sourceValueSchema, Schema schema, int idx) {
+    if (schema.getType() != Schema.Type.UNION) {
+      return isResolvable(inputType, sourceValueSchema, schema) ? schema : null;
+    }
+
+    // Try the target schema of the same index first, before resorting to linearly try the union schemas.
+    List<Schema> targetSchemas = schema.getUnionSchemas();
+    if (idx < targetSchemas.size()) {
+      Schema targetSchema = targetSchemas.get(idx);
+      if (targetSchema.getType() == sourceValueSchema.getType()
+        && isResolvable(inputType, sourceValueSchema, targetSchema)) {
+        return targetSchema;
+      }
+    }
+    for (Schema targetSchema : targetSchemas) {
+      if (isResolvable(inputType, sourceValueSchema, targetSchema)) {
+        return targetSchema;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the skip method for skipping a value of the given schema. The same method will be returned if the
+   * same schema has been passed to the method before.
+   */
+  private Method getSkipMethod(Schema schema) {
+    String key = schema.getSchemaHash().toString();
+
+    Method method = skipMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(void.class, String.format("skip%s", key), Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    skipMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+    generateSkipBody(mg, schema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the skip method body.
+   */
+  private void generateSkipBody(GeneratorAdapter mg, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(boolean.class, "readBool"));
+        mg.pop();
+        break;
+      case INT:
+      case ENUM:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.pop();
+        break;
+      case LONG:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(long.class, "readLong"));
+        mg.pop2();
+        break;
+      case FLOAT:
+      case DOUBLE:
+      case BYTES:
+      case STRING:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(void.class, "skip" + getTypeName(schema.getType())));
+        break;
+      case ARRAY:
+        skipBlocks(mg, schema.getComponentSchema());
+        break;
+      case MAP:
+        skipBlocks(mg, schema.getMapSchema().getKey(), schema.getMapSchema().getValue());
+        break;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, getSkipMethod(field.getSchema()));
+        }
+        break;
+      case UNION:
+        int idx = mg.newLocal(Type.INT_TYPE);
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.storeLocal(idx);
+
+        Label end = mg.newLabel();
+        List<Schema> schemas = schema.getUnionSchemas();
+        for (int i = 0; i < schemas.size(); i++) {
+          Label nextBranch = mg.newLabel();
+          mg.loadLocal(idx);
+          mg.push(i);
+          mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, getSkipMethod(schemas.get(i)));
+          mg.goTo(end);
+          mg.mark(nextBranch);
+        }
+        mg.throwException(IO_EXCEPTION_TYPE, "Invalid union index.");
+        mg.mark(end);
+        break;
+    }
+  }
+
+  /**
+   * Generates code for skipping array or map blocks, with each item consists of values of the given schemas.
+   */
+  private void skipBlocks(GeneratorAdapter mg, Schema...schemas) {
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label[] loops = readBlockStart(mg, len, idx);
+
+    for (Schema schema : schemas) {
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, getSkipMethod(schema));
+    }
+
+    readBlockEnd(mg, len, idx, loops);
+  }
+
+  /**
+   * Generates the start of the loops for reading array or map blocks, with the code for reading the items
+   * generated by the caller, followed by a call to {@link #readBlockEnd}.
+   *
+   * <pre>
+   * {@code
+   *
+   * for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+   *   for (int idx = 0; idx < len; idx++) {
+   *     // Read items, generated by the caller
+   *   }
+   * }
+   * }
+   * </pre>
+   *
+   * @return labels of the loops, to be passed to {@link #readBlockEnd}
+   */
+  private Label[] readBlockStart(GeneratorAdapter mg, int len, int idx) {
+    Label beginWhile = mg.newLabel();
+    Label endWhile = mg.newLabel();
+    Label beginFor = mg.newLabel();
+    Label endFor = mg.newLabel();
+
+    readLength(mg, len);
+    mg.mark(beginWhile);
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    mg.push(0);
+    mg.storeLocal(idx);
+    mg.mark(beginFor);
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    return new Label[] {beginWhile, endWhile, beginFor, endFor};
+  }
+
+  /**
+   * Generates the end of the loops started by {@link #readBlockStart}.
+   */
+  private void readBlockEnd(GeneratorAdapter mg, int len, int idx, Label[] loops) {
+    mg.iinc(idx, 1);
+    mg.goTo(loops[2]);
+    mg.mark(loops[3]);
+
+    readLength(mg, len);
+    mg.goTo(loops[0]);
+    mg.mark(loops[1]);
+  }
+
+  /**
+   * Generates code for reading an array or map block length into the given local variable.
+   */
+  private void readLength(GeneratorAdapter mg, int len) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+  }
+
+  /**
+   * Generates code for creating an instance of the given type with the {@link Instantiator} stored in field.
+   */
+  private void createInstance(GeneratorAdapter mg, Class<?> rawType) {
+    // this.instantiatorField.create();
+    String fieldName = String.format("instantiator$%s", normalizeTypeName(TypeToken.of(rawType)));
+    instantiatorRequests.put(fieldName, rawType);
+    mg.loadThis();
+    mg.getField(classType, fieldName, Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code for throwing {@link IOException} for failure in resolving the source schema to the target schema.
+   */
+  private void throwResolveException(GeneratorAdapter mg, Schema sourceSchema, Schema schema) {
+    mg.throwException(IO_EXCEPTION_TYPE, String.format("Fail to resolve %s to %s", sourceSchema, schema));
+  }
+
+  /**
+   * Generates code for loading the {@link TypeToken} of the given class, which is
+   * {@code TypeToken.of(Class.forName("className"))}.
+   */
+  private void loadTypeToken(GeneratorAdapter mg, Class<?> cls) {
+    loadClass(mg, cls);
+    mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+  }
+
+  /**
+   * Generates code for loading the given class with {@code Class.forName("className")}, which works with
+   * classes that are not accessible from the generated class.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    Class<?> elementClass = cls;
+    while (elementClass.isArray()) {
+      elementClass = elementClass.getComponentType();
+    }
+    if (!elementClass.isPrimitive()) {
+      preservedClasses.add(elementClass);
+    }
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  /**
+   * Returns whether data of the source schema can be read into the given type with the target schema, following
+   * the resolution rules of {@link ReflectionDatumReader}.
+   */
+  private boolean isResolvable(TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), schema.getSchemaHash());
+    Boolean result = resolvable.get(key);
+    if (result != null) {
+      return result;
+    }
+
+    // Assumes resolvable while checking, in order to support recursive data type.
+    resolvable.put(key, true);
+    result = checkResolvable(inputType, sourceSchema, schema);
+    resolvable.put(key, result);
+    return result;
+  }
+
+  private boolean checkResolvable(TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = schema.getType();
+
+    if (sourceType == Schema.Type.UNION) {
+      // Resolvable if any of the branches is, since the branch to read depends on the data.
+      for (Schema sourceValueSchema : sourceSchema.getUnionSchemas()) {
+        if (getUnionTargetSchema(inputType, sourceValueSchema, schema, 0) != null) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (targetType == Schema.Type.UNION) {
+      for (Schema targetSchema : schema.getUnionSchemas()) {
+        if (isResolvable(inputType, sourceSchema, targetSchema)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Class<?> rawType = inputType.getRawType();
+    switch (sourceType) {
+      case NULL:
+      case BYTES:
+        return sourceType == targetType && !rawType.isPrimitive();
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        return isPromotable(sourceType, targetType) && isAssignable(targetType, rawType);
+      case ENUM:
+        return targetType == Schema.Type.ENUM && rawType.isEnum();
+      case ARRAY:
+        if (targetType != Schema.Type.ARRAY) {
+          return false;
+        }
+        if (inputType.isArray()) {
+          return isResolvable(inputType.getComponentType(),
+                              sourceSchema.getComponentSchema(), schema.getComponentSchema());
+        }
+        return Collection.class.isAssignableFrom(rawType) && inputType.getType() instanceof ParameterizedType
+          && isResolvable(TypeToken.of(((ParameterizedType) inputType.getType()).getActualTypeArguments()[0]),
+                          sourceSchema.getComponentSchema(), schema.getComponentSchema());
+      case MAP:
+        if (targetType != Schema.Type.MAP || !Map.class.isAssignableFrom(rawType)
+          || !(inputType.getType() instanceof ParameterizedType)) {
+          return false;
+        }
+        java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+        return isResolvable(TypeToken.of(mapArgs[0]), sourceSchema.getMapSchema().getKey(),
+                            schema.getMapSchema().getKey())
+          && isResolvable(TypeToken.of(mapArgs[1]), sourceSchema.getMapSchema().getValue(),
+                          schema.getMapSchema().getValue());
+      case RECORD:
+        if (targetType != Schema.Type.RECORD || rawType.isPrimitive() || rawType.isArray()) {
+          return false;
+        }
+        for (Schema.Field sourceField : sourceSchema.getFields()) {
+          Schema.Field field = schema.getField(sourceField.getName());
+          if (field == null) {
+            continue;
+          }
+          TypeToken<?> fieldType;
+          try {
+            fieldType = getFieldType(inputType, field.getName());
+          } catch (IllegalArgumentException e) {
+            return false;
+          }
+          if (!isResolvable(fieldType, sourceField.getSchema(), field.getSchema())) {
+            return false;
+          }
+        }
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether a value of the source simple type can be promoted to the target type.
+   */
+  private boolean isPromotable(Schema.Type sourceType, Schema.Type targetType) {
+    if (sourceType == targetType || targetType == Schema.Type.STRING) {
+      return true;
+    }
+    switch (sourceType) {
+      case INT:
+        return targetType == Schema.Type.LONG || targetType == Schema.Type.FLOAT || targetType == Schema.Type.DOUBLE;
+      case LONG:
+        return targetType == Schema.Type.FLOAT || targetType == Schema.Type.DOUBLE;
+      case FLOAT:
+        return targetType == Schema.Type.DOUBLE;
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether a value of the simple schema type can be converted to the given type. Only values of the
+   * same kind can be converted to primitive or primitive wrapper type.
+   */
+  private boolean isAssignable(Schema.Type schemaType, Class<?> rawType) {
+    Class<?> primitiveType = Primitives.unwrap(rawType);
+    if (!primitiveType.isPrimitive()) {
+      return true;
+    }
+    if (schemaType == Schema.Type.BOOLEAN) {
+      return primitiveType == boolean.class;
+    }
+    return schemaType != Schema.Type.STRING && primitiveType != boolean.class && primitiveType != void.class;
+  }
+
+  private TypeToken<?> getFieldType(TypeToken<?> recordType, String fieldName) {
+    try {
+      return recordType.resolveType(Fields.findField(recordType.getType(), fieldName).getGenericType());
+    } catch (NoSuchFieldException e) {
+      throw new IllegalArgumentException("Field " + fieldName + " not found in " + recordType, e);
+    }
+  }
+
+  private TypeToken<?> getInterfaceType(TypeToken<?> type) {
+    // Primitive types are read as their boxed types, which is also what can be used as type parameter
+    return getReaderType(type.getRawType().isPrimitive() ? TypeToken.of(Primitives.wrap(type.getRawType())) : type);
+  }
+
+  private <T> TypeToken<DatumReader<T>> getReaderType(TypeToken<T> type) {
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, type);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema schema, Schema sourceSchema) {
+    return String.format("%s/%s%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(), schema.getSchemaHash(),
+                         sourceSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "")
+                        .replace("[]", "Array")
+                        .replace("?", "Wildcard");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  /**
+   * Returns the name of a simple schema type as used in the {@link Decoder} method names, e.g. "Int" for INT.
+   */
+  private String getTypeName(Schema.Type schemaType) {
+    if (schemaType == Schema.Type.BOOLEAN) {
+      return "Bool";
+    }
+    return schemaType.name().charAt(0) + schemaType.name().substring(1).toLowerCase();
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Returns the type to be used for values of the given type in the generated code. Values other than primitives
+   * are passed as {@link Object}, as the generated class might not have access to their classes.
+   */
+  private Class<?> getCallType(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    return rawType.isPrimitive() ? rawType : Object.class;
+  }
+
+  /**
+   * Returns the method for calling {@link FieldAccessor} setter based on the data type.
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getAccessorMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  /**
+   * Generates the name of the class field for storing {@link FieldAccessor} for the given record field.
+   * @param recordType Type of the record.
+   * @param fieldName name of the field.
+   * @return name of the class field.
+   */
+  private String getFieldAccessorName(TypeToken<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(recordType), fieldName);
+  }
+
+  /**
+   * Generates the name of the class field for storing the {@link Class} of the given array component class.
+   */
+  private String getClassFieldName(Class<?> componentClass) {
+    return String.format("class$%s", normalizeTypeName(TypeToken.of(componentClass)));
+  }
+}
@@ -17,6 +17,7 @@
 package co.cask.cdap.internal.io;
 
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Decoder;
 import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
@@ -77,7 +78,8 @@ public final class ReflectionDatumReader<T> extends ReflectionReader<Decoder, T>
 
   @Override
   protected ByteBuffer readBytes(Decoder decoder) throws IOException {
-    return decoder.readBytes();
+    // Don't hand out slices of the decoder buffer, as the decoded object may use ByteBuffer.array()
+    return ByteBuffers.toExactArrayBuffer(decoder.readBytes());
   }
 
   @Override
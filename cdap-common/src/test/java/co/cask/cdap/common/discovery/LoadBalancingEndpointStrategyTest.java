@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.discovery;
+
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
+import org.apache.twill.discovery.ServiceDiscovered;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link LoadBalancingEndpointStrategy} implementations.
+ */
+public class LoadBalancingEndpointStrategyTest {
+
+  private static final String SERVICE = "service";
+
+  @Test
+  public void testLeastRequests() throws Exception {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    register(discoveryService, 1);
+    register(discoveryService, 2);
+    register(discoveryService, 3);
+    LoadBalancingEndpointStrategy strategy = new LeastRequestsEndpointStrategy(discover(discoveryService));
+
+    // Each request goes to an endpoint without requests in flight
+    Set<Integer> ports = new HashSet<>();
+    LoadBalancingEndpointStrategy.Request[] requests = new LoadBalancingEndpointStrategy.Request[3];
+    int[] requestPorts = new int[3];
+    for (int i = 0; i < 3; i++) {
+      Discoverable endpoint = strategy.pick(5, TimeUnit.SECONDS);
+      Assert.assertNotNull(endpoint);
+      requestPorts[i] = endpoint.getSocketAddress().getPort();
+      Assert.assertTrue(ports.add(requestPorts[i]));
+      requests[i] = strategy.requestStarted(endpoint);
+    }
+
+    // Once a request completed, its endpoint is the only one without requests in flight
+    requests[1].completed();
+    Assert.assertEquals(requestPorts[1], strategy.pick().getSocketAddress().getPort());
+
+    // Ending a request more than once has no effect
+    requests[1].failed();
+    requests[1].cancelled();
+    Assert.assertEquals(requestPorts[1], strategy.pick().getSocketAddress().getPort());
+
+    // Among endpoints with the same number of requests in flight, the faster one is picked
+    requests[0].cancelled();
+    requests[2].failed();
+    Assert.assertNotEquals(requestPorts[2], strategy.pick().getSocketAddress().getPort());
+  }
+
+  @Test
+  public void testPowerOfTwoChoices() throws Exception {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    register(discoveryService, 1);
+    register(discoveryService, 2);
+    LoadBalancingEndpointStrategy strategy = new PowerOfTwoChoicesEndpointStrategy(discover(discoveryService));
+
+    // Make endpoint 1 slow, by reporting failures, which count as taking at least one second
+    Discoverable slow = null;
+    Discoverable fast = null;
+    while (slow == null || fast == null) {
+      Discoverable endpoint = strategy.pick(5, TimeUnit.SECONDS);
+      Assert.assertNotNull(endpoint);
+      LoadBalancingEndpointStrategy.Request request = strategy.requestStarted(endpoint);
+      if (endpoint.getSocketAddress().getPort() == 1) {
+        request.failed();
+        slow = endpoint;
+      } else {
+        request.completed();
+        fast = endpoint;
+      }
+    }
+
+    // With two endpoints both are compared every time, hence the fast one is always picked
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(2, strategy.pick().getSocketAddress().getPort());
+    }
+
+    // Until it has enough requests in flight to be more loaded than the slow one
+    boolean slowPicked = false;
+    for (int i = 0; i < 10000000 && !slowPicked; i++) {
+      strategy.requestStarted(fast);
+      slowPicked = strategy.pick().getSocketAddress().getPort() == 1;
+    }
+    Assert.assertTrue(slowPicked);
+
+    // An endpoint that never responded is avoided while it has requests in flight
+    register(discoveryService, 3);
+    Discoverable unknown = null;
+    while (unknown == null) {
+      Discoverable endpoint = strategy.pick();
+      if (endpoint.getSocketAddress().getPort() == 3) {
+        unknown = endpoint;
+      }
+    }
+    strategy.requestStarted(unknown);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertNotEquals(3, strategy.pick().getSocketAddress().getPort());
+    }
+  }
+
+  private ServiceDiscovered discover(InMemoryDiscoveryService discoveryService) {
+    return discoveryService.discover(SERVICE);
+  }
+
+  private void register(InMemoryDiscoveryService discoveryService, final int port) {
+    discoveryService.register(new Discoverable() {
+      @Override
+      public String getName() {
+        return SERVICE;
+      }
+
+      @Override
+      public InetSocketAddress getSocketAddress() {
+        return InetSocketAddress.createUnresolved("localhost", port);
+      }
+    });
+  }
+}
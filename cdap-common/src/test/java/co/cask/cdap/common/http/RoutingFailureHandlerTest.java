@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.http;
+
+import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HttpResponder;
+import co.cask.http.NettyHttpService;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+/**
+ * Tests for {@link RoutingFailureHandler}.
+ */
+public class RoutingFailureHandlerTest {
+
+  private static NettyHttpService httpService;
+
+  @BeforeClass
+  public static void init() {
+    httpService = NettyHttpService.builder()
+      .setHost("localhost")
+      .addHttpHandlers(ImmutableList.of(new PingHandler()))
+      .modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+        @Override
+        public ChannelPipeline apply(ChannelPipeline input) {
+          return RoutingFailureHandler.addTo(input);
+        }
+      })
+      .build();
+    httpService.startAndWait();
+  }
+
+  @AfterClass
+  public static void finish() {
+    httpService.stopAndWait();
+  }
+
+  @Test(timeout = 10000)
+  public void testRoutingFailureOnReusedConnection() throws IOException {
+    InetSocketAddress address = httpService.getBindAddress();
+    Socket socket = new Socket(address.getHostName(), address.getPort());
+    try {
+      OutputStream out = socket.getOutputStream();
+      InputStream in = socket.getInputStream();
+
+      write(out, "GET /ping HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      Assert.assertEquals(200, readResponse(in));
+
+      // Unknown path and method not allowed, the latter with a chunked body that is discarded
+      write(out, "GET /unknown HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      Assert.assertEquals(404, readResponse(in));
+      write(out, "POST /ping HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+        "5\r\nhello\r\n5\r\nworld\r\n0\r\n\r\n");
+      Assert.assertEquals(405, readResponse(in));
+
+      write(out, "GET /ping HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      Assert.assertEquals(200, readResponse(in));
+
+      // The connection is closed after the response if the request asks for it
+      write(out, "GET /unknown HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+      Assert.assertEquals(404, readResponse(in));
+      Assert.assertEquals(-1, in.read());
+    } finally {
+      socket.close();
+    }
+  }
+
+  private void write(OutputStream out, String request) throws IOException {
+    out.write(request.getBytes(Charsets.US_ASCII));
+    out.flush();
+  }
+
+  /**
+   * Reads a response with a content length and returns its status code.
+   */
+  private int readResponse(InputStream in) throws IOException {
+    int contentLength = 0;
+    String statusLine = readLine(in);
+    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+      if (line.toLowerCase().startsWith("content-length:")) {
+        contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+      }
+    }
+    for (int i = 0; i < contentLength; i++) {
+      Assert.assertTrue(in.read() >= 0);
+    }
+    return Integer.parseInt(statusLine.split(" ")[1]);
+  }
+
+  private String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b = in.read();
+    while (b != '\n') {
+      Assert.assertTrue("Connection closed before the end of the response", b >= 0);
+      if (b != '\r') {
+        line.write(b);
+      }
+      b = in.read();
+    }
+    return new String(line.toByteArray(), Charsets.US_ASCII);
+  }
+
+  /**
+   * A handler with a single endpoint.
+   */
+  public static final class PingHandler extends AbstractHttpHandler {
+
+    @GET
+    @Path("/ping")
+    public void ping(HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK, "OK");
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link DatumReader} created by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3
+  }
+
+  /**
+   *
+   */
+  public enum LessEnum {
+    VALUE3, VALUE1
+  }
+
+  private static Schema getSchema(TypeToken<?> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private static <T> byte[] encode(TypeToken<T> type, T value) throws IOException, UnsupportedTypeException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<T>(getSchema(type)).encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private static <T> T decode(byte[] bytes, Schema sourceSchema, TypeToken<T> type)
+    throws IOException, UnsupportedTypeException {
+    DatumReader<T> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(bytes));
+    return reader.read(decoder, sourceSchema);
+  }
+
+  private static <T> T roundTrip(TypeToken<T> type, T value) throws IOException, UnsupportedTypeException {
+    return decode(encode(type, value), getSchema(type), type);
+  }
+
+  @Test
+  public void testSimpleTypes() throws IOException, UnsupportedTypeException {
+    Assert.assertEquals(Short.valueOf((short) 3000), roundTrip(TypeToken.of(Short.class), (short) 3000));
+    Assert.assertEquals(Integer.valueOf(-12234234), roundTrip(TypeToken.of(Integer.class), -12234234));
+    // Primitive types, as used by flowlet process methods
+    Assert.assertEquals(Integer.valueOf(-12234234), roundTrip(TypeToken.of(int.class), -12234234));
+    Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), roundTrip(TypeToken.of(long.class), Long.MIN_VALUE));
+    Assert.assertEquals(Long.valueOf(Long.MAX_VALUE), roundTrip(TypeToken.of(Long.class), Long.MAX_VALUE));
+    Assert.assertEquals(Boolean.TRUE, roundTrip(TypeToken.of(Boolean.class), true));
+    Assert.assertEquals(3.14d, roundTrip(TypeToken.of(Double.class), 3.14d), 0.000001d);
+    Assert.assertEquals(3.14f, roundTrip(TypeToken.of(Float.class), 3.14f), 0.000001f);
+    Assert.assertEquals("Testing message", roundTrip(TypeToken.of(String.class), "Testing message"));
+    Assert.assertEquals(URI.create("http://www.abc.com"), roundTrip(TypeToken.of(URI.class),
+                                                                   URI.create("http://www.abc.com")));
+    Assert.assertEquals(new URL("http://www.abc.com"), roundTrip(TypeToken.of(URL.class),
+                                                                 new URL("http://www.abc.com")));
+
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, roundTrip(TypeToken.of(UUID.class), uuid));
+    Assert.assertArrayEquals(new byte[] {1, 2, 3}, roundTrip(TypeToken.of(byte[].class), new byte[] {1, 2, 3}));
+    Assert.assertEquals(TestEnum.VALUE2, roundTrip(TypeToken.of(TestEnum.class), TestEnum.VALUE2));
+  }
+
+  @Test
+  public void testArrays() throws IOException, UnsupportedTypeException {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, roundTrip(TypeToken.of(int[].class), ints));
+    Assert.assertArrayEquals(new int[0], roundTrip(TypeToken.of(int[].class), new int[0]));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, roundTrip(TypeToken.of(String[].class), strings));
+
+    long[][] longs = {{1L, 2L}, {}, {3L}};
+    Assert.assertArrayEquals(longs, roundTrip(TypeToken.of(long[][].class), longs));
+
+    Record[][] records = {{new Record(10, "testing", ImmutableList.of("a", "b"), TestEnum.VALUE2)}, {}};
+    Record[][] result = roundTrip(TypeToken.of(Record[][].class), records);
+    Assert.assertEquals(Record[][].class, result.getClass());
+    Assert.assertArrayEquals(records, result);
+  }
+
+  @Test
+  public void testMultipleBlocks() throws IOException, UnsupportedTypeException {
+    // Array and map values written in multiple blocks
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    encoder.writeInt(2).writeInt(1).writeInt(2).writeInt(1).writeInt(3).writeInt(0);
+    // Map values are nullable, hence each value is preceded by the union index
+    encoder.writeInt(1).writeString("a").writeInt(0).writeInt(1);
+    encoder.writeInt(1).writeString("b").writeInt(0).writeInt(2).writeInt(0);
+
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(os.toByteArray()));
+    TypeToken<int[]> arrayType = TypeToken.of(int[].class);
+    Assert.assertArrayEquals(new int[] {1, 2, 3},
+                             DATUM_READER_FACTORY.create(arrayType, getSchema(arrayType))
+                               .read(decoder, getSchema(arrayType)));
+    TypeToken<Map<String, Integer>> mapType = new TypeToken<Map<String, Integer>>() { };
+    Assert.assertEquals(ImmutableMap.of("a", 1, "b", 2),
+                        DATUM_READER_FACTORY.create(mapType, getSchema(mapType)).read(decoder, getSchema(mapType)));
+  }
+
+  @Test
+  public void testCollections() throws IOException, UnsupportedTypeException {
+    List<Long> list = ImmutableList.of(1L, 10L, 100L, 1000L);
+    Assert.assertEquals(list, roundTrip(new TypeToken<List<Long>>() { }, list));
+
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, roundTrip(new TypeToken<Map<String, List<String>>>() { }, map));
+
+    SortedMap<String, Integer> sortedMap = Maps.newTreeMap();
+    sortedMap.put("b", 2);
+    sortedMap.put("a", 1);
+    SortedMap<String, Integer> result = roundTrip(new TypeToken<SortedMap<String, Integer>>() { }, sortedMap);
+    Assert.assertTrue(result instanceof SortedMap);
+    Assert.assertEquals(sortedMap, result);
+
+    List<Record> records = ImmutableList.of(new Record(10, "testing", ImmutableList.of("a", "b", "c"),
+                                                       TestEnum.VALUE2));
+    Assert.assertEquals(records, roundTrip(new TypeToken<List<Record>>() { }, records));
+
+    // List into set and array
+    TypeToken<List<String>> listType = new TypeToken<List<String>>() { };
+    byte[] bytes = encode(listType, Lists.newArrayList("1", "2", "3"));
+    Assert.assertEquals(Sets.newHashSet("1", "2", "3"),
+                        decode(bytes, getSchema(listType), new TypeToken<Set<String>>() { }));
+    Assert.assertArrayEquals(new String[] {"1", "2", "3"}, decode(bytes, getSchema(listType),
+                                                                  TypeToken.of(String[].class)));
+  }
+
+  @Test
+  public void testRecords() throws IOException, UnsupportedTypeException {
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, roundTrip(TypeToken.of(Record.class), record));
+
+    Node root = new Node(1, new Node(2, null, new Node(3, null, null)), new Node(4, new Node(5, null, null), null));
+    Assert.assertEquals(root, roundTrip(TypeToken.of(Node.class), root));
+
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    StreamEvent result = roundTrip(TypeToken.of(StreamEvent.class), event);
+    Assert.assertEquals(event.getHeaders(), result.getHeaders());
+    Assert.assertEquals(event.getBody(), result.getBody());
+
+    Holder<String> holder = new Holder<>();
+    holder.value = "value";
+    holder.values = ImmutableList.of("v1", "v2");
+    Holder<String> holderResult = roundTrip(new TypeToken<Holder<String>>() { }, holder);
+    Assert.assertEquals(holder.value, holderResult.value);
+    Assert.assertEquals(holder.values, holderResult.values);
+  }
+
+  @Test
+  public void testBytesNotSliced() throws IOException, UnsupportedTypeException {
+    // Decoding from a ByteBufferDecoder, as flowlet inputs are, must not give slices of the whole payload
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    TypeToken<StreamEvent> type = TypeToken.of(StreamEvent.class);
+    DatumReader<StreamEvent> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+    StreamEvent result = reader.read(new ByteBufferDecoder(ByteBuffer.wrap(encode(type, event))), getSchema(type));
+    Assert.assertEquals(event.getBody(), result.getBody());
+    Assert.assertArrayEquals("Testing message".getBytes(Charsets.UTF_8), result.getBody().array());
+
+    Record1 r1 = new Record1(10, Maps.<Integer, Record>newHashMap(), new URL("http://www.yahoo.com"));
+    TypeToken<Record1> recordType = TypeToken.of(Record1.class);
+    Record1 r1Result = DATUM_READER_FACTORY.create(recordType, getSchema(recordType))
+      .read(new ByteBufferDecoder(ByteBuffer.wrap(encode(recordType, r1))), getSchema(recordType));
+    Assert.assertEquals(r1.uuid, r1Result.uuid);
+  }
+
+  @Test
+  public void testTypeProjection() throws IOException, UnsupportedTypeException {
+    Record1 r1 = new Record1(10, Maps.<Integer, Record>newHashMap(), new URL("http://www.yahoo.com"));
+    r1.properties.put(1, new Record(1, "Name1", ImmutableList.of("a"), TestEnum.VALUE1));
+    r1.properties.put(2, new Record(2, "Name2", ImmutableList.<String>of(), TestEnum.VALUE3));
+    r1.properties.put(3, null);
+
+    byte[] bytes = encode(TypeToken.of(Record1.class), r1);
+    Record2 r2 = decode(bytes, getSchema(TypeToken.of(Record1.class)), TypeToken.of(Record2.class));
+
+    Assert.assertEquals(10L, r2.i.longValue());
+    Assert.assertEquals(10d, r2.d, 0d);
+    Assert.assertEquals("10", r2.s);
+    Assert.assertNull(r2.name);
+    Assert.assertArrayEquals(new long[] {1L, 2L}, r2.numbers);
+    Assert.assertEquals(URI.create("http://www.yahoo.com"), r2.url);
+    Assert.assertEquals(r1.uuid, r2.uuid);
+    Assert.assertNull(r2.nullStr);
+
+    Assert.assertEquals(3, r2.properties.size());
+    Assert.assertEquals("Name1", r2.properties.get("1").s);
+    Assert.assertEquals(LessEnum.VALUE1, r2.properties.get("1").e);
+    Assert.assertEquals("Name2", r2.properties.get("2").s);
+    Assert.assertEquals(LessEnum.VALUE3, r2.properties.get("2").e);
+    Assert.assertNull(r2.properties.get("3"));
+    Assert.assertTrue(r2.properties.containsKey("3"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingEnumValue() throws IOException, UnsupportedTypeException {
+    byte[] bytes = encode(TypeToken.of(TestEnum.class), TestEnum.VALUE2);
+    decode(bytes, getSchema(TypeToken.of(TestEnum.class)), TypeToken.of(LessEnum.class));
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnresolvable() throws IOException, UnsupportedTypeException {
+    byte[] bytes = encode(TypeToken.of(String.class), "1");
+    decode(bytes, getSchema(TypeToken.of(String.class)), TypeToken.of(Integer.class));
+  }
+
+  @Test
+  public void testSourceSchemaChange() throws IOException, UnsupportedTypeException {
+    // The same reader reads data written with different source schemas
+    TypeToken<Record2.Value> type = TypeToken.of(Record2.Value.class);
+    DatumReader<Record2.Value> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+
+    Record record = new Record(1, "Name1", ImmutableList.of("a"), TestEnum.VALUE1);
+    byte[] recordBytes = encode(TypeToken.of(Record.class), record);
+    Record2.Value value = new Record2.Value();
+    value.s = "Name2";
+    value.e = LessEnum.VALUE3;
+    byte[] valueBytes = encode(type, value);
+
+    for (int i = 0; i < 3; i++) {
+      Record2.Value result = reader.read(new ByteBufferDecoder(ByteBuffer.wrap(recordBytes)),
+                                         getSchema(TypeToken.of(Record.class)));
+      Assert.assertEquals("Name1", result.s);
+      Assert.assertEquals(LessEnum.VALUE1, result.e);
+
+      result = reader.read(new ByteBufferDecoder(ByteBuffer.wrap(valueBytes)), getSchema(type));
+      Assert.assertEquals("Name2", result.s);
+      Assert.assertEquals(LessEnum.VALUE3, result.e);
+    }
+  }
+
+  private static final class Record {
+    private int i;
+    private String s;
+    private List<String> list;
+    private TestEnum e;
+
+    Record(int i, String s, List<String> list, TestEnum e) {
+      this.i = i;
+      this.s = s;
+      this.list = list;
+      this.e = e;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Record record = (Record) o;
+      return i == record.i && e == record.e && list.equals(record.list) && s.equals(record.s);
+    }
+
+    @Override
+    public int hashCode() {
+      return com.google.common.base.Objects.hashCode(i, s, list, e);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    public int data;
+    public Node left;
+    public Node right;
+
+    public Node(int data, Node left, Node right) {
+      this.data = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Node node = (Node) o;
+      return data == node.data
+               && (left  != null ? left.equals(node.left) : node.left == null)
+               && (right != null ? right.equals(node.right) : node.right == null);
+    }
+
+    @Override
+    public int hashCode() {
+      return com.google.common.base.Objects.hashCode(data, left, right);
+    }
+  }
+
+  /**
+   *
+   * @param <T> type of the values
+   */
+  public static final class Holder<T> {
+    T value;
+    List<T> values;
+  }
+
+  /**
+   *
+   */
+  public static final class Record1 {
+    private final int i;
+    private final int d;
+    private final int s;
+    private final Map<Integer, Record> properties;
+    private final int[] numbers;
+    private final URL url;
+    private final UUID uuid;
+    private final String nullStr;
+
+    public Record1(int i, Map<Integer, Record> properties, URL url) {
+      this.i = i;
+      this.d = i;
+      this.s = i;
+      this.properties = properties;
+      this.numbers = new int[] {1, 2};
+      this.url = url;
+      this.uuid = UUID.randomUUID();
+      this.nullStr = null;
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Record2 {
+
+    /**
+     *
+     */
+    public static final class Value {
+      private String s;
+      private LessEnum e;
+    }
+
+    private Long i;
+    private double d;
+    private String s;
+    private Map<String, Value> properties;
+    private String name;
+    private long[] numbers;
+    private URI url;
+    private UUID uuid;
+    private String nullStr;
+  }
+}
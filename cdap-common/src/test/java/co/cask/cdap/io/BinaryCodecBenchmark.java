@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteArrayEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+import co.cask.common.io.ByteBufferInputStream;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Benchmark for comparing the stream based {@link BinaryEncoder} and {@link BinaryDecoder} with the array based
+ * {@link ByteArrayEncoder} and {@link ByteBufferDecoder}. Each record is a stream event with a few headers, followed
+ * by a few numeric fields, similar to queue entries and metrics records. Allocation is measured with the per thread
+ * allocation counter of the HotSpot JVM.
+ *
+ * Usage: {@code BinaryCodecBenchmark [records] [body_size] [rounds]}
+ */
+public final class BinaryCodecBenchmark {
+
+  private static final String[] PHASES = { "stream encode", "array encode", "stream decode", "buffer decode" };
+
+  public static void main(String[] args) throws Exception {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int bodySize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    byte[] body = new byte[bodySize];
+    Random random = new Random(0);
+    random.nextBytes(body);
+    StreamEvent event = new StreamEvent(ImmutableMap.of("host", "host1.example.com", "source", "access.log",
+                                                        "level", "INFO"),
+                                        ByteBuffer.wrap(body), System.currentTimeMillis());
+
+    long[] bestNanos = new long[PHASES.length];
+    long[] bestBytes = new long[PHASES.length];
+    for (int i = 0; i < PHASES.length; i++) {
+      bestNanos[i] = Long.MAX_VALUE;
+      bestBytes[i] = Long.MAX_VALUE;
+    }
+
+    // First round is warm up
+    for (int round = 0; round <= rounds; round++) {
+      long[] nanos = new long[PHASES.length];
+      long[] bytes = new long[PHASES.length];
+      int phase = 0;
+
+      long startBytes = getAllocatedBytes();
+      long startTime = System.nanoTime();
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      Encoder streamEncoder = new BinaryEncoder(os);
+      for (int i = 0; i < records; i++) {
+        os.reset();
+        encode(streamEncoder, event, i);
+      }
+      byte[] encoded = os.toByteArray();
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      ByteArrayEncoder arrayEncoder = new ByteArrayEncoder();
+      for (int i = 0; i < records; i++) {
+        arrayEncoder.reset();
+        encode(arrayEncoder, event, i);
+      }
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      // The last encoded records are the same, so that both decoders read the same bytes
+      if (!ByteBuffer.wrap(encoded).equals(arrayEncoder.toByteBuffer())) {
+        throw new IllegalStateException("Encoders produced different bytes");
+      }
+
+      long sum = 0;
+      ByteBufferInputStream is = new ByteBufferInputStream(null);
+      Decoder streamDecoder = new BinaryDecoder(is);
+      for (int i = 0; i < records; i++) {
+        is.reset(ByteBuffer.wrap(encoded));
+        sum += decode(streamDecoder);
+      }
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      ByteBufferDecoder bufferDecoder = new ByteBufferDecoder(ByteBuffer.wrap(encoded));
+      for (int i = 0; i < records; i++) {
+        sum -= decode(bufferDecoder.reset(ByteBuffer.wrap(encoded)));
+      }
+      mark(nanos, bytes, phase, startTime, startBytes);
+
+      if (sum != 0) {
+        throw new IllegalStateException("Decoders produced different values");
+      }
+      if (round > 0) {
+        for (int i = 0; i < PHASES.length; i++) {
+          bestNanos[i] = Math.min(bestNanos[i], nanos[i]);
+          bestBytes[i] = Math.min(bestBytes[i], bytes[i]);
+        }
+      }
+    }
+
+    System.out.printf("%-16s %12s %14s%n", "phase", "ns/record", "bytes/record");
+    for (int i = 0; i < PHASES.length; i++) {
+      System.out.printf("%-16s %12.2f %14.2f%n", PHASES[i], (double) bestNanos[i] / records,
+                        (double) bestBytes[i] / records);
+    }
+  }
+
+  private static void encode(Encoder encoder, StreamEvent event, int i) throws IOException {
+    StreamEventDataCodec.encode(event, encoder);
+    encoder.writeLong(event.getTimestamp())
+      .writeInt(i)
+      .writeLong(i * 1000003L)
+      .writeDouble(i / 3d)
+      .writeFloat(i / 7f);
+  }
+
+  private static long decode(Decoder decoder) throws IOException {
+    long sum = StreamEventDataCodec.decode(decoder).getBody().remaining();
+    sum += decoder.readLong();
+    sum += decoder.readInt();
+    sum += decoder.readLong();
+    sum += (long) decoder.readDouble();
+    sum += (long) decoder.readFloat();
+    return sum;
+  }
+
+  private static long mark(long[] nanos, long[] bytes, int phase, long startTime, long startBytes) {
+    long now = System.nanoTime();
+    bytes[phase] = getAllocatedBytes() - startBytes;
+    nanos[phase] = now - startTime;
+    return System.nanoTime();
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private BinaryCodecBenchmark() {
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteArrayEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Interners;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests for {@link ByteArrayEncoder} and {@link ByteBufferDecoder}, checking that they are compatible with
+ * {@link BinaryEncoder} and {@link BinaryDecoder}.
+ */
+public class ByteBufferCodecTest {
+
+  private static final int[] INTS = { 0, -1, 1, 63, -64, 64, 1234, -1234, Short.MAX_VALUE, Short.MIN_VALUE,
+                                      Integer.MAX_VALUE, Integer.MIN_VALUE };
+  private static final long[] LONGS = { 0, -20, 30000, -600000, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                                        Long.MAX_VALUE, Long.MIN_VALUE };
+  private static final String[] STRINGS = { "", "This is a testing message", Strings.repeat("long", 1000),
+                                            "\u00c8\u4e20\u9c40", "\ud83d\ude00 surrogates", "unpaired \ud83d",
+                                            "\ude00\ud83d unpaired", "ascii then \u00e9" };
+
+  @Test
+  public void testCompatibility() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    encode(new BinaryEncoder(os));
+    byte[] expected = os.toByteArray();
+
+    ByteArrayEncoder encoder = new ByteArrayEncoder(1);
+    encode(encoder);
+    Assert.assertArrayEquals(expected, encoder.toByteArray());
+
+    // The encoder is reusable after reset
+    encoder.reset();
+    encode(encoder);
+    Assert.assertArrayEquals(expected, encoder.toByteArray());
+
+    decode(new BinaryDecoder(new ByteArrayInputStream(expected)));
+    decode(new ByteBufferDecoder(ByteBuffer.wrap(expected)));
+
+    // Array backed buffer with an offset
+    byte[] padded = new byte[expected.length + 20];
+    System.arraycopy(expected, 0, padded, 10, expected.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded, 10, expected.length).slice();
+    decode(new ByteBufferDecoder(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+
+    // Buffers not backed by an array
+    ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+    direct.put(expected).flip();
+    decode(new ByteBufferDecoder(direct));
+    decode(new ByteBufferDecoder(ByteBuffer.wrap(expected).asReadOnlyBuffer()));
+  }
+
+  @Test
+  public void testUtf8() throws IOException {
+    // Strings are encoded in place, which must give the same bytes as the JDK encoder
+    ByteArrayEncoder encoder = new ByteArrayEncoder(1);
+    for (String s : STRINGS) {
+      byte[] expected = s.getBytes(Charsets.UTF_8);
+      encoder.reset();
+      encoder.writeString(s);
+      ByteBuffer encoded = encoder.toByteBuffer();
+      Assert.assertEquals(expected.length, new ByteBufferDecoder(encoded).readInt());
+      Assert.assertEquals(ByteBuffer.wrap(expected), encoded);
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new BinaryEncoder(os).writeString(s);
+      Assert.assertArrayEquals(encoder.toByteArray(), os.toByteArray());
+    }
+  }
+
+  @Test
+  public void testZeroCopyBytes() throws IOException {
+    ByteArrayEncoder encoder = new ByteArrayEncoder();
+    encoder.writeBytes(new byte[] { 1, 2, 3 }).writeInt(5);
+
+    ByteBuffer buffer = encoder.toByteBuffer();
+    ByteBufferDecoder decoder = new ByteBufferDecoder(buffer);
+    ByteBuffer bytes = decoder.readBytes();
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), bytes);
+    Assert.assertEquals(5, decoder.readInt());
+
+    // The bytes share content with the decoded buffer
+    buffer.put(1, (byte) 10);
+    Assert.assertEquals(10, bytes.get(0));
+  }
+
+  @Test
+  public void testInterner() throws IOException {
+    ByteArrayEncoder encoder = new ByteArrayEncoder();
+    encoder.writeString("key").writeString("key");
+
+    ByteBufferDecoder decoder = new ByteBufferDecoder(encoder.toByteBuffer(), Interners.<String>newStrongInterner());
+    Assert.assertSame(decoder.readString(), decoder.readString());
+  }
+
+  @Test
+  public void testEOF() throws IOException {
+    ByteArrayEncoder encoder = new ByteArrayEncoder();
+    encoder.writeLong(Long.MAX_VALUE).writeString("truncated");
+    byte[] bytes = encoder.toByteArray();
+
+    ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(bytes, 0, 5));
+    try {
+      decoder.readLong();
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+
+    decoder.reset(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+    Assert.assertEquals(Long.MAX_VALUE, decoder.readLong());
+    try {
+      decoder.readString();
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+  }
+
+  private void encode(Encoder encoder) throws IOException {
+    encoder.writeNull().writeBool(true).writeBool(false);
+    for (int i : INTS) {
+      encoder.writeInt(i);
+    }
+    for (long l : LONGS) {
+      encoder.writeLong(l);
+    }
+    encoder.writeFloat(3.14f).writeFloat(Float.MAX_VALUE).writeFloat(Float.MIN_VALUE).writeFloat(Float.NaN);
+    encoder.writeDouble(Math.E).writeDouble(Double.MAX_VALUE).writeDouble(Double.MIN_VALUE);
+    for (String s : STRINGS) {
+      encoder.writeString(s);
+    }
+    encoder.writeBytes(new byte[] { 1, 2, 3 }).writeBytes(new byte[] { 0, 4, 5, 6, 0 }, 1, 3);
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(new byte[] { 7, 8, 9 }).flip();
+    encoder.writeBytes(direct).writeBytes(ByteBuffer.wrap(new byte[0]));
+    // Skipped values
+    encoder.writeFloat(1f).writeDouble(2d).writeString("skipped").writeBytes(new byte[] { 1 }).writeInt(-1);
+  }
+
+  private void decode(Decoder decoder) throws IOException {
+    Assert.assertNull(decoder.readNull());
+    Assert.assertTrue(decoder.readBool());
+    Assert.assertFalse(decoder.readBool());
+    for (int i : INTS) {
+      Assert.assertEquals(i, decoder.readInt());
+    }
+    for (long l : LONGS) {
+      Assert.assertEquals(l, decoder.readLong());
+    }
+    Assert.assertEquals(3.14f, decoder.readFloat(), 0f);
+    Assert.assertEquals(Float.MAX_VALUE, decoder.readFloat(), 0f);
+    Assert.assertEquals(Float.MIN_VALUE, decoder.readFloat(), 0f);
+    Assert.assertTrue(Float.isNaN(decoder.readFloat()));
+    Assert.assertEquals(Math.E, decoder.readDouble(), 0d);
+    Assert.assertEquals(Double.MAX_VALUE, decoder.readDouble(), 0d);
+    Assert.assertEquals(Double.MIN_VALUE, decoder.readDouble(), 0d);
+    for (String s : STRINGS) {
+      // Unpaired surrogates are replaced when encoded
+      Assert.assertEquals(new String(s.getBytes(Charsets.UTF_8), Charsets.UTF_8), decoder.readString());
+    }
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decoder.readBytes());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 4, 5, 6 }), decoder.readBytes());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 7, 8, 9 }), decoder.readBytes());
+    Assert.assertFalse(decoder.readBytes().hasRemaining());
+    decoder.skipFloat();
+    decoder.skipDouble();
+    decoder.skipString();
+    decoder.skipBytes();
+    Assert.assertEquals(-1, decoder.readInt());
+    try {
+      decoder.readInt();
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+  }
+}
@@ -25,6 +25,7 @@ import org.junit.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Unit-test for {@link ByteBuffers} methods.
@@ -53,6 +54,31 @@ public class ByteBuffersTest {
     testWriteBuffer(buffer, content);
   }
 
+  @Test
+  public void testToExactArrayBuffer() {
+    byte[] content = "0123456789".getBytes(Charsets.UTF_8);
+
+    // A buffer over the whole array is returned as is
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    Assert.assertSame(buffer, ByteBuffers.toExactArrayBuffer(buffer));
+
+    // Slices, partial buffers and direct buffers are copied
+    buffer.position(2);
+    assertExactArray(Arrays.copyOfRange(content, 2, content.length), buffer.slice());
+    assertExactArray(Arrays.copyOfRange(content, 2, 5), ByteBuffer.wrap(content, 2, 3));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+    direct.put(content).flip();
+    assertExactArray(content, direct);
+    Assert.assertEquals(0, direct.position());
+  }
+
+  private void assertExactArray(byte[] expected, ByteBuffer buffer) {
+    ByteBuffer result = ByteBuffers.toExactArrayBuffer(buffer);
+    Assert.assertEquals(0, result.position());
+    Assert.assertArrayEquals(expected, result.array());
+  }
+
   private void testWriteBuffer(ByteBuffer buffer, String content) throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
 
@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.ByteArrayEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.FieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark for comparing the reflection based {@link ReflectionDatumWriter} and {@link ReflectionDatumReader} with
+ * the ones generated by {@link ASMDatumWriterFactory} and {@link ASMDatumReaderFactory}. Each record round trips
+ * through the writer and the reader, and has nested records, arrays and maps. Allocation is measured with the per
+ * thread allocation counter of the HotSpot JVM.
+ *
+ * Usage: {@code DatumCodecBenchmark [records] [items_per_record] [rounds]}
+ */
+public final class DatumCodecBenchmark {
+
+  private static final String[] PHASES = { "reflection write", "asm write", "reflection read", "asm read" };
+
+  public static void main(String[] args) throws Exception {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int items = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    TypeToken<Order> type = TypeToken.of(Order.class);
+    Schema schema = new ReflectionSchemaGenerator().generate(type.getType());
+    FieldAccessorFactory fieldAccessorFactory = new ASMFieldAccessorFactory();
+    DatumWriter<Order> reflectionWriter = new ReflectionDatumWriter<>(schema);
+    DatumWriter<Order> asmWriter = new ASMDatumWriterFactory(fieldAccessorFactory).create(type, schema);
+    DatumReader<Order> reflectionReader = new ReflectionDatumReader<>(schema, type);
+    DatumReader<Order> asmReader = new ASMDatumReaderFactory(fieldAccessorFactory).create(type, schema);
+
+    Order[] orders = new Order[records];
+    for (int i = 0; i < records; i++) {
+      orders[i] = new Order(i, items);
+    }
+
+    long[] bestNanos = new long[PHASES.length];
+    long[] bestBytes = new long[PHASES.length];
+    for (int i = 0; i < PHASES.length; i++) {
+      bestNanos[i] = Long.MAX_VALUE;
+      bestBytes[i] = Long.MAX_VALUE;
+    }
+
+    // First round is warm up
+    byte[][] encoded = new byte[records][];
+    for (int round = 0; round <= rounds; round++) {
+      long[] nanos = new long[PHASES.length];
+      long[] bytes = new long[PHASES.length];
+      int phase = 0;
+
+      ByteArrayEncoder encoder = new ByteArrayEncoder();
+      long startBytes = getAllocatedBytes();
+      long startTime = System.nanoTime();
+      for (int i = 0; i < records; i++) {
+        encoder.reset();
+        reflectionWriter.encode(orders[i], encoder);
+      }
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      for (int i = 0; i < records; i++) {
+        encoder.reset();
+        asmWriter.encode(orders[i], encoder);
+        encoded[i] = encoder.toByteArray();
+      }
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      long sum = 0;
+      ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(encoded[0]));
+      for (int i = 0; i < records; i++) {
+        sum += reflectionReader.read(decoder.reset(ByteBuffer.wrap(encoded[i])), schema).checksum();
+      }
+      startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+      startBytes = getAllocatedBytes();
+
+      for (int i = 0; i < records; i++) {
+        sum -= asmReader.read(decoder.reset(ByteBuffer.wrap(encoded[i])), schema).checksum();
+      }
+      mark(nanos, bytes, phase, startTime, startBytes);
+
+      if (sum != 0) {
+        throw new IllegalStateException("Readers produced different records");
+      }
+      if (round > 0) {
+        for (int i = 0; i < PHASES.length; i++) {
+          bestNanos[i] = Math.min(bestNanos[i], nanos[i]);
+          bestBytes[i] = Math.min(bestBytes[i], bytes[i]);
+        }
+      }
+    }
+
+    System.out.printf("%-18s %12s %14s%n", "phase", "ns/record", "bytes/record");
+    for (int i = 0; i < PHASES.length; i++) {
+      System.out.printf("%-18s %12.2f %14.2f%n", PHASES[i], (double) bestNanos[i] / records,
+                        (double) bestBytes[i] / records);
+    }
+  }
+
+  private static long mark(long[] nanos, long[] bytes, int phase, long startTime, long startBytes) {
+    long now = System.nanoTime();
+    bytes[phase] = getAllocatedBytes() - startBytes;
+    nanos[phase] = now - startTime;
+    return System.nanoTime();
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * The record being benchmarked.
+   */
+  public static final class Order {
+    private long id;
+    private String customer;
+    private Address address;
+    private List<Item> items;
+    private Map<String, String> attributes;
+    private long[] timestamps;
+
+    @SuppressWarnings("unused")
+    public Order() {
+      // For the instantiator
+    }
+
+    Order(int id, int items) {
+      this.id = id;
+      this.customer = "customer" + (id % 1000);
+      this.address = new Address("street " + id, "city" + (id % 100), id % 100000);
+      this.items = Lists.newArrayList();
+      this.attributes = Maps.newHashMap();
+      this.timestamps = new long[items];
+      for (int i = 0; i < items; i++) {
+        this.items.add(new Item("sku" + i, i + 1, i * 1.5d));
+        this.attributes.put("key" + i, "value" + i);
+        this.timestamps[i] = 1450000000000L + id + i;
+      }
+    }
+
+    long checksum() {
+      long sum = id + customer.length() + address.street.length() + address.city.length() + address.zip;
+      for (Item item : items) {
+        sum += item.sku.length() + item.quantity + (long) item.price;
+      }
+      for (Map.Entry<String, String> entry : attributes.entrySet()) {
+        sum += entry.getKey().length() + entry.getValue().length();
+      }
+      for (long timestamp : timestamps) {
+        sum += timestamp;
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * Nested record in {@link Order}.
+   */
+  public static final class Address {
+    private String street;
+    private String city;
+    private int zip;
+
+    @SuppressWarnings("unused")
+    public Address() {
+      // For the instantiator
+    }
+
+    Address(String street, String city, int zip) {
+      this.street = street;
+      this.city = city;
+      this.zip = zip;
+    }
+  }
+
+  /**
+   * Record in the list of {@link Order}.
+   */
+  public static final class Item {
+    private String sku;
+    private int quantity;
+    private double price;
+
+    @SuppressWarnings("unused")
+    public Item() {
+      // For the instantiator
+    }
+
+    Item(String sku, int quantity, double price) {
+      this.sku = sku;
+      this.quantity = quantity;
+      this.price = price;
+    }
+  }
+
+  private DatumCodecBenchmark() {
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.streamevent;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
@@ -49,6 +50,8 @@ public class StreamEventCodecTest {
 
     Assert.assertEquals(event.getHeaders(), decodedEvent.getHeaders());
     Assert.assertEquals(event.getBody(), decodedEvent.getBody());
+    // The body must not be a slice of the payload, as user code may use the backing array
+    Assert.assertArrayEquals(Bytes.toBytes(event.getBody()), decodedEvent.getBody().array());
   }
 
   @Test
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.apache.twill.filesystem.LocationFactory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for comparing write/read throughput and file size of stream files written with
+ * different {@link StreamBlockCodec}.
+ *
+ * Usage: {@code StreamDataFileBenchmark [megabytes_to_write]}
+ */
+public final class StreamDataFileBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+
+    File tmpDir = Files.createTempDir();
+    try {
+      LocationFactory locationFactory = new LocalLocationFactory(tmpDir);
+      List<ByteBuffer> bodies = createBodies(1000);
+
+      System.out.printf("%-10s %12s %12s %14s %8s%n", "codec", "write MB/s", "read MB/s", "bytes on disk", "ratio");
+      for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+        Location eventFile = locationFactory.create(codec.getName() + ".dat");
+        Location indexFile = locationFactory.create(codec.getName() + ".idx");
+
+        // Write events, 100 events per timestamp
+        long rawBytes = 0;
+        long totalBytes = megabytes * 1024L * 1024L;
+        Stopwatch stopwatch = new Stopwatch().start();
+        StreamDataFileWriter writer = new StreamDataFileWriter(
+          Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10000L,
+          ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec.getName()));
+        int count = 0;
+        while (rawBytes < totalBytes) {
+          ByteBuffer body = bodies.get(count % bodies.size());
+          writer.append(new StreamEvent(ImmutableMap.<String, String>of(), body.duplicate(), count / 100));
+          rawBytes += body.remaining();
+          count++;
+        }
+        writer.close();
+        long writeNanos = stopwatch.elapsedTime(TimeUnit.NANOSECONDS);
+
+        // Read all events back
+        stopwatch = new Stopwatch().start();
+        StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+        List<PositionStreamEvent> events = Lists.newArrayListWithCapacity(1000);
+        int readCount = 0;
+        int result;
+        while ((result = reader.read(events, 1000, 0, TimeUnit.SECONDS)) >= 0) {
+          readCount += result;
+          events.clear();
+        }
+        reader.close();
+        long readNanos = stopwatch.elapsedTime(TimeUnit.NANOSECONDS);
+
+        if (readCount != count) {
+          throw new IllegalStateException("Expected " + count + " events, but read " + readCount);
+        }
+
+        long fileSize = eventFile.length();
+        System.out.printf("%-10s %12.2f %12.2f %14d %8.2f%n", codec.getName(),
+                          toMBPerSecond(rawBytes, writeNanos), toMBPerSecond(rawBytes, readNanos),
+                          fileSize, (double) rawBytes / fileSize);
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(tmpDir);
+    }
+  }
+
+  /**
+   * Creates JSON like event bodies, similar to what are typically ingested to a stream.
+   */
+  private static List<ByteBuffer> createBodies(int size) {
+    Random random = new Random(0);
+    String[] names = { "login", "logout", "purchase", "view", "click" };
+    List<ByteBuffer> bodies = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      String body = String.format("{\"user\":\"user%d\",\"event\":\"%s\",\"ts\":%d,\"value\":%.4f,\"ok\":%b}",
+                                  random.nextInt(10000), names[random.nextInt(names.length)],
+                                  System.currentTimeMillis() + i, random.nextDouble(), random.nextBoolean());
+      bodies.add(Charsets.UTF_8.encode(body));
+    }
+    return bodies;
+  }
+
+  private static double toMBPerSecond(long bytes, long nanos) {
+    return (bytes / 1024d / 1024d) / (nanos / 1e9d);
+  }
+
+  private StreamDataFileBenchmark() {
+  }
+}
@@ -985,6 +985,95 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testCompressedReadWrite() throws Exception {
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec.getName()));
+
+      // Write 100 blocks of 50 highly compressible events, followed by a block of empty events,
+      // which compresses to less bytes than the number of events in it.
+      for (int i = 0; i < 100; i++) {
+        for (int j = 0; j < 50; j++) {
+          String body = "Compressed test " + i + " " + Strings.repeat('x', 100);
+          writer.append(StreamFileTestUtils.createEvent(i, body));
+        }
+      }
+      for (int i = 0; i < 1000; i++) {
+        writer.append(StreamFileTestUtils.createEvent(100, ""));
+      }
+      writer.close();
+
+      // Read all events to verify the content and record the positions
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(6000, reader.read(events, 10000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < events.size(); i++) {
+        PositionStreamEvent event = events.get(i);
+        long timestamp = Math.min(i / 50, 100);
+        String body = timestamp < 100 ? "Compressed test " + timestamp + " " + Strings.repeat('x', 100) : "";
+        Assert.assertEquals(timestamp, event.getTimestamp());
+        Assert.assertEquals(body, Charsets.UTF_8.decode(event.getBody().duplicate()).toString());
+        Assert.assertTrue(event.getStart() > lastPosition);
+        lastPosition = event.getStart();
+      }
+
+      // Read again by starting from the position of some events. It should start at the same event.
+      for (int i = 0; i < events.size(); i += 97) {
+        PositionStreamEvent event = events.get(i);
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), event.getStart());
+        List<PositionStreamEvent> result = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(result, 1, 0, TimeUnit.SECONDS));
+        reader.close();
+        Assert.assertEquals(event.getStart(), result.get(0).getStart());
+        Assert.assertEquals(event.getBody(), result.get(0).getBody());
+      }
+
+      // Read by start time, using the index
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 55L);
+      events.clear();
+      Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(55L, events.get(0).getTimestamp());
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testCompressedFileSize() throws Exception {
+    long uncompressedSize = -1L;
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10000L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec.getName()));
+      for (int i = 0; i < 1000; i++) {
+        writer.append(StreamFileTestUtils.createEvent(i / 100, "{\"id\":" + i + ",\"name\":\"event\",\"ok\":true}"));
+      }
+      writer.close();
+
+      if (codec == StreamBlockCodec.NONE) {
+        uncompressedSize = eventFile.length();
+      } else {
+        Assert.assertTrue(codec + " file is not smaller than uncompressed file",
+                          eventFile.length() < uncompressedSize);
+      }
+    }
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval());
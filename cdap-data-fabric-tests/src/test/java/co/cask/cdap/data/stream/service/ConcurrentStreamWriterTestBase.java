@@ -88,14 +88,33 @@ public abstract class ConcurrentStreamWriterTestBase {
 
   @Test
   public void testConcurrentWrite() throws Exception {
-    final String streamName = "testConcurrentWrite";
+    testConcurrentWrite("testConcurrentWrite", 0L, new TestMetricsCollectorFactory());
+  }
+
+  @Test
+  public void testGroupCommitWrite() throws Exception {
+    TestMetricsCollectorFactory metricsCollectorFactory = new TestMetricsCollectorFactory();
+    testConcurrentWrite("testGroupCommitWrite", TimeUnit.MILLISECONDS.toMicros(5), metricsCollectorFactory);
+
+    // With group commit, requests from different threads should be persisted by the same flush
+    Assert.assertTrue(metricsCollectorFactory.flushes.get() > 0);
+    Assert.assertTrue(metricsCollectorFactory.flushes.get() < metricsCollectorFactory.requests.get());
+  }
+
+  private void testConcurrentWrite(String streamName, long groupCommitLatencyMicros,
+                                   TestMetricsCollectorFactory metricsCollectorFactory) throws Exception {
     String namespace = "namespace";
     Id.Stream streamId = Id.Stream.from(namespace, streamName);
     StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
     int threads = Runtime.getRuntime().availableProcessors() * 4;
 
     StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
-    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, fileWriterFactory);
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+    streamConfig.getLocation().mkdirs();
+    final ConcurrentStreamWriter streamWriter = new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
+                                                                           fileWriterFactory, threads,
+                                                                           metricsCollectorFactory,
+                                                                           groupCommitLatencyMicros, 1024 * 1024);
 
     // Starts n threads to write events through stream writer, each thread write 1000 events
     final int msgPerThread = 1000;
@@ -340,6 +359,10 @@ public abstract class ConcurrentStreamWriterTestBase {
   }
 
   private static final class TestMetricsCollectorFactory implements StreamMetricsCollectorFactory {
+
+    private final AtomicInteger flushes = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
     @Override
     public StreamMetricsCollector createMetricsCollector(Id.Stream streamId) {
       return new StreamMetricsCollector() {
@@ -347,6 +370,12 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitFlushMetrics(int requests, long syncLatencyMicros) {
+          flushes.incrementAndGet();
+          TestMetricsCollectorFactory.this.requests.addAndGet(requests);
+        }
       };
     }
   }
@@ -27,6 +27,7 @@ import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.dataset.table.Tables;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.hbase.HBaseTestBase;
 import co.cask.cdap.data.hbase.HBaseTestFactory;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
@@ -215,6 +216,49 @@ public class HBaseTableTest extends BufferingTableTest<BufferingTable> {
     }
   }
 
+  @Test
+  public void testParallelPersist() throws Exception {
+    byte[][] splits = new byte[][] {Bytes.toBytes("a"), Bytes.toBytes("b"), Bytes.toBytes("c")};
+    DatasetProperties props = DatasetProperties.builder().add("hbase.splits", new Gson().toJson(splits)).build();
+    String tableName = "parallelPersist";
+    getTableAdmin(CONTEXT1, tableName, props).create();
+    DatasetSpecification spec = DatasetSpecification.builder(tableName, HBaseTable.class.getName())
+      .properties(props.getProperties())
+      .build();
+    CConfiguration parallelConf = CConfiguration.copy(cConf);
+    parallelConf.setInt(Constants.Dataset.TABLE_HBASE_PERSIST_THREADS, 2);
+    HBaseTable table = new HBaseTable(CONTEXT1, spec, parallelConf, TEST_HBASE.getConfiguration(), hBaseTableUtil);
+
+    // Writes rows to all four regions
+    String[] rows = { "0", "a0", "a1", "b0", "c0", "c1" };
+    TransactionSystemClient txSystemClient = new DetachedTxSystemClient();
+    Transaction tx = txSystemClient.startShort();
+    table.startTx(tx);
+    for (String row : rows) {
+      table.put(b(row), b("col"), b("val" + row));
+    }
+    Assert.assertTrue(table.commitTx());
+    table.postTxCommit();
+
+    // Writes to all regions again, and then rolls back after persisting
+    tx = txSystemClient.startShort();
+    table.startTx(tx);
+    for (String row : rows) {
+      table.put(b(row), b("col"), b("new" + row));
+      table.put(b(row + "new"), b("col"), b("new" + row));
+    }
+    Assert.assertTrue(table.commitTx());
+    Assert.assertTrue(table.rollbackTx());
+
+    tx = txSystemClient.startShort();
+    table.startTx(tx);
+    for (String row : rows) {
+      Assert.assertArrayEquals(b("val" + row), table.get(b(row), b("col")));
+      Assert.assertNull(table.get(b(row + "new"), b("col")));
+    }
+    table.close();
+  }
+
   @Test
   public void testEnableIncrements() throws Exception {
     // setup a table with increments disabled and with it enabled
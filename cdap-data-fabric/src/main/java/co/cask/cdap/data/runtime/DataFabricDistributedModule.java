@@ -18,10 +18,13 @@ package co.cask.cdap.data.runtime;
 
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.transaction.DistributedTransactionSystemClientService;
 import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.data2.transaction.metrics.TransactionManagerMetricsCollector;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
+import co.cask.cdap.data2.transaction.queue.ZKQueueNotifier;
 import co.cask.cdap.data2.transaction.queue.hbase.HBaseQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.hbase.HBaseQueueClientFactory;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
@@ -39,6 +42,7 @@ import com.google.inject.Scopes;
 import com.google.inject.Singleton;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.apache.twill.zookeeper.ZKClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +62,7 @@ public class DataFabricDistributedModule extends AbstractModule {
     bind(ThriftClientProvider.class).toProvider(ThriftClientProviderSupplier.class);
     bind(QueueClientFactory.class).to(HBaseQueueClientFactory.class).in(Singleton.class);
     bind(QueueAdmin.class).to(HBaseQueueAdmin.class).in(Singleton.class);
+    bind(QueueNotifier.class).toProvider(QueueNotifierSupplier.class).in(Singleton.class);
     bind(HBaseTableUtil.class).toProvider(HBaseTableUtilFactory.class);
 
     // bind transactions
@@ -106,4 +111,34 @@ public class DataFabricDistributedModule extends AbstractModule {
       return clientProvider;
     }
   }
+
+  /**
+   * Provides implementation of {@link QueueNotifier} based on ZooKeeper. If there is no {@link ZKClient} available,
+   * enqueue notification is disabled.
+   */
+  @Singleton
+  public static final class QueueNotifierSupplier implements Provider<QueueNotifier> {
+
+    private final CConfiguration cConf;
+    private ZKClient zkClient;
+
+    @Inject
+    QueueNotifierSupplier(CConfiguration cConf) {
+      this.cConf = cConf;
+    }
+
+    @Inject(optional = true)
+    void setZKClient(ZKClient zkClient) {
+      this.zkClient = zkClient;
+    }
+
+    @Override
+    public QueueNotifier get() {
+      if (zkClient == null) {
+        return QueueNotifier.NOOP_QUEUE_NOTIFIER;
+      }
+      return new ZKQueueNotifier(zkClient, cConf.getLong(QueueConstants.ConfigKeys.NOTIFY_MIN_INTERVAL_MS,
+                                                         QueueConstants.DEFAULT_NOTIFY_MIN_INTERVAL_MS));
+    }
+  }
 }
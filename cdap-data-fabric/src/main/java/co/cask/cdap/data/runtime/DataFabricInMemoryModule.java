@@ -16,9 +16,11 @@
 package co.cask.cdap.data.runtime;
 
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.transaction.DelegatingTransactionSystemClientService;
 import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.data2.transaction.metrics.TransactionManagerMetricsCollector;
+import co.cask.cdap.data2.transaction.queue.InMemoryQueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.inmemory.InMemoryQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.inmemory.InMemoryQueueClientFactory;
@@ -38,6 +40,7 @@ public class DataFabricInMemoryModule extends AbstractModule {
     // Bind TxDs2 stuff
 
     bind(QueueClientFactory.class).to(InMemoryQueueClientFactory.class).in(Singleton.class);
+    bind(QueueNotifier.class).to(InMemoryQueueNotifier.class).in(Singleton.class);
     bind(QueueAdmin.class).to(InMemoryQueueAdmin.class).in(Singleton.class);
 
     // bind transactions
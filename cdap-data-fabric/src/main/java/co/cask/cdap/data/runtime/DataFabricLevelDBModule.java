@@ -17,9 +17,11 @@ package co.cask.cdap.data.runtime;
 
 import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.transaction.DelegatingTransactionSystemClientService;
 import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.data2.transaction.metrics.TransactionManagerMetricsCollector;
+import co.cask.cdap.data2.transaction.queue.InMemoryQueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.leveldb.LevelDBQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.leveldb.LevelDBQueueClientFactory;
@@ -39,6 +41,7 @@ public class DataFabricLevelDBModule extends AbstractModule {
     bind(LevelDBTableService.class).toInstance(LevelDBTableService.getInstance());
 
     bind(QueueClientFactory.class).to(LevelDBQueueClientFactory.class).in(Singleton.class);
+    bind(QueueNotifier.class).to(InMemoryQueueNotifier.class).in(Singleton.class);
     bind(QueueAdmin.class).to(LevelDBQueueAdmin.class).in(Singleton.class);
 
     // bind transactions
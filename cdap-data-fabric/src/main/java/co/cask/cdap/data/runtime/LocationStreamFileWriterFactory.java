@@ -58,7 +58,8 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
       Locations.mkdirsIfNotExists(baseLocation);
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
-                                                 filePrefix, config.getIndexInterval());
+                                                 filePrefix, config.getIndexInterval(),
+                                                 config.getCompressionCodec());
 
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.data.stream;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * An enum of codecs that can be used for compressing data blocks in stream event file.
+ */
+public enum StreamBlockCodec {
+
+  NONE("none") {
+    @Override
+    int maxCompressedLength(int length) {
+      return length;
+    }
+
+    @Override
+    int compress(byte[] input, int offset, int length, byte[] output) {
+      System.arraycopy(input, offset, output, 0, length);
+      return length;
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int rawLength) throws IOException {
+      if (length != rawLength) {
+        throw new IOException("Expected block of size " + rawLength + ", but got " + length);
+      }
+      System.arraycopy(input, offset, output, 0, length);
+    }
+  },
+
+  DEFLATE("deflate") {
+    @Override
+    int maxCompressedLength(int length) {
+      // Same bound as used by zlib deflateBound() plus the zlib header and trailer
+      return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+
+    @Override
+    int compress(byte[] input, int offset, int length, byte[] output) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(input, offset, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished() && size < output.length) {
+          size += deflater.deflate(output, size, output.length - size);
+        }
+        return size;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int rawLength) throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(input, offset, length);
+        int size = 0;
+        while (size < rawLength && !inflater.finished()) {
+          int len = inflater.inflate(output, size, rawLength - size);
+          if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          size += len;
+        }
+        if (size != rawLength) {
+          throw new IOException("Expected block of size " + rawLength + ", but only " + size + " was decompressed");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted compressed block", e);
+      } finally {
+        inflater.end();
+      }
+    }
+  },
+
+  SNAPPY("snappy") {
+    @Override
+    int maxCompressedLength(int length) {
+      return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    int compress(byte[] input, int offset, int length, byte[] output) throws IOException {
+      return Snappy.compress(input, offset, length, output, 0);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int rawLength) throws IOException {
+      int size = Snappy.uncompressedLength(input, offset, length);
+      if (size != rawLength) {
+        throw new IOException("Expected block of size " + rawLength + ", but got " + size);
+      }
+      Snappy.uncompress(input, offset, length, output, 0);
+    }
+  };
+
+  private final String name;
+
+  StreamBlockCodec(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of the codec as stored in the stream file properties and in the stream configuration.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the {@link StreamBlockCodec} of the given name. If the name is {@code null}, {@link #NONE} is returned.
+   *
+   * @throws IllegalArgumentException if the name is not a known codec
+   */
+  public static StreamBlockCodec fromName(@Nullable String name) {
+    if (name == null) {
+      return NONE;
+    }
+    for (StreamBlockCodec codec : values()) {
+      if (codec.name.equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported stream block codec " + name);
+  }
+
+  /**
+   * Returns the maximum number of bytes that compressing a block of the given length could produce.
+   */
+  abstract int maxCompressedLength(int length);
+
+  /**
+   * Compresses the given input into the output buffer, which must be at least
+   * {@link #maxCompressedLength(int)} in size.
+   *
+   * @return number of bytes written to the output buffer
+   */
+  abstract int compress(byte[] input, int offset, int length, byte[] output) throws IOException;
+
+  /**
+   * Decompresses the given input into the output buffer, which must be at least {@code rawLength} in size.
+   *
+   * @throws IOException if the input cannot be decompressed into exactly {@code rawLength} bytes
+   */
+  abstract void decompress(byte[] input, int offset, int length, byte[] output, int rawLength) throws IOException;
+}
@@ -289,7 +289,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
   private void readHeader() throws IOException {
     // Read the header of the event file
-    // First 2 bytes should be 'E' '1'
+    // First 2 bytes should be 'E' followed by the file version
     byte[] magic = new byte[StreamDataFileConstants.MAGIC_HEADER_SIZE];
     ByteStreams.readFully(eventInput, magic);
 
@@ -300,6 +300,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
     verifySchema(properties);
 
+    // Data blocks are compressed starting from version 3
+    if (fileVersion >= 3) {
+      streamEventBuffer.setCodec(getCodec(properties));
+    }
+
     // Create event template
     if (fileVersion >= 2) {
       eventTemplate = createEventTemplate(properties);
@@ -323,13 +328,33 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
+  /**
+   * Returns the {@link StreamBlockCodec} used for compressing data blocks as recorded in the file properties.
+   */
+  private StreamBlockCodec getCodec(Map<String, String> properties) throws IOException {
+    String codecKey = StreamDataFileConstants.Property.Key.CODEC;
+    String codecName = properties.get(codecKey);
+    if (codecName == null) {
+      throw new IOException("Missing '" + codecKey + "' property.");
+    }
+    try {
+      return StreamBlockCodec.fromName(codecName);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
   /**
    * Creates a {@link StreamEvent} that will be used as a template for all events consumable from this reader.
    */
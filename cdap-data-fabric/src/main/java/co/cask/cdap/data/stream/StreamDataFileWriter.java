@@ -32,6 +32,7 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -48,7 +49,7 @@ import javax.annotation.concurrent.NotThreadSafe;
  * {@code
  *
  * event_file = <header> <data>* <end_marker>
- * header = "E" "1" <properties>
+ * header = "E" "2" <properties>
  * properties = Avro encoded with the properties schema
  * data = <timestamp> <length> <stream_event>+
  * timestamp = 8 bytes int64 for timestamp in milliseconds
@@ -59,6 +60,27 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * Stream event file with compressed data blocks, which is written when the {@code stream.codec} property
+ * is set to a codec other than {@link StreamBlockCodec#NONE}:
+ *
+ * <pre>
+ * {@code
+ *
+ * event_file = <header> <data>* <end_marker>
+ * header = "E" "3" <properties>
+ * data = <timestamp> <length> <raw_length> <block>
+ * length = Avro encoded int32 for size in bytes for <raw_length> and <block>
+ * raw_length = Avro encoded int32 for size in bytes for all <stream_event>s before compression
+ * block = <stream_event>+ compressed with the codec, or uncompressed if its size equals to <raw_length>
+ *
+ * }
+ * </pre>
+ *
+ * Since events inside a compressed block cannot be addressed by file offset, the position of an event
+ * in a compressed block is the file offset of the <raw_length> field plus the index of the event in the block.
+ * The writer guarantees that the size of <raw_length> and <block> is at least the number of events,
+ * so that event positions never go beyond the data block.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,6 +106,10 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamBlockCodec codec;
+  private final BlockBuffer blockBuffer;
+  private final BufferedEncoder rawLengthEncoder;
+  private byte[] compressBuffer;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -92,6 +118,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private boolean synced;
   private boolean closed;
   private long closeTimestamp;
+  private int blockEventCount;
 
   /**
    * Constructs a new instance that writes to given outputs. Same as calling
@@ -110,12 +137,15 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
+   * @param properties the property set that will be stored as file properties. If it contains the
+   *                   {@link StreamDataFileConstants.Property.Key#CODEC} property, data blocks will be compressed
+   *                   with the given {@link StreamBlockCodec}
    * @throws IOException if there is an error in preparing the output streams
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
                               long indexInterval, Map<String, String> properties) throws IOException {
+    this.codec = StreamBlockCodec.fromName(properties.get(StreamDataFileConstants.Property.Key.CODEC));
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
@@ -130,6 +160,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     Function<OutputStream, Encoder> encoderFactory = createEncoderFactory();
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.rawLengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.blockBuffer = codec == StreamBlockCodec.NONE ? null : new BlockBuffer(BUFFER_SIZE);
 
     try {
       init(properties);
@@ -222,6 +254,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEventCount++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -234,11 +267,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   }
 
   private void init(Map<String, String> properties) throws IOException {
-    // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
-
+    // Writes the header for event file. Only use the new file version if data blocks are compressed,
+    // so that uncompressed files remain readable by older readers.
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
+    if (codec == StreamBlockCodec.NONE) {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+      headers.remove(StreamDataFileConstants.Property.Key.CODEC);
+    } else {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V3);
+      headers.put(StreamDataFileConstants.Property.Key.CODEC, codec.getName());
+    }
     StreamUtils.encodeMap(headers, encoder);
 
     long headerSize = encoder.size();
@@ -278,16 +317,22 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
+    if (codec == StreamBlockCodec.NONE) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
+    blockEventCount = 0;
 
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +355,38 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Compresses the buffered data and writes it as a data block to the underlying output stream.
+   */
+  private void writeCompressedBlock() throws IOException {
+    blockBuffer.reset();
+    encoder.writeTo(blockBuffer);
+
+    int rawSize = blockBuffer.size();
+    rawLengthEncoder.writeInt(rawSize);
+
+    if (compressBuffer == null || compressBuffer.length < codec.maxCompressedLength(rawSize)) {
+      compressBuffer = new byte[codec.maxCompressedLength(rawSize)];
+    }
+    int compressedSize = codec.compress(blockBuffer.getBuffer(), 0, rawSize, compressBuffer);
+
+    // Store the block uncompressed if compression doesn't help, or if the block would be smaller than
+    // the number of events in it, since event positions are allocated from the bytes in the block.
+    byte[] block = compressBuffer;
+    int blockSize = compressedSize;
+    if (compressedSize >= rawSize || rawLengthEncoder.size() + compressedSize < blockEventCount) {
+      block = blockBuffer.getBuffer();
+      blockSize = rawSize;
+    }
+
+    lengthEncoder.writeInt(rawLengthEncoder.size() + blockSize);
+    int size = lengthEncoder.size() + rawLengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    rawLengthEncoder.writeTo(eventOutput);
+    eventOutput.write(block, 0, blockSize);
+    position += size + blockSize;
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -329,6 +406,20 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     throw ex;
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its internal buffer to avoid copying before compression.
+   */
+  private static final class BlockBuffer extends ByteArrayOutputStream {
+
+    BlockBuffer(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
   private static Function<OutputStream, Encoder> createEncoderFactory() {
     return new Function<OutputStream, Encoder>() {
       @Override
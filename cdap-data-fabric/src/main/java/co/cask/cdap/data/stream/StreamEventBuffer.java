@@ -43,11 +43,27 @@ final class StreamEventBuffer {
   private ByteBuffer buffer;
   private long basePosition;
 
+  // Fields for handling compressed data blocks
+  private StreamBlockCodec codec;
+  private byte[] blockBuffer;
+  private long endPosition;
+  private int eventIndex;
+
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
     this.basePosition = -1L;
+    this.codec = StreamBlockCodec.NONE;
+  }
+
+  /**
+   * Sets the {@link StreamBlockCodec} for decoding data blocks filled into this buffer. If the codec is not
+   * {@link StreamBlockCodec#NONE}, each data block is expected to be in the compressed block format as
+   * described in {@link StreamDataFileWriter}.
+   */
+  void setCodec(StreamBlockCodec codec) {
+    this.codec = codec;
   }
 
   /**
@@ -60,19 +76,19 @@ final class StreamEventBuffer {
    */
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
     buffer.clear();
-    buffer = ensureCapacity(buffer, size);
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
+      endPosition = basePosition + size;
+      eventIndex = 0;
+
+      if (codec == StreamBlockCodec.NONE) {
+        buffer = ensureCapacity(buffer, size);
+        readFully(input, buffer.array(), size);
+        buffer.limit(size);
+      } else {
+        fillCompressedBuffer(input, size);
       }
-      buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
       // Make the buffer has nothing to read
@@ -94,7 +110,14 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (codec == StreamBlockCodec.NONE) {
+      return basePosition + buffer.position();
+    }
+    // For compressed block, position is based on the event index within the block.
+    return buffer.hasRemaining() ? basePosition + eventIndex : endPosition;
   }
 
   /**
@@ -102,7 +125,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return codec == StreamBlockCodec.NONE ? basePosition + buffer.limit() : endPosition;
   }
 
   /**
@@ -120,7 +146,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +155,44 @@ final class StreamEventBuffer {
     return null;
   }
 
+  /**
+   * Reads a compressed data block of the given size from the input and decompresses it into the buffer.
+   */
+  private void fillCompressedBuffer(SeekableInputStream input, int size) throws IOException {
+    if (blockBuffer == null || blockBuffer.length < size) {
+      blockBuffer = new byte[size];
+    }
+    readFully(input, blockBuffer, size);
+
+    // The block starts with the uncompressed size, followed by the block content
+    ByteBuffer block = ByteBuffer.wrap(blockBuffer, 0, size);
+    int rawSize = new BinaryDecoder(new ByteBufferInputStream(block)).readInt();
+    int offset = block.position();
+    int blockSize = size - offset;
+
+    buffer = ensureCapacity(buffer, rawSize);
+    if (rawSize == blockSize) {
+      System.arraycopy(blockBuffer, offset, buffer.array(), 0, rawSize);
+    } else {
+      codec.decompress(blockBuffer, offset, blockSize, buffer.array(), rawSize);
+    }
+    buffer.limit(rawSize);
+  }
+
+  /**
+   * Reads exactly the given number of bytes from the input into the given array.
+   */
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
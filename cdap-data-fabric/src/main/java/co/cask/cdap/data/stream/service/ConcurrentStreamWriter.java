@@ -52,8 +52,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -74,13 +76,19 @@ import javax.annotation.concurrent.ThreadSafe;
  *    the queue is empty.
  * 5. Perform a writer flush to make sure all data written are persisted.
  * 6. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the StreamEventData enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 7. Set the AtomicBoolean flag back to false, and hand the writing over to the threads of events still in the queue.
+ * 8. If failed to set the flag in step 2, block until the StreamEventData enqueued by this thread is COMPLETED or
+ *    the writing is handed over to this thread.
+ * 9. If the StreamEventData enqueued by this thread is NOT COMPLETED, go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The hand over in step 7 is necessary as it guarantees events enqueued by all threads would eventually get written
+ * and flushed, including those enqueued after the writer polled the queue for the last time.
  *
+ * Optionally, a group commit window can be set. In step 4, when the queue is empty, the writer keeps polling for new
+ * events until the window latency passed since it became the writer, or the bytes written reached the window size.
+ * This coalesces more requests into one flush, at the cost of latency. Requests are still only completed after the
+ * flush.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
@@ -96,10 +104,26 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final Set<Id.Stream> generationWatched;
   private final List<Cancellable> cancellables;
   private final Lock createLock;
+  private final long groupCommitLatencyNanos;
+  private final long groupCommitBytes;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, metricsCollectorFactory, 0L, 0L);
+  }
+
+  /**
+   * Creates an instance with group commit.
+   *
+   * @param groupCommitLatencyMicros maximum time in microseconds to wait for more requests before flushing;
+   *                                 {@code 0} to disable group commit
+   * @param groupCommitBytes number of bytes written that triggers flushing without waiting for the latency
+   */
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads,
+                         StreamMetricsCollectorFactory metricsCollectorFactory,
+                         long groupCommitLatencyMicros, long groupCommitBytes) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
@@ -109,6 +133,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     this.generationWatched = Sets.newHashSet();
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
+    this.groupCommitLatencyNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitLatencyMicros);
+    this.groupCommitBytes = groupCommitBytes;
   }
 
   public void close(Id.Stream streamId) throws IOException, NotFoundException {
@@ -264,8 +290,10 @@ public final class ConcurrentStreamWriter implements Closeable {
   private void persistUntilCompleted(Id.Stream streamId, EventQueue eventQueue, WriteRequest request)
     throws IOException {
     while (!request.isCompleted()) {
+      request.clearHandOver();
       if (!eventQueue.tryWrite()) {
-        Thread.yield();
+        // Another thread is the writer, which either completes the request or hands the writing over
+        request.awaitCompletion();
       }
     }
     if (!request.isSuccess()) {
@@ -382,6 +410,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final Function<StreamEventData, StreamEvent> eventTransformer;
     private FileWriter<StreamEventData> fileWriter;
     private boolean closed;
+    // The writer leader thread while it is waiting for more requests to join the group commit
+    private volatile Thread waitingWriter;
 
     EventQueue(Id.Stream streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
       this.streamId = streamId;
@@ -408,6 +438,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Map<String, String> headers, ByteBuffer body) {
       WriteRequest request = new SingleWriteRequest(headers, body);
       queue.add(request);
+      wakeupWriter();
       return request;
     }
 
@@ -421,9 +452,36 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Iterator<? extends StreamEventData> events) {
       WriteRequest request = new BatchWriteRequest(events);
       queue.add(request);
+      wakeupWriter();
       return request;
     }
 
+    /**
+     * Wakes up the writer leader if it is waiting for more requests.
+     */
+    private void wakeupWriter() {
+      Thread writer = waitingWriter;
+      if (writer != null) {
+        LockSupport.unpark(writer);
+      }
+    }
+
+    /**
+     * Blocks the writer leader until a new request is added to the queue or the given deadline is reached.
+     */
+    private void awaitRequest(long deadlineNanos) {
+      waitingWriter = Thread.currentThread();
+      try {
+        // Check the queue after publishing the waiting thread, so that a request added before that is not missed.
+        // A request added after that will unpark this thread.
+        if (queue.peek() == null) {
+          LockSupport.parkNanos(this, deadlineNanos - System.nanoTime());
+        }
+      } finally {
+        waitingWriter = null;
+      }
+    }
+
     /**
      * Attempts to append a file to the stream.
      *
@@ -455,7 +513,7 @@ public final class ConcurrentStreamWriter implements Closeable {
         fileSize = eventFile.length();
         streamFileFactory.appendFile(streamConfig, eventFile, indexFile, timestampCloseable.getCloseTimestamp());
       } finally {
-        writerFlag.set(false);
+        releaseWriter();
       }
 
       metricsCollector.emitMetrics(fileSize, eventCount);
@@ -470,6 +528,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     boolean tryWrite() {
       int bytesWritten = 0;
       int eventsWritten = 0;
+      int requestsWritten = 0;
+      long syncLatencyNanos = 0L;
 
       if (!writerFlag.compareAndSet(false, true)) {
         return false;
@@ -483,17 +543,29 @@ public final class ConcurrentStreamWriter implements Closeable {
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
+          long groupCommitDeadline = System.nanoTime() + groupCommitLatencyNanos;
           streamEvent.setTimestamp(System.currentTimeMillis());
-          while (request != null) {
-            processQueue.add(request);
-            request.write(writer, metrics);
-            request = queue.poll();
+          while (true) {
+            WriteRequest request = queue.poll();
+            if (request != null) {
+              processQueue.add(request);
+              request.write(writer, metrics);
+              continue;
+            }
+            // Wait for more requests to join this flush if the group commit window is not yet closed
+            if (processQueue.isEmpty() || groupCommitLatencyNanos <= 0 || metrics.bytesWritten >= groupCommitBytes
+              || System.nanoTime() >= groupCommitDeadline) {
+              break;
+            }
+            awaitRequest(groupCommitDeadline);
           }
+          long syncStartTime = System.nanoTime();
           writer.flush();
+          syncLatencyNanos = System.nanoTime() - syncStartTime;
           for (WriteRequest processed : processQueue) {
             processed.completed(null);
           }
+          requestsWritten = processQueue.size();
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
         } catch (Throwable t) {
@@ -506,13 +578,27 @@ public final class ConcurrentStreamWriter implements Closeable {
           }
         }
       } finally {
-        writerFlag.set(false);
+        releaseWriter();
       }
 
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
+      if (requestsWritten > 0) {
+        metricsCollector.emitFlushMetrics(requestsWritten, TimeUnit.NANOSECONDS.toMicros(syncLatencyNanos));
+      }
       return true;
     }
 
+    /**
+     * Releases the writer flag and hands the writing over to the threads of the requests in the queue. Those may
+     * have failed to become the writer while this thread was, after it polled the queue for the last time.
+     */
+    private void releaseWriter() {
+      writerFlag.set(false);
+      for (WriteRequest request : queue) {
+        request.handOver();
+      }
+    }
+
     /**
      * Returns the current {@link FileWriter}. A new {@link FileWriter} will be created
      * if none existed yet. This method should only be called from the writer leader thread.
@@ -542,7 +628,7 @@ public final class ConcurrentStreamWriter implements Closeable {
           doClose();
         } finally {
           done = true;
-          writerFlag.set(false);
+          releaseWriter();
         }
       }
     }
@@ -591,8 +677,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
     }
 
-    private State state = State.PENDING;
+    private volatile State state = State.PENDING;
     private Throwable failure;
+    private volatile boolean handedOver;
+    // The thread blocked in awaitCompletion
+    private volatile Thread waiter;
 
     boolean isCompleted() {
       return state != State.PENDING;
@@ -603,8 +692,50 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
 
     void completed(Throwable failure) {
-      this.state = State.COMPLETED;
+      // The failure is visible to threads that see the state change
       this.failure = failure;
+      this.state = State.COMPLETED;
+      wakeup();
+    }
+
+    /**
+     * Tells the thread of this request to try becoming the writer, since the writer finished without completing it.
+     */
+    void handOver() {
+      handedOver = true;
+      wakeup();
+    }
+
+    void clearHandOver() {
+      handedOver = false;
+    }
+
+    /**
+     * Blocks until this request is completed or the writing is handed over to the calling thread.
+     */
+    void awaitCompletion() {
+      boolean interrupted = false;
+      waiter = Thread.currentThread();
+      try {
+        // Check after publishing the waiting thread, so that a completion or hand over before that is not missed.
+        // One after that will unpark this thread.
+        while (!isCompleted() && !handedOver) {
+          LockSupport.park(this);
+          interrupted |= Thread.interrupted();
+        }
+      } finally {
+        waiter = null;
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void wakeup() {
+      Thread thread = waiter;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
     }
 
     Throwable getFailure() {
@@ -21,11 +21,13 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsDistribution;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.namespace.AbstractNamespaceClient;
+import co.cask.cdap.data.stream.StreamBlockCodec;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.service.upload.ContentWriterFactory;
@@ -135,7 +137,9 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
-                                                   metricsCollectorFactory);
+                                                   metricsCollectorFactory,
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_MAX_LATENCY_US),
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_MAX_BYTES));
     this.namespaceClient = namespaceClient;
   }
 
@@ -217,6 +221,10 @@ public final class StreamHandler extends AbstractHttpHandler {
       if (streamProperties.getFormat() != null) {
         props.put(Constants.Stream.FORMAT_SPECIFICATION, GSON.toJson(streamProperties.getFormat()));
       }
+
+      if (streamProperties.getCompressionCodec() != null) {
+        props.put(Constants.Stream.COMPRESSION_CODEC, streamProperties.getCompressionCodec());
+      }
     }
 
     streamAdmin.create(streamId, props);
@@ -326,6 +334,8 @@ public final class StreamHandler extends AbstractHttpHandler {
         MetricsContext streamMetricsContext = streamMetricsCollectors.getUnchecked(streamId.getNamespace());
         final MetricsContext childCollector =
           streamMetricsContext.childContext(Constants.Metrics.Tag.STREAM, streamId.getId());
+        final MetricsDistribution flushRequests = childCollector.getDistribution("collect.flush.requests");
+        final MetricsDistribution flushLatency = childCollector.getDistribution("collect.flush.latency.us");
         return new StreamMetricsCollector() {
           @Override
           public void emitMetrics(long bytesWritten, long eventsWritten) {
@@ -337,6 +347,12 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitFlushMetrics(int requests, long syncLatencyMicros) {
+            flushRequests.record(requests);
+            flushLatency.record(syncLatencyMicros);
+          }
         };
       }
     };
@@ -412,7 +428,18 @@ public final class StreamHandler extends AbstractHttpHandler {
       return null;
     }
 
-    return new StreamProperties(ttl, formatSpec, threshold, properties.getDescription());
+    // Validate compression codec
+    String codec = properties.getCompressionCodec();
+    if (codec != null) {
+      try {
+        codec = StreamBlockCodec.fromName(codec).getName();
+      } catch (IllegalArgumentException e) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, "Unsupported compression codec " + codec);
+        return null;
+      }
+    }
+
+    return new StreamProperties(ttl, formatSpec, threshold, properties.getDescription(), codec);
   }
 
   private RejectedExecutionHandler createAsyncRejectedExecutionHandler() {
@@ -485,6 +512,9 @@ public final class StreamHandler extends AbstractHttpHandler {
       if (src.getDescription() != null) {
         json.addProperty("description", src.getDescription());
       }
+      if (src.getCompressionCodec() != null) {
+        json.addProperty("compression.codec", src.getCompressionCodec());
+      }
       return json;
     }
 
@@ -503,7 +533,8 @@ public final class StreamHandler extends AbstractHttpHandler {
         jsonObj.get("notification.threshold.mb").getAsInt() : null;
 
       String description = jsonObj.has("description") ? jsonObj.get("description").getAsString() : null;
-      return new StreamProperties(ttl, format, threshold, description);
+      String codec = jsonObj.has("compression.codec") ? jsonObj.get("compression.codec").getAsString() : null;
+      return new StreamProperties(ttl, format, threshold, description, codec);
     }
   }
 }
@@ -35,6 +35,14 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit metrics about one flush of the stream writer.
+     *
+     * @param requests number of write requests persisted by the flush
+     * @param syncLatencyMicros time in microseconds taken by the flush
+     */
+    void emitFlushMetrics(int requests, long syncLatencyMicros);
   }
 
   /**
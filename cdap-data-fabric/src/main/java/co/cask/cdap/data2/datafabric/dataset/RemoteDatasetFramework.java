@@ -24,6 +24,10 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.module.DatasetDefinitionRegistry;
 import co.cask.cdap.api.dataset.module.DatasetModule;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
@@ -41,13 +45,18 @@ import co.cask.cdap.proto.DatasetTypeMeta;
 import co.cask.cdap.proto.Id;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.internal.ApplicationBundler;
@@ -59,23 +68,39 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import javax.annotation.Nullable;
 
 /**
- * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service
+ * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service.
+ *
+ * Instance metadata fetched for instantiating datasets, and the {@link DatasetType}s created from it, are cached
+ * for {@link Constants.Dataset#CLIENT_CACHE_TTL_SECS} seconds. Changes made through this framework invalidate the
+ * cache right away. It is a singleton, so that the cache is shared by everything in the process using it.
  */
+@Singleton
 @SuppressWarnings("unchecked")
 public class RemoteDatasetFramework implements DatasetFramework {
   private static final Logger LOG = LoggerFactory.getLogger(RemoteDatasetFramework.class);
+  private static final int MAX_CACHE_SIZE = 1000;
 
   private final CConfiguration cConf;
   private final LoadingCache<Id.Namespace, DatasetServiceClient> clientCache;
   private final DatasetDefinitionRegistryFactory registryFactory;
+  // Both caches are null if caching is disabled
+  private final Cache<MetaKey, DatasetMeta> metaCache;
+  private final Cache<TypeKey, DatasetType> typeCache;
+  // Incremented on every invalidation, so that metadata fetched before it is not put into the cache
+  private final AtomicLong cacheGeneration = new AtomicLong();
+  private volatile MetricsCollectionService metricsCollectionService;
+  private volatile CacheMetrics cacheMetrics;
 
   @Inject
   public RemoteDatasetFramework(final CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
@@ -88,6 +113,47 @@ public class RemoteDatasetFramework implements DatasetFramework {
       }
     });
     this.registryFactory = registryFactory;
+
+    long cacheTTLSecs = cConf.getLong(Constants.Dataset.CLIENT_CACHE_TTL_SECS, 0L);
+    if (cacheTTLSecs > 0) {
+      this.metaCache = CacheBuilder.newBuilder()
+        .expireAfterWrite(cacheTTLSecs, TimeUnit.SECONDS)
+        .maximumSize(MAX_CACHE_SIZE)
+        .build();
+      // Types only depend on the modules in the key, hence they are kept for as long as they are used. Expiring them
+      // releases the classloaders of finished program runs.
+      this.typeCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(cacheTTLSecs, TimeUnit.SECONDS)
+        .maximumSize(MAX_CACHE_SIZE)
+        .build();
+    } else {
+      this.metaCache = null;
+      this.typeCache = null;
+    }
+  }
+
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting the hits and misses of the metadata and type caches.
+   * A metadata cache hit is a call to the dataset service avoided. No metrics are emitted if it is not set.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // The metrics context is created on first use, since the metrics collection service may depend on this class
+    this.metricsCollectionService = metricsCollectionService;
+    this.cacheMetrics = null;
+  }
+
+  private CacheMetrics getCacheMetrics() {
+    CacheMetrics metrics = cacheMetrics;
+    if (metrics == null) {
+      MetricsCollectionService metricsService = metricsCollectionService;
+      metrics = new CacheMetrics(metricsService == null ? new NoopMetricsContext() : metricsService.getContext(
+        ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+                        Constants.Metrics.Tag.COMPONENT, Constants.Service.DATASET_MANAGER)));
+      cacheMetrics = metrics;
+    }
+    return metrics;
   }
 
   @Override
@@ -98,6 +164,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
       try {
         clientCache.getUnchecked(moduleId.getNamespace())
           .addModule(moduleId.getId(), moduleClass.getName(), deploymentJar);
+        invalidateCaches();
       } finally {
         try {
           deploymentJar.delete();
@@ -119,16 +186,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
                         Location jarLocation) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace())
       .addModule(moduleId.getId(), DatasetModules.getDatasetModuleClass(module).getName(), jarLocation);
+    invalidateCaches();
   }
 
   @Override
   public void deleteModule(Id.DatasetModule moduleId) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace()).deleteModule(moduleId.getId());
+    invalidateCaches();
   }
 
   @Override
   public void deleteAllModules(Id.Namespace namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteModules();
+    invalidateCaches();
   }
 
   @Override
@@ -136,6 +206,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .addInstance(datasetInstanceId.getId(), datasetType, props);
+    invalidateCaches();
   }
 
   @Override
@@ -143,6 +214,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .updateInstance(datasetInstanceId.getId(), props);
+    invalidateCaches();
   }
 
   @Override
@@ -182,6 +254,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace()).deleteInstance(datasetInstanceId.getId());
+    invalidateCaches();
   }
 
   @Override
@@ -205,13 +278,12 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                              @Nullable ClassLoader parentClassLoader,
                                              DatasetClassLoaderProvider classLoaderProvider)
     throws DatasetManagementException, IOException {
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta instanceInfo = getCachedInstance(datasetInstanceId, null);
     if (instanceInfo == null) {
       return null;
     }
 
-    DatasetType type = getType(instanceInfo.getType(), parentClassLoader, classLoaderProvider);
+    DatasetType type = getCachedType(instanceInfo.getType(), parentClassLoader, classLoaderProvider);
     return (T) type.getAdmin(DatasetContext.from(datasetInstanceId.getNamespaceId()), instanceInfo.getSpec());
   }
 
@@ -251,12 +323,12 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                           @Nullable Iterable<? extends Id> owners, AccessType accessType)
     throws DatasetManagementException, IOException {
 
-    DatasetMeta datasetMeta = clientCache.getUnchecked(id.getNamespace()).getInstance(id.getId(), owners);
+    DatasetMeta datasetMeta = getCachedInstance(id, owners);
     if (datasetMeta == null) {
       return null;
     }
 
-    DatasetType type = getType(datasetMeta.getType(), classLoader, classLoaderProvider);
+    DatasetType type = getCachedType(datasetMeta.getType(), classLoader, classLoaderProvider);
     return (T) type.getDataset(DatasetContext.from(id.getNamespaceId()), datasetMeta.getSpec(), arguments);
   }
 
@@ -273,6 +345,75 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteNamespace(Id.Namespace namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteNamespace();
+    invalidateCaches();
+  }
+
+  /**
+   * Returns the metadata of the given dataset instance, from the cache if possible. Instances that don't exist
+   * are not cached. The owners are part of the cache key, so that the dataset service still records every
+   * new owner of the instance.
+   */
+  @Nullable
+  private DatasetMeta getCachedInstance(Id.DatasetInstance id,
+                                        @Nullable Iterable<? extends Id> owners) throws DatasetManagementException {
+    DatasetServiceClient client = clientCache.getUnchecked(id.getNamespace());
+    if (metaCache == null) {
+      return client.getInstance(id.getId(), owners);
+    }
+
+    MetaKey key = new MetaKey(id, owners);
+    DatasetMeta meta = metaCache.getIfPresent(key);
+    if (meta != null) {
+      getCacheMetrics().metaHits.increment(1);
+      return meta;
+    }
+    getCacheMetrics().metaMisses.increment(1);
+
+    long generation = cacheGeneration.get();
+    meta = client.getInstance(id.getId(), owners);
+    if (meta != null) {
+      metaCache.put(key, meta);
+      // If there was an invalidation during the call, the result may be stale already
+      if (generation != cacheGeneration.get()) {
+        metaCache.invalidate(key);
+      }
+    }
+    return meta;
+  }
+
+  /**
+   * Returns the {@link DatasetType} for the given type metadata, from the cache if possible.
+   */
+  private DatasetType getCachedType(DatasetTypeMeta datasetTypeMeta,
+                                    @Nullable ClassLoader classLoader,
+                                    DatasetClassLoaderProvider classLoaderProvider) {
+    if (typeCache == null) {
+      return getType(datasetTypeMeta, classLoader, classLoaderProvider);
+    }
+    if (classLoader == null) {
+      classLoader = Objects.firstNonNull(Thread.currentThread().getContextClassLoader(), getClass().getClassLoader());
+    }
+
+    TypeKey key = new TypeKey(datasetTypeMeta, classLoader, classLoaderProvider);
+    DatasetType type = typeCache.getIfPresent(key);
+    if (type != null) {
+      getCacheMetrics().typeHits.increment(1);
+      return type;
+    }
+    getCacheMetrics().typeMisses.increment(1);
+
+    type = getType(datasetTypeMeta, classLoader, classLoaderProvider);
+    typeCache.put(key, type);
+    return type;
+  }
+
+  private void invalidateCaches() {
+    if (metaCache == null) {
+      return;
+    }
+    cacheGeneration.incrementAndGet();
+    metaCache.invalidateAll();
+    typeCache.invalidateAll();
   }
 
   private Location createDeploymentJar(Class<?> clz) throws IOException {
@@ -426,4 +567,92 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // for that last module.
     return (T) new DatasetType(registry.get(datasetTypeMeta.getName()), classLoader);
   }
+
+  /**
+   * Counters for the hits and misses of the metadata and type caches.
+   */
+  private static final class CacheMetrics {
+    private final MetricsCounter metaHits;
+    private final MetricsCounter metaMisses;
+    private final MetricsCounter typeHits;
+    private final MetricsCounter typeMisses;
+
+    CacheMetrics(MetricsContext metricsContext) {
+      this.metaHits = metricsContext.getCounter("dataset.meta.cache.hits");
+      this.metaMisses = metricsContext.getCounter("dataset.meta.cache.misses");
+      this.typeHits = metricsContext.getCounter("dataset.type.cache.hits");
+      this.typeMisses = metricsContext.getCounter("dataset.type.cache.misses");
+    }
+  }
+
+  /**
+   * Key of the dataset instance metadata cache.
+   */
+  private static final class MetaKey {
+    private final Id.DatasetInstance instanceId;
+    private final Set<Id> owners;
+
+    MetaKey(Id.DatasetInstance instanceId, @Nullable Iterable<? extends Id> owners) {
+      this.instanceId = instanceId;
+      this.owners = owners == null ? ImmutableSet.<Id>of() : ImmutableSet.<Id>copyOf(owners);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      MetaKey other = (MetaKey) o;
+      return instanceId.equals(other.instanceId) && owners.equals(other.owners);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(instanceId, owners);
+    }
+  }
+
+  /**
+   * Key of the {@link DatasetType} cache. Types are the same if they are created from the same modules, with the
+   * same parent classloader and equal {@link DatasetClassLoaderProvider}s.
+   */
+  private static final class TypeKey {
+    private final String typeName;
+    private final List<Object> modules;
+    private final ClassLoader classLoader;
+    private final DatasetClassLoaderProvider classLoaderProvider;
+
+    TypeKey(DatasetTypeMeta typeMeta, ClassLoader classLoader, DatasetClassLoaderProvider classLoaderProvider) {
+      this.typeName = typeMeta.getName();
+      this.modules = Lists.newArrayList();
+      for (DatasetModuleMeta moduleMeta : typeMeta.getModules()) {
+        modules.add(moduleMeta.getName());
+        modules.add(moduleMeta.getClassName());
+        modules.add(moduleMeta.getJarLocation());
+      }
+      this.classLoader = classLoader;
+      this.classLoaderProvider = classLoaderProvider;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      TypeKey other = (TypeKey) o;
+      return typeName.equals(other.typeName) && modules.equals(other.modules)
+        && classLoader == other.classLoader && classLoaderProvider.equals(other.classLoaderProvider);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(typeName, modules, System.identityHashCode(classLoader), classLoaderProvider);
+    }
+  }
 }
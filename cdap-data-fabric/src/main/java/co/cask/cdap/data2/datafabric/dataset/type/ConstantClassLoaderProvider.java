@@ -55,4 +55,21 @@ public class ConstantClassLoaderProvider implements DatasetClassLoaderProvider {
     // a dataset. Even though this provider can be closed, the program may not be finished and may still need
     // the classloader to load new classes later on.
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    // Providers of the same classloader are interchangeable
+    return classLoader == ((ConstantClassLoaderProvider) o).classLoader;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(classLoader);
+  }
 }
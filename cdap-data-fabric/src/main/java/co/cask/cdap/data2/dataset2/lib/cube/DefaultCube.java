@@ -27,11 +27,13 @@ import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
-import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
@@ -47,10 +49,18 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -62,6 +72,8 @@ public class DefaultCube implements Cube {
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
   // hard-limit on max records to scan
   private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
+  // max number of time series selected by a series limit that are read with a scan per time series
+  private static final int MAX_SERIES_TO_SCAN_SEPARATELY = 100;
 
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
@@ -69,6 +81,10 @@ public class DefaultCube implements Cube {
 
   @Nullable
   private MetricsCollector metrics;
+  @Nullable
+  private FactScanCache scanCache;
+  @Nullable
+  private FactRollup rollup;
 
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
@@ -90,7 +106,9 @@ public class DefaultCube implements Cube {
   public void add(Collection<? extends CubeFact> facts) {
     List<Fact> toWrite = Lists.newArrayList();
     int dimValuesCount = 0;
+    long minTimestamp = Long.MAX_VALUE;
     for (CubeFact fact : facts) {
+      minTimestamp = Math.min(minTimestamp, fact.getTimestamp());
       for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
         Aggregation agg = aggEntry.getValue();
         AggregationAlias aggregationAlias = null;
@@ -112,15 +130,27 @@ public class DefaultCube implements Cube {
       }
     }
 
-    for (FactTable table : resolutionToFactTable.values()) {
-      table.add(toWrite);
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    int addedCount = 0;
+    if (rollup != null) {
+      rollup.recordGauges(toWrite);
+    }
+    for (Map.Entry<Integer, FactTable> entry : resolutionToFactTable.entrySet()) {
+      List<Fact> tableFacts = rollup == null ? toWrite : rollup.getFactsToWrite(entry.getKey(), toWrite, now);
+      if (!tableFacts.isEmpty()) {
+        entry.getValue().add(tableFacts);
+        addedCount += tableFacts.size();
+      }
+    }
+    if (scanCache != null) {
+      scanCache.invalidate(minTimestamp, now);
     }
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
     incrementMetric("cube.cubeFact.added.count", facts.size());
     incrementMetric("cube.tsFact.created.count", toWrite.size());
     incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+    incrementMetric("cube.tsFact.added.count", addedCount);
   }
 
   @Override
@@ -208,18 +238,210 @@ public class DefaultCube implements Cube {
 
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Collection<TimeSeries> timeSeries;
+    if (query.getSeriesLimit() > 0) {
+      timeSeries = queryTopTimeSeries(query, table, aggName, scan);
+    } else {
+      Table<Map<String, String>, String, Map<Long, Long>> resultMap =
+        getTimeSeries(query, scan(table, aggName, query.getResolution(), scan), null);
+      incrementMetric("cube.query.result.size", resultMap.size());
+      timeSeries = convertToQueryResult(query, resultMap);
+    }
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
-
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
 
     return timeSeries;
   }
 
+  private Iterator<FactScanResult> scan(FactTable table, String aggName, int resolution, FactScan scan) {
+    return scanCache == null ? table.scan(scan) :
+      scanCache.scan(table, aggName, resolution, scan, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  /**
+   * Executes a query with a limit on the number of time series. The values of every time series are first aggregated
+   * into a single value while scanning, and the time series with the largest values are selected with a bounded heap
+   * per measure. If the scan returns a single row per time series, that is, it covers a single timebase and every
+   * dimension is either grouped by or fixed, each row is offered to the heaps as it is scanned, so that only the
+   * selected time series are held in memory. Otherwise rows of a time series are spread over the scan, and a value
+   * per time series is held until the scan completes. The time values of the selected time series are then read by
+   * a scan per time series, narrowed down to the measure and dimension values of the time series, or by a second full
+   * scan if many time series are selected. No scan is needed if every selected time series has a single time value,
+   * as with the totals resolution, since the aggregated value is the time value.
+   */
+  private Collection<TimeSeries> queryTopTimeSeries(CubeQuery query, FactTable table, String aggName, FactScan scan) {
+    boolean rowPerSeries = table.isSingleTimeBase(scan);
+    for (DimensionValue dimensionValue : scan.getDimensionValues()) {
+      rowPerSeries &= dimensionValue.getValue() != null
+        || query.getGroupByDimensions().contains(dimensionValue.getName());
+    }
+
+    // measure -> time series with the smallest value at the head
+    Map<String, PriorityQueue<SeriesValue>> topSeries = Maps.newHashMap();
+    // {dimension values, measure} -> aggregated value, only used if rows of a time series are spread over the scan
+    Map<ImmutablePair<Map<String, String>, String>, SeriesValue> seriesValues = Maps.newHashMap();
+    int seriesCount = 0;
+    Iterator<FactScanResult> scanner = scan(table, aggName, query.getResolution(), scan);
+    int count = 0;
+    while (scanner.hasNext()) {
+      FactScanResult next = scanner.next();
+      incrementMetric("cube.query.scan.records.count", 1);
+      Map<String, String> seriesDimensions = getSeriesDimensions(query, next);
+      if (seriesDimensions == null) {
+        incrementMetric("cube.query.scan.skipped.count", 1);
+        continue;
+      }
+
+      SeriesValue seriesValue = null;
+      AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
+      for (TimeValue timeValue : next) {
+        if (seriesValue == null) {
+          ImmutablePair<Map<String, String>, String> key = new ImmutablePair<>(seriesDimensions, next.getMeasureName());
+          seriesValue = rowPerSeries ? null : seriesValues.get(key);
+          if (seriesValue == null) {
+            seriesValue = new SeriesValue(key, function);
+            seriesCount++;
+            if (!rowPerSeries) {
+              seriesValues.put(key, seriesValue);
+            }
+          }
+        }
+        seriesValue.add(timeValue);
+      }
+      if (rowPerSeries && seriesValue != null) {
+        offerSeries(topSeries, seriesValue, query.getSeriesLimit());
+      }
+      if (++count >= MAX_RECORDS_TO_SCAN) {
+        break;
+      }
+    }
+    incrementMetric("cube.query.result.size", seriesCount);
+
+    for (SeriesValue seriesValue : seriesValues.values()) {
+      offerSeries(topSeries, seriesValue, query.getSeriesLimit());
+    }
+
+    // all selected time series, with the largest value first
+    List<SeriesValue> selected = Lists.newArrayList();
+    boolean singleTimeValue = true;
+    for (PriorityQueue<SeriesValue> heap : topSeries.values()) {
+      for (SeriesValue seriesValue : heap) {
+        selected.add(seriesValue);
+        singleTimeValue &= seriesValue.singleTimestamp;
+      }
+    }
+    Collections.sort(selected, Collections.reverseOrder());
+
+    final Map<ImmutablePair<Map<String, String>, String>, Integer> ranks = Maps.newHashMap();
+    Table<Map<String, String>, String, Map<Long, Long>> resultMap = HashBasedTable.create();
+    for (SeriesValue seriesValue : selected) {
+      ranks.put(seriesValue.key, ranks.size());
+      if (singleTimeValue) {
+        Map<Long, Long> timeValues = Maps.newHashMap();
+        timeValues.put(seriesValue.timestamp, seriesValue.value);
+        resultMap.put(seriesValue.key.getFirst(), seriesValue.key.getSecond(), timeValues);
+      }
+    }
+    if (!singleTimeValue && selected.size() <= MAX_SERIES_TO_SCAN_SEPARATELY) {
+      // the fact table skips over the rows of other time series using the fuzzy row filter of the narrowed scan
+      for (SeriesValue seriesValue : selected) {
+        FactScan seriesScan = getSeriesScan(scan, seriesValue.key);
+        resultMap.putAll(getTimeSeries(query, scan(table, aggName, query.getResolution(), seriesScan),
+                                       Collections.singleton(seriesValue.key)));
+      }
+    } else if (!singleTimeValue) {
+      resultMap = getTimeSeries(query, scan(table, aggName, query.getResolution(), scan), ranks.keySet());
+    }
+
+    List<TimeSeries> result = convertToQueryResult(query, resultMap);
+    Collections.sort(result, new Comparator<TimeSeries>() {
+      @Override
+      public int compare(TimeSeries o1, TimeSeries o2) {
+        return Integer.compare(ranks.get(new ImmutablePair<>(o1.getDimensionValues(), o1.getMeasureName())),
+                               ranks.get(new ImmutablePair<>(o2.getDimensionValues(), o2.getMeasureName())));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Adds the given time series to the heap of its measure, if it is among the time series with the largest values.
+   */
+  private void offerSeries(Map<String, PriorityQueue<SeriesValue>> topSeries, SeriesValue seriesValue, int limit) {
+    PriorityQueue<SeriesValue> heap = topSeries.get(seriesValue.key.getSecond());
+    if (heap == null) {
+      heap = new PriorityQueue<>();
+      topSeries.put(seriesValue.key.getSecond(), heap);
+    }
+    if (heap.size() < limit) {
+      heap.add(seriesValue);
+    } else if (heap.peek().compareTo(seriesValue) < 0) {
+      heap.poll();
+      heap.add(seriesValue);
+    }
+  }
+
+  /**
+   * Returns the given scan narrowed down to the measure and the dimension values of the given time series.
+   */
+  private FactScan getSeriesScan(FactScan scan, ImmutablePair<Map<String, String>, String> series) {
+    List<DimensionValue> dimensionValues = Lists.newArrayListWithCapacity(scan.getDimensionValues().size());
+    for (DimensionValue dimensionValue : scan.getDimensionValues()) {
+      String value = dimensionValue.getValue() == null ?
+        series.getFirst().get(dimensionValue.getName()) : dimensionValue.getValue();
+      dimensionValues.add(new DimensionValue(dimensionValue.getName(), value));
+    }
+    return new FactScan(scan.getStartTs(), scan.getEndTs(), series.getSecond(), dimensionValues);
+  }
+
+  /**
+   * Executes the given queries in parallel. Queries are submitted to the given executor, and the calling thread
+   * also executes the queries that have not been started by the executor yet.
+   *
+   * @param queries queries to execute
+   * @param executor executor for executing the queries
+   * @return results of the queries, in the order of the queries
+   */
+  public List<Collection<TimeSeries>> query(List<CubeQuery> queries, Executor executor) {
+    if (queries.size() == 1) {
+      return ImmutableList.of(query(queries.get(0)));
+    }
+
+    List<FutureTask<Collection<TimeSeries>>> tasks = Lists.newArrayListWithCapacity(queries.size());
+    for (final CubeQuery query : queries) {
+      FutureTask<Collection<TimeSeries>> task = new FutureTask<>(new Callable<Collection<TimeSeries>>() {
+        @Override
+        public Collection<TimeSeries> call() throws Exception {
+          return query(query);
+        }
+      });
+      tasks.add(task);
+      executor.execute(task);
+    }
+
+    List<Collection<TimeSeries>> results = Lists.newArrayListWithCapacity(queries.size());
+    try {
+      // Running a task that is already running or done is a no-op
+      for (FutureTask<Collection<TimeSeries>> task : tasks) {
+        task.run();
+      }
+      for (FutureTask<Collection<TimeSeries>> task : tasks) {
+        results.add(task.get());
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } finally {
+      for (FutureTask<Collection<TimeSeries>> task : tasks) {
+        task.cancel(true);
+      }
+    }
+    return results;
+  }
+
   @Override
   public void delete(CubeDeleteQuery query) {
     //this may be very inefficient and its better to use TTL, this is to only support existing old functionality.
@@ -237,6 +459,9 @@ public class DefaultCube implements Cube {
         factTable.delete(scan);
       }
     }
+    if (scanCache != null) {
+      scanCache.invalidateAll();
+    }
   }
 
   @Override
@@ -299,6 +524,57 @@ public class DefaultCube implements Cube {
     for (FactTable factTable : resolutionToFactTable.values()) {
       factTable.setMetricsCollector(metrics);
     }
+    if (scanCache != null) {
+      scanCache.setMetricsCollector(metrics);
+    }
+  }
+
+  /**
+   * Enables caching of the facts scanned by queries, for the part of the time range that is not expected to change
+   * anymore. Queries over time ranges that overlap with earlier queries then only scan the facts that are not cached,
+   * and the facts that are recent enough to still change. Writing facts older than that through this cube invalidates
+   * the cache, while facts written or deleted through other instances are not visible to queries until the cached
+   * facts expire.
+   *
+   * @param maxTimeValues maximum number of time values to cache
+   * @param mutableSeconds number of seconds before the current time that facts can still be written to
+   * @param expireSeconds number of seconds after which cached facts expire
+   */
+  public void enableQueryCache(long maxTimeValues, long mutableSeconds, long expireSeconds) {
+    scanCache = new FactScanCache(maxTimeValues, mutableSeconds, expireSeconds);
+    scanCache.setMetricsCollector(metrics);
+  }
+
+  /**
+   * Enables deriving the given resolutions from the next finer resolution of this cube by {@link #rollup()}, instead
+   * of writing facts to them directly. Only facts older than the rolled up time range are written directly to them.
+   *
+   * @param resolutions resolutions to roll up, each being a multiple of the next finer resolution of this cube
+   * @param metaTable table for storing the progress of rolling up
+   * @param delaySeconds number of seconds after the end of a time window before it is rolled up
+   */
+  public void enableRollup(int[] resolutions, MetricsTable metaTable, long delaySeconds) {
+    rollup = new FactRollup(aggregations, resolutionToFactTable, resolutions, metaTable, delaySeconds);
+  }
+
+  /**
+   * Rolls up the facts of all time windows that ended at least the delay given to {@link #enableRollup} ago, and
+   * that were not rolled up yet. Does nothing if rolling up is not enabled.
+   */
+  public void rollup() {
+    rollup(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  @VisibleForTesting
+  void rollup(long now) {
+    if (rollup == null) {
+      return;
+    }
+    int count = rollup.rollup(now);
+    incrementMetric("cube.rollup.fact.count", count);
+    if (count > 0 && scanCache != null) {
+      scanCache.invalidateAll();
+    }
   }
 
   private void incrementMetric(String metricName, long value) {
@@ -327,7 +603,17 @@ public class DefaultCube implements Cube {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+  /**
+   * Returns the time series of the facts returned by the given scanner.
+   *
+   * @param query query to return the time series for
+   * @param scanner scanner of the facts
+   * @param seriesFilter {dimension values, measure} of the time series to return, or {@code null} for all
+   */
+  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(
+    CubeQuery query, Iterator<FactScanResult> scanner,
+    @Nullable Set<ImmutablePair<Map<String, String>, String>> seriesFilter) {
+
     // {dimension values, measure} -> {time -> value}s
     Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
 
@@ -336,56 +622,42 @@ public class DefaultCube implements Cube {
       FactScanResult next = scanner.next();
       incrementMetric("cube.query.scan.records.count", 1);
 
-      boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
-        // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
-        for (DimensionValue dimensionValue : next.getDimensionValues()) {
-          if (dimensionName.equals(dimensionValue.getName())) {
-            if (dimensionValue.getValue() == null) {
-              // Currently, we do NOT return null as grouped by value.
-              // Depending on whether dimension is required or not the records with null value in it may or may not be
-              // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
-              // potentially null may or may not be included in results, depending on the aggregation selected
-              // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
-              // so don't return nulls in any of those cases.
-              skip = true;
-              continue;
-            }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
-            break;
-          }
-        }
-      }
-
-      if (skip) {
+      Map<String, String> seriesDimensions = getSeriesDimensions(query, next);
+      if (seriesDimensions == null) {
         incrementMetric("cube.query.scan.skipped.count", 1);
         continue;
       }
+      if (seriesFilter != null && !seriesFilter.contains(new ImmutablePair<>(seriesDimensions,
+                                                                             next.getMeasureName()))) {
+        continue;
+      }
 
+      Map<Long, Long> timeValues = null;
+      AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
       for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
         if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
+          timeValues = result.get(seriesDimensions, next.getMeasureName());
+          if (timeValues == null) {
+            timeValues = Maps.newHashMap();
+            result.put(seriesDimensions, next.getMeasureName(), timeValues);
+          }
         }
 
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
         if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
+          Long value = timeValues.get(timeValue.getTimestamp());
           value = value == null ? 0 : value;
           value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
+          timeValues.put(timeValue.getTimestamp(), value);
         } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
+          Long value = timeValues.get(timeValue.getTimestamp());
           value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
+          timeValues.put(timeValue.getTimestamp(), value);
         } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
+          Long value = timeValues.get(timeValue.getTimestamp());
           value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
+          timeValues.put(timeValue.getTimestamp(), value);
         } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
+          timeValues.put(timeValue.getTimestamp(), timeValue.getValue());
         } else {
           // should never happen: developer error
           throw new RuntimeException("Unknown MeasureType: " + function);
@@ -398,9 +670,40 @@ public class DefaultCube implements Cube {
     return result;
   }
 
-  private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
+  /**
+   * Returns the values of the group by dimensions of the query in the given fact, or {@code null} if the fact
+   * has no value for any of them.
+   */
+  @Nullable
+  private Map<String, String> getSeriesDimensions(CubeQuery query, FactScanResult fact) {
+    boolean skip = false;
+    // using tree map, as we are using it as a key for a map
+    Map<String, String> seriesDimensions = Maps.newTreeMap();
+    for (String dimensionName : query.getGroupByDimensions()) {
+      // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
+      for (DimensionValue dimensionValue : fact.getDimensionValues()) {
+        if (dimensionName.equals(dimensionValue.getName())) {
+          if (dimensionValue.getValue() == null) {
+            // Currently, we do NOT return null as grouped by value.
+            // Depending on whether dimension is required or not the records with null value in it may or may not be
+            // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
+            // potentially null may or may not be included in results, depending on the aggregation selected
+            // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
+            // so don't return nulls in any of those cases.
+            skip = true;
+            continue;
+          }
+          seriesDimensions.put(dimensionName, dimensionValue.getValue());
+          break;
+        }
+      }
+    }
+    return skip ? null : seriesDimensions;
+  }
+
+  private List<TimeSeries> convertToQueryResult(CubeQuery query,
+                                                Table<Map<String, String>, String,
+                                                  Map<Long, Long>> resultTable) {
 
     List<TimeSeries> result = Lists.newArrayList();
     // iterating each groupValue dimensions
@@ -442,6 +745,55 @@ public class DefaultCube implements Cube {
     }
   }
 
+  /**
+   * The values of a time series aggregated over time with the aggregation function of its measure.
+   */
+  private static final class SeriesValue implements Comparable<SeriesValue> {
+    private final ImmutablePair<Map<String, String>, String> key;
+    private final AggregationFunction function;
+    private long value;
+    // latest timestamp of the time values
+    private long timestamp;
+    private boolean empty = true;
+    private boolean singleTimestamp = true;
+
+    SeriesValue(ImmutablePair<Map<String, String>, String> key, AggregationFunction function) {
+      this.key = key;
+      this.function = function;
+    }
+
+    void add(TimeValue timeValue) {
+      if (empty) {
+        value = timeValue.getValue();
+        timestamp = timeValue.getTimestamp();
+        empty = false;
+        return;
+      }
+
+      singleTimestamp &= timeValue.getTimestamp() == timestamp;
+      if (AggregationFunction.SUM == function) {
+        value += timeValue.getValue();
+      } else if (AggregationFunction.MAX == function) {
+        value = Math.max(value, timeValue.getValue());
+      } else if (AggregationFunction.MIN == function) {
+        value = Math.min(value, timeValue.getValue());
+      } else if (AggregationFunction.LATEST == function) {
+        if (timeValue.getTimestamp() >= timestamp) {
+          value = timeValue.getValue();
+        }
+      } else {
+        // should never happen: developer error
+        throw new RuntimeException("Unknown MeasureType: " + function);
+      }
+      timestamp = Math.max(timestamp, timeValue.getTimestamp());
+    }
+
+    @Override
+    public int compareTo(SeriesValue other) {
+      return Long.compare(value, other.value);
+    }
+  }
+
   private static final class DimensionValueComparator implements Comparator<DimensionValue> {
     @Override
     public int compare(DimensionValue t1, DimensionValue t2) {
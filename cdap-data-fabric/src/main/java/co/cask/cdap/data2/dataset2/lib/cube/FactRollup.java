@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Derives the facts of coarser resolutions of a cube from the facts of finer resolutions, instead of writing every
+ * fact to every resolution.
+ * <p>
+ * Every rolled up resolution is computed from the next finer resolution of the cube, in windows of the rolled up
+ * resolution that ended at least the given delay ago. Counters are summed over a window and gauges take the value
+ * with the latest timestamp in it. Whether a measure is a gauge can't be told from the stored facts, so the names of
+ * gauges are recorded in the meta table when they are first written. The computed values are put into the rolled up
+ * resolution, so that rolling up a window again, after a failure or by another process, gives the same result.
+ * <p>
+ * The end of the rolled up time range of every resolution is checkpointed in the meta table, and rolling up resumes
+ * from there. Facts older than the checkpoint are written directly to the rolled up resolution instead, so that late
+ * facts are not lost. Facts that arrive later than the delay while their window is being rolled up, or before this
+ * process sees the checkpoint of another process, can be missing from the rolled up resolution, so the delay should
+ * be larger than the usual lag of writing facts.
+ */
+final class FactRollup {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FactRollup.class);
+
+  // Number of windows of the rolled up resolution to roll up in one pass, and to go back on first start
+  private static final int WINDOWS_PER_PASS = 60;
+
+  private static final String CHECKPOINT_PREFIX = "rollup.checkpoint.";
+  private static final byte[] GAUGE_PREFIX = Bytes.toBytes("rollup.gauge.");
+  private static final byte[] VALUE_COLUMN = Bytes.toBytes("v");
+
+  private final Map<String, ? extends Aggregation> aggregations;
+  // rolled up resolution -> next finer resolution, in the order of rolled up resolutions
+  private final NavigableMap<Integer, Integer> sourceResolutions;
+  private final Map<Integer, FactTable> resolutionToFactTable;
+  private final MetricsTable metaTable;
+  private final long delaySeconds;
+  private final ConcurrentMap<Integer, Long> checkpoints;
+  private final Set<String> gauges;
+
+  /**
+   * Creates an instance of {@link FactRollup}.
+   *
+   * @param aggregations aggregations of the cube
+   * @param resolutionToFactTable fact tables of all resolutions of the cube
+   * @param rollupResolutions resolutions to roll up, each being a multiple of the next finer resolution of the cube
+   * @param metaTable table for storing checkpoints and the names of gauges
+   * @param delaySeconds number of seconds after the end of a window before it is rolled up
+   */
+  FactRollup(Map<String, ? extends Aggregation> aggregations, Map<Integer, FactTable> resolutionToFactTable,
+             int[] rollupResolutions, MetricsTable metaTable, long delaySeconds) {
+    Integer[] resolutions = resolutionToFactTable.keySet().toArray(new Integer[resolutionToFactTable.size()]);
+    Arrays.sort(resolutions);
+    NavigableMap<Integer, Integer> sourceResolutions = Maps.newTreeMap();
+    for (int resolution : rollupResolutions) {
+      int idx = Arrays.binarySearch(resolutions, resolution);
+      Preconditions.checkArgument(idx >= 0, "Resolution %s is not a resolution of the cube", resolution);
+      Preconditions.checkArgument(idx > 0, "Resolution %s is the finest resolution of the cube", resolution);
+      Preconditions.checkArgument(resolution != Integer.MAX_VALUE, "Totals resolution cannot be rolled up");
+      Preconditions.checkArgument(resolution % resolutions[idx - 1] == 0,
+                                  "Resolution %s is not a multiple of resolution %s", resolution, resolutions[idx - 1]);
+      sourceResolutions.put(resolution, resolutions[idx - 1]);
+    }
+
+    this.aggregations = aggregations;
+    this.sourceResolutions = sourceResolutions;
+    this.resolutionToFactTable = resolutionToFactTable;
+    this.metaTable = metaTable;
+    this.delaySeconds = delaySeconds;
+    this.checkpoints = new ConcurrentHashMap<>();
+    this.gauges = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  }
+
+  /**
+   * Records the names of the gauges of the given facts, which must be done before the facts are written.
+   */
+  void recordGauges(Collection<Fact> facts) {
+    for (Fact fact : facts) {
+      for (Measurement measurement : fact.getMeasurements()) {
+        if (measurement.getType() == MeasureType.GAUGE && !gauges.contains(measurement.getName())) {
+          put(Bytes.add(GAUGE_PREFIX, Bytes.toBytes(measurement.getName())), 1L);
+          gauges.add(measurement.getName());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the facts that have to be written to the given resolution, which are all facts if the resolution is not
+   * rolled up, and the facts older than the checkpoint otherwise.
+   */
+  List<Fact> getFactsToWrite(int resolution, List<Fact> facts, long now) {
+    if (!sourceResolutions.containsKey(resolution)) {
+      return facts;
+    }
+    long checkpoint = getCheckpoint(resolution, now);
+    List<Fact> result = Lists.newArrayList();
+    for (Fact fact : facts) {
+      if (fact.getTimestamp() < checkpoint) {
+        result.add(fact);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Rolls up all windows that ended at least the delay before the given time.
+   *
+   * @param now current time in seconds
+   * @return number of facts written
+   */
+  int rollup(long now) {
+    int count = 0;
+    loadGauges();
+    for (Map.Entry<Integer, Integer> entry : sourceResolutions.entrySet()) {
+      int resolution = entry.getKey();
+      int sourceResolution = entry.getValue();
+      long end = (now - delaySeconds) / resolution * resolution;
+      if (sourceResolutions.containsKey(sourceResolution)) {
+        // Rolled up resolutions are only complete up to their own checkpoint
+        end = Math.min(end, getCheckpoint(sourceResolution, now) / resolution * resolution);
+      }
+
+      long checkpoint = loadCheckpoint(resolution, now);
+      while (checkpoint < end) {
+        long passEnd = Math.min(end, checkpoint + (long) resolution * WINDOWS_PER_PASS);
+        count += rollup(resolutionToFactTable.get(sourceResolution), resolutionToFactTable.get(resolution),
+                        resolution, checkpoint, passEnd);
+        saveCheckpoint(resolution, passEnd);
+        checkpoint = passEnd;
+      }
+    }
+    return count;
+  }
+
+  private int rollup(FactTable source, FactTable target, int resolution, long startTs, long endTs) {
+    // {dimension values, measure name} -> window -> {timestamp, value}
+    Map<ImmutablePair<List<DimensionValue>, String>, Map<Long, long[]>> windows = Maps.newHashMap();
+    for (Aggregation aggregation : aggregations.values()) {
+      List<DimensionValue> dimensionValues = Lists.newArrayList();
+      for (String dimensionName : aggregation.getDimensionNames()) {
+        dimensionValues.add(new DimensionValue(dimensionName, null));
+      }
+      FactScanner scanner = source.scan(new FactScan(startTs, endTs - 1, dimensionValues));
+      try {
+        while (scanner.hasNext()) {
+          FactScanResult result = scanner.next();
+          boolean gauge = gauges.contains(result.getMeasureName());
+          ImmutablePair<List<DimensionValue>, String> key =
+            new ImmutablePair<>(result.getDimensionValues(), result.getMeasureName());
+          Map<Long, long[]> values = windows.get(key);
+          if (values == null) {
+            values = Maps.newHashMap();
+            windows.put(key, values);
+          }
+          for (TimeValue timeValue : result) {
+            long window = timeValue.getTimestamp() / resolution * resolution;
+            long[] value = values.get(window);
+            if (value == null) {
+              values.put(window, new long[] { timeValue.getTimestamp(), timeValue.getValue() });
+            } else if (!gauge) {
+              value[1] += timeValue.getValue();
+            } else if (timeValue.getTimestamp() >= value[0]) {
+              value[0] = timeValue.getTimestamp();
+              value[1] = timeValue.getValue();
+            }
+          }
+        }
+      } finally {
+        scanner.close();
+      }
+    }
+
+    // Putting the values makes rolling up a window idempotent, which incrementing wouldn't be
+    List<Fact> facts = Lists.newArrayList();
+    for (Map.Entry<ImmutablePair<List<DimensionValue>, String>, Map<Long, long[]>> entry : windows.entrySet()) {
+      for (Map.Entry<Long, long[]> window : entry.getValue().entrySet()) {
+        Measurement measurement = new Measurement(entry.getKey().getSecond(), MeasureType.GAUGE, window.getValue()[1]);
+        facts.add(new Fact(window.getKey(), entry.getKey().getFirst(), measurement));
+      }
+    }
+    target.add(facts);
+    LOG.trace("Rolled up {} facts of resolution {} in time range [{}, {})", facts.size(), resolution, startTs, endTs);
+    return facts.size();
+  }
+
+  private void loadGauges() {
+    try (Scanner scanner = metaTable.scan(GAUGE_PREFIX, Bytes.stopKeyForPrefix(GAUGE_PREFIX), null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        gauges.add(Bytes.toString(row.getRow(), GAUGE_PREFIX.length, row.getRow().length - GAUGE_PREFIX.length));
+      }
+    }
+  }
+
+  private long getCheckpoint(int resolution, long now) {
+    Long checkpoint = checkpoints.get(resolution);
+    return checkpoint == null ? loadCheckpoint(resolution, now) : checkpoint;
+  }
+
+  /**
+   * Reads the checkpoint of the given resolution from the meta table, which may have been advanced by another
+   * process. Without a checkpoint, rolling up starts {@link #WINDOWS_PER_PASS} windows back, to cover the facts
+   * that are still being written while switching from writing all resolutions to rolling up.
+   */
+  private long loadCheckpoint(int resolution, long now) {
+    byte[] value = metaTable.get(getCheckpointRow(resolution), VALUE_COLUMN);
+    if (value == null) {
+      long checkpoint = Math.max(0, now - (long) resolution * WINDOWS_PER_PASS) / resolution * resolution;
+      saveCheckpoint(resolution, checkpoint);
+      return checkpoint;
+    }
+    long checkpoint = Bytes.toLong(value);
+    Long current = checkpoints.get(resolution);
+    if (current == null || current < checkpoint) {
+      checkpoints.put(resolution, checkpoint);
+    }
+    return checkpoint;
+  }
+
+  private void saveCheckpoint(int resolution, long checkpoint) {
+    put(getCheckpointRow(resolution), checkpoint);
+    checkpoints.put(resolution, checkpoint);
+  }
+
+  private void put(byte[] row, long value) {
+    SortedMap<byte[], SortedMap<byte[], Long>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    SortedMap<byte[], Long> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    columns.put(VALUE_COLUMN, value);
+    updates.put(row, columns);
+    metaTable.put(updates);
+  }
+
+  private static byte[] getCheckpointRow(int resolution) {
+    return Bytes.toBytes(CHECKPOINT_PREFIX + resolution);
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the results of {@link FactScan}s in the part of the time range that is not expected to change anymore.
+ * <p>
+ * The time is split into buckets of {@link #BUCKET_POINTS} points of the resolution. The results of every bucket
+ * that overlaps with the time range of a scan and ends before the mutable window are cached, per aggregation,
+ * resolution, dimension values and measure, so that queries over overlapping time ranges, such as the ones of
+ * a dashboard that refreshes periodically, only scan the buckets that are not cached yet. Buckets at the beginning
+ * and end of the time range are cached as a whole, even if the time range covers them only partially, since
+ * a table scan reads whole rows of {@link FactTable}, no matter how small the time range is. The mutable tail of the
+ * time range is scanned every time.
+ * <p>
+ * Facts written to a bucket after it was cached, or deleted from it, through another instance of the cube are
+ * not visible until the bucket expires from the cache.
+ */
+final class FactScanCache {
+
+  private static final int BUCKET_POINTS = 60;
+
+  private final Cache<BucketKey, List<FactScanResult>> cache;
+  private final long maxTimeValues;
+  private final long mutableSeconds;
+
+  @Nullable
+  private MetricsCollector metrics;
+
+  /**
+   * Creates an instance of {@link FactScanCache}.
+   *
+   * @param maxTimeValues maximum number of time values to cache
+   * @param mutableSeconds number of seconds before the current time that facts can still be written to
+   * @param expireSeconds number of seconds after which a cached bucket expires
+   */
+  FactScanCache(long maxTimeValues, long mutableSeconds, long expireSeconds) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxTimeValues)
+      .weigher(new Weigher<BucketKey, List<FactScanResult>>() {
+        @Override
+        public int weigh(BucketKey key, List<FactScanResult> results) {
+          int weight = 1;
+          for (FactScanResult result : results) {
+            weight += Iterables.size(result);
+          }
+          return weight;
+        }
+      })
+      .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+      .build();
+    this.maxTimeValues = maxTimeValues;
+    this.mutableSeconds = mutableSeconds;
+  }
+
+  void setMetricsCollector(@Nullable MetricsCollector metrics) {
+    this.metrics = metrics;
+  }
+
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Invalidates the cache if facts written at the given time may have been cached.
+   *
+   * @param timestamp time of the oldest fact written, in seconds
+   * @param now current time in seconds
+   */
+  void invalidate(long timestamp, long now) {
+    if (timestamp < now - mutableSeconds && cache.size() > 0) {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Scans the given {@link FactTable}, using the cached results for the buckets that are cached.
+   *
+   * @param table the table to scan
+   * @param aggregation name of the aggregation being scanned
+   * @param resolution resolution of the table in seconds
+   * @param scan the scan to perform
+   * @param now current time in seconds
+   * @return the scan results, which are not necessarily in the order of the {@link FactScanner}
+   */
+  Iterator<FactScanResult> scan(FactTable table, String aggregation, int resolution, FactScan scan, long now) {
+    long bucketSize = (long) resolution * BUCKET_POINTS;
+    long cacheStart = Math.max(0, scan.getStartTs()) / bucketSize * bucketSize;
+    long immutableEnd = Math.max(0, now - mutableSeconds) / bucketSize * bucketSize;
+    long cacheEnd = scan.getEndTs() >= immutableEnd ? immutableEnd : (scan.getEndTs() / bucketSize + 1) * bucketSize;
+    if (cacheEnd <= cacheStart) {
+      return table.scan(scan);
+    }
+
+    // A null measure name stands for all measures, if the scan is not for specific measures
+    List<String> measureNames = scan.getMeasureNames().isEmpty() ?
+      Collections.<String>singletonList(null) : ImmutableList.copyOf(scan.getMeasureNames());
+    Map<BucketKey, List<FactScanResult>> results = Maps.newHashMap();
+    List<String> missingMeasureNames = Lists.newArrayList();
+    long missingStart = Long.MAX_VALUE;
+    long missingEnd = Long.MIN_VALUE;
+    int hits = 0;
+    int misses = 0;
+    for (String measureName : measureNames) {
+      boolean missing = false;
+      for (long bucket = cacheStart; bucket < cacheEnd; bucket += bucketSize) {
+        BucketKey key = new BucketKey(aggregation, resolution, scan.getDimensionValues(), measureName, bucket);
+        List<FactScanResult> bucketResults = cache.getIfPresent(key);
+        if (bucketResults == null) {
+          misses++;
+          missing = true;
+          missingStart = Math.min(missingStart, bucket);
+          missingEnd = Math.max(missingEnd, bucket + bucketSize);
+        } else {
+          results.put(key, bucketResults);
+          hits++;
+        }
+      }
+      if (missing) {
+        missingMeasureNames.add(measureName);
+      }
+    }
+    incrementMetric("cube.query.cache.hit.count", hits);
+    incrementMetric("cube.query.cache.miss.count", misses);
+
+    if (!missingMeasureNames.isEmpty()) {
+      if (!scanMissing(table, aggregation, resolution, scan, missingMeasureNames, missingStart, missingEnd, results)) {
+        // Too much data to cache
+        return table.scan(scan);
+      }
+    }
+
+    List<Iterator<FactScanResult>> parts = Lists.newArrayList();
+    for (long bucket = cacheStart; bucket < cacheEnd; bucket += bucketSize) {
+      boolean partial = bucket < scan.getStartTs() || bucket + bucketSize - 1 > scan.getEndTs();
+      for (String measureName : measureNames) {
+        List<FactScanResult> bucketResults = results.get(new BucketKey(aggregation, resolution,
+                                                                       scan.getDimensionValues(), measureName, bucket));
+        if (partial) {
+          bucketResults = filter(bucketResults, scan.getStartTs(), scan.getEndTs());
+        }
+        parts.add(bucketResults.iterator());
+      }
+    }
+    if (cacheEnd <= scan.getEndTs()) {
+      parts.add(table.scan(new FactScan(cacheEnd, scan.getEndTs(), scan.getMeasureNames(), scan.getDimensionValues())));
+    }
+    return Iterators.concat(parts.iterator());
+  }
+
+  /**
+   * Scans the given buckets for the given measures, and caches the results per bucket and measure.
+   *
+   * @return {@code false} if the results were too large to be cached, {@code true} otherwise
+   */
+  private boolean scanMissing(FactTable table, String aggregation, int resolution, FactScan scan,
+                              List<String> measureNames, long startTs, long endTs,
+                              Map<BucketKey, List<FactScanResult>> results) {
+    long bucketSize = (long) resolution * BUCKET_POINTS;
+    boolean allMeasures = measureNames.size() == 1 && measureNames.get(0) == null;
+    FactScan missingScan = new FactScan(startTs, endTs - 1, allMeasures ? ImmutableList.<String>of() : measureNames,
+                                        scan.getDimensionValues());
+
+    // bucket key -> {measure name, dimension values} -> time values, in the order of the scan
+    Map<BucketKey, Map<ImmutablePair<String, List<DimensionValue>>, List<TimeValue>>> scanned = Maps.newHashMap();
+    long timeValues = 0;
+    FactScanner scanner = table.scan(missingScan);
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        String measureName = allMeasures ? null : result.getMeasureName();
+        ImmutablePair<String, List<DimensionValue>> series =
+          new ImmutablePair<>(result.getMeasureName(), result.getDimensionValues());
+        for (TimeValue timeValue : result) {
+          if (++timeValues > maxTimeValues) {
+            return false;
+          }
+          long bucket = timeValue.getTimestamp() / bucketSize * bucketSize;
+          BucketKey key = new BucketKey(aggregation, resolution, scan.getDimensionValues(), measureName, bucket);
+          Map<ImmutablePair<String, List<DimensionValue>>, List<TimeValue>> bucketValues = scanned.get(key);
+          if (bucketValues == null) {
+            bucketValues = Maps.newLinkedHashMap();
+            scanned.put(key, bucketValues);
+          }
+          List<TimeValue> values = bucketValues.get(series);
+          if (values == null) {
+            values = Lists.newArrayList();
+            bucketValues.put(series, values);
+          }
+          values.add(timeValue);
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+
+    for (String measureName : measureNames) {
+      for (long bucket = startTs; bucket < endTs; bucket += bucketSize) {
+        BucketKey key = new BucketKey(aggregation, resolution, scan.getDimensionValues(), measureName, bucket);
+        Map<ImmutablePair<String, List<DimensionValue>>, List<TimeValue>> bucketValues = scanned.get(key);
+        List<FactScanResult> bucketResults;
+        if (bucketValues == null) {
+          bucketResults = ImmutableList.of();
+        } else {
+          ImmutableList.Builder<FactScanResult> builder = ImmutableList.builder();
+          for (Map.Entry<ImmutablePair<String, List<DimensionValue>>, List<TimeValue>> entry
+            : bucketValues.entrySet()) {
+            builder.add(new FactScanResult(entry.getKey().getFirst(), entry.getKey().getSecond(),
+                                           ImmutableList.copyOf(entry.getValue())));
+          }
+          bucketResults = builder.build();
+        }
+        cache.put(key, bucketResults);
+        results.put(key, bucketResults);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the given results with only the time values in the given time range.
+   */
+  private List<FactScanResult> filter(List<FactScanResult> results, long startTs, long endTs) {
+    List<FactScanResult> filtered = Lists.newArrayListWithCapacity(results.size());
+    for (FactScanResult result : results) {
+      List<TimeValue> timeValues = Lists.newArrayList();
+      for (TimeValue timeValue : result) {
+        if (timeValue.getTimestamp() >= startTs && timeValue.getTimestamp() <= endTs) {
+          timeValues.add(timeValue);
+        }
+      }
+      if (!timeValues.isEmpty()) {
+        filtered.add(new FactScanResult(result.getMeasureName(), result.getDimensionValues(), timeValues));
+      }
+    }
+    return filtered;
+  }
+
+  private void incrementMetric(String metricName, long value) {
+    if (metrics != null && value > 0) {
+      metrics.increment(metricName, value);
+    }
+  }
+
+  /**
+   * Key of the results of one bucket of a measure.
+   */
+  private static final class BucketKey {
+    private final String aggregation;
+    private final int resolution;
+    private final List<DimensionValue> dimensionValues;
+    private final String measureName;
+    private final long bucket;
+    private final int hashCode;
+
+    BucketKey(String aggregation, int resolution, List<DimensionValue> dimensionValues,
+              @Nullable String measureName, long bucket) {
+      this.aggregation = aggregation;
+      this.resolution = resolution;
+      this.dimensionValues = dimensionValues;
+      this.measureName = measureName;
+      this.bucket = bucket;
+      this.hashCode = Objects.hashCode(aggregation, resolution, dimensionValues, measureName, bucket);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BucketKey other = (BucketKey) o;
+      return hashCode == other.hashCode && bucket == other.bucket && resolution == other.resolution
+        && aggregation.equals(other.aggregation) && Objects.equal(measureName, other.measureName)
+        && dimensionValues.equals(other.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -49,7 +49,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -93,7 +93,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   // In-memory buffer that keeps not yet persisted data. It is row->(column->value) map. Value can be null which means
   // that the corresponded column was removed.
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
+  private WriteBuffer buff;
 
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
@@ -144,7 +144,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
-    this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.buff = new WriteBuffer();
   }
 
   /**
@@ -302,7 +302,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
+    for (byte[] changedRow : buff.getSorted().keySet()) {
       changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
     }
     return changes;
@@ -311,7 +311,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.getSorted().entrySet()) {
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
         //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
@@ -334,14 +334,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
-      toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      // The sorted view is already created if the tx changes were requested for conflict detection. It is not
+      // affected by clearing the buffer, so the buffer is reused in the next tx.
+      toUndo = buff.getSorted();
+      buff.clear();
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
+      long startTime = System.nanoTime();
       persist(toUndo);
+      reportTime(Constants.Metrics.Name.Dataset.PERSIST_TIME, startTime);
+      reportCommit();
     }
     return true;
   }
@@ -357,7 +359,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public boolean rollbackTx() throws Exception {
     buff.clear();
     if (toUndo != null) {
+      long startTime = System.nanoTime();
       undo(toUndo);
+      reportTime(Constants.Metrics.Name.Dataset.UNDO_TIME, startTime);
       toUndo = null;
     }
     return true;
@@ -475,12 +479,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
-    NavigableMap<byte[], Update> colVals = buff.get(row);
-    boolean newRow = false;
-    if (colVals == null) {
-      colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      newRow = true;
-    }
+    // NOTE: the buffer copies the passed row's byte array when adding it, to protect against possible changes of this
+    // array on client
+    NavigableMap<byte[], Update> colVals = buff.getOrCreate(row);
     for (int i = 0; i < columns.length; i++) {
       // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
       // arrays on client
@@ -489,10 +490,6 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       }
       colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
     }
-    if (newRow) {
-      // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
-      buff.put(copy(row), colVals);
-    }
   }
 
   /**
@@ -582,11 +579,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     if (enableReadlessIncrements) {
-      NavigableMap<byte[], Update> colVals = buff.get(row);
-      if (colVals == null) {
-        colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        buff.put(row, colVals);
-      }
+      NavigableMap<byte[], Update> colVals = buff.getOrCreate(row);
       for (int i = 0; i < columns.length; i++) {
         colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
       }
@@ -663,16 +656,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
+    NavigableMap<byte[], NavigableMap<byte[], Update>> sortedBuff = buff.getSorted();
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
     if (startRow == null && stopRow == null) {
-      bufferMap = buff;
+      bufferMap = sortedBuff;
     } else if (startRow == null) {
-      bufferMap = buff.headMap(stopRow, false);
+      bufferMap = sortedBuff.headMap(stopRow, false);
     } else if (stopRow == null) {
-      bufferMap = buff.tailMap(startRow, true);
+      bufferMap = sortedBuff.tailMap(startRow, true);
     } else {
-      bufferMap = buff.subMap(startRow, true, stopRow, false);
+      bufferMap = sortedBuff.subMap(startRow, true, stopRow, false);
     }
     bufferMap = applyFilter(bufferMap, scan.getFilter());
     return bufferMap;
@@ -701,13 +695,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
-    boolean rowDeleted = buffCols == null && buff.containsKey(row);
-    if (rowDeleted) {
-      return Collections.emptyMap();
-    }
-
     Map<byte[], byte[]> persisted = getPersisted(row, null);
 
 
@@ -885,6 +873,22 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  private void reportCommit() {
+    if (metricsCollector != null) {
+      metricsCollector.increment(Constants.Metrics.Name.Dataset.COMMIT_COUNT, 1);
+    }
+  }
+
+  /**
+   * Reports the time in microseconds elapsed since the given start time, as returned by {@link System#nanoTime()},
+   * to the given metric. Subclasses can use it to report the time spent in phases of {@link #persist(NavigableMap)}.
+   */
+  protected void reportTime(String metricName, long startTime) {
+    if (metricsCollector != null) {
+      metricsCollector.increment(metricName, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+    }
+  }
+
   private void reportRead(int numOps) {
     if (metricsCollector != null) {
       // todo: report amount of data being read
@@ -918,18 +922,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
   private class BufferingScanner implements Scanner {
-    private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
     private final Scanner persistedScanner;
-    private final Iterator<byte[]> keyIter;
+    // iterates over the buffered rows together with their columns, to avoid looking up each row in the buffer
+    private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> entryIter;
     private byte[] currentKey;
+    private NavigableMap<byte[], Update> currentColumns;
     private Row currentRow;
 
     private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
-      this.buffer = buffer;
-      this.keyIter = this.buffer.keySet().iterator();
-      if (this.keyIter.hasNext()) {
-        currentKey = keyIter.next();
-      }
+      this.entryIter = buffer.entrySet().iterator();
+      nextBufferRow();
       this.persistedScanner = persistedScanner;
       this.currentRow = this.persistedScanner.next();
     }
@@ -961,18 +963,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       } else if (order < 0) {
         // buffer row comes first or persisted scanner is empty
         Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, buffer.get(currentKey), null);
+        mergeToPersisted(persistedRow, currentColumns, null);
         result = new Result(copy(currentKey), persistedRow);
 
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        nextBufferRow();
       } else {
         // if currentKey and currentRow are equal, merge and advance both
         Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, buffer.get(currentKey), null);
+        mergeToPersisted(persisted, currentColumns, null);
         result = new Result(currentRow.getRow(), persisted);
 
         currentRow = persistedScanner.next();
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        nextBufferRow();
       }
       return result;
     }
@@ -981,6 +983,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     public void close() {
       this.persistedScanner.close();
     }
+
+    private void nextBufferRow() {
+      if (entryIter.hasNext()) {
+        Map.Entry<byte[], NavigableMap<byte[], Update>> entry = entryIter.next();
+        currentKey = entry.getKey();
+        currentColumns = entry.getValue();
+      } else {
+        currentKey = null;
+        currentColumns = null;
+      }
+    }
   }
 
   private long warnedCount = 0L;
@@ -30,18 +30,17 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.lib.ObjectStore;
-import co.cask.cdap.common.io.BinaryDecoder;
-import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteArrayEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.ReflectionDatumWriter;
 import co.cask.cdap.internal.io.TypeRepresentation;
 import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.List;
 import javax.annotation.Nullable;
 
@@ -130,15 +129,14 @@ public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStor
 
   private byte[] encode(T object) {
     // encode T using schema
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    BinaryEncoder encoder = new BinaryEncoder(bos);
+    ByteArrayEncoder encoder = new ByteArrayEncoder();
     try {
       this.datumWriter.encode(object, encoder);
     } catch (IOException e) {
       // SHOULD NEVER happen
       throw new DataSetException("Failed to encode object to be written: " + e.getMessage(), e);
     }
-    return bos.toByteArray();
+    return encoder.toByteArray();
   }
 
   @SuppressWarnings("unchecked")
@@ -154,8 +152,7 @@ public class ObjectStoreDataset<T> extends AbstractDataset implements ObjectStor
       return null;
     }
     // decode T using schema
-    ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-    BinaryDecoder decoder = new BinaryDecoder(bis);
+    ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(bytes));
     try {
       return getReflectionDatumReader().read(decoder, this.schema);
     } catch (IOException e) {
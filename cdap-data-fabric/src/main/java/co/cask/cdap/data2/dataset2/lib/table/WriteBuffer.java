@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nullable;
+
+/**
+ * The in-memory buffer of changes made by a {@link BufferingTable} in a transaction, as row->(column->value).
+ * <p>
+ * Rows are kept in an open addressing hash table keyed by the row bytes, so that put and get of a row don't pay
+ * for keeping the rows sorted. The sorted view of the rows that scan and persist need is a skip list, which is
+ * only brought up to date when it is requested: the rows added since the last request are sorted and inserted
+ * into it then, so that a scan after a few puts doesn't sort the whole buffer again. Columns of a row are kept in
+ * a sorted map, which is shared between the buffer and its sorted view.
+ * <p>
+ * This class is not thread safe.
+ */
+final class WriteBuffer {
+
+  // Must be a power of two
+  private static final int INITIAL_CAPACITY = 64;
+  // Clearing shrinks the table back to the initial capacity if it is larger than this
+  private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+  private byte[][] rows;
+  private NavigableMap<byte[], Update>[] columns;
+  private int size;
+  private ConcurrentNavigableMap<byte[], NavigableMap<byte[], Update>> sorted;
+  // Rows that are not in the sorted view yet, in the order they were added
+  private byte[][] addedRows;
+  private int addedCount;
+
+  WriteBuffer() {
+    allocate(INITIAL_CAPACITY);
+    sorted = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    addedRows = new byte[INITIAL_CAPACITY][];
+  }
+
+  /**
+   * Returns the buffered columns of the given row, or {@code null} if nothing is buffered for the row.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> get(byte[] row) {
+    int idx = indexOf(row);
+    return rows[idx] == null ? null : columns[idx];
+  }
+
+  /**
+   * Returns the buffered columns of the given row, creating an empty column map if nothing is buffered for the row.
+   * The row is copied when added, to protect the buffer against changes of the array by the caller.
+   */
+  NavigableMap<byte[], Update> getOrCreate(byte[] row) {
+    int idx = indexOf(row);
+    if (rows[idx] != null) {
+      return columns[idx];
+    }
+
+    NavigableMap<byte[], Update> rowColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    rows[idx] = Arrays.copyOf(row, row.length);
+    columns[idx] = rowColumns;
+    if (addedCount == addedRows.length) {
+      addedRows = Arrays.copyOf(addedRows, addedCount * 2);
+    }
+    addedRows[addedCount++] = rows[idx];
+    // Keeps the load factor at or below 0.5
+    if (++size * 2 > rows.length) {
+      resize(rows.length * 2);
+    }
+    return rowColumns;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns all buffered rows sorted by row key. Once a non-empty map is returned, the same map is returned until
+   * this buffer is cleared, and rows added to this buffer are added to it the next time this method is called.
+   * Iterators over the map are weakly consistent, so they may or may not see the rows added while iterating.
+   * Changes to the columns of the rows already in the map are visible through it.
+   */
+  NavigableMap<byte[], NavigableMap<byte[], Update>> getSorted() {
+    if (addedCount == 0) {
+      return sorted;
+    }
+    Arrays.sort(addedRows, 0, addedCount, Bytes.BYTES_COMPARATOR);
+    if (sorted.isEmpty()) {
+      // Creating the skip list from a sorted map is linear, rather than inserting the rows one by one
+      ImmutableSortedMap.Builder<byte[], NavigableMap<byte[], Update>> builder =
+        ImmutableSortedMap.orderedBy(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < addedCount; i++) {
+        builder.put(addedRows[i], columns[indexOf(addedRows[i])]);
+      }
+      sorted = new ConcurrentSkipListMap<>(builder.build());
+    } else {
+      for (int i = 0; i < addedCount; i++) {
+        sorted.put(addedRows[i], columns[indexOf(addedRows[i])]);
+      }
+    }
+    Arrays.fill(addedRows, 0, addedCount, null);
+    addedCount = 0;
+    return sorted;
+  }
+
+  /**
+   * Removes all rows from this buffer. Sorted views returned before are not affected.
+   */
+  void clear() {
+    if (size == 0) {
+      return;
+    }
+    if (rows.length > MAX_RETAINED_CAPACITY) {
+      allocate(INITIAL_CAPACITY);
+      addedRows = new byte[INITIAL_CAPACITY][];
+    } else {
+      Arrays.fill(rows, null);
+      Arrays.fill(columns, null);
+      Arrays.fill(addedRows, 0, addedCount, null);
+    }
+    size = 0;
+    sorted = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    addedCount = 0;
+  }
+
+  /**
+   * Returns the slot of the given row, which is either the slot holding the row or the empty slot where
+   * the row should be inserted.
+   */
+  private int indexOf(byte[] row) {
+    int mask = rows.length - 1;
+    int idx = hash(row) & mask;
+    while (rows[idx] != null && !Bytes.equals(rows[idx], row)) {
+      idx = (idx + 1) & mask;
+    }
+    return idx;
+  }
+
+  private void resize(int capacity) {
+    byte[][] oldRows = rows;
+    NavigableMap<byte[], Update>[] oldColumns = columns;
+    allocate(capacity);
+    for (int i = 0; i < oldRows.length; i++) {
+      if (oldRows[i] != null) {
+        int idx = indexOf(oldRows[i]);
+        rows[idx] = oldRows[i];
+        columns[idx] = oldColumns[i];
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocate(int capacity) {
+    rows = new byte[capacity][];
+    columns = new NavigableMap[capacity];
+  }
+
+  private static int hash(byte[] row) {
+    // FNV-1a followed by the murmur3 finalizer. Arrays.hashCode() is not used since it collides a lot for keys
+    // that differ only in the last few bytes, such as big-endian encoded numbers, and linear probing is sensitive
+    // to collisions and to clustering of hash codes in the low bits.
+    int h = 0x811c9dc5;
+    for (byte b : row) {
+      h = (h ^ (b & 0xff)) * 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    return h ^ (h >>> 16);
+  }
+}
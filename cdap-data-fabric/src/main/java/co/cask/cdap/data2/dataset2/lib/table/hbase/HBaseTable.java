@@ -26,6 +26,7 @@ import co.cask.cdap.api.dataset.table.Filter;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
@@ -48,6 +49,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -55,15 +57,28 @@ import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -71,12 +86,15 @@ import javax.annotation.Nullable;
  */
 // todo: do periodic flush when certain threshold is reached
 // todo: extract separate "no delete inside tx" table?
-// todo: consider writing & reading using HTable to do in multi-threaded way
+// todo: consider reading using HTable to do in multi-threaded way
 public class HBaseTable extends BufferingTable {
   private static final Logger LOG = LoggerFactory.getLogger(HBaseTable.class);
 
   public static final String DELTA_WRITE = "d";
 
+  // Executor shared by all tables in the process for persisting to regions in parallel. Created on first use.
+  private static ExecutorService persistExecutor;
+
   private final HBaseTableUtil tableUtil;
   private final HTable hTable;
   private final String hTableName;
@@ -84,6 +102,14 @@ public class HBaseTable extends BufferingTable {
   private final TransactionCodec txCodec;
   // name length + name of the table: handy to have one cached
   private final byte[] nameAsTxChangePrefix;
+  // null if changes are not persisted in parallel
+  private final ExecutorService regionExecutor;
+  // For creating the tables that batches are written with by the region executor
+  private final Configuration hConf;
+  private final TableId tableId;
+  // Idle tables for writing batches by the region executor. HTable is not thread safe, hence each is used by one
+  // thread at a time.
+  private final Queue<HTable> batchTables;
 
   private Transaction tx;
 
@@ -108,6 +134,11 @@ public class HBaseTable extends BufferingTable {
     // Overriding the hbase tx change prefix so it resembles the hbase table name more closely, since the HBase
     // table name is not the same as the dataset name anymore
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) this.hTableName.length()}, Bytes.toBytes(this.hTableName));
+    int persistThreads = cConf.getInt(Constants.Dataset.TABLE_HBASE_PERSIST_THREADS, 0);
+    this.regionExecutor = persistThreads > 0 ? getPersistExecutor(persistThreads) : null;
+    this.hConf = hConf;
+    this.tableId = tableId;
+    this.batchTables = new ConcurrentLinkedQueue<>();
   }
 
   @Override
@@ -171,11 +202,15 @@ public class HBaseTable extends BufferingTable {
       super.close();
     } finally {
       hTable.close();
+      for (HTable table : batchTables) {
+        table.close();
+      }
     }
   }
 
   @Override
   protected void persist(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) throws Exception {
+    long startTime = System.nanoTime();
     List<Put> puts = Lists.newArrayList();
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : buff.entrySet()) {
       PutBuilder put = tableUtil.buildPut(row.getKey());
@@ -211,11 +246,19 @@ public class HBaseTable extends BufferingTable {
         puts.add(put.build());
       }
     }
-    if (!puts.isEmpty()) {
+    if (puts.isEmpty()) {
+      reportTime(Constants.Metrics.Name.Dataset.PERSIST_PREPARE_TIME, startTime);
+      LOG.info("No writes to persist!");
+      return;
+    }
+    if (regionExecutor != null) {
+      Collection<List<Row>> regionMutations = groupByRegion(puts);
+      reportTime(Constants.Metrics.Name.Dataset.PERSIST_PREPARE_TIME, startTime);
+      batchInParallel(regionMutations);
+    } else {
+      reportTime(Constants.Metrics.Name.Dataset.PERSIST_PREPARE_TIME, startTime);
       hTable.put(puts);
       hTable.flushCommits();
-    } else {
-      LOG.info("No writes to persist!");
     }
   }
 
@@ -246,8 +289,92 @@ public class HBaseTable extends BufferingTable {
       }
       deletes.add(delete.build());
     }
-    hTable.delete(deletes);
-    hTable.flushCommits();
+    if (regionExecutor != null) {
+      batchInParallel(groupByRegion(deletes));
+    } else {
+      hTable.delete(deletes);
+      hTable.flushCommits();
+    }
+  }
+
+  /**
+   * Groups the given mutations by the region that the row of each mutation belongs to. The region locations
+   * are cached by the HBase client, so this normally doesn't involve calls to HBase.
+   */
+  private Collection<List<Row>> groupByRegion(List<? extends Row> mutations) throws IOException {
+    Map<String, List<Row>> regionMutations = Maps.newHashMap();
+    for (Row mutation : mutations) {
+      String region = hTable.getRegionLocation(mutation.getRow()).getRegionInfo().getEncodedName();
+      List<Row> rows = regionMutations.get(region);
+      if (rows == null) {
+        rows = Lists.newArrayList();
+        regionMutations.put(region, rows);
+      }
+      rows.add(mutation);
+    }
+    return regionMutations.values();
+  }
+
+  /**
+   * Writes the given groups of mutations in parallel, one batch per group, with the calling thread writing one of
+   * the groups. It returns only after all batches are completed, so that a failure can be undone safely.
+   * Since HTable is not thread safe, the other groups are written with tables of their own.
+   */
+  private void batchInParallel(Collection<List<Row>> groups) throws Exception {
+    Iterator<List<Row>> iterator = groups.iterator();
+    List<Row> callerGroup = iterator.next();
+    List<Future<?>> futures = Lists.newArrayListWithCapacity(groups.size() - 1);
+    while (iterator.hasNext()) {
+      final List<Row> group = iterator.next();
+      futures.add(regionExecutor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          HTable table = batchTables.poll();
+          if (table == null) {
+            table = tableUtil.createHTable(hConf, tableId);
+          }
+          try {
+            table.batch(group, new Object[group.size()]);
+          } finally {
+            batchTables.add(table);
+          }
+          return null;
+        }
+      }));
+    }
+
+    Exception failure = null;
+    try {
+      hTable.batch(callerGroup, new Object[callerGroup.size()]);
+    } catch (Exception e) {
+      failure = e;
+    }
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static synchronized ExecutorService getPersistExecutor(int threads) {
+    if (persistExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                           new LinkedBlockingQueue<Runnable>(),
+                                                           Threads.createDaemonThreadFactory("hbase-table-persist-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      persistExecutor = executor;
+    }
+    return persistExecutor;
   }
 
   @Override
@@ -35,190 +35,237 @@ import java.util.Comparator;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 
 /**
  * Holds all in-memory tables for {@link InMemoryTable}.
+ *
+ * Tables are kept in a concurrent map and rows of each table in a concurrent sorted map, so that operations
+ * on different tables and different rows can proceed in parallel. Modification and read of the columns of
+ * a row are guarded by a lock striped by the row key, which makes each row operation atomic. Operations that
+ * remove many rows at once hold all the locks of the table.
  */
-// todo: use locks instead of synchronize
 // todo: consider using SortedMap instead of NavigableMap in APIs
 public class InMemoryTableService {
-  private static Map<String, ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
-    Maps.newHashMap();
 
-  public static synchronized boolean exists(String tableName) {
+  // Number of lock stripes per table. Must be a power of two.
+  private static final int LOCK_STRIPES = 64;
+
+  private static final ConcurrentMap<String, TableData> tables = new ConcurrentHashMap<>();
+
+  public static boolean exists(String tableName) {
     return tables.containsKey(tableName);
   }
 
-  public static synchronized void create(String tableName) {
+  public static void create(String tableName) {
     if (!tables.containsKey(tableName)) {
-      tables.put(tableName, new ConcurrentSkipListMap<byte[],
-        NavigableMap<byte[], NavigableMap<Long, Update>>>(Bytes.BYTES_COMPARATOR));
+      tables.putIfAbsent(tableName, new TableData());
     }
   }
 
-  public static synchronized void truncate(String tableName) {
-    tables.get(tableName).clear();
+  public static void truncate(String tableName) {
+    TableData table = tables.get(tableName);
+    table.lockAll();
+    try {
+      table.rows.clear();
+    } finally {
+      table.unlockAll();
+    }
   }
 
-  public static synchronized void drop(String tableName) {
+  public static void drop(String tableName) {
     tables.remove(tableName);
   }
 
-  public static synchronized void reset() {
+  public static void reset() {
     tables.clear();
   }
 
   // no nulls
-  public static synchronized void merge(String tableName,
-                                        SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
-                                        long version) {
+  public static void merge(String tableName,
+                           SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           long version) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    TableData table = tables.get(tableName);
     SortedMap<byte[], ? extends SortedMap<byte[], Update>> changesCopy = deepCopyUpdates(changes);
     for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
       merge(table, change.getKey(), change.getValue(), version);
     }
   }
 
-  private static void merge(ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table,
-                            byte[] row, Map<byte[], Update> changes, long version) {
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now merge the changes into the row, one by one
-    for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(keyVal.getKey());
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(keyVal.getKey(), colMap);
+  private static void merge(TableData table, byte[] row, Map<byte[], Update> changes, long version) {
+    Lock lock = table.getLock(row).writeLock();
+    lock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.getOrCreateRow(row);
+      // now merge the changes into the row, one by one
+      for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
+        // create the column in the row if it does not exist
+        NavigableMap<Long, Update> colMap = rowMap.get(keyVal.getKey());
+        if (colMap == null) {
+          colMap = Maps.newTreeMap();
+          rowMap.put(keyVal.getKey(), colMap);
+        }
+        // put into the column with given version
+        Update merged = Updates.mergeUpdates(colMap.get(version), keyVal.getValue());
+        colMap.put(version, merged);
       }
-      // put into the column with given version
-      Update merged = Updates.mergeUpdates(colMap.get(version), keyVal.getValue());
-      colMap.put(version, merged);
+    } finally {
+      lock.unlock();
     }
   }
 
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
-  public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
+  public static Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now increment each column, one by one
-    long versionForWrite = System.currentTimeMillis();
-    for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
-      IncrementValue increment = new IncrementValue(inc.getValue());
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
-      Update last = null;
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(inc.getKey(), colMap);
-      } else {
-        last = colMap.lastEntry().getValue();
+    TableData table = tables.get(tableName);
+    Lock lock = table.getLock(row).writeLock();
+    lock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.getOrCreateRow(row);
+      // now increment each column, one by one
+      long versionForWrite = System.currentTimeMillis();
+      for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
+        IncrementValue increment = new IncrementValue(inc.getValue());
+        // create the column in the row if it does not exist
+        NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
+        Update last = null;
+        if (colMap == null) {
+          colMap = Maps.newTreeMap();
+          rowMap.put(inc.getKey(), colMap);
+        } else {
+          last = colMap.lastEntry().getValue();
+        }
+        Update merged = Updates.mergeUpdates(last, increment);
+        // put into the column with given version
+        long newValue = Bytes.toLong(merged.getBytes());
+        resultMap.put(inc.getKey(), newValue);
+        colMap.put(versionForWrite, merged);
       }
-      Update merged = Updates.mergeUpdates(last, increment);
-      // put into the column with given version
-      long newValue = Bytes.toLong(merged.getBytes());
-      resultMap.put(inc.getKey(), newValue);
-      colMap.put(versionForWrite, merged);
+    } finally {
+      lock.unlock();
     }
     return resultMap;
   }
 
-  public static synchronized boolean swap(String tableName, byte[] row, byte[] column,
-                                          byte[] oldValue, byte[] newValue) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    Update existingValue = null;
-    if (rowMap != null) {
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap != null) {
-        existingValue = columnMap.lastEntry().getValue();
-      }
-    }
-    // verify existing value matches
-    if (oldValue == null && existingValue != null) {
-      return false;
-    }
-    if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
-      return false;
-    }
-    // write new value
-    if (newValue == null) {
+  public static boolean swap(String tableName, byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    TableData table = tables.get(tableName);
+    Lock lock = table.getLock(row).writeLock();
+    lock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+      Update existingValue = null;
       if (rowMap != null) {
-        rowMap.remove(column);
+        NavigableMap<Long, Update> columnMap = rowMap.get(column);
+        if (columnMap != null) {
+          existingValue = columnMap.lastEntry().getValue();
+        }
       }
-    } else {
-      if (rowMap == null) {
-        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        table.put(row, rowMap);
+      // verify existing value matches
+      if (oldValue == null && existingValue != null) {
+        return false;
       }
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap == null) {
-        columnMap = Maps.newTreeMap();
-        rowMap.put(column, columnMap);
+      if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
+        return false;
       }
-      PutValue newPut = new PutValue(newValue);
-      columnMap.put(System.currentTimeMillis(), newPut);
+      // write new value
+      if (newValue == null) {
+        if (rowMap != null) {
+          rowMap.remove(column);
+        }
+      } else {
+        if (rowMap == null) {
+          rowMap = table.getOrCreateRow(row);
+        }
+        NavigableMap<Long, Update> columnMap = rowMap.get(column);
+        if (columnMap == null) {
+          columnMap = Maps.newTreeMap();
+          rowMap.put(column, columnMap);
+        }
+        PutValue newPut = new PutValue(newValue);
+        columnMap.put(System.currentTimeMillis(), newPut);
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public static synchronized void undo(String tableName,
-                                       NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
-                                       long version) {
+  public static void undo(String tableName, NavigableMap<byte[], NavigableMap<byte[], Update>> changes, long version) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    TableData table = tables.get(tableName);
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
       byte[] row = change.getKey();
-      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-      if (rowMap != null) {
-        for (byte[] column : change.getValue().keySet()) {
-          NavigableMap<Long, Update> values = rowMap.get(column);
-          values.remove(version);
+      Lock lock = table.getLock(row).writeLock();
+      lock.lock();
+      try {
+        NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+        if (rowMap != null) {
+          for (byte[] column : change.getValue().keySet()) {
+            NavigableMap<Long, Update> values = rowMap.get(column);
+            values.remove(version);
+          }
         }
+      } finally {
+        lock.unlock();
       }
     }
   }
 
-  public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void delete(String tableName, Iterable<byte[]> rows) {
+    TableData table = tables.get(tableName);
     for (byte[] row : rows) {
-      table.remove(row);
+      Lock lock = table.getLock(row).writeLock();
+      lock.lock();
+      try {
+        table.rows.remove(row);
+      } finally {
+        lock.unlock();
+      }
     }
   }
 
-  public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
-    columnValues.remove(column);
+  public static void deleteColumns(String tableName, byte[] row, byte[] column) {
+    TableData table = tables.get(tableName);
+    Lock lock = table.getLock(row).writeLock();
+    lock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.rows.get(row);
+      if (columnValues != null) {
+        columnValues.remove(column);
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public static synchronized void delete(String tableName, byte[] rowPrefix) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    if (rowPrefix.length == 0) {
-      table.clear();
-    } else {
-      byte[] rowAfter = rowAfterPrefix(rowPrefix);
-      if (rowAfter == null) {
-        table.tailMap(rowPrefix).clear();
+  public static void delete(String tableName, byte[] rowPrefix) {
+    TableData table = tables.get(tableName);
+    table.lockAll();
+    try {
+      if (rowPrefix.length == 0) {
+        table.rows.clear();
       } else {
-        table.subMap(rowPrefix, rowAfter).clear();
+        byte[] rowAfter = rowAfterPrefix(rowPrefix);
+        if (rowAfter == null) {
+          table.rows.tailMap(rowPrefix).clear();
+        } else {
+          table.rows.subMap(rowPrefix, rowAfter).clear();
+        }
       }
+    } finally {
+      table.unlockAll();
     }
   }
 
@@ -239,23 +286,26 @@ public class InMemoryTableService {
     return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
-                                                                                  byte[] row,
-                                                                                  @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName, byte[] row,
+                                                                     @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    TableData table = tables.get(tableName);
     Preconditions.checkArgument(table != null, "table not found: " + tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+    Lock lock = table.getLock(row).readLock();
+    lock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+      return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
-                             getRowRange(String tableName,
-                                         byte[] startRow,
-                                         byte[] stopRow,
-                                         @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> getRowRange(
+    String tableName, byte[] startRow, byte[] stopRow, @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = tables.get(tableName);
+    TableData table = tables.get(tableName);
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = table.rows;
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
     if (startRow == null && stopRow == null) {
       rows = tableData;
@@ -267,18 +317,25 @@ public class InMemoryTableService {
       rows = tableData.subMap(startRow, true, stopRow, false);
     }
 
+    // Iteration over the concurrent map is weakly consistent. Each row is copied while holding its lock.
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
       Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rowMap : rows.entrySet()) {
-      NavigableMap<byte[], NavigableMap<Long, Update>> columns =
-        tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
-      result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+      Lock lock = table.getLock(rowMap.getKey()).readLock();
+      lock.lock();
+      try {
+        NavigableMap<byte[], NavigableMap<Long, Update>> columns =
+          tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
+        result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+      } finally {
+        lock.unlock();
+      }
     }
 
     return result;
   }
 
-  public static synchronized Collection<String> list() {
+  public static Collection<String> list() {
     return ImmutableList.copyOf(tables.keySet());
   }
 
@@ -356,6 +413,66 @@ public class InMemoryTableService {
     return src == null ? null : Arrays.copyOf(src, src.length);
   }
 
+  /**
+   * Holds the rows of a table and the locks striped by row key for guarding modifications to the rows.
+   */
+  private static final class TableData {
+
+    private final ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
+    private final ReadWriteLock[] locks;
+
+    TableData() {
+      this.rows = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      this.locks = new ReadWriteLock[LOCK_STRIPES];
+      for (int i = 0; i < locks.length; i++) {
+        locks[i] = new ReentrantReadWriteLock();
+      }
+    }
+
+    /**
+     * Returns the lock for guarding the given row.
+     */
+    ReadWriteLock getLock(byte[] row) {
+      int hash = Bytes.hashCode(row);
+      // Spread the hash bits so that rows differ only in the high bits also map to different stripes
+      hash ^= (hash >>> 20) ^ (hash >>> 12);
+      hash ^= (hash >>> 7) ^ (hash >>> 4);
+      return locks[hash & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Acquires the write locks of all rows. Locks are always acquired in the same order, so that concurrent
+     * callers cannot deadlock.
+     */
+    void lockAll() {
+      for (ReadWriteLock lock : locks) {
+        lock.writeLock().lock();
+      }
+    }
+
+    /**
+     * Releases the locks acquired by {@link #lockAll()}.
+     */
+    void unlockAll() {
+      for (int i = locks.length - 1; i >= 0; i--) {
+        locks[i].writeLock().unlock();
+      }
+    }
+
+    /**
+     * Returns the columns of the given row, creating the row if it doesn't exist.
+     * Must be called with the lock of the row held.
+     */
+    NavigableMap<byte[], NavigableMap<Long, Update>> getOrCreateRow(byte[] row) {
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = rows.get(row);
+      if (rowMap == null) {
+        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        rows.put(row, rowMap);
+      }
+      return rowMap;
+    }
+  }
+
   // This is descending Longs comparator
   public static final Comparator<Long> VERSIONED_VALUE_MAP_COMPARATOR = new Ordering<Long>() {
     @Override
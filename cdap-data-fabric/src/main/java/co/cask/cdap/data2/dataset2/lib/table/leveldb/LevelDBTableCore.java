@@ -20,7 +20,6 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
-import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.tephra.Transaction;
 import com.google.common.base.Preconditions;
@@ -59,9 +58,6 @@ public class LevelDBTableCore {
   // we use the empty column family for all data
   private static final byte[] DATA_COLFAM = { };
 
-  // we will never write this, but use it as an upper bound for scans
-  private static final byte[] NEXT_COLFAM = { 0x00 };
-
   // used for obtaining the next row/column for upper bound
   private static final byte[] ONE_ZERO = { 0x00 };
 
@@ -202,8 +198,7 @@ public class LevelDBTableCore {
 
     DBIterator iterator = getDB().iterator();
     seekToStart(iterator, startRow);
-    byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
-    return new LevelDBScanner(iterator, endKey, filter, columns, tx);
+    return new LevelDBScanner(iterator, stopRow, filter, columns, tx);
   }
 
   /**
@@ -222,10 +217,10 @@ public class LevelDBTableCore {
     }
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
-    byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
+    byte[] stopColumn = columns == null ? stopCol : upperBound(columns[columns.length - 1]);
     try (DBIterator iterator = getDB().iterator()) {
       iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
+      return getRow(iterator, row, stopColumn, tx, columns, limit);
     }
   }
 
@@ -245,85 +240,69 @@ public class LevelDBTableCore {
 
 
   /**
-   * Read one row of the table. This is used both by getRow() and by Scanner.next().
-   * @param iterator An iterator over the database. This is passed in such that the caller can reuse the same
-   *                 iterator if scanning multiple rows.
-   * @param endKey An upper bound for the (leveldb) keys to read. This method never reads past that key.
+   * Read one row of the table. This is used both by getRow() and by Scanner.next(). The cells are decoded from the
+   * keys of the iterator as it advances, so that only the columns returned are copied.
+   * @param iterator An iterator over the database, positioned at the first key to read. This is passed in such that
+   *                 the caller can reuse the same iterator if scanning multiple rows.
+   * @param row The row to read. Reading stops at the first key of another row, without advancing the iterator past
+   *            it, so that the next row can be read with the same iterator.
+   * @param stopColumn If non-null, reading stops at the first column that is not less than this.
    * @param tx The transaction to use for visibility.
-   * @param multiRow If true indicates that the row may end before the endKey. In that case,
-   *                 this method will stop reading as soon as it sees more than one row key. The iterator will not be
-   *                 advanced past the beginning of the next row (so that next time, we still see the entire next row).
    * @param columns If non-null, only columns contained in this will be returned. The given columns should be sorted.
-   * @param limit If non-negative, at most this many columns will be returned. If multiRow is true, this is ignored.
-   * @return a pair consisting of the row key of the next non-empty row and the column map for that row. If multiRow
-   *         is false, null is returned for row key because the caller already knows it.
+   * @param limit If positive, at most this many columns will be returned.
+   * @return the column map for the row, which is empty if the row has no visible columns
    */
-  private static ImmutablePair<byte[], NavigableMap<byte[], byte[]>>
-  getRow(DBIterator iterator, byte[] endKey, Transaction tx, boolean multiRow, byte[][] columns, int limit)
+  private static NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[] stopColumn,
+                                                     @Nullable Transaction tx, @Nullable byte[][] columns, int limit)
     throws IOException {
 
-    byte[] rowBeingRead = null;
-    byte[] previousRow = null;
-    byte[] previousCol = null;
+    byte[] previousKey = null;
     NavigableMap<byte[], byte[]> map = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
 
     while (iterator.hasNext()) {
       Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+      byte[] key = entry.getKey();
 
-      // if we have reached past the endKey, nothing was found, return null
-      if (endKey != null && KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
+      // stop without advancing the iterator if we reached the next row or the stop column
+      int rowLength = getRowLength(key);
+      if (!Bytes.equals(key, KeyValue.ROW_LENGTH_SIZE, rowLength, row, 0, row.length)) {
         break;
       }
-
-      // if this is part of a multi-row scan and we reach the next row, stop without advancing iterator
-      KeyValue kv = KeyValue.fromKey(entry.getKey());
-      if (multiRow) {
-        byte[] rowKey = kv.getRow();
-        if (rowBeingRead != null) {
-          if (Bytes.compareTo(rowKey, rowBeingRead) > 0) {
-            break;
-          }
-        }
+      int columnOffset = getColumnOffset(key, rowLength);
+      int columnLength = key.length - KeyValue.TIMESTAMP_TYPE_SIZE - columnOffset;
+      if (stopColumn != null
+        && Bytes.compareTo(key, columnOffset, columnLength, stopColumn, 0, stopColumn.length) >= 0) {
+        break;
       }
 
       // it is safe to consume this entry, advance the iterator
       iterator.next();
 
       // Determine if this KV is visible
-      if (tx != null && !tx.isVisible(kv.getTimestamp())) {
+      if (tx != null && !tx.isVisible(getTimestamp(key))) {
         continue;
       }
 
-      // have we seen this row & column before?
-      byte[] row = kv.getRow();
-      byte[] column = kv.getQualifier();
-      boolean seenThisColumn = previousRow != null && Bytes.equals(previousRow, row) &&
-                               previousCol != null && Bytes.equals(previousCol, column);
-      if (seenThisColumn) {
+      // have we seen this column before?
+      if (previousKey != null && isSameColumn(previousKey, key)) {
         continue;
       }
       // remember that this is the last column we have seen
-      previousRow = row;
-      previousCol = column;
+      previousKey = key;
 
       // is it a column we want?
-      if (columns == null || Arrays.binarySearch(columns, column, Bytes.BYTES_COMPARATOR) >= 0) {
+      if (columns == null || containsColumn(columns, key, columnOffset, columnLength)) {
         byte[] value = entry.getValue();
         // only add to map if it is not a delete
         if (tx == null || !Bytes.equals(value, DELETE_MARKER)) {
-          map.put(column, value);
-          // first time we add a column. must remember the row key to know when to stop
-          if (multiRow && rowBeingRead == null) {
-            rowBeingRead = kv.getRow();
-          }
+          map.put(Arrays.copyOfRange(key, columnOffset, columnOffset + columnLength), value);
           if (limit > 0 && map.size() >= limit) {
             break;
           }
         }
       }
     }
-    // note this will return null for the row being read if multiRow is false (because the caller knows the row)
-    return new ImmutablePair<>(rowBeingRead, map);
+    return map;
   }
 
   public void deleteRows(byte[] prefix) throws IOException {
@@ -334,7 +313,9 @@ public class LevelDBTableCore {
       iterator.seek(createStartKey(prefix));
       while (iterator.hasNext()) {
         Map.Entry<byte[], byte[]> entry = iterator.next();
-        if (!Bytes.startsWith(KeyValue.fromKey(entry.getKey()).getRow(), prefix)) {
+        byte[] key = entry.getKey();
+        if (getRowLength(key) < prefix.length ||
+          !Bytes.equals(key, KeyValue.ROW_LENGTH_SIZE, prefix.length, prefix, 0, prefix.length)) {
           // iterator is past prefix
           break;
         }
@@ -367,8 +348,8 @@ public class LevelDBTableCore {
 
       // iterate over the database and the rows to delete, collecting (raw) keys to delete
       while (entry != null && currentRow != null) {
-        KeyValue kv = KeyValue.fromKey(entry.getKey());
-        int comp = Bytes.compareTo(kv.getRow(), currentRow);
+        byte[] key = entry.getKey();
+        int comp = Bytes.compareTo(key, KeyValue.ROW_LENGTH_SIZE, getRowLength(key), currentRow, 0, currentRow.length);
         if (comp == 0) {
           // same row -> delete
           batch.delete(entry.getKey());
@@ -481,20 +462,21 @@ public class LevelDBTableCore {
   }
 
   /**
-   * A scanner for a range of rows.
+   * A scanner for a range of rows. The stop row and the filter are applied to the row of the first key of each row,
+   * before reading its cells, so that rows which are not returned are skipped without decoding their columns.
    */
   private static class LevelDBScanner implements Scanner {
 
     private final Transaction tx;
-    private byte[] endKey;
+    private final byte[] stopRow;
     private final DBIterator iterator;
     private final byte[][] columns;
     private final FuzzyRowFilter filter;
 
-    public LevelDBScanner(DBIterator iterator, byte[] endKey,
+    public LevelDBScanner(DBIterator iterator, @Nullable byte[] stopRow,
                           @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx) {
       this.tx = tx;
-      this.endKey = endKey;
+      this.stopRow = stopRow;
       this.iterator = iterator;
       this.filter = filter;
       this.columns = columns;
@@ -503,21 +485,25 @@ public class LevelDBTableCore {
     @Override
     public Row next() {
       try {
-        while (true) {
-          ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
-          if (result.getFirst() == null) {
+        while (iterator.hasNext()) {
+          byte[] key = iterator.peekNext().getKey();
+          int rowLength = getRowLength(key);
+          if (stopRow != null
+            && Bytes.compareTo(key, KeyValue.ROW_LENGTH_SIZE, rowLength, stopRow, 0, stopRow.length) >= 0) {
             return null;
           }
+          byte[] row = Arrays.copyOfRange(key, KeyValue.ROW_LENGTH_SIZE, KeyValue.ROW_LENGTH_SIZE + rowLength);
+
           // apply row filter if any
           if (filter != null) {
-            FuzzyRowFilter.ReturnCode code = filter.filterRow(result.getFirst());
+            FuzzyRowFilter.ReturnCode code = filter.filterRow(row);
             switch (code) {
               case DONE: {
                 return null;
               }
               case SEEK_NEXT_USING_HINT: {
                 // row does not match but another one could. seek to next possible matching row and iterate
-                byte[] seekToRow = filter.getNextRowHint(result.getFirst());
+                byte[] seekToRow = filter.getNextRowHint(row);
                 iterator.seek(createStartKey(seekToRow));
                 continue;
               }
@@ -526,8 +512,14 @@ public class LevelDBTableCore {
               }
             }
           }
-          return new Result(result.getFirst(), result.getSecond());
+
+          NavigableMap<byte[], byte[]> rowColumns = getRow(iterator, row, null, tx, columns, -1);
+          // rows without any visible column are skipped
+          if (!rowColumns.isEmpty()) {
+            return new Result(row, rowColumns);
+          }
         }
+        return null;
       } catch (Exception e) {
         throw Throwables.propagate(e);
       }
@@ -544,6 +536,50 @@ public class LevelDBTableCore {
     }
   }
 
+  // ------- helpers to decode the keys without creating KeyValue objects ----------
+
+  private static int getRowLength(byte[] key) {
+    return Bytes.toShort(key, 0);
+  }
+
+  private static int getColumnOffset(byte[] key, int rowLength) {
+    int familyLengthOffset = KeyValue.ROW_LENGTH_SIZE + rowLength;
+    return familyLengthOffset + KeyValue.FAMILY_LENGTH_SIZE + key[familyLengthOffset];
+  }
+
+  private static long getTimestamp(byte[] key) {
+    return Bytes.toLong(key, key.length - KeyValue.TIMESTAMP_TYPE_SIZE);
+  }
+
+  /**
+   * Returns whether the two keys are for the same row and column, that is, they only differ in timestamp and type.
+   */
+  private static boolean isSameColumn(byte[] key1, byte[] key2) {
+    return key1.length == key2.length
+      && Bytes.equals(key1, 0, key1.length - KeyValue.TIMESTAMP_TYPE_SIZE,
+                      key2, 0, key2.length - KeyValue.TIMESTAMP_TYPE_SIZE);
+  }
+
+  /**
+   * Binary searches the sorted columns for the column in the given part of a key.
+   */
+  private static boolean containsColumn(byte[][] columns, byte[] key, int offset, int length) {
+    int low = 0;
+    int high = columns.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Bytes.compareTo(columns[mid], 0, columns[mid].length, key, offset, length);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
   // ------- helpers to create the keys for writes and scans ----------
 
   private static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
@@ -561,14 +597,4 @@ public class LevelDBTableCore {
   private static byte[] createStartKey(byte[] row, byte[] column) {
     return new KeyValue(row, DATA_COLFAM, column, KeyValue.LATEST_TIMESTAMP, KeyValue.Type.Maximum).getKey();
   }
-
-  private static byte[] createEndKey(byte[] row, byte[] column) {
-    if (column != null) {
-      // we have a stop column and can use that as an upper bound
-      return new KeyValue(row, DATA_COLFAM, column, KeyValue.LATEST_TIMESTAMP, KeyValue.Type.Maximum).getKey();
-    } else {
-      // no stop column - use next column family as upper bound
-      return new KeyValue(row, NEXT_COLFAM, null, KeyValue.LATEST_TIMESTAMP, KeyValue.Type.Maximum).getKey();
-    }
-  }
 }
@@ -202,6 +202,13 @@ public class FactCodec {
     return mask;
   }
 
+  /**
+   * Returns true if the rows for the given timestamps have the same timebase.
+   */
+  public boolean isSameTimeBase(long ts1, long ts2) {
+    return getTimeBase(roundToResolution(ts1)) == getTimeBase(roundToResolution(ts2));
+  }
+
   public byte[] createColumn(long ts) {
     long timestamp = roundToResolution(ts);
     int timeBase = getTimeBase(timestamp);
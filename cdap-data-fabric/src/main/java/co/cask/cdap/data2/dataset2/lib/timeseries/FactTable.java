@@ -150,6 +150,14 @@ public final class FactTable implements Closeable {
     return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
   }
 
+  /**
+   * Returns true if all rows matched by the given scan have the same timebase, in which case the scan returns
+   * at most one row for a given measure and dimension values.
+   */
+  public boolean isSingleTimeBase(FactScan scan) {
+    return codec.isSameTimeBase(scan.getStartTs(), scan.getEndTs());
+  }
+
   private Scanner getScanner(FactScan scan) {
     // use null if no metrics or more than one metrics are provided in the scan
     String measureName = scan.getMeasureNames().size() == 1 ? scan.getMeasureNames().iterator().next() : null;
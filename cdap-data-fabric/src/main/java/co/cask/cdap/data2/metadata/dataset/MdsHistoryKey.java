@@ -38,6 +38,10 @@ public class MdsHistoryKey {
     return getMdsKey(targetId, time);
   }
 
+  static byte[] getHistoryRowPrefix() {
+    return new MDSKey.Builder().add(ROW_PREFIX).build().getKey();
+  }
+
   public static MDSKey getMdsScanEndKey(Id.NamespacedId targetId) {
     MDSKey.Builder builder = new MDSKey.Builder();
     builder.add(ROW_PREFIX);
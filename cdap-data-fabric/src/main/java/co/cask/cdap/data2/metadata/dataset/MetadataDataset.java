@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.IndexedTable;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -34,6 +35,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
@@ -52,6 +54,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -72,7 +75,8 @@ public class MetadataDataset extends AbstractDataset {
 
   private static final Pattern SPACE_SEPARATOR_PATTERN = Pattern.compile("\\s+");
 
-  private static final String HISTORY_COLUMN = "h"; // column for metadata history
+  private static final String HISTORY_COLUMN = "h"; // column for metadata history checkpoints
+  private static final String HISTORY_DELTA_COLUMN = "d"; // column for metadata history deltas
   private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
 
@@ -90,11 +94,27 @@ public class MetadataDataset extends AbstractDataset {
   public static final String TAGS_KEY = "tags";
   public static final String KEYVALUE_SEPARATOR = ":";
 
+  // Relevance scores of a search term matched by an entity
+  static final int EXACT_MATCH_SCORE = 2;
+  static final int PREFIX_MATCH_SCORE = 1;
+
+  // Number of changes between two full snapshots in the metadata history
+  static final int DEFAULT_HISTORY_CHECKPOINT_INTERVAL = 100;
+
   private final IndexedTable indexedTable;
+  private final int historyCheckpointInterval;
 
   public MetadataDataset(IndexedTable indexedTable) {
+    this(indexedTable, DEFAULT_HISTORY_CHECKPOINT_INTERVAL);
+  }
+
+  public MetadataDataset(IndexedTable indexedTable, int historyCheckpointInterval) {
     super("metadataDataset", indexedTable);
+    Preconditions.checkArgument(historyCheckpointInterval > 0,
+                                "History checkpoint interval must be a positive number, but was %s",
+                                historyCheckpointInterval);
     this.indexedTable = indexedTable;
+    this.historyCheckpointInterval = historyCheckpointInterval;
   }
 
   /**
@@ -320,7 +340,7 @@ public class MetadataDataset extends AbstractDataset {
       deleteIndexes(targetId, deletedMetadataKey);
     }
 
-    writeHistory(targetId);
+    writeHistory(targetId, MetadataDelta.remove(deletedMetadataKeys));
   }
 
   /**
@@ -422,15 +442,25 @@ public class MetadataDataset extends AbstractDataset {
   private Metadata getSnapshotBeforeTime(Id.NamespacedId targetId, long timeMillis) {
     byte[] scanStartKey = MdsHistoryKey.getMdsScanStartKey(targetId, timeMillis).getKey();
     byte[] scanEndKey = MdsHistoryKey.getMdsScanEndKey(targetId).getKey();
-    // TODO: add limit to scan, we need only one row
+    // History is sorted from newest to oldest. Collect the deltas up to the nearest checkpoint,
+    // then replay them on top of it, oldest first.
+    Deque<MetadataDelta> deltas = new LinkedList<>();
+    Map<String, String> metadata = new HashMap<>();
     try (Scanner scanner = indexedTable.scan(scanStartKey, scanEndKey)) {
-      Row next = scanner.next();
-      if (next != null) {
-        return GSON.fromJson(next.getString(HISTORY_COLUMN), Metadata.class);
-      } else {
-        return new Metadata(targetId);
+      Row next;
+      while ((next = nextHistoryRow(scanner)) != null) {
+        String delta = next.getString(HISTORY_DELTA_COLUMN);
+        if (delta == null) {
+          metadata = toMetadataMap(GSON.fromJson(next.getString(HISTORY_COLUMN), Metadata.class));
+          break;
+        }
+        deltas.push(GSON.fromJson(delta, MetadataDelta.class));
       }
     }
+    for (MetadataDelta delta : deltas) {
+      delta.applyTo(metadata);
+    }
+    return toMetadata(targetId, metadata);
   }
 
   /**
@@ -522,50 +552,108 @@ public class MetadataDataset extends AbstractDataset {
    * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value] and can have '*'
    *                    at the end for a prefix search
    * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @return a {@link MetadataEntry} for every index that matched the search query
    */
   public List<MetadataEntry> search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types) {
-    boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
-    List<MetadataEntry> results = new ArrayList<>();
+    // Collect the keys of the matching metadata, and read them all at once
+    List<Get> gets = new ArrayList<>();
     for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
-      Scanner scanner;
-      if (searchTerm.endsWith("*")) {
-        // if prefixed search get start and stop key
-        byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
-        byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
-        scanner = indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
-      } else {
-        byte[] value = Bytes.toBytes(searchTerm);
-        scanner = indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), value);
-      }
-      try {
+      try (Scanner scanner = scanIndexes(searchTerm)) {
         Row next;
         while ((next = scanner.next()) != null) {
-          String rowValue = next.getString(INDEX_COLUMN);
-          if (rowValue == null) {
-            continue;
-          }
-
           final byte[] rowKey = next.getRow();
           String targetType = MdsKey.getTargetType(rowKey);
-
-          // Filter on target type if not set to include all types
-          if (!includeAllTypes &&
-            !types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType))) {
+          if (next.get(INDEX_COLUMN) == null || !isSearchedType(targetType, types)) {
             continue;
           }
 
           Id.NamespacedId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
           String key = MdsKey.getMetadataKey(targetType, rowKey);
-          MetadataEntry entry = getMetadata(targetId, key);
-          results.add(entry);
+          gets.add(new Get(MdsKey.getMDSValueKey(targetId, key).getKey(), Bytes.toBytes(VALUE_COLUMN)));
         }
-      } finally {
-        scanner.close();
+      }
+    }
+
+    List<MetadataEntry> results = new ArrayList<>(gets.size());
+    if (gets.isEmpty()) {
+      return results;
+    }
+    for (Row row : indexedTable.get(gets)) {
+      // The row has no value if the metadata was removed, for example when all tags are removed one by one
+      MetadataEntry entry = convertRow(row);
+      if (entry != null) {
+        results.add(entry);
       }
     }
     return results;
   }
 
+  /**
+   * Searches entities that match the specified search query in the specified namespace and {@link Id.Namespace#SYSTEM}
+   * for the specified {@link MetadataSearchTargetType}, and scores them by relevance. Every term of the search query
+   * that an entity matches adds {@link #EXACT_MATCH_SCORE} to its score if one of its indexes is equal to the term,
+   * or {@link #PREFIX_MATCH_SCORE} if the term is a prefix search that only matches the beginning of its indexes.
+   * A term adds to the score of an entity once, no matter how many of its indexes match. Only the indexes are read.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, as in {@link #search(String, String, Set)}
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @return the score of every entity that matched the search query
+   */
+  public Map<Id.NamespacedId, Integer> searchByRelevance(String namespaceId, String searchQuery,
+                                                         Set<MetadataSearchTargetType> types) {
+    Map<Id.NamespacedId, Integer> scores = new HashMap<>();
+    for (String queryTerm : getQueryTerms(searchQuery)) {
+      Map<Id.NamespacedId, Integer> termScores = new HashMap<>();
+      for (String searchTerm : getNamespacedTerms(namespaceId, queryTerm)) {
+        String exactValue = searchTerm.endsWith("*") ? searchTerm.substring(0, searchTerm.lastIndexOf("*")) : null;
+        try (Scanner scanner = scanIndexes(searchTerm)) {
+          Row next;
+          while ((next = scanner.next()) != null) {
+            String rowValue = next.getString(INDEX_COLUMN);
+            byte[] rowKey = next.getRow();
+            String targetType = MdsKey.getTargetType(rowKey);
+            if (rowValue == null || !isSearchedType(targetType, types)) {
+              continue;
+            }
+
+            Id.NamespacedId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
+            int score = exactValue == null || exactValue.equals(rowValue) ? EXACT_MATCH_SCORE : PREFIX_MATCH_SCORE;
+            Integer termScore = termScores.get(targetId);
+            if (termScore == null || termScore < score) {
+              termScores.put(targetId, score);
+            }
+          }
+        }
+      }
+
+      for (Map.Entry<Id.NamespacedId, Integer> entry : termScores.entrySet()) {
+        Integer score = scores.get(entry.getKey());
+        scores.put(entry.getKey(), score == null ? entry.getValue() : score + entry.getValue());
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Returns a {@link Scanner} over the index rows matching the specified search term, which is a prefix search if
+   * it ends with '*'.
+   */
+  private Scanner scanIndexes(String searchTerm) {
+    if (searchTerm.endsWith("*")) {
+      // if prefixed search get start and stop key
+      byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
+      byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
+      return indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
+    }
+    return indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), Bytes.toBytes(searchTerm));
+  }
+
+  private boolean isSearchedType(String targetType, Set<MetadataSearchTargetType> types) {
+    return types.isEmpty() || types.contains(MetadataSearchTargetType.ALL) ||
+      types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType));
+  }
+
   /**
    * Prepares search terms from the specified search query by
    * <ol>
@@ -581,6 +669,17 @@ public class MetadataDataset extends AbstractDataset {
    */
   private Iterable<String> getSearchTerms(String namespaceId, String searchQuery) {
     List<String> searchTerms = new ArrayList<>();
+    for (String queryTerm : getQueryTerms(searchQuery)) {
+      searchTerms.addAll(getNamespacedTerms(namespaceId, queryTerm));
+    }
+    return searchTerms;
+  }
+
+  /**
+   * Splits the specified search query into lower case terms, removing spaces around {@link #KEYVALUE_SEPARATOR}.
+   */
+  private List<String> getQueryTerms(String searchQuery) {
+    List<String> queryTerms = new ArrayList<>();
     for (String term : Splitter.on(SPACE_SEPARATOR_PATTERN).omitEmptyStrings().trimResults().split(searchQuery)) {
       String formattedSearchTerm = term.toLowerCase();
       // if this is a key:value search remove  spaces around the separator too
@@ -589,12 +688,21 @@ public class MetadataDataset extends AbstractDataset {
         String[] split = formattedSearchTerm.split(KEYVALUE_SEPARATOR, 2);
         formattedSearchTerm = split[0].trim() + KEYVALUE_SEPARATOR + split[1].trim();
       }
-      searchTerms.add(namespaceId + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
-      // in the search results as well
-      if (!Id.Namespace.SYSTEM.getId().equals(namespaceId)) {
-        searchTerms.add(Id.Namespace.SYSTEM.getId() + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      }
+      queryTerms.add(formattedSearchTerm);
+    }
+    return queryTerms;
+  }
+
+  /**
+   * Returns the specified query term prefixed with the specified namespace, and with {@link Id.Namespace#SYSTEM}.
+   */
+  private List<String> getNamespacedTerms(String namespaceId, String queryTerm) {
+    List<String> searchTerms = new ArrayList<>(2);
+    searchTerms.add(namespaceId + KEYVALUE_SEPARATOR + queryTerm);
+    // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
+    // in the search results as well
+    if (!Id.Namespace.SYSTEM.getId().equals(namespaceId)) {
+      searchTerms.add(Id.Namespace.SYSTEM.getId() + KEYVALUE_SEPARATOR + queryTerm);
     }
     return searchTerms;
   }
@@ -608,7 +716,7 @@ public class MetadataDataset extends AbstractDataset {
     put.add(Bytes.toBytes(VALUE_COLUMN), Bytes.toBytes(entry.getValue()));
     indexedTable.put(put);
     storeIndexes(targetId, entry.getKey(), indexer.getIndexes(entry));
-    writeHistory(targetId);
+    writeHistory(targetId, MetadataDelta.update(key, entry.getValue()));
   }
 
   /**
@@ -647,17 +755,150 @@ public class MetadataDataset extends AbstractDataset {
   }
 
   /**
-   * Snapshots the metadata for the given targetId at the given time.
-   * @param targetId target id for which metadata needs snapshotting
+   * Records a change to the metadata of the given targetId in its history. Changes are stored as deltas, with a
+   * checkpoint of the complete metadata for every {@link #historyCheckpointInterval} changes, so that the complete
+   * metadata only needs to be read once in a while.
+   *
+   * @param targetId target id whose metadata changed
+   * @param delta the change to the metadata
    */
-  private void writeHistory(Id.NamespacedId targetId) {
-    Map<String, String> properties = getProperties(targetId);
-    Set<String> tags = getTags(targetId);
-    Metadata metadata = new Metadata(targetId, properties, tags);
+  private void writeHistory(Id.NamespacedId targetId, MetadataDelta delta) {
     byte[] row = MdsHistoryKey.getMdsKey(targetId, System.currentTimeMillis()).getKey();
+    Row latest;
+    try (Scanner scanner = indexedTable.scan(row, MdsHistoryKey.getMdsScanEndKey(targetId).getKey())) {
+      latest = nextHistoryRow(scanner);
+    }
+
+    if (latest == null) {
+      // the first entry in the history of an entity is always a checkpoint
+      writeHistoryCheckpoint(row, new Metadata(targetId, getProperties(targetId), getTags(targetId)));
+      return;
+    }
+    if (delta.isEmpty()) {
+      return;
+    }
+
+    String latestDelta = latest.getString(HISTORY_DELTA_COLUMN);
+    if (Bytes.equals(row, latest.getRow())) {
+      // changes made in the same millisecond share the same row
+      if (latestDelta == null) {
+        Map<String, String> metadata = toMetadataMap(GSON.fromJson(latest.getString(HISTORY_COLUMN), Metadata.class));
+        delta.applyTo(metadata);
+        writeHistoryCheckpoint(row, toMetadata(targetId, metadata));
+      } else {
+        writeHistoryDelta(row, GSON.fromJson(latestDelta, MetadataDelta.class).merge(delta));
+      }
+      return;
+    }
+
+    int count = latestDelta == null ? 1 : GSON.fromJson(latestDelta, MetadataDelta.class).getCount() + 1;
+    if (count >= historyCheckpointInterval) {
+      writeHistoryCheckpoint(row, new Metadata(targetId, getProperties(targetId), getTags(targetId)));
+    } else {
+      writeHistoryDelta(row, delta.withCount(count));
+    }
+  }
+
+  private void writeHistoryCheckpoint(byte[] row, Metadata metadata) {
     indexedTable.put(row, Bytes.toBytes(HISTORY_COLUMN), Bytes.toBytes(GSON.toJson(metadata)));
   }
 
+  private void writeHistoryDelta(byte[] row, MetadataDelta delta) {
+    indexedTable.put(row, Bytes.toBytes(HISTORY_DELTA_COLUMN), Bytes.toBytes(GSON.toJson(delta)));
+  }
+
+  /**
+   * Returns the next row of the metadata history from the given {@link Scanner}, skipping rows without a checkpoint
+   * or a delta, which can be returned for deleted rows.
+   */
+  @Nullable
+  private static Row nextHistoryRow(Scanner scanner) {
+    Row row;
+    while ((row = scanner.next()) != null) {
+      if (row.get(HISTORY_DELTA_COLUMN) != null || row.get(HISTORY_COLUMN) != null) {
+        return row;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the metadata of a history checkpoint as a map from metadata key to value, in which tags are stored
+   * under the {@link #TAGS_KEY}.
+   */
+  private static Map<String, String> toMetadataMap(Metadata metadata) {
+    Map<String, String> result = new HashMap<>(metadata.getProperties());
+    if (!metadata.getTags().isEmpty()) {
+      result.put(TAGS_KEY, Joiner.on(TAGS_SEPARATOR).join(metadata.getTags()));
+    }
+    return result;
+  }
+
+  private static Metadata toMetadata(Id.NamespacedId targetId, Map<String, String> metadata) {
+    Map<String, String> properties = new HashMap<>(metadata);
+    String tags = properties.remove(TAGS_KEY);
+    return new Metadata(targetId, properties, tags == null ? new HashSet<String>() : splitTags(tags));
+  }
+
+  /**
+   * Compacts the metadata history written as a full snapshot for every change into deltas with periodic
+   * checkpoints, in batches. Snapshots that are the same as the previous one are deleted. Running it on history
+   * that is already compacted has no effect.
+   *
+   * @param startRowKey the key of the row to start the scan for the current batch with
+   * @param limit the batch size
+   * @return the row key to start the next batch with, {@code null} if there are no more rows to compact
+   */
+  @Nullable
+  public byte[] compactHistory(@Nullable byte[] startRowKey, int limit) {
+    byte[] historyRowPrefix = MdsHistoryKey.getHistoryRowPrefix();
+    startRowKey = startRowKey == null ? historyRowPrefix : startRowKey;
+    byte[] stopRowKey = Bytes.stopKeyForPrefix(historyRowPrefix);
+    try (Scanner scanner = indexedTable.scan(startRowKey, stopRowKey)) {
+      // Batches always start at a row that is kept as a checkpoint, which is at position 0 of the entity history
+      int position = 0;
+      int scanned = 0;
+      Row current = nextHistoryRow(scanner);
+      while (current != null) {
+        if (scanned >= limit && position % historyCheckpointInterval == 0) {
+          return current.getRow();
+        }
+        scanned++;
+        Row older = nextHistoryRow(scanner);
+        boolean sameEntity = older != null && isSameHistory(current.getRow(), older.getRow());
+
+        String checkpoint = current.getString(HISTORY_DELTA_COLUMN) == null ? current.getString(HISTORY_COLUMN) : null;
+        String olderCheckpoint = sameEntity && older.getString(HISTORY_DELTA_COLUMN) == null ?
+          older.getString(HISTORY_COLUMN) : null;
+        if (checkpoint != null && olderCheckpoint != null && position % historyCheckpointInterval != 0) {
+          MetadataDelta delta = MetadataDelta.diff(toMetadataMap(GSON.fromJson(olderCheckpoint, Metadata.class)),
+                                                   toMetadataMap(GSON.fromJson(checkpoint, Metadata.class)),
+                                                   historyCheckpointInterval - position % historyCheckpointInterval);
+          if (delta.isEmpty()) {
+            indexedTable.delete(current.getRow());
+            position--;
+          } else {
+            indexedTable.delete(current.getRow(), Bytes.toBytes(HISTORY_COLUMN));
+            writeHistoryDelta(current.getRow(), delta);
+          }
+        }
+
+        position = sameEntity ? position + 1 : 0;
+        current = older;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether two rows of the metadata history belong to the same entity, that is whether they only differ in
+   * the time, which is the last part of the key.
+   */
+  private static boolean isSameHistory(byte[] row1, byte[] row2) {
+    return row1.length == row2.length &&
+      Bytes.equals(row1, 0, row1.length - Bytes.SIZEOF_LONG, row2, 0, row2.length - Bytes.SIZEOF_LONG);
+  }
+
   /**
    * Rebuilds all the indexes in the {@link MetadataDataset} in batches.
    *
@@ -35,6 +35,11 @@ import java.util.Map;
  */
 public class MetadataDatasetDefinition extends AbstractDatasetDefinition<MetadataDataset, DatasetAdmin> {
 
+  /**
+   * Dataset property for the number of changes between two complete snapshots in the metadata history.
+   */
+  public static final String HISTORY_CHECKPOINT_INTERVAL = "history.checkpoint.interval";
+
   private static final String METADATA_INDEX_TABLE_NAME = "metadata_index";
 
   private final DatasetDefinition<? extends IndexedTable, ?> indexedTableDef;
@@ -89,6 +94,8 @@ public class MetadataDatasetDefinition extends AbstractDatasetDefinition<Metadat
                                                             spec.getSpecification(METADATA_INDEX_TABLE_NAME),
                                                             arguments, classLoader);
 
-    return new MetadataDataset(indexedTable);
+    String checkpointInterval = spec.getProperty(HISTORY_CHECKPOINT_INTERVAL);
+    return new MetadataDataset(indexedTable, checkpointInterval == null ?
+      MetadataDataset.DEFAULT_HISTORY_CHECKPOINT_INTERVAL : Integer.parseInt(checkpointInterval));
   }
 }
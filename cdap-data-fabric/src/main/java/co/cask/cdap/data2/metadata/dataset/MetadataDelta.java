@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.metadata.dataset;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A change to the metadata of an entity, as recorded in the metadata history between two checkpoints. Tags are
+ * treated like any other metadata key, with their serialized form as the value.
+ */
+final class MetadataDelta {
+  // number of changes since the last checkpoint, including this one
+  private final int count;
+  private final Map<String, String> updated;
+  private final Set<String> removed;
+
+  private MetadataDelta(int count, Map<String, String> updated, Set<String> removed) {
+    this.count = count;
+    this.updated = updated;
+    this.removed = removed;
+  }
+
+  /**
+   * Creates a delta that sets the specified key to the specified value.
+   */
+  static MetadataDelta update(String key, String value) {
+    return new MetadataDelta(0, ImmutableMap.of(key, value), ImmutableSet.<String>of());
+  }
+
+  /**
+   * Creates a delta that removes the specified keys.
+   */
+  static MetadataDelta remove(Iterable<String> keys) {
+    return new MetadataDelta(0, ImmutableMap.<String, String>of(), ImmutableSet.copyOf(keys));
+  }
+
+  /**
+   * Creates a delta that turns the specified previous metadata into the specified current metadata.
+   */
+  static MetadataDelta diff(Map<String, String> previous, Map<String, String> current, int count) {
+    Map<String, String> updated = new HashMap<>();
+    for (Map.Entry<String, String> entry : current.entrySet()) {
+      if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+        updated.put(entry.getKey(), entry.getValue());
+      }
+    }
+    Set<String> removed = new HashSet<>(previous.keySet());
+    removed.removeAll(current.keySet());
+    return new MetadataDelta(count, updated, removed);
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  boolean isEmpty() {
+    return updated.isEmpty() && removed.isEmpty();
+  }
+
+  /**
+   * Returns a copy of this delta with the specified count.
+   */
+  MetadataDelta withCount(int count) {
+    return new MetadataDelta(count, updated, removed);
+  }
+
+  /**
+   * Returns a delta that has the same effect as applying this delta followed by the specified one. The count of
+   * this delta is retained.
+   */
+  MetadataDelta merge(MetadataDelta next) {
+    Map<String, String> mergedUpdated = new HashMap<>(updated);
+    Set<String> mergedRemoved = new HashSet<>(removed);
+    mergedUpdated.keySet().removeAll(next.removed);
+    mergedRemoved.addAll(next.removed);
+    mergedUpdated.putAll(next.updated);
+    mergedRemoved.removeAll(next.updated.keySet());
+    return new MetadataDelta(count, mergedUpdated, mergedRemoved);
+  }
+
+  /**
+   * Applies this delta to the specified metadata.
+   */
+  void applyTo(Map<String, String> metadata) {
+    metadata.keySet().removeAll(removed);
+    metadata.putAll(updated);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("count", count)
+      .add("updated", updated)
+      .add("removed", removed)
+      .toString();
+  }
+}
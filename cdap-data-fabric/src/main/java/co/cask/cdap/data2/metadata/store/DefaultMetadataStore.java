@@ -36,13 +36,16 @@ import co.cask.cdap.proto.audit.AuditType;
 import co.cask.cdap.proto.metadata.MetadataChangeRecord;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionExecutorFactory;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -405,6 +408,57 @@ public class DefaultMetadataStore implements MetadataStore {
     return addMetadataToResults(resultList, systemMetadata, userMetadata);
   }
 
+  @Override
+  public MetadataSearchResponse search(final String namespaceId, final String searchQuery,
+                                       final Set<MetadataSearchTargetType> types, int limit,
+                                       @Nullable String cursor) {
+    Preconditions.checkArgument(limit > 0, "Limit must be a positive number, but was %s", limit);
+    SearchCursor after = cursor == null ? null : SearchCursor.parse(cursor);
+
+    // Score the entities in both scopes, so that every entity only shows up once
+    Map<Id.NamespacedId, Integer> scores = new HashMap<>();
+    for (MetadataScope scope : MetadataScope.values()) {
+      Map<Id.NamespacedId, Integer> scopeScores = execute(
+        new TransactionExecutor.Function<MetadataDataset, Map<Id.NamespacedId, Integer>>() {
+          @Override
+          public Map<Id.NamespacedId, Integer> apply(MetadataDataset input) throws Exception {
+            return input.searchByRelevance(namespaceId, searchQuery, types);
+          }
+        }, scope);
+      for (Map.Entry<Id.NamespacedId, Integer> entry : scopeScores.entrySet()) {
+        Integer score = scores.get(entry.getKey());
+        scores.put(entry.getKey(), score == null ? entry.getValue() : score + entry.getValue());
+      }
+    }
+
+    List<SearchCursor> ranked = new ArrayList<>(scores.size());
+    for (Map.Entry<Id.NamespacedId, Integer> entry : scores.entrySet()) {
+      ranked.add(new SearchCursor(entry.getKey(), entry.getValue()));
+    }
+    Collections.sort(ranked);
+
+    // Pick the page that follows the cursor
+    List<Map.Entry<Id.NamespacedId, Integer>> page = new ArrayList<>(limit);
+    Set<Id.NamespacedId> pageIds = new HashSet<>();
+    int idx = 0;
+    while (idx < ranked.size() && after != null && ranked.get(idx).compareTo(after) <= 0) {
+      idx++;
+    }
+    for (; idx < ranked.size() && page.size() < limit; idx++) {
+      SearchCursor entry = ranked.get(idx);
+      page.add(Maps.immutableEntry(entry.entityId, entry.score));
+      pageIds.add(entry.entityId);
+    }
+    String nextCursor = idx < ranked.size() ? ranked.get(idx - 1).toString() : null;
+
+    // Only fetch metadata for the entities in the page
+    Map<Id.NamespacedId, Metadata> systemMetadata = fetchMetadata(pageIds, MetadataScope.SYSTEM);
+    Map<Id.NamespacedId, Metadata> userMetadata = fetchMetadata(pageIds, MetadataScope.USER);
+    List<MetadataSearchResultRecord> results = new ArrayList<>(addMetadataToResults(page, systemMetadata,
+                                                                                    userMetadata));
+    return new MetadataSearchResponse(limit, ranked.size(), results, nextCursor);
+  }
+
   private Map<Id.NamespacedId, Metadata> fetchMetadata(final Set<Id.NamespacedId> entityIds, MetadataScope scope) {
     Set<Metadata> metadataSet =
       execute(new TransactionExecutor.Function<MetadataDataset, Set<Metadata>>() {
@@ -494,6 +548,16 @@ public class DefaultMetadataStore implements MetadataStore {
     }
   }
 
+  @Override
+  public void compactHistory() {
+    for (MetadataScope scope : MetadataScope.values()) {
+      byte[] row = null;
+      while ((row = compactHistory(row, scope)) != null) {
+        LOG.debug("Completed a batch for compacting {} metadata history.", scope);
+      }
+    }
+  }
+
   private void publish(MetadataRecord previous, MetadataRecord additions, MetadataRecord deletions) {
     MetadataChangeRecord.MetadataDiffRecord diff = new MetadataChangeRecord.MetadataDiffRecord(additions, deletions);
     MetadataChangeRecord changeRecord = new MetadataChangeRecord(previous, diff, System.currentTimeMillis());
@@ -531,6 +595,15 @@ public class DefaultMetadataStore implements MetadataStore {
     }, scope);
   }
 
+  private byte[] compactHistory(final byte[] startRowKey, MetadataScope scope) {
+    return execute(new TransactionExecutor.Function<MetadataDataset, byte[]>() {
+      @Override
+      public byte[] apply(MetadataDataset input) throws Exception {
+        return input.compactHistory(startRowKey, BATCH_SIZE);
+      }
+    }, scope);
+  }
+
   private int deleteBatch(MetadataScope scope) {
     return execute(new TransactionExecutor.Function<MetadataDataset, Integer>() {
       @Override
@@ -564,4 +637,45 @@ public class DefaultMetadataStore implements MetadataStore {
     framework.addInstance(MetadataDataset.class.getName(), BUSINESS_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
     framework.addInstance(MetadataDataset.class.getName(), SYSTEM_METADATA_INSTANCE_ID, DatasetProperties.EMPTY);
   }
+
+  /**
+   * Position of an entity in the relevance ordered search results. The ordering is by descending score first and by
+   * entity id next, so that the position stays stable between pages. The string form is used as the search cursor.
+   */
+  private static final class SearchCursor implements Comparable<SearchCursor> {
+    private final Id.NamespacedId entityId;
+    private final String entity;
+    private final int score;
+
+    SearchCursor(Id.NamespacedId entityId, int score) {
+      this(entityId, entityId.toString(), score);
+    }
+
+    private SearchCursor(@Nullable Id.NamespacedId entityId, String entity, int score) {
+      this.entityId = entityId;
+      this.entity = entity;
+      this.score = score;
+    }
+
+    static SearchCursor parse(String cursor) {
+      int idx = cursor.indexOf(':');
+      Preconditions.checkArgument(idx > 0 && idx < cursor.length() - 1, "Invalid search cursor '%s'", cursor);
+      try {
+        return new SearchCursor(null, cursor.substring(idx + 1), Integer.parseInt(cursor.substring(0, idx)));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Invalid search cursor '%s'", cursor), e);
+      }
+    }
+
+    @Override
+    public int compareTo(SearchCursor other) {
+      int cmp = Integer.compare(other.score, score);
+      return cmp != 0 ? cmp : entity.compareTo(other.entity);
+    }
+
+    @Override
+    public String toString() {
+      return score + ":" + entity;
+    }
+  }
 }
@@ -21,6 +21,7 @@ import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 
@@ -197,6 +198,21 @@ public interface MetadataStore {
   Set<MetadataSearchResultRecord> searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
                                                        Set<MetadataSearchTargetType> types);
 
+  /**
+   * Search the Metadata Dataset for the specified target types in both {@link MetadataScope#USER} and
+   * {@link MetadataScope#SYSTEM}, returning a single page of results ranked by relevance. Every entity appears at most
+   * once, with the relevance scores of both scopes summed up.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param limit the maximum number of results to return
+   * @param cursor the cursor returned with the previous page, or {@code null} to fetch the first page
+   * @throws IllegalArgumentException if the limit is not positive or the cursor is invalid
+   */
+  MetadataSearchResponse search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                                int limit, @Nullable String cursor);
+
   /**
    * Returns the snapshot of the metadata for entities on or before the given time in both {@link MetadataScope#USER}
    * and {@link MetadataScope#SYSTEM}.
@@ -227,4 +243,9 @@ public interface MetadataStore {
    * Delete all existing metadata indexes.
    */
   void deleteAllIndexes();
+
+  /**
+   * Compact the metadata history written as a complete snapshot for every change into deltas.
+   */
+  void compactHistory();
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.data2.queue;
+
+import co.cask.cdap.common.queue.QueueName;
+import org.apache.twill.common.Cancellable;
+
+/**
+ * Signals queue consumers that new entries have been committed to a queue, so that consumers don't need to
+ * keep polling an empty queue. Notifications are only hints; they can be delayed, coalesced or lost,
+ * hence consumers should still poll the queue occasionally.
+ */
+public interface QueueNotifier {
+
+  /**
+   * Notifies listeners of the given queue that new entries have been committed to it.
+   * This method should return quickly and must not throw.
+   */
+  void notifyEnqueue(QueueName queueName);
+
+  /**
+   * Subscribes to enqueue notifications of the given queue.
+   *
+   * @param queueName name of the queue
+   * @param listener the {@link Runnable} to call when there is new entries in the queue. It will be called
+   *                 from a different thread and should return quickly.
+   * @return a {@link Cancellable} for cancelling the subscription
+   */
+  Cancellable subscribe(QueueName queueName, Runnable listener);
+
+  QueueNotifier NOOP_QUEUE_NOTIFIER = new QueueNotifier() {
+    @Override
+    public void notifyEnqueue(QueueName queueName) {
+      // no-op
+    }
+
+    @Override
+    public Cancellable subscribe(QueueName queueName, Runnable listener) {
+      return new Cancellable() {
+        @Override
+        public void cancel() {
+          // no-op
+        }
+      };
+    }
+  };
+}
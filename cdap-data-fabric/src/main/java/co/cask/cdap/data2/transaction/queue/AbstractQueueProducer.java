@@ -17,6 +17,7 @@ package co.cask.cdap.data2.transaction.queue;
 
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionAware;
@@ -32,19 +33,21 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Abstract base class for {@link QueueProducer} that emits enqueue metrics post commit.
+ * Abstract base class for {@link QueueProducer} that emits enqueue metrics and notifies consumers post commit.
  */
 public abstract class AbstractQueueProducer implements QueueProducer, TransactionAware {
 
   private final QueueMetrics queueMetrics;
+  private final QueueNotifier queueNotifier;
   private final BlockingQueue<QueueEntry> queue;
   private final QueueName queueName;
   private Transaction transaction;
   private int lastEnqueueCount;
   private int lastEnqueueBytes;
 
-  protected AbstractQueueProducer(QueueMetrics queueMetrics, QueueName queueName) {
+  protected AbstractQueueProducer(QueueMetrics queueMetrics, QueueNotifier queueNotifier, QueueName queueName) {
     this.queueMetrics = queueMetrics;
+    this.queueNotifier = queueNotifier;
     this.queue = new LinkedBlockingQueue<>();
     this.queueName = queueName;
   }
@@ -102,6 +105,7 @@ public abstract class AbstractQueueProducer implements QueueProducer, Transactio
     if (lastEnqueueCount > 0) {
       queueMetrics.emitEnqueue(lastEnqueueCount);
       queueMetrics.emitEnqueueBytes(lastEnqueueBytes);
+      queueNotifier.notifyEnqueue(queueName);
     }
   }
 
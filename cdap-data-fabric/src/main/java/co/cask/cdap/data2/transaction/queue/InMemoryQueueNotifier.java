@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.queue.QueueNotifier;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link QueueNotifier} that delivers notifications to listeners in the same process. Used when producers
+ * and consumers run in the same JVM, as in standalone and in-memory mode.
+ */
+@Singleton
+public final class InMemoryQueueNotifier implements QueueNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(InMemoryQueueNotifier.class);
+
+  private final ConcurrentMap<QueueName, Set<Runnable>> listeners = Maps.newConcurrentMap();
+
+  @Override
+  public void notifyEnqueue(QueueName queueName) {
+    Set<Runnable> queueListeners = listeners.get(queueName);
+    if (queueListeners == null) {
+      return;
+    }
+    for (Runnable listener : queueListeners) {
+      try {
+        listener.run();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised when notifying listener of queue {}", queueName, t);
+      }
+    }
+  }
+
+  @Override
+  public Cancellable subscribe(final QueueName queueName, final Runnable listener) {
+    Set<Runnable> queueListeners = listeners.get(queueName);
+    if (queueListeners == null) {
+      Set<Runnable> newListeners = Sets.newCopyOnWriteArraySet();
+      queueListeners = listeners.putIfAbsent(queueName, newListeners);
+      if (queueListeners == null) {
+        queueListeners = newListeners;
+      }
+    }
+    final Set<Runnable> subscribed = queueListeners;
+    subscribed.add(listener);
+
+    return new Cancellable() {
+      @Override
+      public void cancel() {
+        subscribed.remove(listener);
+      }
+    };
+  }
+}
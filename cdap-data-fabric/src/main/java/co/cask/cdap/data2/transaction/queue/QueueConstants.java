@@ -29,6 +29,7 @@ public final class QueueConstants {
     public static final String QUEUE_TABLE_COPROCESSOR_DIR = "data.queue.table.coprocessor.dir";
     public static final String QUEUE_TABLE_PRESPLITS = "data.queue.table.presplits";
     public static final String DEQUEUE_TX_PERCENT = "data.queue.dequeue.tx.percent";
+    public static final String NOTIFY_MIN_INTERVAL_MS = "data.queue.notify.min.interval.ms";
   }
 
   // This is a hardcoded value for the row key distributor bucket size before CDAP-1946
@@ -37,6 +38,8 @@ public final class QueueConstants {
 
   public static final String DEFAULT_QUEUE_TABLE_COPROCESSOR_DIR = "/queue";
 
+  public static final long DEFAULT_NOTIFY_MIN_INTERVAL_MS = 50L;
+
   public static final long MAX_CREATE_TABLE_WAIT = 5000L;    // Maximum wait of 5 seconds for table creation.
 
   // How frequently (in seconds) to update the ConsumerConfigCache data for the HBaseQueueRegionObserver
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.io.Codec;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.zookeeper.ZKExtOperations;
+import co.cask.cdap.data2.queue.QueueNotifier;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link QueueNotifier} that uses ZooKeeper as a lightweight pub/sub for distributed mode. Each queue has a
+ * node which producers update after enqueue and consumers watch for changes.
+ *
+ * Each subscription registers an ephemeral node under the watchers node of the queue, and producers watch the
+ * children of that node, so that the queue node is only updated when some consumer is subscribed to the queue.
+ * To protect ZooKeeper from busy producers, notifications of the same queue from this process are also coalesced
+ * so that the queue node is updated at most once per the configured minimum interval. Since a consumer
+ * only parks when a queue is empty, it only needs to be woken up by the first enqueue after it parks.
+ */
+public final class ZKQueueNotifier implements QueueNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZKQueueNotifier.class);
+  private static final String NOTIFY_PATH = "/queues/notify";
+  private static final String WATCHERS_PATH = "/queues/watchers";
+  private static final int MAX_ZK_FAILURE = 3;
+
+  private static final Codec<Long> LONG_CODEC = new Codec<Long>() {
+    @Override
+    public byte[] encode(Long object) {
+      return Bytes.toBytes(object);
+    }
+
+    @Override
+    public Long decode(byte[] data) {
+      return Bytes.toLong(data);
+    }
+  };
+
+  private final ZKClient zkClient;
+  private final long minIntervalMillis;
+  private final ConcurrentMap<QueueName, Long> lastNotifyTimes;
+  private final ConcurrentMap<QueueName, Boolean> pendingNotifies;
+  // Number of consumers subscribed to each queue this process enqueued to, or -1 while it is not known yet
+  private final ConcurrentMap<QueueName, AtomicInteger> watcherCounts;
+  private final ScheduledExecutorService executor;
+
+  public ZKQueueNotifier(ZKClient zkClient, long minIntervalMillis) {
+    this.zkClient = zkClient;
+    this.minIntervalMillis = minIntervalMillis;
+    this.lastNotifyTimes = Maps.newConcurrentMap();
+    this.pendingNotifies = Maps.newConcurrentMap();
+    this.watcherCounts = Maps.newConcurrentMap();
+    this.executor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("queue-notifier"));
+  }
+
+  @Override
+  public void notifyEnqueue(final QueueName queueName) {
+    // No need to update the queue node if no consumer is subscribed to the queue
+    if (getWatcherCount(queueName).get() == 0) {
+      return;
+    }
+    // If there is already a notification pending for the queue, it will cover this one as well.
+    if (pendingNotifies.putIfAbsent(queueName, Boolean.TRUE) != null) {
+      return;
+    }
+
+    Long lastNotifyTime = lastNotifyTimes.get(queueName);
+    long delay = lastNotifyTime == null ? 0L : lastNotifyTime + minIntervalMillis - System.currentTimeMillis();
+    executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        // Remove the pending flag before updating ZK, so that enqueues that happen after this point
+        // will trigger another notification.
+        pendingNotifies.remove(queueName);
+        final long now = System.currentTimeMillis();
+        lastNotifyTimes.put(queueName, now);
+
+        String path = getPath(NOTIFY_PATH, queueName);
+        Futures.addCallback(ZKExtOperations.setOrCreate(zkClient, path, new Supplier<Long>() {
+          @Override
+          public Long get() {
+            return now;
+          }
+        }, LONG_CODEC, MAX_ZK_FAILURE), new FutureCallback<Long>() {
+          @Override
+          public void onSuccess(Long result) {
+            // No-op
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            // Consumers will still find the entries by polling, hence just log it.
+            LOG.debug("Failed to notify enqueue for queue {}", queueName, t);
+          }
+        });
+      }
+    }, Math.max(0L, delay), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Cancellable subscribe(final QueueName queueName, final Runnable listener) {
+    final Cancellable watch = ZKOperations.watchData(zkClient, getPath(NOTIFY_PATH, queueName),
+                                                     new ZKOperations.DataCallback() {
+      @Override
+      public void updated(NodeData nodeData) {
+        try {
+          listener.run();
+        } catch (Throwable t) {
+          LOG.warn("Exception raised when notifying listener of queue {}", queueName, t);
+        }
+      }
+    });
+
+    // Register as a watcher of the queue, so that producers notify enqueues to it. The node is ephemeral, so that
+    // it goes away with the consumer. If it is lost, e.g. on session expiration, the consumer still polls the queue.
+    final ListenableFuture<String> watcherNode = zkClient.create(getPath(WATCHERS_PATH, queueName) + "/watcher-",
+                                                                 null, CreateMode.EPHEMERAL_SEQUENTIAL, true);
+    Futures.addCallback(watcherNode, new FutureCallback<String>() {
+      @Override
+      public void onSuccess(String path) {
+        // No-op
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOG.warn("Failed to register watcher for queue {}. Enqueues to the queue will not be notified.",
+                 queueName, t);
+      }
+    });
+
+    return new Cancellable() {
+      @Override
+      public void cancel() {
+        watch.cancel();
+        Futures.addCallback(watcherNode, new FutureCallback<String>() {
+          @Override
+          public void onSuccess(final String path) {
+            Futures.addCallback(zkClient.delete(path), new FutureCallback<String>() {
+              @Override
+              public void onSuccess(String result) {
+                // No-op
+              }
+
+              @Override
+              public void onFailure(Throwable t) {
+                // The node is ephemeral, hence it will be removed when the session ends anyway
+                LOG.debug("Failed to remove watcher {} of queue {}", path, queueName, t);
+              }
+            });
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            // No-op, there is no node to remove
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Returns the number of consumers subscribed to the given queue, watching the watchers node of the queue
+   * the first time it is called for the queue.
+   */
+  private AtomicInteger getWatcherCount(final QueueName queueName) {
+    AtomicInteger count = watcherCounts.get(queueName);
+    if (count != null) {
+      return count;
+    }
+    // Enqueues are notified until the watchers are known
+    count = new AtomicInteger(-1);
+    AtomicInteger existing = watcherCounts.putIfAbsent(queueName, count);
+    if (existing != null) {
+      return existing;
+    }
+
+    final AtomicInteger watcherCount = count;
+    ZKOperations.watchChildren(zkClient, getPath(WATCHERS_PATH, queueName), new ZKOperations.ChildrenCallback() {
+      @Override
+      public void updated(NodeChildren nodeChildren) {
+        watcherCount.set(nodeChildren.getChildren().size());
+      }
+    });
+    return count;
+  }
+
+  private String getPath(String basePath, QueueName queueName) {
+    // The URI path is in the form of /namespace/app/flow/flowlet/output or /namespace/stream
+    return basePath + "/" + queueName.toURI().getScheme() + queueName.toURI().getPath();
+  }
+}
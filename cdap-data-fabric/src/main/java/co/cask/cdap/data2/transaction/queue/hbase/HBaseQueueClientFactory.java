@@ -22,6 +22,7 @@ import co.cask.cdap.data2.queue.ConsumerGroupConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.data2.transaction.ForwardingTransactionAware;
 import co.cask.cdap.data2.transaction.Transactions;
@@ -71,6 +72,7 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
   private final HBaseQueueUtil queueUtil;
   private final HBaseTableUtil hBaseTableUtil;
   private final TransactionExecutorFactory txExecutorFactory;
+  private QueueNotifier queueNotifier = QueueNotifier.NOOP_QUEUE_NOTIFIER;
 
   @Inject
   public HBaseQueueClientFactory(CConfiguration cConf, Configuration hConf, HBaseTableUtil hBaseTableUtil,
@@ -83,6 +85,14 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
     this.txExecutorFactory = txExecutorFactory;
   }
 
+  /**
+   * Sets the {@link QueueNotifier} for notifying consumers about enqueue. Notification is disabled if not set.
+   */
+  @Inject(optional = true)
+  void setQueueNotifier(QueueNotifier queueNotifier) {
+    this.queueNotifier = queueNotifier;
+  }
+
   @Override
   public QueueProducer createProducer(QueueName queueName) throws IOException {
     return createProducer(queueName, QueueMetrics.NOOP_QUEUE_METRICS);
@@ -207,7 +217,7 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
   private HBaseQueueProducer createProducer(HTable hTable, QueueName queueName, QueueMetrics queueMetrics,
                                             HBaseQueueStrategy queueStrategy,
                                             Iterable<? extends ConsumerGroupConfig> groupConfigs) throws IOException {
-    return new HBaseQueueProducer(hTable, queueName, queueMetrics, queueStrategy, groupConfigs);
+    return new HBaseQueueProducer(hTable, queueName, queueMetrics, queueNotifier, queueStrategy, groupConfigs);
   }
 
   /**
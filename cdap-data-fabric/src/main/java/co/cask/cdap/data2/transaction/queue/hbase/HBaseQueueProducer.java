@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.queue.hbase;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerGroupConfig;
 import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
@@ -49,9 +50,9 @@ public class HBaseQueueProducer extends AbstractQueueProducer implements Closeab
   private final List<byte[]> rollbackKeys;
 
   public HBaseQueueProducer(HTable hTable, QueueName queueName,
-                            QueueMetrics queueMetrics, HBaseQueueStrategy queueStrategy,
+                            QueueMetrics queueMetrics, QueueNotifier queueNotifier, HBaseQueueStrategy queueStrategy,
                             Iterable<? extends ConsumerGroupConfig> consumerGroupConfigs) {
-    super(queueMetrics, queueName);
+    super(queueMetrics, queueNotifier, queueName);
     this.queueStrategy = queueStrategy;
     // Make sure only one config per consumer group
     this.consumerGroupConfigs = ImmutableList.copyOf(
@@ -20,6 +20,7 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import com.google.inject.Inject;
@@ -32,12 +33,21 @@ import java.io.IOException;
 public class InMemoryQueueClientFactory implements QueueClientFactory {
 
   private final InMemoryQueueService queueService;
+  private QueueNotifier queueNotifier = QueueNotifier.NOOP_QUEUE_NOTIFIER;
 
   @Inject
   public InMemoryQueueClientFactory(InMemoryQueueService queueService) {
     this.queueService = queueService;
   }
 
+  /**
+   * Sets the {@link QueueNotifier} for notifying consumers about enqueue. Notification is disabled if not set.
+   */
+  @Inject(optional = true)
+  void setQueueNotifier(QueueNotifier queueNotifier) {
+    this.queueNotifier = queueNotifier;
+  }
+
   @Override
   public QueueProducer createProducer(QueueName queueName) throws IOException {
     return createProducer(queueName, QueueMetrics.NOOP_QUEUE_METRICS);
@@ -51,6 +61,6 @@ public class InMemoryQueueClientFactory implements QueueClientFactory {
 
   @Override
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
-    return new InMemoryQueueProducer(queueName, queueService, queueMetrics);
+    return new InMemoryQueueProducer(queueName, queueService, queueMetrics, queueNotifier);
   }
 }
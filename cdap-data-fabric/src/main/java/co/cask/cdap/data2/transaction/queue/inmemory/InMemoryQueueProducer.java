@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.queue.inmemory;
 
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.tephra.Transaction;
@@ -32,8 +33,9 @@ public class InMemoryQueueProducer extends AbstractQueueProducer {
   private int lastEnqueueCount;
   private Transaction commitTransaction;
 
-  public InMemoryQueueProducer(QueueName queueName, InMemoryQueueService queueService, QueueMetrics queueMetrics) {
-    super(queueMetrics, queueName);
+  public InMemoryQueueProducer(QueueName queueName, InMemoryQueueService queueService,
+                               QueueMetrics queueMetrics, QueueNotifier queueNotifier) {
+    super(queueMetrics, queueNotifier, queueName);
     this.queueName = queueName;
     this.queueService = queueService;
   }
@@ -22,6 +22,7 @@ import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueNotifier;
 import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueEvictor;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
@@ -50,6 +51,7 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
   private final LevelDBQueueAdmin queueAdmin;
 
   private final ConcurrentMap<String, Object> queueLocks = Maps.newConcurrentMap();
+  private QueueNotifier queueNotifier = QueueNotifier.NOOP_QUEUE_NOTIFIER;
 
   @Inject
   public LevelDBQueueClientFactory(CConfiguration cConf, LevelDBTableService service,
@@ -60,6 +62,14 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
     this.queueAdmin = queueAdmin;
   }
 
+  /**
+   * Sets the {@link QueueNotifier} for notifying consumers about enqueue. Notification is disabled if not set.
+   */
+  @Inject(optional = true)
+  void setQueueNotifier(QueueNotifier queueNotifier) {
+    this.queueNotifier = queueNotifier;
+  }
+
   @Override
   public QueueProducer createProducer(QueueName queueName) throws IOException {
     return createProducer(queueName, QueueMetrics.NOOP_QUEUE_METRICS);
@@ -69,7 +79,7 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
     LevelDBQueueAdmin admin = ensureTableExists(queueName);
     return new LevelDBQueueProducer(
-      new LevelDBTableCore(admin.getActualTableName(queueName), service), queueName, queueMetrics);
+      new LevelDBTableCore(admin.getActualTableName(queueName), service), queueName, queueMetrics, queueNotifier);
   }
 
   @Override
@@ -26,6 +26,7 @@ import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.utils.OSDetector;
 import co.cask.cdap.data.stream.CoordinatorStreamProperties;
+import co.cask.cdap.data.stream.StreamBlockCodec;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamUtils;
@@ -254,15 +255,21 @@ public class FileStreamAdmin implements StreamAdmin {
     }
 
     return new StreamConfig(streamId, config.getPartitionDuration(), config.getIndexInterval(),
-                            config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold);
+                            config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold,
+                            config.getCompressionCodec());
   }
 
   @Override
   public StreamProperties getProperties(Id.Stream streamId) throws Exception {
     StreamConfig config = getConfig(streamId);
     StreamSpecification spec = streamMetaStore.getStream(streamId);
+    // Streams without compression report no codec, same as streams created before compression was added
+    String codec = config.getCompressionCodec();
+    if (StreamBlockCodec.NONE.getName().equals(codec)) {
+      codec = null;
+    }
     return new StreamProperties(config.getTTL(), config.getFormat(), config.getNotificationThresholdMB(),
-                                spec.getDescription());
+                                spec.getDescription(), codec);
   }
 
   @Override
@@ -341,6 +348,8 @@ public class FileStreamAdmin implements StreamAdmin {
         int threshold = Integer.parseInt(properties.getProperty(
           Constants.Stream.NOTIFICATION_THRESHOLD, cConf.get(Constants.Stream.NOTIFICATION_THRESHOLD)));
         String description = properties.getProperty(Constants.Stream.DESCRIPTION);
+        String codec = StreamBlockCodec.fromName(properties.getProperty(
+          Constants.Stream.COMPRESSION_CODEC, cConf.get(Constants.Stream.COMPRESSION_CODEC))).getName();
         FormatSpecification formatSpec = null;
         if (properties.containsKey(Constants.Stream.FORMAT_SPECIFICATION)) {
           formatSpec = GSON.fromJson(properties.getProperty(Constants.Stream.FORMAT_SPECIFICATION),
@@ -348,7 +357,7 @@ public class FileStreamAdmin implements StreamAdmin {
         }
 
         StreamConfig config = new StreamConfig(streamId, partitionDuration, indexInterval,
-                                               ttl, streamLocation, formatSpec, threshold);
+                                               ttl, streamLocation, formatSpec, threshold, codec);
         writeConfig(config);
         createStreamFeeds(config);
         alterExploreStream(streamId, true, config.getFormat());
@@ -551,6 +560,10 @@ public class FileStreamAdmin implements StreamAdmin {
     if (properties.getNotificationThresholdMB() != null) {
       builder.setNotificationThreshold(properties.getNotificationThresholdMB());
     }
+    if (properties.getCompressionCodec() != null) {
+      // The new codec only applies to stream files created after the update
+      builder.setCompressionCodec(StreamBlockCodec.fromName(properties.getCompressionCodec()).getName());
+    }
 
     // update stream description
     String description = properties.getDescription();
@@ -17,7 +17,7 @@ package co.cask.cdap.data2.transaction.stream;
 
 import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
-import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.common.io.Decoder;
 import co.cask.cdap.common.stream.StreamEventCodec;
 import co.cask.cdap.common.stream.StreamEventDataCodec;
@@ -25,7 +25,6 @@ import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.proto.Id;
-import co.cask.common.io.ByteBufferInputStream;
 import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionAware;
 import com.google.common.base.Objects;
@@ -83,7 +82,7 @@ public final class QueueToStreamConsumer implements StreamConsumer {
         Preconditions.checkArgument(schemaHash.equals(StreamEventDataCodec.STREAM_DATA_SCHEMA.getSchemaHash()),
                                     "Schema from payload not matching with StreamEventData schema.");
 
-        Decoder decoder = new BinaryDecoder(new ByteBufferInputStream(buffer));
+        Decoder decoder = new ByteBufferDecoder(buffer);
         // In old schema, timestamp is not recorded.
         builder.add(new StreamEvent(StreamEventDataCodec.decode(decoder), 0));
       }
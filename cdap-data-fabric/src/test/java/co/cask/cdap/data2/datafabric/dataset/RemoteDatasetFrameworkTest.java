@@ -17,8 +17,10 @@
 package co.cask.cdap.data2.datafabric.dataset;
 
 import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.module.DatasetModule;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.CConfigurationUtil;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
@@ -83,6 +85,7 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
   private DatasetOpExecutorService opExecutorService;
   private DatasetService service;
   private RemoteDatasetFramework framework;
+  private InMemoryDiscoveryService discoveryService;
 
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
@@ -95,7 +98,7 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     cConf.setBoolean(Constants.Dangerous.UNRECOVERABLE_RESET, true);
 
     // Starting DatasetService service
-    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    discoveryService = new InMemoryDiscoveryService();
     MetricsCollectionService metricsCollectionService = new NoOpMetricsCollectionService();
 
     // Tx Manager to support working with datasets
@@ -199,6 +202,37 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     }
   }
 
+  @Test
+  public void testCache() throws Exception {
+    Id.DatasetInstance instance = Id.DatasetInstance.from(NAMESPACE_ID, "cached");
+    CConfiguration cacheConf = CConfiguration.copy(cConf);
+    cacheConf.setLong(Constants.Dataset.CLIENT_CACHE_TTL_SECS, TimeUnit.HOURS.toSeconds(1));
+    RemoteDatasetFramework cachingFramework = new RemoteDatasetFramework(cacheConf, discoveryService, registryFactory);
+    CConfiguration noCacheConf = CConfiguration.copy(cConf);
+    noCacheConf.setLong(Constants.Dataset.CLIENT_CACHE_TTL_SECS, 0L);
+    RemoteDatasetFramework nonCachingFramework = new RemoteDatasetFramework(noCacheConf, discoveryService,
+                                                                            registryFactory);
+
+    // Instances that don't exist are not cached
+    Assert.assertNull(cachingFramework.getDataset(instance, null, null));
+    framework.addInstance("table", instance, DatasetProperties.EMPTY);
+    Assert.assertNotNull(cachingFramework.getDataset(instance, null, null));
+    Assert.assertNotNull(cachingFramework.getAdmin(instance, null));
+
+    // Changes made through another framework are not seen until the cache entry expires
+    framework.deleteInstance(instance);
+    Assert.assertNull(nonCachingFramework.getDataset(instance, null, null));
+    Assert.assertFalse(cachingFramework.hasInstance(instance));
+    Assert.assertNotNull(cachingFramework.getDataset(instance, null, null));
+
+    // Changes made through the same framework are seen right away
+    cachingFramework.addInstance("table", instance, DatasetProperties.EMPTY);
+    Assert.assertNotNull(cachingFramework.getDataset(instance, null, null));
+    cachingFramework.deleteInstance(instance);
+    Assert.assertNull(cachingFramework.getDataset(instance, null, null));
+    Assert.assertNull(cachingFramework.getAdmin(instance, null));
+  }
+
   @After
   public void after() throws DatasetManagementException {
     framework.deleteNamespace(NAMESPACE_ID);
@@ -326,6 +326,93 @@ public abstract class AbstractCubeTest {
   }
 
 
+  @Test
+  public void testSeriesLimit() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    Cube cube = getCube("mySeriesLimitCube", new int[] {1, 100}, ImmutableMap.of("agg", agg));
+
+    writeInc(cube, "metric1", 1, 5, "a", "1");
+    writeInc(cube, "metric1", 2, 5, "a", "2");
+    writeInc(cube, "metric1", 1, 8, "b", "1");
+    writeInc(cube, "metric1", 1, 1, "c", "1");
+    writeInc(cube, "metric1", 2, 1, "c", "1");
+    writeInc(cube, "metric1", 3, 20, "c", "2");
+    writeInc(cube, "metric1", 2, 3, "d", "1");
+    writeInc(cube, "metric2", 2, 100, "d", "1");
+
+    // Time series with the largest sums, with all their time values
+    verifySeriesLimitQuery(cube, 1, "metric1", AggregationFunction.SUM, 2, ImmutableList.of(
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c"), timeValues(1, 1, 2, 1, 3, 20)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "a"), timeValues(1, 5, 2, 5))));
+    // Time series with the largest maximums
+    verifySeriesLimitQuery(cube, 1, "metric1", AggregationFunction.MAX, 2, ImmutableList.of(
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c"), timeValues(1, 1, 2, 1, 3, 20)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "b"), timeValues(1, 8))));
+    // Time series with a single time value each
+    verifySeriesLimitQuery(cube, 100, "metric1", AggregationFunction.SUM, 3, ImmutableList.of(
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c"), timeValues(0, 22)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "a"), timeValues(0, 10)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "b"), timeValues(0, 8))));
+    // A limit larger than the number of time series returns all of them, ordered
+    verifySeriesLimitQuery(cube, 100, "metric1", AggregationFunction.SUM, 10, ImmutableList.of(
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c"), timeValues(0, 22)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "a"), timeValues(0, 10)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "b"), timeValues(0, 8)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "d"), timeValues(0, 3))));
+
+    // Grouped by all dimensions, every time series is read from a single row
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement("metric1", AggregationFunction.SUM)
+      .from("agg").resolution(1, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, 150)
+      .groupBy()
+        .dimension("dim1")
+        .dimension("dim2")
+      .limit(Integer.MAX_VALUE)
+      .seriesLimit(2)
+      .build();
+    List<TimeSeries> expected = ImmutableList.of(
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c", "dim2", "2"), timeValues(3, 20)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "b", "dim2", "1"), timeValues(1, 8)));
+    Assert.assertEquals(expected, ImmutableList.copyOf(cube.query(query)));
+
+    // The limit applies to every measure
+    query = CubeQuery.builder()
+      .select()
+        .measurement("metric1", AggregationFunction.SUM)
+        .measurement("metric2", AggregationFunction.SUM)
+      .from("agg").resolution(100, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, 150)
+      .groupBy()
+        .dimension("dim1")
+      .limit(Integer.MAX_VALUE)
+      .seriesLimit(1)
+      .build();
+    expected = ImmutableList.of(
+      new TimeSeries("metric2", ImmutableMap.of("dim1", "d"), timeValues(0, 100)),
+      new TimeSeries("metric1", ImmutableMap.of("dim1", "c"), timeValues(0, 22)));
+    Assert.assertEquals(expected, ImmutableList.copyOf(cube.query(query)));
+  }
+
+  private void verifySeriesLimitQuery(Cube cube, int resolution, String measureName, AggregationFunction aggFunction,
+                                      int seriesLimit, List<TimeSeries> expected) throws Exception {
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement(measureName, aggFunction)
+      .from("agg").resolution(resolution, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, 150)
+      .groupBy()
+        .dimension("dim1")
+      .limit(Integer.MAX_VALUE)
+      .seriesLimit(seriesLimit)
+      .build();
+    Assert.assertEquals(expected, ImmutableList.copyOf(cube.query(query)));
+  }
+
   protected void writeInc(Cube cube, String measureName, long ts, long value, String... dims) throws Exception {
     cube.add(getFact(measureName, ts, value, MeasureType.COUNTER, dims));
   }
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for measuring {@link DefaultCube} queries that group by a dimension with many distinct values, such as
+ * finding the programs with the most reads. Every program has a few seconds of data, and the queries are executed
+ * for the totals and for the one second resolution, returning all time series and only the top ten of them. The
+ * cube is backed by LevelDB metrics tables. Allocation is measured with the per thread allocation counter of the
+ * HotSpot JVM.
+ *
+ * Usage: {@code CubeTopQueryBenchmark [programs] [seconds] [rounds]}
+ */
+public final class CubeTopQueryBenchmark {
+
+  private static final String NAMESPACE = "benchmark";
+  private static final int[] RESOLUTIONS = { 1, Integer.MAX_VALUE };
+  private static final Map<String, Aggregation> AGGREGATIONS = ImmutableMap.<String, Aggregation>of(
+    "program", new DefaultAggregation(ImmutableList.of("app", "program")));
+  private static final int SERIES_LIMIT = 10;
+
+  public static void main(String[] args) throws Exception {
+    int programs = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    File baseDir = Files.createTempDir();
+    try {
+      final CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+      final LevelDBTableService service = new LevelDBTableService();
+      service.setConfiguration(cConf);
+      FactTableSupplier supplier = new FactTableSupplier() {
+        @Override
+        public FactTable get(int resolution, int rollTime) {
+          try {
+            return new FactTable(createTable(service, cConf, "data." + resolution),
+                                 new EntityTable(createTable(service, cConf, "entity")), resolution, rollTime);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      DefaultCube cube = new DefaultCube(RESOLUTIONS, supplier, AGGREGATIONS,
+                                         ImmutableMap.<String, AggregationAlias>of());
+
+      // All seconds are in the same row of the one second resolution table, so that there is a single record to
+      // scan per program for both resolutions
+      long startTs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / 3600 * 3600;
+      long endTs = startTs + seconds - 1;
+      populate(cube, programs, startTs, endTs);
+
+      System.out.printf("%-12s %12s %14s %10s%n", "mode", "ms/query", "bytes/query", "series");
+      for (int resolution : RESOLUTIONS) {
+        String name = resolution == Integer.MAX_VALUE ? "totals" : resolution + "s";
+        // Totals are stored at timestamp zero
+        long queryStartTs = resolution == Integer.MAX_VALUE ? 0 : startTs;
+        // The top time series has the most reads per second, summed up over all seconds for the totals
+        long topValue = (programs - 1) * (resolution == Integer.MAX_VALUE ? seconds : 1);
+        for (int seriesLimit : new int[] { 0, SERIES_LIMIT }) {
+          CubeQuery query = CubeQuery.builder()
+            .select().measurement("reads", AggregationFunction.SUM)
+            .from("program").resolution(resolution, TimeUnit.SECONDS)
+            .where().dimension("app", "app").timeRange(queryStartTs, endTs)
+            .groupBy().dimension("program")
+            .limit(Integer.MAX_VALUE)
+            .seriesLimit(seriesLimit)
+            .build();
+          run(cube, query, name + (seriesLimit == 0 ? " all" : " top"), programs, topValue, rounds);
+        }
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+    // LevelDB compaction threads are non-daemon
+    System.exit(0);
+  }
+
+  private static LevelDBMetricsTable createTable(LevelDBTableService service, CConfiguration cConf,
+                                                 String name) throws IOException {
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, name));
+    return new LevelDBMetricsTable(DatasetContext.from(NAMESPACE), name, service, cConf);
+  }
+
+  private static void populate(DefaultCube cube, int programs, long startTs, long endTs) {
+    List<CubeFact> facts = Lists.newArrayList();
+    for (long ts = startTs; ts <= endTs; ts++) {
+      for (int program = 0; program < programs; program++) {
+        facts.add(new CubeFact(ts)
+                    .addDimensionValues(ImmutableMap.of("app", "app", "program", "program" + program))
+                    .addMeasurement("reads", MeasureType.COUNTER, getReads(program, programs)));
+        if (facts.size() >= 1000) {
+          cube.add(facts);
+          facts.clear();
+        }
+      }
+    }
+    cube.add(facts);
+  }
+
+  /**
+   * Returns the number of reads per second of a program, which is a permutation of the program numbers, so that
+   * the order of the values is unrelated to the order of the rows.
+   */
+  private static long getReads(int program, int programs) {
+    return program * 7919L % programs;
+  }
+
+  /**
+   * Executes the query for the given number of rounds, after a warm up round, and prints the best time per query
+   * along with the bytes allocated by it.
+   */
+  private static void run(DefaultCube cube, CubeQuery query, String name, int programs, long topValue,
+                          int rounds) {
+    long bestNanos = Long.MAX_VALUE;
+    long bestBytes = Long.MAX_VALUE;
+    int size = 0;
+    for (int i = 0; i <= rounds; i++) {
+      long startBytes = getAllocatedBytes();
+      long startTime = System.nanoTime();
+      Collection<TimeSeries> result = cube.query(query);
+      long nanos = System.nanoTime() - startTime;
+      long bytes = getAllocatedBytes() - startBytes;
+
+      int expectedSize = query.getSeriesLimit() == 0 ? programs : Math.min(programs, query.getSeriesLimit());
+      if (result.size() != expectedSize) {
+        throw new IllegalStateException("Unexpected number of time series: " + result.size());
+      }
+      if (query.getSeriesLimit() > 0 && result.iterator().next().getTimeValues().get(0).getValue() != topValue) {
+        throw new IllegalStateException("Unexpected top time series: " + result.iterator().next());
+      }
+      size = result.size();
+      if (i > 0) {
+        bestNanos = Math.min(bestNanos, nanos);
+        bestBytes = Math.min(bestBytes, bytes);
+      }
+    }
+    System.out.printf("%-12s %12.2f %14d %10d%n", name, bestNanos / 1000000d, bestBytes, size);
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private CubeTopQueryBenchmark() {
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for measuring {@link DefaultCube} queries of a dashboard, which periodically issues a batch of queries
+ * over the last hour of data at one second resolution, one per program and measure. The cube is backed by
+ * LevelDB metrics tables, populated with two hours of data. The batch is executed one query at a time, in parallel,
+ * and in parallel with the query cache enabled.
+ *
+ * Usage: {@code DefaultCubeBenchmark [programs] [measures] [threads] [rounds]}
+ */
+public final class DefaultCubeBenchmark {
+
+  private static final String NAMESPACE = "benchmark";
+  private static final int[] RESOLUTIONS = { 1, 60 };
+  private static final Map<String, Aggregation> AGGREGATIONS = ImmutableMap.<String, Aggregation>of(
+    "program", new DefaultAggregation(ImmutableList.of("app", "program")));
+
+  public static void main(String[] args) throws Exception {
+    int programs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    int measures = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+    File baseDir = Files.createTempDir();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+      final LevelDBTableService service = new LevelDBTableService();
+      service.setConfiguration(cConf);
+      FactTableSupplier supplier = new FactTableSupplier() {
+        @Override
+        public FactTable get(int resolution, int rollTime) {
+          try {
+            return new FactTable(createTable(service, cConf, "data." + resolution),
+                                 new EntityTable(createTable(service, cConf, "entity")), resolution, rollTime);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+
+      DefaultCube cube = new DefaultCube(RESOLUTIONS, supplier, AGGREGATIONS,
+                                         ImmutableMap.<String, AggregationAlias>of());
+      DefaultCube cachingCube = new DefaultCube(RESOLUTIONS, supplier, AGGREGATIONS,
+                                                ImmutableMap.<String, AggregationAlias>of());
+      cachingCube.enableQueryCache(10000000, 300, 3600);
+
+      long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      populate(cube, programs, measures, now - 7200, now);
+
+      List<CubeQuery> queries = Lists.newArrayList();
+      for (int program = 0; program < programs; program++) {
+        for (int measure = 0; measure < measures; measure++) {
+          queries.add(CubeQuery.builder()
+                        .select().measurement("measure" + measure, AggregationFunction.SUM)
+                        .from("program").resolution(1, TimeUnit.SECONDS)
+                        .where().dimension("app", "app").dimension("program", "program" + program)
+                        .timeRange(now - 3600, now)
+                        .limit(Integer.MAX_VALUE).build());
+        }
+      }
+
+      System.out.printf("%-12s %14s%n", "mode", "queries/sec");
+      System.out.printf("%-12s %14.0f%n", "sequential", run(cube, queries, null, rounds));
+      System.out.printf("%-12s %14.0f%n", "parallel", run(cube, queries, executor, rounds));
+      System.out.printf("%-12s %14.0f%n", "cached", run(cachingCube, queries, executor, rounds));
+    } finally {
+      executor.shutdownNow();
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+    // LevelDB compaction threads are non-daemon
+    System.exit(0);
+  }
+
+  private static LevelDBMetricsTable createTable(LevelDBTableService service, CConfiguration cConf,
+                                                 String name) throws IOException {
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, name));
+    return new LevelDBMetricsTable(DatasetContext.from(NAMESPACE), name, service, cConf);
+  }
+
+  private static void populate(DefaultCube cube, int programs, int measures, long startTs, long endTs) {
+    List<CubeFact> facts = Lists.newArrayList();
+    for (long ts = startTs; ts <= endTs; ts++) {
+      for (int program = 0; program < programs; program++) {
+        CubeFact fact = new CubeFact(ts).addDimensionValues(ImmutableMap.of("app", "app",
+                                                                            "program", "program" + program));
+        for (int measure = 0; measure < measures; measure++) {
+          fact.addMeasurement("measure" + measure, MeasureType.COUNTER, ts);
+        }
+        facts.add(fact);
+      }
+      if (facts.size() >= 1000) {
+        cube.add(facts);
+        facts.clear();
+      }
+    }
+    cube.add(facts);
+  }
+
+  /**
+   * Executes the queries for the given number of rounds, after a warm up round, and returns the best queries/sec.
+   */
+  private static double run(DefaultCube cube, List<CubeQuery> queries, ExecutorService executor, int rounds) {
+    long bestNanos = Long.MAX_VALUE;
+    for (int i = 0; i <= rounds; i++) {
+      long startTime = System.nanoTime();
+      List<Collection<TimeSeries>> results;
+      if (executor == null) {
+        results = Lists.newArrayList();
+        for (CubeQuery query : queries) {
+          results.add(cube.query(query));
+        }
+      } else {
+        results = cube.query(queries, executor);
+      }
+      long nanos = System.nanoTime() - startTime;
+      for (Collection<TimeSeries> result : results) {
+        if (result.size() != 1 || result.iterator().next().getTimeValues().size() != 3601) {
+          throw new IllegalStateException("Unexpected query result: " + result);
+        }
+      }
+      if (i > 0) {
+        bestNanos = Math.min(bestNanos, nanos);
+      }
+    }
+    return queries.size() * 1000000000d / bestNanos;
+  }
+
+  private DefaultCubeBenchmark() {
+  }
+}
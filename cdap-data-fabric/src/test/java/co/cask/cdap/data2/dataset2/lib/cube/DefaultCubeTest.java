@@ -16,14 +16,32 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -48,4 +66,185 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
     return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
+
+  @Test
+  public void testQueryCache() throws Exception {
+    DefaultCube cube = (DefaultCube) getCube("testQueryCache", new int[] {1},
+                                             ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1"))));
+    final Map<String, Long> metrics = Maps.newHashMap();
+    cube.setMetricsCollector(new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        Long old = metrics.get(metricName);
+        metrics.put(metricName, old == null ? value : old + value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        metrics.put(metricName, value);
+      }
+    });
+    // Facts of the last 120 seconds are not cached
+    cube.enableQueryCache(1000000, 120, 3600);
+
+    // Ten minutes of facts, starting at a minute boundary. The first minute is cached, the last one is not.
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    long startTs = (now - 600) / 60 * 60;
+    long endTs = startTs + 599;
+    for (long ts = startTs; ts <= endTs; ts++) {
+      cube.add(fact(ts, "metric", 1));
+    }
+
+    Assert.assertEquals(600, sum(cube.query(sumQuery(startTs, endTs))));
+    long misses = metrics.get("cube.query.cache.miss.count");
+    Assert.assertTrue(misses > 0);
+    Assert.assertNull(metrics.get("cube.query.cache.hit.count"));
+
+    // The cached minutes are not scanned again
+    Assert.assertEquals(600, sum(cube.query(sumQuery(startTs, endTs))));
+    Assert.assertEquals(misses, (long) metrics.get("cube.query.cache.hit.count"));
+    // A narrower query, partially covering the first and the last cached minute, gives the same results
+    Assert.assertEquals(480, sum(cube.query(sumQuery(startTs + 30, endTs - 90))));
+
+    // Facts written in the mutable window are visible, and facts written before it invalidate the cache
+    cube.add(fact(endTs, "metric", 100));
+    Assert.assertEquals(700, sum(cube.query(sumQuery(startTs, endTs))));
+    cube.add(fact(startTs, "metric", 10));
+    Assert.assertEquals(710, sum(cube.query(sumQuery(startTs, endTs))));
+
+    // Deleting invalidates the cache
+    cube.delete(new CubeDeleteQuery(startTs, startTs + 59, 1, ImmutableMap.<String, String>of(), "metric"));
+    Assert.assertEquals(640, sum(cube.query(sumQuery(startTs, endTs))));
+  }
+
+  @Test
+  public void testBatchQuery() throws Exception {
+    DefaultCube cube = (DefaultCube) getCube("testBatchQuery", new int[] {1},
+                                             ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1"))));
+    for (long ts = 1; ts <= 100; ts++) {
+      cube.add(fact(ts, "metric", ts));
+    }
+
+    List<CubeQuery> queries = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      queries.add(sumQuery(1, (i + 1) * 10));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Collection<TimeSeries>> results = cube.query(queries, executor);
+      Assert.assertEquals(queries.size(), results.size());
+      for (int i = 0; i < queries.size(); i++) {
+        long n = (i + 1) * 10;
+        Assert.assertEquals(n * (n + 1) / 2, sum(results.get(i)));
+      }
+
+      // Failure of a query fails the batch
+      queries.add(CubeQuery.builder()
+                    .select().measurement("metric", AggregationFunction.SUM)
+                    .from(null).resolution(60, TimeUnit.SECONDS)
+                    .where().timeRange(1, 100)
+                    .limit(Integer.MAX_VALUE).build());
+      try {
+        cube.query(queries, executor);
+        Assert.fail("Expected failure of a query with unknown resolution");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    Map<String, DefaultAggregation> aggregations =
+      ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1")));
+    DefaultCube cube = (DefaultCube) getCube("testRollup", new int[] {1, 60, 3600}, aggregations);
+    InMemoryTableService.create("RollupMeta-testRollup");
+    cube.enableRollup(new int[] {60, 3600}, new InMemoryMetricsTable("RollupMeta-testRollup"), 0);
+
+    // Five minutes of facts, ten minutes ago
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    long startTs = (now - 600) / 60 * 60;
+    long endTs = startTs + 299;
+    for (long ts = startTs; ts <= endTs; ts++) {
+      cube.add(ImmutableList.of(fact(ts, "metric", 1),
+                                new CubeFact(ts)
+                                  .addDimensionValues(ImmutableMap.of("dim1", "1"))
+                                  .addMeasurement("gauge", MeasureType.GAUGE, ts)));
+    }
+    Assert.assertEquals(300, sum(cube.query(sumQuery(1, startTs, endTs))));
+    Assert.assertEquals(0, sum(cube.query(sumQuery(60, startTs, endTs))));
+
+    // Counters are summed and gauges take the latest value of the window
+    cube.rollup();
+    Assert.assertEquals(300, sum(cube.query(sumQuery(60, startTs, endTs))));
+    Collection<TimeSeries> gauges = cube.query(
+      CubeQuery.builder()
+        .select().measurement("gauge", AggregationFunction.LATEST)
+        .from(null).resolution(60, TimeUnit.SECONDS)
+        .where().dimension("dim1", "1").timeRange(startTs, endTs)
+        .limit(Integer.MAX_VALUE).build());
+    Assert.assertEquals(1, gauges.size());
+    List<TimeValue> gaugeValues = gauges.iterator().next().getTimeValues();
+    Assert.assertEquals(5, gaugeValues.size());
+    for (TimeValue timeValue : gaugeValues) {
+      Assert.assertEquals(timeValue.getTimestamp() + 59, timeValue.getValue());
+    }
+    // Rolling up again doesn't change the results
+    cube.rollup();
+    Assert.assertEquals(300, sum(cube.query(sumQuery(60, startTs, endTs))));
+
+    // Facts older than the rolled up time range are written directly
+    cube.add(fact(startTs, "metric", 10));
+    Assert.assertEquals(310, sum(cube.query(sumQuery(60, startTs, endTs))));
+
+    // The hour is rolled up from the minutes when it is over
+    long hourStartTs = startTs / 3600 * 3600;
+    cube.rollup(hourStartTs + 7200);
+    Assert.assertEquals(310, sum(cube.query(sumQuery(3600, hourStartTs, endTs))));
+
+    // Rolling up resumes from the checkpoints
+    cube = (DefaultCube) getCube("testRollup", new int[] {1, 60, 3600}, aggregations);
+    cube.enableRollup(new int[] {60, 3600}, new InMemoryMetricsTable("RollupMeta-testRollup"), 0);
+    cube.add(fact(startTs, "metric", 1));
+    Assert.assertEquals(311, sum(cube.query(sumQuery(60, startTs, endTs))));
+    Assert.assertEquals(311, sum(cube.query(sumQuery(3600, hourStartTs, endTs))));
+
+    // Only resolutions that can be derived from a finer resolution can be rolled up
+    try {
+      cube.enableRollup(new int[] {1}, new InMemoryMetricsTable("RollupMeta-testRollup"), 0);
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private CubeFact fact(long ts, String measureName, long value) {
+    return new CubeFact(ts)
+      .addDimensionValues(ImmutableMap.of("dim1", "1"))
+      .addMeasurement(measureName, MeasureType.COUNTER, value);
+  }
+
+  private CubeQuery sumQuery(long startTs, long endTs) {
+    return sumQuery(1, startTs, endTs);
+  }
+
+  private CubeQuery sumQuery(int resolution, long startTs, long endTs) {
+    return CubeQuery.builder()
+      .select().measurement("metric", AggregationFunction.SUM)
+      .from(null).resolution(resolution, TimeUnit.SECONDS)
+      .where().dimension("dim1", "1").timeRange(startTs, endTs)
+      .limit(Integer.MAX_VALUE).build();
+  }
+
+  private long sum(Collection<TimeSeries> result) {
+    long sum = 0;
+    for (TimeSeries timeSeries : result) {
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        sum += timeValue.getValue();
+      }
+    }
+    return sum;
+  }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.ConflictDetection;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scan;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.tephra.Transaction;
+
+import java.lang.management.ManagementFactory;
+import java.util.NavigableMap;
+import java.util.Random;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmark for measuring the in-memory write buffer of {@link BufferingTable} in large transactions. Each
+ * transaction puts the given number of rows in random order, reads every row back, scans the whole buffer,
+ * then alternates between putting a new row and scanning the first row a number of times, and finally computes
+ * the change set and commits. The persisted store is a no-op, so that only the cost of the
+ * buffer is measured. Allocation is measured with the per thread allocation counter of the HotSpot JVM.
+ *
+ * Usage: {@code BufferingTableBenchmark [rows_per_tx] [columns_per_row] [rounds] [put_scans_per_tx]}
+ */
+public final class BufferingTableBenchmark {
+
+  private static final String[] PHASES = { "put", "get", "scan", "putscan", "commit" };
+
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int columns = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int putScans = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+    // Random row order, as the buffer would see from most applications
+    byte[][] rowKeys = new byte[rows][];
+    Random random = new Random(0);
+    for (int i = 0; i < rows; i++) {
+      rowKeys[i] = Bytes.toBytes(random.nextLong());
+    }
+    byte[][] putScanRowKeys = new byte[putScans][];
+    for (int i = 0; i < putScans; i++) {
+      putScanRowKeys[i] = Bytes.toBytes(random.nextLong());
+    }
+    byte[][] columnKeys = new byte[columns][];
+    byte[][] values = new byte[columns][];
+    for (int i = 0; i < columns; i++) {
+      columnKeys[i] = Bytes.toBytes("c" + i);
+      values[i] = Bytes.toBytes((long) i);
+    }
+
+    NoopPersistTable table = new NoopPersistTable();
+    long[] bestNanos = new long[PHASES.length];
+    long[] bestBytes = new long[PHASES.length];
+    for (int i = 0; i < PHASES.length; i++) {
+      bestNanos[i] = Long.MAX_VALUE;
+      bestBytes[i] = Long.MAX_VALUE;
+    }
+
+    // First round is warm up
+    for (int round = 0; round <= rounds; round++) {
+      long[] nanos = new long[PHASES.length];
+      long[] bytes = new long[PHASES.length];
+      run(table, new Transaction(round, round + 1, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS),
+          rowKeys, putScanRowKeys, columnKeys, values, nanos, bytes);
+      if (round > 0) {
+        for (int i = 0; i < PHASES.length; i++) {
+          bestNanos[i] = Math.min(bestNanos[i], nanos[i]);
+          bestBytes[i] = Math.min(bestBytes[i], bytes[i]);
+        }
+      }
+    }
+
+    // The putscan phase is reported per put and scan, the other phases per row
+    System.out.printf("%-8s %12s %14s%n", "phase", "ns/op", "bytes/op");
+    for (int i = 0; i < PHASES.length; i++) {
+      int ops = "putscan".equals(PHASES[i]) ? putScans : rows;
+      System.out.printf("%-8s %12.2f %14.2f%n", PHASES[i], (double) bestNanos[i] / ops,
+                        (double) bestBytes[i] / ops);
+    }
+  }
+
+  private static void run(NoopPersistTable table, Transaction tx, byte[][] rowKeys, byte[][] putScanRowKeys,
+                          byte[][] columnKeys, byte[][] values, long[] nanos, long[] bytes) throws Exception {
+    table.startTx(tx);
+
+    int phase = 0;
+    long startBytes = getAllocatedBytes();
+    long startTime = System.nanoTime();
+    for (byte[] row : rowKeys) {
+      table.put(row, columnKeys, values);
+    }
+    startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+    startBytes = getAllocatedBytes();
+
+    long sum = 0;
+    for (byte[] row : rowKeys) {
+      sum += table.get(row, columnKeys).getColumns().size();
+    }
+    startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+    startBytes = getAllocatedBytes();
+
+    try (Scanner scanner = table.scan(new Scan(null, null))) {
+      while (scanner.next() != null) {
+        sum++;
+      }
+    }
+    startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+    startBytes = getAllocatedBytes();
+
+    for (byte[] row : putScanRowKeys) {
+      table.put(row, columnKeys, values);
+      try (Scanner scanner = table.scan(new Scan(null, null))) {
+        sum += scanner.next() == null ? 0 : 1;
+      }
+    }
+    startTime = mark(nanos, bytes, phase++, startTime, startBytes);
+    startBytes = getAllocatedBytes();
+
+    sum += table.getTxChanges().size();
+    table.commitTx();
+    table.postTxCommit();
+    mark(nanos, bytes, phase, startTime, startBytes);
+
+    if (sum != (long) rowKeys.length * (columnKeys.length + 2) + putScanRowKeys.length * 2) {
+      throw new IllegalStateException("Unexpected number of cells read: " + sum);
+    }
+    if (table.persistedRows != rowKeys.length + putScanRowKeys.length) {
+      throw new IllegalStateException("Unexpected number of rows persisted: " + table.persistedRows);
+    }
+  }
+
+  private static long mark(long[] nanos, long[] bytes, int phase, long startTime, long startBytes) {
+    long now = System.nanoTime();
+    bytes[phase] = getAllocatedBytes() - startBytes;
+    nanos[phase] = now - startTime;
+    return System.nanoTime();
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * A {@link BufferingTable} with an empty persisted store that only counts the rows being persisted.
+   */
+  private static final class NoopPersistTable extends BufferingTable {
+
+    private static final Scanner EMPTY_SCANNER = new Scanner() {
+      @Nullable
+      @Override
+      public Row next() {
+        return null;
+      }
+
+      @Override
+      public void close() {
+        // No-op
+      }
+    };
+
+    private int persistedRows;
+
+    NoopPersistTable() {
+      super("benchmark", ConflictDetection.ROW);
+    }
+
+    @Override
+    protected void persist(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) throws Exception {
+      persistedRows = 0;
+      for (NavigableMap<byte[], Update> columns : buff.values()) {
+        persistedRows += columns.isEmpty() ? 0 : 1;
+      }
+    }
+
+    @Override
+    protected void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) throws Exception {
+      // No-op
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, @Nullable byte[][] columns) throws Exception {
+      return EMPTY_ROW_MAP;
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn,
+                                                        int limit) throws Exception {
+      return EMPTY_ROW_MAP;
+    }
+
+    @Override
+    protected Scanner scanPersisted(Scan scan) throws Exception {
+      return EMPTY_SCANNER;
+    }
+  }
+
+  private BufferingTableBenchmark() {
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Random;
+
+/**
+ * Tests for {@link WriteBuffer}.
+ */
+public class WriteBufferTest {
+
+  @Test
+  public void testGetAndSorted() {
+    WriteBuffer buffer = new WriteBuffer();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertNull(buffer.get(Bytes.toBytes(1)));
+
+    // Enough rows to resize the hash table a few times, added in descending order
+    int rows = 1000;
+    for (int i = rows - 1; i >= 0; i--) {
+      byte[] row = Bytes.toBytes(i);
+      buffer.getOrCreate(row).put(Bytes.toBytes("c"), new PutValue(Bytes.toBytes(i)));
+      // The row must be copied
+      row[0] = (byte) 0xff;
+    }
+    Assert.assertEquals(rows, buffer.size());
+
+    for (int i = 0; i < rows; i++) {
+      NavigableMap<byte[], Update> columns = buffer.get(Bytes.toBytes(i));
+      Assert.assertNotNull(columns);
+      Assert.assertEquals(i, Bytes.toInt(((PutValue) columns.get(Bytes.toBytes("c"))).getValue()));
+      Assert.assertSame(columns, buffer.getOrCreate(Bytes.toBytes(i)));
+    }
+    Assert.assertEquals(rows, buffer.size());
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> sorted = buffer.getSorted();
+    Assert.assertSame(sorted, buffer.getSorted());
+    int expected = 0;
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : sorted.entrySet()) {
+      Assert.assertEquals(expected++, Bytes.toInt(entry.getKey()));
+    }
+    Assert.assertEquals(rows, expected);
+
+    // Changes to columns of existing rows are visible in the sorted view
+    buffer.getOrCreate(Bytes.toBytes(0)).put(Bytes.toBytes("d"), new PutValue(null));
+    Assert.assertSame(sorted, buffer.getSorted());
+    Assert.assertEquals(2, sorted.get(Bytes.toBytes(0)).size());
+
+    // A new row is added to the sorted view when it is requested
+    buffer.getOrCreate(Bytes.toBytes(-1));
+    Assert.assertEquals(rows, sorted.size());
+    Assert.assertSame(sorted, buffer.getSorted());
+    Assert.assertEquals(rows + 1, sorted.size());
+    Assert.assertEquals(-1, Bytes.toInt(sorted.lastKey()));
+  }
+
+  @Test
+  public void testSortedWithInterleavedAdds() {
+    WriteBuffer buffer = new WriteBuffer();
+    NavigableSet<byte[]> expected = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    Random random = new Random(0);
+    for (int i = 0; i < 100; i++) {
+      // Adds a few new and existing rows between requests of the sorted view
+      for (int j = random.nextInt(50); j >= 0; j--) {
+        byte[] row = Bytes.toBytes(random.nextInt(2000));
+        buffer.getOrCreate(row);
+        expected.add(row);
+      }
+      NavigableMap<byte[], NavigableMap<byte[], Update>> sorted = buffer.getSorted();
+      Assert.assertEquals(expected.size(), buffer.size());
+      Assert.assertEquals(expected.size(), sorted.size());
+      Iterator<byte[]> expectedRows = expected.iterator();
+      for (byte[] row : sorted.keySet()) {
+        Assert.assertArrayEquals(expectedRows.next(), row);
+        Assert.assertSame(buffer.get(row), sorted.get(row));
+      }
+    }
+  }
+
+  @Test
+  public void testClear() {
+    WriteBuffer buffer = new WriteBuffer();
+    // Enough rows for the hash table to be shrunk on clear
+    for (int i = 0; i < 100000; i++) {
+      buffer.getOrCreate(Bytes.toBytes(i));
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Update>> sorted = buffer.getSorted();
+    buffer.clear();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertNull(buffer.get(Bytes.toBytes(0)));
+    Assert.assertTrue(buffer.getSorted().isEmpty());
+    Assert.assertEquals(100000, sorted.size());
+
+    // The buffer is usable after clear
+    for (int i = 0; i < 100; i++) {
+      buffer.getOrCreate(Bytes.toBytes(i));
+    }
+    buffer.clear();
+    buffer.getOrCreate(Bytes.toBytes(1));
+    Assert.assertEquals(1, buffer.size());
+    Assert.assertNotNull(buffer.get(Bytes.toBytes(1)));
+    Assert.assertNull(buffer.get(Bytes.toBytes(2)));
+  }
+}
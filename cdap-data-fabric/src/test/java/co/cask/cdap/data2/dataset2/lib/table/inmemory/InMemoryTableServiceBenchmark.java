@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.inmemory;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.dataset2.lib.table.PutValue;
+import co.cask.cdap.data2.dataset2.lib.table.Update;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded benchmark of {@link InMemoryTableService} throughput. Each operation is a mix of
+ * a transaction commit (merge of 10 rows), 10 row reads and a short scan, each thread working on its own table
+ * as independent datasets do. The "global" mode serializes all calls through a single monitor, which is
+ * how the service used to behave, for comparison with the row level locking.
+ *
+ * Usage: {@code InMemoryTableServiceBenchmark [seconds_per_run]}
+ */
+public final class InMemoryTableServiceBenchmark {
+
+  private static final Object GLOBAL_LOCK = new Object();
+
+  public static void main(String[] args) throws Exception {
+    long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10L;
+
+    System.out.printf("%-8s %8s %14s%n", "mode", "threads", "ops/s");
+    for (boolean global : new boolean[] { true, false }) {
+      for (int threads : new int[] { 1, 4, 16 }) {
+        double throughput = run(threads, global, seconds);
+        System.out.printf("%-8s %8d %14.0f%n", global ? "global" : "striped", threads, throughput);
+      }
+    }
+  }
+
+  private static double run(int threads, final boolean global, final long seconds) throws Exception {
+    InMemoryTableService.reset();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    try {
+      List<Future<Long>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        final String tableName = "table" + i;
+        InMemoryTableService.create(tableName);
+        futures.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            Random random = new Random();
+            barrier.await();
+            long ops = 0;
+            long version = 0;
+            long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < endTime) {
+              runOperation(tableName, random, ++version, global);
+              ops++;
+            }
+            return ops;
+          }
+        }));
+      }
+
+      long totalOps = 0;
+      for (Future<Long> future : futures) {
+        totalOps += future.get();
+      }
+      return (double) totalOps / seconds;
+    } finally {
+      executor.shutdownNow();
+      InMemoryTableService.reset();
+    }
+  }
+
+  private static void runOperation(String tableName, Random random, long version, boolean global) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 10; i++) {
+      NavigableMap<byte[], Update> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      columns.put(Bytes.toBytes("c" + random.nextInt(10)), new PutValue(Bytes.toBytes(random.nextLong())));
+      changes.put(Bytes.toBytes(random.nextInt(10000)), columns);
+    }
+
+    if (global) {
+      synchronized (GLOBAL_LOCK) {
+        InMemoryTableService.merge(tableName, changes, version);
+      }
+      for (int i = 0; i < 10; i++) {
+        synchronized (GLOBAL_LOCK) {
+          InMemoryTableService.get(tableName, Bytes.toBytes(random.nextInt(10000)), null);
+        }
+      }
+      int start = random.nextInt(10000);
+      synchronized (GLOBAL_LOCK) {
+        InMemoryTableService.getRowRange(tableName, Bytes.toBytes(start), Bytes.toBytes(start + 20), null);
+      }
+    } else {
+      InMemoryTableService.merge(tableName, changes, version);
+      for (int i = 0; i < 10; i++) {
+        InMemoryTableService.get(tableName, Bytes.toBytes(random.nextInt(10000)), null);
+      }
+      int start = random.nextInt(10000);
+      InMemoryTableService.getRowRange(tableName, Bytes.toBytes(start), Bytes.toBytes(start + 20), null);
+    }
+  }
+
+  private InMemoryTableServiceBenchmark() {
+  }
+}
@@ -20,11 +20,20 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.tephra.Transaction;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  *
@@ -97,6 +106,130 @@ public class InMemoryTableServiceTest {
     verify123();
   }
 
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    InMemoryTableService.create("concurrentTable");
+
+    // Concurrently increments columns of a small set of rows, so that threads contend on the same rows.
+    final int threads = 8;
+    final int rows = 4;
+    final int increments = 1000;
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            barrier.await();
+            for (int j = 0; j < increments; j++) {
+              byte[] row = Bytes.toBytes("r" + (j % rows));
+              InMemoryTableService.increment("concurrentTable", row,
+                                             ImmutableMap.of(Bytes.toBytes("c"), 1L, Bytes.toBytes("d"), 2L));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
+      InMemoryTableService.getRowRange("concurrentTable", null, null, null);
+    Assert.assertEquals(rows, result.size());
+    for (NavigableMap<byte[], NavigableMap<Long, byte[]>> row : result.values()) {
+      long expected = threads * increments / rows;
+      Assert.assertEquals(expected, Bytes.toLong(row.get(Bytes.toBytes("c")).firstEntry().getValue()));
+      Assert.assertEquals(expected * 2, Bytes.toLong(row.get(Bytes.toBytes("d")).firstEntry().getValue()));
+    }
+    InMemoryTableService.drop("concurrentTable");
+  }
+
+  @Test
+  public void testConcurrentMergeAndDelete() throws Exception {
+    InMemoryTableService.create("mergeDeleteTable");
+
+    // Concurrently merges changes of two columns into rows, while other threads truncate the table, delete rows
+    // by prefix and read rows. Every row read must contain either both columns of a merge or none of them.
+    final int writers = 4;
+    final int rows = 16;
+    final int merges = 2000;
+    final byte[] colA = Bytes.toBytes("a");
+    final byte[] colB = Bytes.toBytes("b");
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    final CyclicBarrier barrier = new CyclicBarrier(writers + 2);
+    ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+    try {
+      List<Future<?>> writerFutures = Lists.newArrayList();
+      for (int i = 0; i < writers; i++) {
+        writerFutures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            barrier.await();
+            for (int j = 0; j < merges; j++) {
+              NavigableMap<byte[], NavigableMap<byte[], Update>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+              NavigableMap<byte[], Update> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+              columns.put(colA, new PutValue(Bytes.toBytes(j)));
+              columns.put(colB, new PutValue(Bytes.toBytes(j)));
+              changes.put(Bytes.toBytes("r" + (j % rows)), columns);
+              InMemoryTableService.merge("mergeDeleteTable", changes, j);
+            }
+            return null;
+          }
+        }));
+      }
+      Future<?> deleter = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          barrier.await();
+          int i = 0;
+          while (writing.get()) {
+            if (i++ % 2 == 0) {
+              InMemoryTableService.truncate("mergeDeleteTable");
+            } else {
+              InMemoryTableService.delete("mergeDeleteTable", Bytes.toBytes("r1"));
+            }
+          }
+          return null;
+        }
+      });
+      Future<?> reader = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          barrier.await();
+          while (writing.get()) {
+            for (NavigableMap<byte[], NavigableMap<Long, byte[]>> row :
+              InMemoryTableService.getRowRange("mergeDeleteTable", null, null, null).values()) {
+              Assert.assertEquals(row.containsKey(colA), row.containsKey(colB));
+            }
+          }
+          return null;
+        }
+      });
+
+      for (Future<?> future : writerFutures) {
+        future.get();
+      }
+      writing.set(false);
+      deleter.get();
+      reader.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Rows merged after the last delete must be complete
+    for (NavigableMap<byte[], NavigableMap<Long, byte[]>> row :
+      InMemoryTableService.getRowRange("mergeDeleteTable", null, null, null).values()) {
+      Assert.assertEquals(row.get(colA).keySet(), row.get(colB).keySet());
+    }
+    InMemoryTableService.drop("mergeDeleteTable");
+  }
+
   private void verify123() {
     NavigableMap<byte[], NavigableMap<Long, byte[]>> rowFromGet =
       InMemoryTableService.get("table", new byte[]{1}, new Transaction(1L, 2L, new long[0], new long[0], 1L));
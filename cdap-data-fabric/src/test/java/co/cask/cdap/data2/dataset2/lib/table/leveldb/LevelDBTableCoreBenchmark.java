@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.tephra.Transaction;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.iq80.leveldb.DBIterator;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmark for measuring the read throughput of {@link LevelDBTableCore}, and the number of bytes stored
+ * in LevelDB compared to the row, column and value bytes written. Every cell is written in two versions, so
+ * that reads also have to skip older versions. It measures full table scans and single row reads. Allocation is
+ * measured with the per thread allocation counter of the HotSpot JVM.
+ *
+ * Usage: {@code LevelDBTableCoreBenchmark [rows] [columns_per_row] [rounds]}
+ */
+public final class LevelDBTableCoreBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int columns = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    File baseDir = Files.createTempDir();
+    try {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+      LevelDBTableService service = new LevelDBTableService();
+      service.setConfiguration(cConf);
+      service.ensureTableExists(TABLE_NAME);
+      LevelDBTableCore core = new LevelDBTableCore(TABLE_NAME, service);
+
+      long dataBytes = write(core, rows, columns);
+      long storedBytes = 0;
+      try (DBIterator iterator = service.getTable(TABLE_NAME).iterator()) {
+        for (iterator.seekToFirst(); iterator.hasNext(); ) {
+          Map.Entry<byte[], byte[]> entry = iterator.next();
+          storedBytes += entry.getKey().length + entry.getValue().length;
+        }
+      }
+
+      Transaction tx = new Transaction(Long.MAX_VALUE - 1, Long.MAX_VALUE, new long[0], new long[0],
+                                       Transaction.NO_TX_IN_PROGRESS);
+      // First round is warm up
+      long bestScanNanos = Long.MAX_VALUE;
+      long bestRangeScanNanos = Long.MAX_VALUE;
+      long bestFilterScanNanos = Long.MAX_VALUE;
+      long bestGetNanos = Long.MAX_VALUE;
+      long scanBytes = 0;
+      long getBytes = 0;
+      for (int i = 0; i <= rounds; i++) {
+        long startBytes = getAllocatedBytes();
+        long scanNanos = scan(core, tx, null, null, null, rows * columns);
+        scanBytes = getAllocatedBytes() - startBytes;
+        long rangeScanNanos = scan(core, tx, getRowKey(0), getRowKey(rows), null, rows * columns);
+        long filterScanNanos = scan(core, tx, null, null, createFilter(), rows / 10 * columns);
+        startBytes = getAllocatedBytes();
+        long getNanos = get(core, tx, rows, columns);
+        getBytes = getAllocatedBytes() - startBytes;
+        if (i > 0) {
+          bestScanNanos = Math.min(bestScanNanos, scanNanos);
+          bestRangeScanNanos = Math.min(bestRangeScanNanos, rangeScanNanos);
+          bestFilterScanNanos = Math.min(bestFilterScanNanos, filterScanNanos);
+          bestGetNanos = Math.min(bestGetNanos, getNanos);
+        }
+      }
+
+      System.out.printf("%-16s %14.0f%n", "scan rows/sec", rows * 1000000000d / bestScanNanos);
+      System.out.printf("%-16s %14.0f%n", "scan bytes/row", (double) scanBytes / rows);
+      System.out.printf("%-16s %14.0f%n", "range rows/sec", rows * 1000000000d / bestRangeScanNanos);
+      System.out.printf("%-16s %14.0f%n", "filter rows/sec", rows * 1000000000d / bestFilterScanNanos);
+      System.out.printf("%-16s %14.0f%n", "get rows/sec", rows * 1000000000d / bestGetNanos);
+      System.out.printf("%-16s %14.0f%n", "get bytes/row", (double) getBytes / rows);
+      System.out.printf("%-16s %14d%n", "data bytes", dataBytes);
+      System.out.printf("%-16s %14d%n", "stored bytes", storedBytes);
+    } finally {
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+    // LevelDB compaction threads are non-daemon
+    System.exit(0);
+  }
+
+  private static long write(LevelDBTableCore core, int rows, int columns) throws Exception {
+    long dataBytes = 0;
+    for (long version = 1; version <= 2; version++) {
+      Map<byte[], Map<byte[], byte[]>> batch = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < rows; i++) {
+        Map<byte[], byte[]> row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        byte[] rowKey = getRowKey(i);
+        for (int j = 0; j < columns; j++) {
+          byte[] column = Bytes.toBytes("column" + j);
+          byte[] value = Bytes.toBytes(version * i + j);
+          row.put(column, value);
+          dataBytes += rowKey.length + column.length + value.length;
+        }
+        batch.put(rowKey, row);
+        if (batch.size() == 1000) {
+          core.persist(batch, version);
+          batch.clear();
+        }
+      }
+      core.persist(batch, version);
+    }
+    return dataBytes;
+  }
+
+  private static long scan(LevelDBTableCore core, Transaction tx, @Nullable byte[] startRow, @Nullable byte[] stopRow,
+                           @Nullable FuzzyRowFilter filter, int expectedCells) throws Exception {
+    long startTime = System.nanoTime();
+    int cells = 0;
+    try (Scanner scanner = core.scan(startRow, stopRow, filter, null, tx)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        cells += row.getColumns().size();
+      }
+    }
+    long nanos = System.nanoTime() - startTime;
+    if (cells != expectedCells) {
+      throw new IllegalStateException("Unexpected number of cells scanned: " + cells);
+    }
+    return nanos;
+  }
+
+  private static long get(LevelDBTableCore core, Transaction tx, int rows, int columns) throws Exception {
+    long startTime = System.nanoTime();
+    int cells = 0;
+    for (int i = 0; i < rows; i++) {
+      NavigableMap<byte[], byte[]> row = core.getRow(getRowKey(i), null, null, null, -1, tx);
+      cells += row.size();
+    }
+    long nanos = System.nanoTime() - startTime;
+    if (cells != rows * columns) {
+      throw new IllegalStateException("Unexpected number of cells read: " + cells);
+    }
+    return nanos;
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Creates a filter that matches the rows whose number ends with 7.
+   */
+  private static FuzzyRowFilter createFilter() {
+    byte[] rowKey = getRowKey(7);
+    byte[] mask = new byte[rowKey.length];
+    Arrays.fill(mask, 0, mask.length - 1, (byte) 1);
+    return new FuzzyRowFilter(ImmutableList.of(new ImmutablePair<>(rowKey, mask)));
+  }
+
+  private static byte[] getRowKey(int i) {
+    return Bytes.toBytes(String.format("row%08d", i));
+  }
+
+  private LevelDBTableCoreBenchmark() {
+  }
+}
@@ -18,18 +18,26 @@ package co.cask.cdap.data2.metadata.dataset;
 import co.cask.cdap.api.artifact.ArtifactId;
 import co.cask.cdap.api.artifact.ArtifactScope;
 import co.cask.cdap.api.artifact.ArtifactVersion;
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.lib.IndexedTable;
+import co.cask.cdap.api.dataset.lib.IndexedTableDefinition;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
 import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
+import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -38,6 +46,7 @@ import org.junit.Test;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,6 +60,10 @@ public class MetadataDatasetTest {
   @ClassRule
   public static DatasetFrameworkTestUtil dsFrameworkUtil = new DatasetFrameworkTestUtil();
 
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Id.NamespacedId.class, new NamespacedIdCodec())
+    .create();
+
   private static final Id.DatasetInstance datasetInstance =
     Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "meta");
 
@@ -444,6 +457,37 @@ public class MetadataDatasetTest {
     dataset.removeProperties(sysArtifact);
   }
 
+  @Test
+  public void testSearchByRelevance() throws Exception {
+    dataset.addTags(flow1, "tag1", "tag11");
+    dataset.setProperty(flow1, "key1", "value1");
+    dataset.addTags(dataset1, "tag10");
+    dataset.addTags(stream1, "other");
+
+    Set<MetadataSearchTargetType> all = ImmutableSet.of(MetadataSearchTargetType.ALL);
+    // an exact match scores higher than a prefix match
+    Assert.assertEquals(ImmutableMap.of(flow1, MetadataDataset.EXACT_MATCH_SCORE),
+                        dataset.searchByRelevance("ns1", "tag1", all));
+    // a term only adds to the score of an entity once, even if it matches several of its indexes
+    Assert.assertEquals(ImmutableMap.of(flow1, MetadataDataset.EXACT_MATCH_SCORE,
+                                        dataset1, MetadataDataset.PREFIX_MATCH_SCORE),
+                        dataset.searchByRelevance("ns1", "tag1*", all));
+    // the scores of all terms are summed up
+    Assert.assertEquals(ImmutableMap.of(flow1, 2 * MetadataDataset.EXACT_MATCH_SCORE,
+                                        dataset1, MetadataDataset.PREFIX_MATCH_SCORE),
+                        dataset.searchByRelevance("ns1", "tag1* key1:value1", all));
+    // search restricted to types and namespaces
+    Assert.assertEquals(ImmutableMap.of(dataset1, MetadataDataset.PREFIX_MATCH_SCORE),
+                        dataset.searchByRelevance("ns1", "tag1*", ImmutableSet.of(MetadataSearchTargetType.DATASET)));
+    Assert.assertEquals(ImmutableMap.of(), dataset.searchByRelevance("ns2", "tag1*", all));
+
+    // clean up
+    dataset.removeProperties(flow1);
+    dataset.removeTags(flow1);
+    dataset.removeTags(dataset1);
+    dataset.removeTags(stream1);
+  }
+
   @Test
   public void testUpdateSearch() throws Exception {
     dataset.setProperty(flow1, "key1", "value1");
@@ -569,6 +613,80 @@ public class MetadataDatasetTest {
     doTestHistory(dataset, stream1, "s_");
   }
 
+  @Test
+  public void testHistoryCheckpoints() throws Exception {
+    // take a checkpoint every third change, so that snapshots are replayed from checkpoints and deltas
+    IndexedTable table = getIndexedTable(Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID,
+                                                                 "testHistoryCheckpoints"));
+    MetadataDataset dataset = new MetadataDataset(table, 3);
+    doTestHistory(dataset, flow1, "f_");
+    doTestHistory(dataset, stream1, "s_");
+    Assert.assertTrue(countHistoryRows(table, "d") > countHistoryRows(table, "h"));
+  }
+
+  @Test
+  public void testHistoryCompaction() throws Exception {
+    IndexedTable table = getIndexedTable(Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID,
+                                                                 "testHistoryCompaction"));
+    // Write history with a complete snapshot for every change, the way it used to be written
+    Map<String, String> properties = new HashMap<>();
+    Set<String> tags = new HashSet<>();
+    for (int i = 0; i < 20; i++) {
+      // every fifth snapshot is the same as the previous one
+      if (i % 5 != 4) {
+        properties.put("key" + (i % 4), "value" + i);
+        properties.remove("key" + ((i + 2) % 4));
+        if (i % 3 == 0) {
+          tags.add("tag" + i);
+        }
+      }
+      writeLegacyHistory(table, new Metadata(flow1, properties, tags), 1000 + i);
+      writeLegacyHistory(table, new Metadata(dataset1, ImmutableMap.of("key", "value" + i),
+                                             Collections.<String>emptySet()), 1000 + i);
+    }
+    writeLegacyHistory(table, new Metadata(stream1, ImmutableMap.of("key", "value"), ImmutableSet.of("tag")), 1000);
+
+    MetadataDataset dataset = new MetadataDataset(table, 3);
+    Set<Id.NamespacedId> entities = ImmutableSet.<Id.NamespacedId>of(flow1, dataset1, stream1);
+    Map<Long, Set<Metadata>> expected = new HashMap<>();
+    for (long time = 999; time < 1021; time++) {
+      expected.put(time, dataset.getSnapshotBeforeTime(entities, time));
+    }
+    Assert.assertEquals(41, countHistoryRows(table, "h"));
+
+    // Compact in small batches
+    byte[] row = null;
+    int batches = 0;
+    while ((row = dataset.compactHistory(row, 2)) != null) {
+      batches++;
+    }
+    Assert.assertTrue(batches > 1);
+    for (Map.Entry<Long, Set<Metadata>> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getValue(), dataset.getSnapshotBeforeTime(entities, entry.getKey()));
+    }
+    // repeated snapshots of the flow are removed unless they are kept as checkpoint, and only every third change
+    // and the oldest change of an entity is a checkpoint
+    int checkpoints = countHistoryRows(table, "h");
+    int deltas = countHistoryRows(table, "d");
+    Assert.assertEquals(39, checkpoints + deltas);
+    Assert.assertEquals(16, checkpoints);
+
+    // compacting again has no effect
+    Assert.assertNull(dataset.compactHistory(null, 100));
+    Assert.assertEquals(checkpoints, countHistoryRows(table, "h"));
+    Assert.assertEquals(deltas, countHistoryRows(table, "d"));
+
+    // new changes are recorded on top of the compacted history
+    dataset.setProperty(flow1, "key", "value");
+    properties.put("key", "value");
+    Assert.assertEquals(new Metadata(flow1, properties, tags),
+                        getFirst(dataset.getSnapshotBeforeTime(ImmutableSet.<Id.NamespacedId>of(flow1),
+                                                               System.currentTimeMillis())));
+    for (Map.Entry<Long, Set<Metadata>> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getValue(), dataset.getSnapshotBeforeTime(entities, entry.getKey()));
+    }
+  }
+
   @Test
   public void testIndexRebuilding() throws Exception {
     MetadataDataset dataset =
@@ -815,6 +933,33 @@ public class MetadataDatasetTest {
     return iterable.iterator().next();
   }
 
+  private static IndexedTable getIndexedTable(Id.DatasetInstance instance) throws Exception {
+    return DatasetsUtil.getOrCreateDataset(dsFrameworkUtil.getFramework(), instance, IndexedTable.class.getName(),
+                                           DatasetProperties.builder()
+                                             .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY,
+                                                  MetadataDataset.INDEX_COLUMN)
+                                             .build(), null, null);
+  }
+
+  private static void writeLegacyHistory(IndexedTable table, Metadata metadata, long time) {
+    table.put(MdsHistoryKey.getMdsKey(metadata.getEntityId(), time).getKey(),
+              Bytes.toBytes("h"), Bytes.toBytes(GSON.toJson(metadata)));
+  }
+
+  private static int countHistoryRows(IndexedTable table, String column) {
+    byte[] prefix = MdsHistoryKey.getHistoryRowPrefix();
+    int count = 0;
+    try (Scanner scanner = table.scan(prefix, Bytes.stopKeyForPrefix(prefix))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        if (row.get(column) != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
   private static MetadataDataset getDataset(Id.DatasetInstance instance) throws Exception {
     return DatasetsUtil.getOrCreateDataset(dsFrameworkUtil.getFramework(), instance,
                                            MetadataDataset.class.getName(),
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.metadata.dataset;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.lib.IndexedTable;
+import co.cask.cdap.api.dataset.table.ConflictDetection;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import co.cask.cdap.proto.Id;
+import co.cask.tephra.Transaction;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark for measuring the cost of the metadata history of an entity that is updated many times, like a dataset
+ * whose properties are updated by every run of a pipeline. Every update sets one of the properties of the entity in
+ * its own transaction, in a distinct millisecond. A checkpoint interval of one writes a complete snapshot for every
+ * change, which is how the history used to be written. Reports the time per update, the size of the history, and
+ * the time to read a snapshot at a random point in the history. The dataset is backed by LevelDB tables.
+ *
+ * Usage: {@code MetadataHistoryBenchmark [updates] [properties]}
+ */
+public final class MetadataHistoryBenchmark {
+
+  private static final int[] CHECKPOINT_INTERVALS = { 1, 10, MetadataDataset.DEFAULT_HISTORY_CHECKPOINT_INTERVAL };
+  private static final int SNAPSHOT_READS = 1000;
+  private static final String NAMESPACE = "benchmark";
+
+  private static long txCounter;
+
+  public static void main(String[] args) throws Exception {
+    int updates = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int properties = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    File baseDir = Files.createTempDir();
+    try {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+      LevelDBTableService service = new LevelDBTableService();
+      service.setConfiguration(cConf);
+
+      System.out.printf("%-10s %12s %12s %14s %16s%n",
+                        "interval", "us/update", "history rows", "history bytes", "us/snapshot read");
+      for (int interval : CHECKPOINT_INTERVALS) {
+        String name = "history" + interval;
+        IndexedTable table = new IndexedTable(name, createTable(service, cConf, name),
+                                              createTable(service, cConf, name + ".index"),
+                                              new byte[][] { Bytes.toBytes(MetadataDataset.INDEX_COLUMN) });
+        MetadataDataset dataset = new MetadataDataset(table, interval);
+        // warm up with a separate entity
+        run(dataset, table, interval, Id.DatasetInstance.from(NAMESPACE, "warmup"), updates / 10, properties, false);
+        run(dataset, table, interval, Id.DatasetInstance.from(NAMESPACE, "dataset"), updates, properties, true);
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+    // LevelDB compaction threads are non-daemon
+    System.exit(0);
+  }
+
+  private static LevelDBTable createTable(LevelDBTableService service, CConfiguration cConf,
+                                          String name) throws IOException {
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, name));
+    return new LevelDBTable(DatasetContext.from(NAMESPACE), name, ConflictDetection.ROW, service, cConf, null, null);
+  }
+
+  private static void run(MetadataDataset dataset, IndexedTable table, int interval, Id.DatasetInstance entity,
+                          int updates, int properties, boolean report) throws Exception {
+    long[] times = new long[updates];
+    long updateNanos = 0;
+    for (int i = 0; i < updates; i++) {
+      // one change per millisecond, so that every change is a separate entry in the history
+      long now = System.currentTimeMillis();
+      while (System.currentTimeMillis() == now) {
+        Thread.yield();
+      }
+      long startTime = System.nanoTime();
+      startTx(dataset);
+      dataset.setProperty(entity, "key" + (i % properties), "run" + i);
+      commitTx(dataset);
+      updateNanos += System.nanoTime() - startTime;
+      times[i] = System.currentTimeMillis();
+    }
+
+    startTx(dataset);
+    Map<String, String> latest = dataset.getProperties(entity);
+    long rows = 0;
+    long bytes = 0;
+    byte[] prefix = MdsHistoryKey.getMdsScanStartKey(entity, Long.MAX_VALUE).getKey();
+    try (Scanner scanner = table.scan(prefix, MdsHistoryKey.getMdsScanEndKey(entity).getKey())) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        rows++;
+        bytes += row.getRow().length;
+        for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+          bytes += column.getKey().length + column.getValue().length;
+        }
+      }
+    }
+
+    Set<Id.NamespacedId> entities = ImmutableSet.<Id.NamespacedId>of(entity);
+    if (!latest.equals(dataset.getSnapshotBeforeTime(entities, times[updates - 1]).iterator()
+                         .next().getProperties())) {
+      throw new IllegalStateException("Latest snapshot does not match the metadata of " + entity);
+    }
+    Random random = new Random(0);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < SNAPSHOT_READS; i++) {
+      int update = random.nextInt(updates);
+      Metadata snapshot = dataset.getSnapshotBeforeTime(entities, times[update]).iterator().next();
+      if (!("run" + update).equals(snapshot.getProperties().get("key" + (update % properties)))) {
+        throw new IllegalStateException("Unexpected snapshot after update " + update + ": " + snapshot);
+      }
+    }
+    long readNanos = System.nanoTime() - startTime;
+    commitTx(dataset);
+
+    if (report) {
+      System.out.printf("%-10d %12.1f %12d %14d %16.1f%n", interval, updateNanos / 1000d / updates, rows, bytes,
+                        readNanos / 1000d / SNAPSHOT_READS);
+    }
+  }
+
+  private static void startTx(MetadataDataset dataset) {
+    long writePointer = ++txCounter;
+    dataset.startTx(new Transaction(writePointer - 1, writePointer, new long[0], new long[0],
+                                    Transaction.NO_TX_IN_PROGRESS));
+  }
+
+  private static void commitTx(MetadataDataset dataset) throws Exception {
+    dataset.commitTx();
+    dataset.postTxCommit();
+  }
+
+  private MetadataHistoryBenchmark() {
+  }
+}
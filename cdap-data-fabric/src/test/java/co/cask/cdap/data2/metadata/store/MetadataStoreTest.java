@@ -37,7 +37,9 @@ import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataChangeRecord;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.runtime.TransactionInMemoryModule;
 import com.google.common.base.Function;
@@ -342,11 +344,72 @@ public class MetadataStoreTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testPagedSearch() throws Exception {
+    Id.Program flow2 = Id.Program.from("ns2", "app2", ProgramType.FLOW, "flow2");
+    Id.DatasetInstance dataset2 = Id.DatasetInstance.from("ns2", "ds2");
+    Id.Stream stream2 = Id.Stream.from("ns2", "s2");
+    Id.Stream stream3 = Id.Stream.from("ns2", "s3");
+
+    // the flow matches exactly in both scopes, the dataset in one scope, and the streams by prefix only
+    store.addTags(MetadataScope.USER, flow2, "alpha");
+    store.addTags(MetadataScope.SYSTEM, flow2, "alpha");
+    store.addTags(MetadataScope.USER, dataset2, "alpha");
+    store.addTags(MetadataScope.USER, stream3, "alphanumeric");
+    store.addTags(MetadataScope.USER, stream2, "alphabet");
+
+    Set<MetadataSearchTargetType> all = ImmutableSet.of(MetadataSearchTargetType.ALL);
+    MetadataSearchResponse response = store.search("ns2", "alpha*", all, 2, null);
+    Assert.assertEquals(2, response.getLimit());
+    Assert.assertEquals(4, response.getTotal());
+    Assert.assertNotNull(response.getCursor());
+    Metadata alphaMetadata = new Metadata(Collections.<String, String>emptyMap(), ImmutableSet.of("alpha"));
+    Map<MetadataScope, Metadata> expectedFlowMetadata =
+      ImmutableMap.of(MetadataScope.USER, alphaMetadata, MetadataScope.SYSTEM, alphaMetadata);
+    Assert.assertEquals(new MetadataSearchResultRecord(flow2, expectedFlowMetadata), response.getResults().get(0));
+    Assert.assertEquals(dataset2, response.getResults().get(1).getEntityId());
+
+    // entities with the same score are ordered by their id
+    response = store.search("ns2", "alpha*", all, 2, response.getCursor());
+    Assert.assertEquals(4, response.getTotal());
+    Assert.assertNull(response.getCursor());
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream2, stream3), getEntityIds(response));
+
+    // a page with fewer results than the limit has no cursor
+    Assert.assertNull(store.search("ns2", "alpha*", all, 4, null).getCursor());
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(flow2, dataset2, stream2, stream3),
+                        getEntityIds(store.search("ns2", "alpha*", all, 5, null)));
+    // restrict to type
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream2, stream3),
+                        getEntityIds(store.search("ns2", "alpha*", ImmutableSet.of(MetadataSearchTargetType.STREAM),
+                                                  10, null)));
+
+    try {
+      store.search("ns2", "alpha*", all, 2, "invalid");
+      Assert.fail("Expected an invalid cursor to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    store.removeMetadata(flow2);
+    store.removeMetadata(dataset2);
+    store.removeMetadata(stream2);
+    store.removeMetadata(stream3);
+  }
+
   @AfterClass
   public static void teardown() {
     txManager.stopAndWait();
   }
 
+  private List<Id.NamespacedId> getEntityIds(MetadataSearchResponse response) {
+    List<Id.NamespacedId> entityIds = new ArrayList<>();
+    for (MetadataSearchResultRecord record : response.getResults()) {
+      entityIds.add(record.getEntityId());
+    }
+    return entityIds;
+  }
+
   private void generateMetadataUpdates() {
     store.addTags(MetadataScope.USER, dataset, datasetTags.iterator().next());
     store.setProperties(MetadataScope.USER, app, appProperties);
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.LocationRuntimeModule;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
+import co.cask.cdap.data.runtime.DataFabricModules;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data.runtime.TransactionMetricsModule;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.proto.Id;
+import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionContext;
+import co.cask.tephra.TransactionManager;
+import co.cask.tephra.TransactionSystemClient;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import java.io.File;
+
+/**
+ * Benchmark for measuring the flowlet consume throughput with different number of events dequeued per transaction,
+ * on the in-memory and LevelDB queues. Each transaction does what the flowlet driver does for a process method:
+ * start transaction, dequeue, process each event and commit.
+ *
+ * Usage: {@code QueueBatchDequeueBenchmark [events] [batch_sizes (comma separated)]}
+ */
+public final class QueueBatchDequeueBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    String[] batchSizes = (args.length > 1 ? args[1] : "1,10,100").split(",");
+
+    File localDir = Files.createTempDir();
+    try {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_LOCAL_DATA_DIR, localDir.getAbsolutePath());
+
+      System.out.printf("%-10s %10s %14s%n", "queue", "batch", "events/sec");
+      for (String type : new String[] { "inmemory", "leveldb" }) {
+        Module dataFabricModule = type.equals("inmemory")
+          ? new DataFabricModules().getInMemoryModules()
+          : new DataFabricLevelDBModule();
+        Injector injector = Guice.createInjector(
+          new ConfigModule(cConf),
+          new LocationRuntimeModule().getStandaloneModules(),
+          new DiscoveryRuntimeModule().getInMemoryModules(),
+          new DataSetsModules().getStandaloneModules(),
+          dataFabricModule,
+          new TransactionMetricsModule());
+
+        TransactionManager txManager = injector.getInstance(TransactionManager.class);
+        txManager.startAndWait();
+        try {
+          TransactionSystemClient txClient = injector.getInstance(TransactionSystemClient.class);
+          QueueClientFactory queueClientFactory = injector.getInstance(QueueClientFactory.class);
+
+          for (String batchSize : batchSizes) {
+            QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow",
+                                                        "flowlet", type + batchSize);
+            enqueue(txClient, queueClientFactory, queueName, events);
+            long nanos = dequeue(txClient, queueClientFactory, queueName, events, Integer.parseInt(batchSize));
+            System.out.printf("%-10s %10s %14.0f%n", type, batchSize, events * 1000000000d / nanos);
+          }
+        } finally {
+          txManager.stopAndWait();
+        }
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(localDir);
+    }
+    // LevelDB compaction threads are non-daemon
+    System.exit(0);
+  }
+
+  private static void enqueue(TransactionSystemClient txClient, QueueClientFactory queueClientFactory,
+                              QueueName queueName, int events) throws Exception {
+    try (QueueProducer producer = queueClientFactory.createProducer(queueName)) {
+      TransactionContext txContext = new TransactionContext(txClient, (TransactionAware) producer);
+      for (int i = 0; i < events; i += 1000) {
+        txContext.start();
+        for (int j = i; j < Math.min(i + 1000, events); j++) {
+          producer.enqueue(new QueueEntry(Bytes.toBytes(j)));
+        }
+        txContext.finish();
+      }
+    }
+  }
+
+  private static long dequeue(TransactionSystemClient txClient, QueueClientFactory queueClientFactory,
+                              QueueName queueName, int events, int batchSize) throws Exception {
+    ConsumerConfig consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+    try (QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1)) {
+      TransactionContext txContext = new TransactionContext(txClient, (TransactionAware) consumer);
+      long sum = 0;
+      int count = 0;
+      long startTime = System.nanoTime();
+      while (count < events) {
+        txContext.start();
+        DequeueResult<byte[]> result = consumer.dequeue(batchSize);
+        for (byte[] event : result) {
+          sum += Bytes.toInt(event);
+          count++;
+        }
+        txContext.finish();
+      }
+      long nanos = System.nanoTime() - startTime;
+      if (sum != (long) events * (events - 1) / 2) {
+        throw new IllegalStateException("Incorrect events dequeued");
+      }
+      return nanos;
+    }
+  }
+
+  private QueueBatchDequeueBenchmark() {
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.Tasks;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.internal.zookeeper.InMemoryZKServer;
+import org.apache.twill.zookeeper.ZKClientService;
+import org.apache.zookeeper.data.Stat;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ZKQueueNotifier}.
+ */
+public class ZKQueueNotifierTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static InMemoryZKServer zkServer;
+  private static ZKClientService zkClient;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    zkServer = InMemoryZKServer.builder().setDataDir(TMP_FOLDER.newFolder()).build();
+    zkServer.startAndWait();
+    zkClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    zkClient.startAndWait();
+  }
+
+  @AfterClass
+  public static void finish() {
+    zkClient.stopAndWait();
+    zkServer.stopAndWait();
+  }
+
+  @Test
+  public void testNotifyOnlyWatchedQueues() throws Exception {
+    ZKQueueNotifier notifier = new ZKQueueNotifier(zkClient, 0L);
+    QueueName queueName = QueueName.fromFlowlet("ns", "app", "flow", "flowlet", "out");
+    final String notifyPath = "/queues/notify/queue/ns/app/flow/flowlet/out";
+    final String watchersPath = "/queues/watchers/queue/ns/app/flow/flowlet/out";
+
+    // A subscribed consumer gets notified on enqueue
+    final Semaphore notified = new Semaphore(0);
+    Cancellable subscription = notifier.subscribe(queueName, new Runnable() {
+      @Override
+      public void run() {
+        notified.release();
+      }
+    });
+    Tasks.waitFor(1, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        Stat stat = zkClient.exists(watchersPath).get();
+        return stat == null ? 0 : stat.getNumChildren();
+      }
+    }, 10, TimeUnit.SECONDS);
+
+    notifier.notifyEnqueue(queueName);
+    Assert.assertTrue(notified.tryAcquire(10, TimeUnit.SECONDS));
+
+    // After the consumer is gone, enqueues no longer update the queue node
+    subscription.cancel();
+    Tasks.waitFor(0, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return zkClient.exists(watchersPath).get().getNumChildren();
+      }
+    }, 10, TimeUnit.SECONDS);
+    // Give the producer side watch time to see the removal
+    TimeUnit.MILLISECONDS.sleep(500);
+
+    int version = zkClient.exists(notifyPath).get().getVersion();
+    for (int i = 0; i < 10; i++) {
+      notifier.notifyEnqueue(queueName);
+    }
+    TimeUnit.MILLISECONDS.sleep(500);
+    Assert.assertEquals(version, zkClient.exists(notifyPath).get().getVersion());
+  }
+}
@@ -15,9 +15,11 @@
  */
 package co.cask.cdap.data2.transaction.queue.inmemory;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.LocationRuntimeModule;
+import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data.runtime.DataFabricModules;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
@@ -26,19 +28,34 @@ import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.stream.service.InMemoryStreamMetaStore;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
 import co.cask.cdap.data.view.ViewAdminModules;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueNotifier;
+import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.QueueTest;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.cdap.proto.Id;
+import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.util.Modules;
+import org.apache.twill.common.Cancellable;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * In-memory queue tests.
@@ -77,4 +94,66 @@ public class InMemoryQueueTest extends QueueTest {
     queueAdmin = injector.getInstance(QueueAdmin.class);
     executorFactory = injector.getInstance(TransactionExecutorFactory.class);
   }
+
+  @Test
+  public void testEnqueueNotification() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow", "flowlet", "notify");
+    configureGroups(queueName, ImmutableList.of(new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null)));
+
+    final AtomicInteger notifyCount = new AtomicInteger();
+    Cancellable cancellable = injector.getInstance(QueueNotifier.class).subscribe(queueName, new Runnable() {
+      @Override
+      public void run() {
+        notifyCount.incrementAndGet();
+      }
+    });
+
+    try (final QueueProducer producer = queueClientFactory.createProducer(queueName)) {
+      TransactionExecutor executor = executorFactory.createExecutor(Lists.newArrayList((TransactionAware) producer));
+
+      // A transaction without enqueue shouldn't notify
+      executor.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // No-op
+        }
+      });
+      Assert.assertEquals(0, notifyCount.get());
+
+      // A failed transaction shouldn't notify
+      try {
+        executor.execute(new TransactionExecutor.Subroutine() {
+          @Override
+          public void apply() throws Exception {
+            producer.enqueue(new QueueEntry(Bytes.toBytes("failed")));
+            throw new Exception("Fail the transaction");
+          }
+        });
+        Assert.fail("Expected transaction failure");
+      } catch (Exception e) {
+        // Expected
+      }
+      Assert.assertEquals(0, notifyCount.get());
+
+      // One notification per committed transaction
+      executor.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          producer.enqueue(new QueueEntry(Bytes.toBytes("1")));
+          producer.enqueue(new QueueEntry(Bytes.toBytes("2")));
+        }
+      });
+      Assert.assertEquals(1, notifyCount.get());
+
+      // No more notification after cancelling the subscription
+      cancellable.cancel();
+      executor.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          producer.enqueue(new QueueEntry(Bytes.toBytes("3")));
+        }
+      });
+      Assert.assertEquals(1, notifyCount.get());
+    }
+  }
 }
@@ -16,6 +16,9 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -23,7 +26,11 @@ import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
 import co.cask.cdap.gateway.router.handlers.IdleEventProcessor;
+import co.cask.cdap.gateway.router.handlers.OutboundChannelPool;
+import co.cask.cdap.gateway.router.handlers.OutboundHandler;
+import co.cask.cdap.gateway.router.handlers.OutboundResponseDecoder;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
+import co.cask.cdap.proto.Id;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.cdap.security.tools.SSLHandlerFactory;
@@ -55,7 +62,6 @@ import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioWorkerPool;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
 import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
-import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.jboss.netty.util.HashedWheelTimer;
@@ -99,10 +105,13 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private final int connectionTimeout;
+  private final int maxConnectionsPerEndpoint;
 
+  private MetricsContext metricsContext = new NoopMetricsContext();
   private Timer timer;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private OutboundChannelPool channelPool;
   private DiscoveryServiceClient discoveryServiceClient;
 
   @Inject
@@ -154,10 +163,23 @@ public class NettyRouter extends AbstractIdleService {
       this.sslHandlerFactory = null;
     }
     this.connectionTimeout = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.maxConnectionsPerEndpoint = cConf.getInt(Constants.Router.CLIENT_MAX_CONNECTIONS_PER_ENDPOINT);
     LOG.info("Using connection timeout: {}", connectionTimeout);
     LOG.info("Service to Port Mapping - {}", this.serviceToPortMap);
   }
 
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting metrics of the backend connection pool and of the
+   * forwarding latency. No metrics are emitted if it is not set.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.ROUTER));
+  }
+
   @Override
   protected void startUp() throws Exception {
     ChannelUpstreamHandler connectionTracker = new SimpleChannelUpstreamHandler() {
@@ -249,6 +271,8 @@ public class NettyRouter extends AbstractIdleService {
             pipeline.addLast("ssl", sslHandlerFactory.create());
           }
           pipeline.addLast("tracker", connectionTracker);
+          // disable the read-specific and write-specific timeouts; we only utilize IdleState#ALL_IDLE
+          pipeline.addLast("idle-event-generator", new IdleStateHandler(timer, 0, 0, connectionTimeout));
           pipeline.addLast("http-response-encoder", new HttpResponseEncoder());
           pipeline.addLast("http-decoder", new HttpRequestDecoder());
           pipeline.addLast("http-status-request-handler", new HttpStatusRequestHandler());
@@ -258,7 +282,8 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(channelPool, serviceLookup, ImmutableList.<ProxyRule>of(),
+                                                  metricsContext));
           return pipeline;
         }
       }
@@ -318,8 +343,9 @@ public class NettyRouter extends AbstractIdleService {
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast("tracker", connectionTracker);
         pipeline.addLast("request-encoder", new HttpRequestEncoder());
-        // outbound handler gets dynamically added here (after 'request-encoder')
-        pipeline.addLast("response-decoder", new HttpResponseDecoder());
+        OutboundHandler outboundHandler = new OutboundHandler();
+        pipeline.addLast("outbound-handler", outboundHandler);
+        pipeline.addLast("response-decoder", new OutboundResponseDecoder(outboundHandler));
         // disable the read-specific and write-specific timeouts; we only utilize IdleState#ALL_IDLE
         pipeline.addLast("idle-event-generator",
                          new IdleStateHandler(timer, 0, 0, connectionTimeout));
@@ -329,6 +355,7 @@ public class NettyRouter extends AbstractIdleService {
     });
 
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
+    channelPool = new OutboundChannelPool(clientBootstrap, maxConnectionsPerEndpoint, metricsContext);
   }
 
   private boolean isSSLEnabled() {
@@ -16,10 +16,13 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.discovery.EndpointStrategies;
 import co.cask.cdap.common.discovery.EndpointStrategy;
-import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.utils.Networks;
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -37,6 +40,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 /**
  * Port -> service lookup.
@@ -51,11 +55,37 @@ public class RouterServiceLookup {
   private final DiscoveryServiceClient discoveryServiceClient;
   private final LoadingCache<CacheKey, EndpointStrategy> discoverableCache;
   private final RouterPathLookup routerPathLookup;
+  private final String defaultEndpointStrategy;
+  private final Map<String, String> serviceEndpointStrategies;
+  // Endpoint strategies by discovery name, so that load aware strategies see all requests to a service. They are
+  // kept as long as entries of the discoverableCache refer to them.
+  private final LoadingCache<String, EndpointStrategy> endpointStrategyCache;
 
   @Inject
-  public RouterServiceLookup(DiscoveryServiceClient discoveryServiceClient, RouterPathLookup routerPathLookup) {
+  public RouterServiceLookup(CConfiguration cConf, final DiscoveryServiceClient discoveryServiceClient,
+                             RouterPathLookup routerPathLookup) {
     this.discoveryServiceClient = discoveryServiceClient;
     this.routerPathLookup = routerPathLookup;
+    this.defaultEndpointStrategy = getEndpointStrategy(Constants.Router.ENDPOINT_STRATEGY,
+                                                       cConf.get(Constants.Router.ENDPOINT_STRATEGY,
+                                                                 EndpointStrategies.RANDOM));
+    String prefix = Constants.Router.ENDPOINT_STRATEGY + ".";
+    ImmutableMap.Builder<String, String> strategies = ImmutableMap.builder();
+    for (Map.Entry<String, String> entry : cConf.getValByRegex("^" + Pattern.quote(prefix) + ".+").entrySet()) {
+      strategies.put(entry.getKey().substring(prefix.length()),
+                     getEndpointStrategy(entry.getKey(), entry.getValue()));
+    }
+    this.serviceEndpointStrategies = strategies.build();
+    this.endpointStrategyCache = CacheBuilder.newBuilder()
+      .weakValues()
+      .build(new CacheLoader<String, EndpointStrategy>() {
+        @Override
+        public EndpointStrategy load(String discoverName) throws Exception {
+          String strategy = serviceEndpointStrategies.get(discoverName);
+          return EndpointStrategies.create(strategy == null ? defaultEndpointStrategy : strategy,
+                                           discoveryServiceClient.discover(discoverName));
+        }
+      });
     this.discoverableCache = CacheBuilder.newBuilder()
       .expireAfterAccess(1, TimeUnit.HOURS)
       .build(new CacheLoader<CacheKey, EndpointStrategy>() {
@@ -178,13 +208,20 @@ public class RouterServiceLookup {
   private EndpointStrategy discover(String discoverName) throws ExecutionException {
     LOG.debug("Looking up service name {}", discoverName);
 
-    EndpointStrategy endpointStrategy = new RandomEndpointStrategy(discoveryServiceClient.discover(discoverName));
+    EndpointStrategy endpointStrategy = endpointStrategyCache.get(discoverName);
     if (endpointStrategy.pick(300L, TimeUnit.MILLISECONDS) == null) {
       LOG.debug("Discoverable endpoint {} not found", discoverName);
     }
     return endpointStrategy;
   }
 
+  private static String getEndpointStrategy(String key, String value) {
+    String strategy = value.trim();
+    Preconditions.checkArgument(EndpointStrategies.isSupported(strategy),
+                                "Unsupported endpoint strategy '%s' in %s", strategy, key);
+    return strategy;
+  }
+
   private String genLookupName(String service, String host) throws UnsupportedEncodingException {
     String normalizedHost = Networks.normalizeWebappDiscoveryName(host);
     return service.replace("$HOST", normalizedHost);
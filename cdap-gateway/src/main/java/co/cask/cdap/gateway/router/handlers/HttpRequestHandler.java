@@ -16,14 +16,19 @@
 
 package co.cask.cdap.gateway.router.handlers;
 
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsDistribution;
 import co.cask.cdap.common.HandlerException;
 import co.cask.cdap.common.discovery.EndpointStrategy;
+import co.cask.cdap.common.discovery.LoadBalancingEndpointStrategy;
 import co.cask.cdap.gateway.router.ProxyRule;
 import co.cask.cdap.gateway.router.RouterServiceLookup;
 import com.google.common.collect.Queues;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
@@ -33,51 +38,61 @@ import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateAwareChannelUpstreamHandler;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
- * performed using Discovery service for forwarding.
+ * performed using Discovery service for forwarding. Requests are forwarded on channels leased from the
+ * {@link OutboundChannelPool} shared by all inbound channels.
  */
-public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
+public class HttpRequestHandler extends IdleStateAwareChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final OutboundChannelPool channelPool;
   private final RouterServiceLookup serviceLookup;
-  // Data structure is used to clean up the channel futures on connection close.
+  // Data structure is used to clean up the channel leases on connection close.
   private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
   private final List<ProxyRule> proxyRules;
+  private final MetricsDistribution forwardLatency;
 
   private final AtomicInteger exceptionsHandled = new AtomicInteger(0);
   private MessageSender chunkSender;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(OutboundChannelPool channelPool,
                             RouterServiceLookup serviceLookup,
-                            List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+                            List<ProxyRule> proxyRules,
+                            MetricsContext metricsContext) {
+    this.channelPool = channelPool;
     this.serviceLookup = serviceLookup;
     this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
+    this.forwardLatency = metricsContext.getDistribution("router.forward.latency.us");
   }
 
   @Override
@@ -97,53 +112,49 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
                                    "Chunk received and event sender is null");
       }
       chunkSender.send(msg);
+      if (((HttpChunk) msg).isLast()) {
+        chunkSender.requestCompleted();
+        chunkSender = null;
+      }
 
     } else if (msg instanceof HttpRequest) {
+      long startTime = System.nanoTime();
       // Discover and forward event.
       HttpRequest request = (HttpRequest) msg;
       request = applyProxyRules(request);
 
       // Suspend incoming traffic until connected to the outbound service.
       inboundChannel.setReadable(false);
-      WrappedDiscoverable discoverable = getDiscoverable(request,
-                                                         (InetSocketAddress) inboundChannel.getLocalAddress());
-
-      // If no event sender, make new connection, otherwise reuse existing one.
-      MessageSender sender =  discoveryLookup.get(discoverable);
-      if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        sender = new MessageSender(inboundChannel, future);
-        discoveryLookup.put(discoverable, sender);
+      EndpointStrategy strategy = getEndpointStrategy(request, (InetSocketAddress) inboundChannel.getLocalAddress());
+      Discoverable endpoint = getDiscoverable(strategy, request);
+      WrappedDiscoverable discoverable = new WrappedDiscoverable(endpoint);
+
+      // Load aware strategies are told about the request, for picking the endpoints of the next ones
+      LoadBalancingEndpointStrategy.Request endpointRequest = null;
+      if (strategy instanceof LoadBalancingEndpointStrategy) {
+        endpointRequest = ((LoadBalancingEndpointStrategy) strategy).requestStarted(endpoint);
+      }
 
-        // Remember the in-flight outbound channel
-        inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
+      // Keep using the channel leased for the previous request to the same service if its response is still
+      // in progress, so that pipelined requests are answered in order. Otherwise lease a channel from the pool.
+      MessageSender sender = discoveryLookup.get(discoverable);
+      if (sender == null || !sender.retain(request.isChunked(), endpointRequest)) {
+        sender = new MessageSender(inboundChannel, discoverable.getSocketAddress(), channelPool, forwardLatency);
+        if (!sender.retain(request.isChunked(), endpointRequest) && endpointRequest != null) {
+          // Failed to connect already
+          endpointRequest.failed();
+        }
+        discoveryLookup.put(discoverable, sender);
       }
 
+      // Remember the lease of the in-flight request
+      inboundChannel.setAttachment(sender);
+
       // Send the message.
-      sender.send(request);
+      sender.send(request, startTime);
       inboundChannel.setReadable(true);
 
-      //Save the channelFuture for subsequent chunks
+      //Save the sender for subsequent chunks
       if (request.isChunked()) {
         chunkSender = sender;
       }
@@ -161,6 +172,29 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
     return request;
   }
 
+  @Override
+  public void channelIdle(final ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
+    if (e.getState() != IdleState.ALL_IDLE) {
+      return;
+    }
+    ctx.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        // Close the inbound channel unless a request is in progress, the same as idle outbound channels
+        for (MessageSender sender : discoveryLookup.values()) {
+          if (!sender.isReleased()) {
+            LOG.trace("Request is in progress, so not closing channel.");
+            return;
+          }
+        }
+        Channel channel = ctx.getChannel();
+        LOG.trace("No data has been sent or received for channel '{}' for more than the configured idle timeout. " +
+                    "Closing the channel.", channel);
+        channel.close();
+      }
+    });
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e)  {
     Throwable cause = e.getCause();
@@ -194,7 +228,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Release or close all leased channels
     LOG.trace("Channel closed {}", ctx.getChannel());
     for (Closeable c : discoveryLookup.values()) {
       Closeables.closeQuietly(c);
@@ -214,66 +248,206 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
-  private WrappedDiscoverable getDiscoverable(final HttpRequest httpRequest,
-                                              final InetSocketAddress address) {
+  private EndpointStrategy getEndpointStrategy(HttpRequest httpRequest, InetSocketAddress address) {
     EndpointStrategy strategy = serviceLookup.getDiscoverable(address.getPort(), httpRequest);
     if (strategy == null) {
       throw  new HandlerException(HttpResponseStatus.SERVICE_UNAVAILABLE,
                                   String.format("No endpoint strategy found for request : %s",
                                   httpRequest.getUri()));
     }
+    return strategy;
+  }
+
+  private Discoverable getDiscoverable(EndpointStrategy strategy, HttpRequest httpRequest) {
     Discoverable discoverable = strategy.pick();
     if (discoverable == null) {
       throw  new HandlerException(HttpResponseStatus.SERVICE_UNAVAILABLE,
                                   String.format("No discoverable found for request : %s",
                                                 httpRequest.getUri()));
     }
-    return new WrappedDiscoverable(discoverable);
+    return discoverable;
+  }
+
+  private static OutboundHandler getOutboundHandler(Channel channel) {
+    return channel.getPipeline().get(OutboundHandler.class);
   }
 
   /**
-   * For sending messages to outbound channel while maintaining the order of messages according to
-   * the order that {@link #send(Object)} method is called.
+   * The lease of an outbound channel from the {@link OutboundChannelPool}, for sending messages to the outbound
+   * channel while maintaining the order of messages according to the order that {@link #send(Object)} method is
+   * called. The channel is released back to the pool once the responses to all requests sent are read, unless the
+   * endpoint does not keep the connection alive or answered a request with an error, in which case it is closed.
    *
    * It uses a lock-free algorithm similar to the one
    * in {@link co.cask.cdap.data.stream.service.ConcurrentStreamWriter} to do the write through the
    * channel callback.
    */
-  private static final class MessageSender implements Closeable {
+  private static final class MessageSender implements OutboundHandler.Lease, Closeable {
     private final Channel inBoundChannel;
-    private final ChannelFuture channelFuture;
+    private final InetSocketAddress address;
+    private final OutboundChannelPool channelPool;
+    private final MetricsDistribution forwardLatency;
+    private final ListenableFuture<Channel> channelFuture;
     private final Queue<OutboundMessage> messages;
     private final AtomicBoolean writer;
 
-    private MessageSender(Channel inBoundChannel, ChannelFuture channelFuture) {
+    // Guarded by this. The requests waiting for a response in the order they were sent, null for those not
+    // tracked by a load aware endpoint strategy.
+    private final Queue<LoadBalancingEndpointStrategy.Request> endpointRequests;
+    private int pendingResponses;
+    private boolean requestInProgress;
+    private boolean reusable = true;
+    private boolean released;
+
+    private MessageSender(Channel inBoundChannel, InetSocketAddress address, OutboundChannelPool channelPool,
+                          MetricsDistribution forwardLatency) {
       this.inBoundChannel = inBoundChannel;
-      this.channelFuture = channelFuture;
+      this.address = address;
+      this.channelPool = channelPool;
+      this.forwardLatency = forwardLatency;
+      this.channelFuture = channelPool.acquire(address);
       this.messages = Queues.newConcurrentLinkedQueue();
       this.writer = new AtomicBoolean(false);
+      this.endpointRequests = new LinkedList<>();
+
+      // Attach before anything is written, so that no response is missed. Callbacks run in the order they are
+      // added, hence this runs before the ones added by send().
+      Futures.addCallback(channelFuture, new FutureCallback<Channel>() {
+        @Override
+        public void onSuccess(Channel channel) {
+          getOutboundHandler(channel).attach(MessageSender.this);
+          if (!channel.isConnected()) {
+            // Closed before it was attached, hence the OutboundHandler will not tell
+            outboundClosed();
+          }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          synchronized (MessageSender.this) {
+            released = true;
+          }
+          endRequests(true);
+          closeOnFlush(MessageSender.this.inBoundChannel);
+        }
+      });
+    }
+
+    /**
+     * Reserves this lease for one more request. Returns {@code false} if the lease has ended already.
+     *
+     * @param chunked whether the request is chunked
+     * @param endpointRequest the request as tracked by a load aware endpoint strategy, to be ended with the
+     *                        lease, or {@code null} if it is not tracked
+     */
+    private synchronized boolean retain(boolean chunked,
+                                        @Nullable LoadBalancingEndpointStrategy.Request endpointRequest) {
+      if (released) {
+        return false;
+      }
+      pendingResponses++;
+      requestInProgress = chunked;
+      endpointRequests.add(endpointRequest);
+      return true;
     }
 
-    private boolean isConnected() {
-      return channelFuture.getChannel().isConnected();
+    private synchronized boolean isReleased() {
+      return released;
+    }
+
+    /**
+     * Called when the last chunk of a chunked request is sent.
+     */
+    private void requestCompleted() {
+      boolean reuse;
+      synchronized (this) {
+        requestInProgress = false;
+        if (released || pendingResponses > 0) {
+          return;
+        }
+        released = true;
+        reuse = reusable;
+      }
+      // The response was completed before the request
+      release(reuse);
+    }
+
+    @Override
+    public Channel getInboundChannel() {
+      return inBoundChannel;
+    }
+
+    @Override
+    public void responseCompleted(boolean keepAlive, boolean reusable) {
+      LoadBalancingEndpointStrategy.Request endpointRequest;
+      boolean release;
+      boolean reuse;
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        pendingResponses--;
+        endpointRequest = endpointRequests.poll();
+        // Responses to pipelined requests are still read from a channel that is not reusable, if it is kept alive
+        this.reusable &= reusable;
+        release = !keepAlive || (pendingResponses == 0 && !requestInProgress);
+        released = release;
+        reuse = this.reusable;
+      }
+      if (endpointRequest != null) {
+        endpointRequest.completed();
+      }
+      if (!release) {
+        return;
+      }
+      release(reuse);
+      if (!keepAlive) {
+        // Pipelined requests left won't get a response
+        endRequests(false);
+        // The endpoint closes the connection, so does the router with the inbound channel if it carries the
+        // in-flight request, as the client may be waiting for the close
+        closeInbound();
+      }
+    }
+
+    @Override
+    public void outboundClosed() {
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        released = true;
+      }
+      release(false);
+      endRequests(true);
+      closeInbound();
     }
 
     private void send(Object msg) {
-      // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
-      inBoundChannel.setAttachment(channelFuture.getChannel());
+      send(msg, -1L);
+    }
 
-      final OutboundMessage message = new OutboundMessage(msg);
+    /**
+     * Sends the given message, recording the time it took to forward it if the start time is not negative.
+     */
+    private void send(Object msg, long startTime) {
+      final OutboundMessage message = new OutboundMessage(msg, startTime);
       messages.add(message);
-      if (channelFuture.isSuccess()) {
-        flushUntilCompleted(channelFuture.getChannel(), message);
+      if (channelFuture.isDone()) {
+        Channel channel = getChannel();
+        if (channel != null) {
+          flushUntilCompleted(channel, message);
+        }
       } else {
-        channelFuture.addListener(new ChannelFutureListener() {
+        Futures.addCallback(channelFuture, new FutureCallback<Channel>() {
           @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            if (!future.isSuccess()) {
-              closeOnFlush(inBoundChannel);
-              return;
-            }
+          public void onSuccess(Channel channel) {
+            flushUntilCompleted(channel, message);
+          }
 
-            flushUntilCompleted(future.getChannel(), message);
+          @Override
+          public void onFailure(Throwable t) {
+            // The inbound channel is closed by the callback added in the constructor
           }
         });
       }
@@ -296,7 +470,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
         try {
           OutboundMessage m = messages.poll();
           while (m != null) {
-            m.write(channel);
+            m.write(channel, forwardLatency);
             m.completed();
             m = messages.poll();
           }
@@ -306,19 +480,96 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       }
     }
 
+    /**
+     * Ends the lease, by releasing the channel back to the pool if it can be reused, or by closing it otherwise.
+     */
+    private void release(boolean reusable) {
+      Channel channel = getChannel();
+      if (channel == null) {
+        return;
+      }
+      // Detach before releasing, since the channel may be leased again right away
+      getOutboundHandler(channel).detach();
+      channelPool.release(address, channel, reusable);
+      if (!reusable) {
+        closeOnFlush(channel);
+      }
+    }
+
+    /**
+     * Ends the requests tracked by load aware endpoint strategies that will not get a response through this lease.
+     *
+     * @param failed whether it is because of the endpoint
+     */
+    private void endRequests(boolean failed) {
+      List<LoadBalancingEndpointStrategy.Request> requests;
+      synchronized (this) {
+        requests = new ArrayList<>(endpointRequests);
+        endpointRequests.clear();
+      }
+      for (LoadBalancingEndpointStrategy.Request request : requests) {
+        if (request == null) {
+          continue;
+        }
+        if (failed) {
+          request.failed();
+        } else {
+          request.cancelled();
+        }
+      }
+    }
+
+    private void closeInbound() {
+      inBoundChannel.getPipeline().execute(new Runnable() {
+        @Override
+        public void run() {
+          // Close the inbound channel only if it carries the in-flight request
+          if (MessageSender.this.equals(inBoundChannel.getAttachment())) {
+            closeOnFlush(inBoundChannel);
+          }
+        }
+      });
+    }
+
+    /**
+     * Returns the leased channel, or {@code null} if no channel could be leased.
+     */
+    private Channel getChannel() {
+      try {
+        return Futures.getUnchecked(channelFuture);
+      } catch (Exception e) {
+        return null;
+      }
+    }
+
     @Override
     public void close() throws IOException {
-      closeOnFlush(channelFuture.getChannel());
+      boolean reuse;
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        reuse = reusable && pendingResponses == 0 && !requestInProgress;
+      }
+      endRequests(false);
+      // Stop waiting for a channel, or release the one leased
+      if (channelFuture.cancel(false)) {
+        return;
+      }
+      release(reuse);
     }
   }
 
 
   private static final class OutboundMessage {
     private final Object message;
+    private final long startTime;
     private boolean completed;
 
-    private OutboundMessage(Object message) {
+    private OutboundMessage(Object message, long startTime) {
       this.message = message;
+      this.startTime = startTime;
     }
 
     private boolean isCompleted() {
@@ -329,9 +580,21 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       completed = true;
     }
 
-    private void write(Channel channel) {
-      channel.write(message);
+    private void write(Channel channel, final MetricsDistribution forwardLatency) {
+      if (message instanceof HttpRequest) {
+        getOutboundHandler(channel).requestSent(((HttpRequest) message).getMethod());
+      }
+      ChannelFuture future = channel.write(message);
+      if (startTime >= 0) {
+        future.addListener(new ChannelFutureListener() {
+          @Override
+          public void operationComplete(ChannelFuture future) throws Exception {
+            if (future.isSuccess()) {
+              forwardLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+            }
+          }
+        });
+      }
     }
   }
 }
-
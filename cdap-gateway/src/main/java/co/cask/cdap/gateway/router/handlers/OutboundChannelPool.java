@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.MetricsGauge;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of keep-alive outbound channels to the endpoints that the router forwards requests to, shared by all
+ * inbound channels. A channel is leased for one or more request/response pairs and is released back to the pool
+ * once all responses are read, so that the next request to the same endpoint from any inbound channel reuses it
+ * instead of opening a new connection. The most recently released channel is reused first, which lets the idle
+ * handler of the outbound pipeline close the channels that are not needed anymore.
+ * <p>
+ * The number of channels per endpoint is limited. Once the limit is reached, requests wait for a channel to be
+ * released, or closed, in the order they were made.
+ */
+public final class OutboundChannelPool {
+
+  private final ClientBootstrap clientBootstrap;
+  private final int maxConnectionsPerEndpoint;
+  private final ConcurrentMap<InetSocketAddress, Endpoint> endpoints;
+
+  private final AtomicInteger openConnections;
+  private final AtomicInteger leasedConnections;
+  private final MetricsCounter createdCounter;
+  private final MetricsCounter reusedCounter;
+  private final MetricsCounter waitedCounter;
+  private final MetricsGauge openGauge;
+  private final MetricsGauge leasedGauge;
+
+  public OutboundChannelPool(ClientBootstrap clientBootstrap, int maxConnectionsPerEndpoint,
+                             MetricsContext metricsContext) {
+    Preconditions.checkArgument(maxConnectionsPerEndpoint > 0,
+                                "Max connections per endpoint must be positive: %s", maxConnectionsPerEndpoint);
+    this.clientBootstrap = clientBootstrap;
+    this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+    this.endpoints = Maps.newConcurrentMap();
+    this.openConnections = new AtomicInteger();
+    this.leasedConnections = new AtomicInteger();
+    this.createdCounter = metricsContext.getCounter("router.pool.connections.created");
+    this.reusedCounter = metricsContext.getCounter("router.pool.connections.reused");
+    this.waitedCounter = metricsContext.getCounter("router.pool.connections.waited");
+    this.openGauge = metricsContext.getGauge("router.pool.connections.open");
+    this.leasedGauge = metricsContext.getGauge("router.pool.connections.leased");
+  }
+
+  /**
+   * Leases a channel to the given address. The returned future completes with a connected channel, either an idle
+   * one from the pool or a new one, and fails if a new channel cannot be connected.
+   */
+  public ListenableFuture<Channel> acquire(InetSocketAddress address) {
+    Endpoint endpoint;
+    SettableFuture<Channel> future;
+    while (true) {
+      endpoint = getEndpoint(address);
+      synchronized (endpoint) {
+        if (endpoint.removed) {
+          // The last channel of the endpoint was closed meanwhile
+          continue;
+        }
+        Channel channel = endpoint.pollIdle();
+        if (channel != null) {
+          reusedCounter.increment(1);
+          leasedGauge.set(leasedConnections.incrementAndGet());
+          return Futures.immediateFuture(channel);
+        }
+        future = SettableFuture.create();
+        if (endpoint.open >= maxConnectionsPerEndpoint) {
+          waitedCounter.increment(1);
+          endpoint.waiting.add(future);
+          return future;
+        }
+        endpoint.open++;
+        break;
+      }
+    }
+    connect(endpoint, future);
+    return future;
+  }
+
+  /**
+   * Ends the lease of a channel. If the channel can be reused, it is handed to the first waiting request or kept in
+   * the pool, in which case it must have no request or response in progress. Otherwise the caller is responsible
+   * for closing it.
+   */
+  public void release(InetSocketAddress address, Channel channel, boolean reusable) {
+    leasedGauge.set(leasedConnections.decrementAndGet());
+    if (!reusable) {
+      return;
+    }
+    // The endpoint of a connected channel is never removed
+    Endpoint endpoint = endpoints.get(address);
+    if (endpoint == null) {
+      return;
+    }
+    while (true) {
+      SettableFuture<Channel> waiting;
+      synchronized (endpoint) {
+        if (endpoint.removed || !channel.isConnected()) {
+          // Nothing to do; the close listener takes care of the waiting requests
+          return;
+        }
+        waiting = endpoint.waiting.poll();
+        if (waiting == null) {
+          endpoint.idle.push(channel);
+          return;
+        }
+      }
+      // The waiting request may have been cancelled, in which case the channel is handed to the next one
+      leasedGauge.set(leasedConnections.incrementAndGet());
+      if (waiting.set(channel)) {
+        return;
+      }
+      leasedGauge.set(leasedConnections.decrementAndGet());
+    }
+  }
+
+  private Endpoint getEndpoint(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.get(address);
+    if (endpoint == null) {
+      endpoint = new Endpoint(address);
+      Endpoint existing = endpoints.putIfAbsent(address, endpoint);
+      endpoint = existing == null ? endpoint : existing;
+    }
+    return endpoint;
+  }
+
+  private void connect(final Endpoint endpoint, final SettableFuture<Channel> future) {
+    createdCounter.increment(1);
+    openGauge.set(openConnections.incrementAndGet());
+    ChannelFuture connectFuture = clientBootstrap.connect(endpoint.address);
+    final Channel channel = connectFuture.getChannel();
+    channel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture closeFuture) throws Exception {
+        closed(endpoint, channel);
+      }
+    });
+    connectFuture.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture connectFuture) throws Exception {
+        if (connectFuture.isSuccess()) {
+          leasedGauge.set(leasedConnections.incrementAndGet());
+          if (!future.set(channel)) {
+            // The request was cancelled while connecting
+            release(endpoint.address, channel, true);
+          }
+        } else {
+          future.setException(connectFuture.getCause());
+        }
+      }
+    });
+  }
+
+  /**
+   * Called when a channel of the given endpoint is closed, either idle in the pool or leased.
+   */
+  private void closed(Endpoint endpoint, Channel channel) {
+    openGauge.set(openConnections.decrementAndGet());
+    SettableFuture<Channel> waiting;
+    synchronized (endpoint) {
+      endpoint.idle.remove(channel);
+      waiting = endpoint.waiting.poll();
+      if (waiting == null) {
+        endpoint.open--;
+        if (endpoint.open == 0) {
+          // Forget endpoints without channels, since discovered endpoints come and go
+          endpoint.removed = true;
+          endpoints.remove(endpoint.address, endpoint);
+        }
+        return;
+      }
+    }
+    // The slot of the closed channel goes to the first waiting request
+    connect(endpoint, waiting);
+  }
+
+  /**
+   * The channels of an endpoint. All fields are guarded by the instance.
+   */
+  private static final class Endpoint {
+    private final InetSocketAddress address;
+    private final Deque<Channel> idle;
+    private final Queue<SettableFuture<Channel>> waiting;
+    private int open;
+    // Whether the endpoint was removed from the pool, after which it is not used anymore
+    private boolean removed;
+
+    private Endpoint(InetSocketAddress address) {
+      this.address = address;
+      this.idle = new ArrayDeque<>();
+      this.waiting = new ArrayDeque<>();
+    }
+
+    @Nullable
+    private Channel pollIdle() {
+      Channel channel = idle.poll();
+      while (channel != null && !channel.isConnected()) {
+        channel = idle.poll();
+      }
+      return channel;
+    }
+  }
+}
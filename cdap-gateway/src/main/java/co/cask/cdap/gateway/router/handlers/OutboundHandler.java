@@ -25,31 +25,79 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.annotation.Nullable;
+
 /**
- * Handles requests to and from a discoverable endpoint.
+ * Handles requests to and from a discoverable endpoint. The outbound channel is pooled, hence the handler forwards
+ * the responses to the inbound channel of the {@link Lease} that the channel is currently leased to.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  // Methods of the requests sent, for which no response has been read yet
+  private final Queue<HttpMethod> requestMethods = new ConcurrentLinkedQueue<>();
+  private volatile Lease lease;
+
+  /**
+   * Attaches the lease of the outbound channel, to which all responses are forwarded until it is detached.
+   */
+  void attach(Lease lease) {
+    this.lease = lease;
+  }
+
+  void detach() {
+    lease = null;
+  }
+
+  /**
+   * Called before a request is written to the outbound channel.
+   */
+  void requestSent(HttpMethod method) {
+    requestMethods.add(method);
+  }
+
+  /**
+   * Returns the method of the request of the response being read, or {@code null} if it is unknown.
+   */
+  @Nullable
+  HttpMethod pollRequestMethod() {
+    return requestMethods.poll();
+  }
 
-  public OutboundHandler(Channel inboundChannel) {
-    this.inboundChannel = inboundChannel;
+  /**
+   * Called when a response has been read completely.
+   */
+  void responseCompleted(boolean keepAlive, boolean reusable) {
+    Lease lease = this.lease;
+    if (lease != null) {
+      lease.responseCompleted(keepAlive, reusable);
+    }
   }
 
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
     // write the channel buffer to inbound channel
-    ChannelBuffer wrappedMessage = ChannelBuffers.wrappedBuffer((ChannelBuffer) event.getMessage());
-    Channels.write(inboundChannel, wrappedMessage);
+    Lease lease = this.lease;
+    if (lease != null) {
+      ChannelBuffer wrappedMessage = ChannelBuffers.wrappedBuffer((ChannelBuffer) event.getMessage());
+      Channels.write(lease.getInboundChannel(), wrappedMessage);
+    }
     super.messageReceived(ctx, event);
   }
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    Lease lease = this.lease;
+    if (lease == null) {
+      return;
+    }
+    final Channel inboundChannel = lease.getInboundChannel();
     inboundChannel.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
@@ -67,9 +115,39 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
     });
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    Lease lease = this.lease;
+    if (lease != null) {
+      lease.outboundClosed();
+    }
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     LOG.error("Got exception {}", ctx.getChannel(), e.getCause());
     HttpRequestHandler.closeOnFlush(e.getChannel());
   }
+
+  /**
+   * The lease of an outbound channel by an inbound channel.
+   */
+  interface Lease {
+
+    Channel getInboundChannel();
+
+    /**
+     * Called when a response to a request of the lease has been read completely.
+     *
+     * @param keepAlive whether the outbound channel is kept open after the response
+     * @param reusable whether the outbound channel can serve other requests after the response
+     */
+    void responseCompleted(boolean keepAlive, boolean reusable);
+
+    /**
+     * Called when the outbound channel is closed while leased.
+     */
+    void outboundClosed();
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+
+/**
+ * Decodes the responses read from an outbound channel, to tell the {@link OutboundHandler} when a response has been
+ * read completely, so that the channel can be released to the pool. The responses themselves are forwarded by the
+ * {@link OutboundHandler} as they are read.
+ */
+public class OutboundResponseDecoder extends HttpResponseDecoder {
+
+  private final OutboundHandler outboundHandler;
+  private boolean keepAlive;
+  private boolean reusable;
+
+  public OutboundResponseDecoder(OutboundHandler outboundHandler) {
+    this.outboundHandler = outboundHandler;
+  }
+
+  @Override
+  protected boolean isContentAlwaysEmpty(HttpMessage msg) {
+    // The response to a HEAD request has no content even if it has a content length, same as in HttpClientCodec
+    int statusCode = ((HttpResponse) msg).getStatus().getCode();
+    if (statusCode == 100) {
+      return true;
+    }
+    if (HttpMethod.HEAD.equals(outboundHandler.pollRequestMethod())) {
+      return true;
+    }
+    return super.isContentAlwaysEmpty(msg);
+  }
+
+  @Override
+  protected Object decode(ChannelHandlerContext ctx, Channel channel,
+                          ChannelBuffer buffer, State state) throws Exception {
+    Object result = super.decode(ctx, channel, buffer, state);
+    if (result instanceof Object[]) {
+      for (Object message : (Object[]) result) {
+        decoded(message);
+      }
+    } else if (result != null) {
+      decoded(result);
+    }
+    return result;
+  }
+
+  private void decoded(Object message) {
+    if (message instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) message;
+      // Informational responses are followed by the final response. A switch of protocol never completes,
+      // hence the channel is closed instead of being released.
+      if (response.getStatus().getCode() / 100 == 1) {
+        return;
+      }
+      keepAlive = HttpHeaders.isKeepAlive(response);
+      // An endpoint may not serve further requests on a connection after failing one, as netty-http does once
+      // its router raised an exception, hence the connection is not reused after an error response
+      reusable = keepAlive && response.getStatus().getCode() < 400;
+      if (!response.isChunked()) {
+        outboundHandler.responseCompleted(keepAlive, reusable);
+      }
+    } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+      outboundHandler.responseCompleted(keepAlive, reusable);
+    }
+  }
+}
@@ -16,8 +16,10 @@
 
 package co.cask.cdap.gateway.handlers.metrics;
 
+import co.cask.cdap.api.metrics.DistributionBuckets;
 import co.cask.cdap.api.metrics.MetricDeleteQuery;
 import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.api.metrics.MetricsContext;
@@ -754,6 +756,82 @@ public class MetricsHandlerTestRun extends MetricsSuiteTestBase {
         + (start + 3600), 2, 3);
   }
 
+  @Test
+  public void testPercentileQuery() throws Exception {
+    long start = 1;
+    Map<String, String> sliceBy = getFlowletContext("percentiles", "WordCount1", "WordCounter", "run1", "splitter");
+
+    // values 1 to 100 in the first second, and 100 times the value 1000 a minute later
+    long[] counts = new long[DistributionBuckets.BUCKETS];
+    for (int i = 1; i <= 100; i++) {
+      counts[DistributionBuckets.getBucket(i)]++;
+    }
+    metricStore.add(new MetricValues(sliceBy, start, toBucketValues("latency", counts)));
+    metricStore.add(new MetricValues(sliceBy, "reads", start, 1, MetricType.COUNTER));
+    counts = new long[DistributionBuckets.BUCKETS];
+    counts[DistributionBuckets.getBucket(1000)] = 100;
+    metricStore.add(new MetricValues(sliceBy, start + 60, toBucketValues("latency", counts)));
+
+    String tags = getTags("percentiles", "WordCount1", "WordCounter", "splitter");
+    // percentiles are the upper bound of the bucket of the exact percentile
+    verifyAggregateQueryResult("/v3/metrics/query?" + tags + "&metric=percentile.50.system.latency&aggregate=true",
+                               103);
+    verifyAggregateQueryResult("/v3/metrics/query?" + tags + "&metric=percentile.99.system.latency&aggregate=true",
+                               1023);
+
+    // percentiles of each second are computed separately, 51 for the first and 1023 for the second one
+    verifyRangeQueryResult("/v3/metrics/query?" + tags + "&metric=percentile.50.system.latency&resolution=1s" +
+                             "&start=" + start + "&end=" + (start + 60), 2, 51 + 1023);
+
+    // the buckets of the distribution are not listed by search
+    verifySearchMetricResult("/v3/metrics/search?target=metric&tag=namespace:percentiles&tag=app:WordCount1" +
+                               "&tag=flow:WordCounter&tag=dataset:*&tag=run:run1&tag=flowlet:splitter",
+                             ImmutableList.of("system.reads"));
+
+    metricStore.delete(new MetricDeleteQuery(start, start + 60, sliceBy));
+  }
+
+  @Test
+  public void testSeriesLimitQuery() throws Exception {
+    long start = 1;
+    List<String> flowlets = ImmutableList.of("splitter", "counter", "collector");
+    for (int i = 0; i < flowlets.size(); i++) {
+      Map<String, String> sliceBy = getFlowletContext("serieslimit", "WordCount1", "WordCounter", "run1",
+                                                      flowlets.get(i));
+      metricStore.add(new MetricValues(sliceBy, "reads", start, i + 1, MetricType.COUNTER));
+      metricStore.add(new MetricValues(sliceBy, "reads", start + 10, i + 1, MetricType.COUNTER));
+    }
+
+    String url = "/v3/metrics/query?" + getTags("serieslimit", "WordCount1", "WordCounter") +
+      "&metric=system.reads&groupBy=flowlet&resolution=1s&start=" + start + "&end=" + (start + 60);
+    // the flowlets with the most reads come first
+    MetricQueryResult result = post(url + "&seriesLimit=2", MetricQueryResult.class);
+    Assert.assertEquals(2, result.getSeries().length);
+    Assert.assertEquals("collector", result.getSeries()[0].getGrouping().get("flowlet"));
+    verifyTimeSeries(result.getSeries()[0], 2, 6);
+    Assert.assertEquals("counter", result.getSeries()[1].getGrouping().get("flowlet"));
+    verifyTimeSeries(result.getSeries()[1], 2, 4);
+
+    HttpResponse response = doPost(url + "&seriesLimit=-1", null);
+    Assert.assertEquals(400, response.getStatusLine().getStatusCode());
+
+    for (String flowlet : flowlets) {
+      metricStore.delete(new MetricDeleteQuery(start, start + 10, getFlowletContext("serieslimit", "WordCount1",
+                                                                                    "WordCounter", "run1", flowlet)));
+    }
+  }
+
+  private List<MetricValue> toBucketValues(String metricName, long[] counts) {
+    List<MetricValue> values = Lists.newArrayList();
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      if (counts[bucket] > 0) {
+        values.add(new MetricValue(DistributionBuckets.getBucketMetricName(metricName, bucket),
+                                   MetricType.DISTRIBUTION, counts[bucket]));
+      }
+    }
+    return values;
+  }
+
   private void verifyAggregateQueryResult(String url, long expectedValue) throws Exception {
     // todo : can refactor this to test only the new tag name queries once we deprecate queryParam using context.
     MetricQueryResult queryResult = post(url, MetricQueryResult.class);
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.gateway.router;
+
+import co.cask.cdap.common.discovery.EndpointStrategies;
+
+/**
+ * Tests Netty Router running on HTTP, picking the service endpoints with the power of two choices strategy.
+ */
+public class NettyRouterHttpPowerOfTwoChoicesTest extends NettyRouterHttpTest {
+
+  @Override
+  protected RouterService createRouterService() {
+    return new HttpRouterService(HOSTNAME, DISCOVERY_SERVICE, EndpointStrategies.POWER_OF_TWO_CHOICES);
+  }
+}
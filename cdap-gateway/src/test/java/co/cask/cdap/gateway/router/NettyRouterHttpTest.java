@@ -34,6 +34,7 @@ import org.apache.twill.discovery.DiscoveryService;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.net.SocketFactory;
 
 /**
@@ -48,7 +49,7 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
 
   @Override
   protected RouterService createRouterService() {
-    return new HttpRouterService(HOSTNAME, DISCOVERY_SERVICE);
+    return new HttpRouterService(HOSTNAME, DISCOVERY_SERVICE, null);
   }
 
   @Override
@@ -66,16 +67,18 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
     return new DefaultSocketFactory();
   }
 
-  private static class HttpRouterService extends RouterService {
+  static class HttpRouterService extends RouterService {
     private final String hostname;
     private final DiscoveryService discoveryService;
+    private final String endpointStrategy;
     private final Map<String, Integer> serviceMap = Maps.newHashMap();
 
     private NettyRouter router;
 
-    private HttpRouterService(String hostname, DiscoveryService discoveryService) {
+    HttpRouterService(String hostname, DiscoveryService discoveryService, @Nullable String endpointStrategy) {
       this.hostname = hostname;
       this.discoveryService = discoveryService;
+      this.endpointStrategy = endpointStrategy;
     }
 
     @Override
@@ -92,9 +95,12 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
       cConf.setBoolean(Constants.Router.WEBAPP_ENABLED, true);
       cConf.setInt(Constants.Router.WEBAPP_PORT, 0);
       cConf.setInt(Constants.Router.CONNECTION_TIMEOUT_SECS, CONNECTION_IDLE_TIMEOUT_SECS);
+      if (endpointStrategy != null) {
+        cConf.set(Constants.Router.ENDPOINT_STRATEGY, endpointStrategy);
+      }
       router =
         new NettyRouter(cConf, sConfiguration, InetAddresses.forString(hostname),
-                        new RouterServiceLookup((DiscoveryServiceClient) discoveryService,
+                        new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup()),
                         new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
       router.startAndWait();
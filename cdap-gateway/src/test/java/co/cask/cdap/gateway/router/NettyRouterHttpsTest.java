@@ -166,7 +166,7 @@ public class NettyRouterHttpsTest extends NettyRouterTestBase {
 
       router =
         new NettyRouter(cConf, sConf, InetAddresses.forString(hostname),
-                        new RouterServiceLookup((DiscoveryServiceClient) discoveryService,
+                        new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup()),
                         new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
       router.startAndWait();
@@ -18,6 +18,7 @@ package co.cask.cdap.gateway.router;
 
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.ResolvingDiscoverable;
+import co.cask.cdap.common.http.RoutingFailureHandler;
 import co.cask.cdap.common.utils.Networks;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.ChunkResponder;
@@ -431,6 +432,47 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(1, defaultServer1.getNumConnectionsClosed() + defaultServer2.getNumConnectionsClosed());
   }
 
+  @Test
+  public void testConnectionReuse() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    // Make requests on short-lived client connections, which should all be forwarded on one backend connection
+    URI uri = new URI(resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v2/ping"));
+    int times = 10;
+    for (int i = 0; i < times; i++) {
+      Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort());
+      try {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        Assert.assertEquals("HTTP/1.1 200 OK\r", makeRequest(uri, out, socket.getInputStream()));
+        // Give the router time to release the backend connection after forwarding the response
+        TimeUnit.MILLISECONDS.sleep(100);
+      } finally {
+        socket.close();
+      }
+    }
+
+    Assert.assertEquals(times, defaultServer1.getNumRequests());
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+    Assert.assertEquals(0, defaultServer1.getNumConnectionsClosed());
+  }
+
+  @Test(timeout = 30000)
+  public void testUnknownPathOnReusedConnection() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    // Requests for an unknown path get a response on a reused backend connection, which is not reused after that
+    String url = resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v2/ping");
+    String unknownUrl = resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v1/unknown/path");
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), get(url).getStatusLine().getStatusCode());
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(HttpResponseStatus.NOT_FOUND.getCode(), get(unknownUrl).getStatusLine().getStatusCode());
+    }
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), get(url).getStatusLine().getStatusCode());
+
+    Assert.assertEquals(2, defaultServer1.getNumRequests());
+    Assert.assertEquals(3, defaultServer1.getNumConnectionsOpened());
+  }
+
   private String makeRequest(URI uri, PrintWriter out, InputStream inputStream) throws IOException {
 
     //Send request
@@ -604,6 +646,7 @@ public abstract class NettyRouterTestBase {
         @Nullable
         @Override
         public ChannelPipeline apply(ChannelPipeline input) {
+          RoutingFailureHandler.addTo(input);
           input.addLast("connection-counter", new SimpleChannelHandler() {
             @Override
             public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
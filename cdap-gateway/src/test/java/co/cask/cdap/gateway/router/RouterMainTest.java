@@ -16,6 +16,7 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -35,5 +36,8 @@ public class RouterMainTest {
 
     NettyRouter router = injector.getInstance(NettyRouter.class);
     Assert.assertNotNull(router);
+
+    // The router emits metrics of its backend connections through Kafka
+    Assert.assertNotNull(injector.getInstance(MetricsCollectionService.class));
   }
 }
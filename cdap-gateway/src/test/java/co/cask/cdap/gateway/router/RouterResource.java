@@ -70,7 +70,7 @@ class RouterResource extends ExternalResource {
     }
     router =
       new NettyRouter(cConf, sConf, InetAddresses.forString(hostname),
-                      new RouterServiceLookup((DiscoveryServiceClient) discoveryService,
+                      new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                               new RouterPathLookup()),
                       new MockTokenValidator("failme"), accessTokenTransformer, discoveryServiceClient);
     router.startAndWait();
@@ -76,7 +76,7 @@ public class RoutingToDataSetsTest {
     cConf.setInt(Constants.Router.ROUTER_PORT, port);
     nettyRouter = new NettyRouter(cConf, sConf, InetAddresses.forString("127.0.0.1"),
 
-                                  new RouterServiceLookup(discoveryServiceClient,
+                                  new RouterServiceLookup(cConf, discoveryServiceClient,
                                                           new RouterPathLookup()),
                                   new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
     nettyRouter.startAndWait();
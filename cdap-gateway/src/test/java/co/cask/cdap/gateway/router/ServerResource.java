@@ -18,11 +18,13 @@ package co.cask.cdap.gateway.router;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.discovery.ResolvingDiscoverable;
+import co.cask.cdap.common.http.RoutingFailureHandler;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyConsumer;
 import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import co.cask.http.NettyHttpService;
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -30,6 +32,7 @@ import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.Discoverable;
 import org.apache.twill.discovery.DiscoveryService;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.rules.ExternalResource;
@@ -76,6 +79,12 @@ public class ServerResource extends ExternalResource {
     builder.addHttpHandlers(ImmutableSet.of(new ServerHandler()));
     builder.setHost(hostname);
     builder.setPort(0);
+    builder.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+      @Override
+      public ChannelPipeline apply(ChannelPipeline input) {
+        return RoutingFailureHandler.addTo(input);
+      }
+    });
     httpService = builder.build();
     httpService.startAndWait();
 
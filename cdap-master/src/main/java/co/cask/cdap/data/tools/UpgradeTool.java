@@ -399,6 +399,8 @@ public class UpgradeTool {
       metadataStore.deleteAllIndexes();
       LOG.info("Re-building metadata indexes...");
       metadataStore.rebuildIndexes();
+      LOG.info("Compacting metadata history...");
+      metadataStore.compactHistory();
     } finally {
       datasetServiceManager.shutDown();
     }
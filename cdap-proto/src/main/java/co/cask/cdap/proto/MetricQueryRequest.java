@@ -33,6 +33,7 @@ public class MetricQueryRequest {
   List<String> metrics;
   List<String> groupBy;
   TimeRange timeRange;
+  int seriesLimit;
 
   public MetricQueryRequest(Map<String, String> tags, List<String> metrics, List<String> groupBy) {
     this.tags = tags;
@@ -56,6 +57,17 @@ public class MetricQueryRequest {
     return timeRange;
   }
 
+  /**
+   * @return maximum number of time series to return per metric, or {@code 0} if there is no limit
+   */
+  public int getSeriesLimit() {
+    return seriesLimit;
+  }
+
+  public void setSeriesLimit(int seriesLimit) {
+    this.seriesLimit = seriesLimit;
+  }
+
   public void setTimeRange(@Nullable Long start, @Nullable Long end, @Nullable Integer count,
                            @Nullable Integer resolution,  @Nullable Interpolator interpolator) {
     timeRange = new TimeRange(start, end, count, resolution, interpolator);
@@ -33,16 +33,25 @@ public class StreamProperties {
   private final Integer notificationThresholdMB;
   private final String description;
 
+  @SerializedName("compression.codec")
+  private final String compressionCodec;
+
   public StreamProperties(Long ttl, FormatSpecification format, Integer notificationThresholdMB) {
     this(ttl, format, notificationThresholdMB, null);
   }
 
   public StreamProperties(Long ttl, FormatSpecification format, Integer notificationThresholdMB,
                           @Nullable String description) {
+    this(ttl, format, notificationThresholdMB, description, null);
+  }
+
+  public StreamProperties(Long ttl, FormatSpecification format, Integer notificationThresholdMB,
+                          @Nullable String description, @Nullable String compressionCodec) {
     this.ttl = ttl;
     this.format = format;
     this.notificationThresholdMB = notificationThresholdMB;
     this.description = description;
+    this.compressionCodec = compressionCodec;
   }
 
   /**
@@ -75,6 +84,14 @@ public class StreamProperties {
     return description;
   }
 
+  /**
+   * @return The codec for compressing data blocks in new stream files
+   */
+  @Nullable
+  public String getCompressionCodec() {
+    return compressionCodec;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -89,12 +106,13 @@ public class StreamProperties {
     return Objects.equals(ttl, that.ttl) &&
       Objects.equals(format, that.format) &
       Objects.equals(notificationThresholdMB, that.notificationThresholdMB) &
-      Objects.equals(description, that.description);
+      Objects.equals(description, that.description) &&
+      Objects.equals(compressionCodec, that.compressionCodec);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(ttl, format, notificationThresholdMB, description);
+    return Objects.hash(ttl, format, notificationThresholdMB, description, compressionCodec);
   }
 
   @Override
@@ -104,6 +122,7 @@ public class StreamProperties {
       ", format=" + format +
       ", notificationThresholdMB=" + notificationThresholdMB +
       ", description=" + description +
+      ", compressionCodec=" + compressionCodec +
       '}';
   }
 }
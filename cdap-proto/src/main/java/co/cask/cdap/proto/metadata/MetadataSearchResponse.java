@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.proto.metadata;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Represents one page of metadata search results, ordered by relevance.
+ */
+@Beta
+public class MetadataSearchResponse {
+  private final int limit;
+  private final int total;
+  private final List<MetadataSearchResultRecord> results;
+  private final String cursor;
+
+  public MetadataSearchResponse(int limit, int total, List<MetadataSearchResultRecord> results,
+                                @Nullable String cursor) {
+    this.limit = limit;
+    this.total = total;
+    this.results = results;
+    this.cursor = cursor;
+  }
+
+  /**
+   * @return the maximum number of results in a page
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of entities that matched the search query, across all pages
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the results in this page, the most relevant first
+   */
+  public List<MetadataSearchResultRecord> getResults() {
+    return results;
+  }
+
+  /**
+   * @return the cursor to pass to the search for getting the next page, or {@code null} if this is the last page
+   */
+  @Nullable
+  public String getCursor() {
+    return cursor;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof MetadataSearchResponse)) {
+      return false;
+    }
+    MetadataSearchResponse that = (MetadataSearchResponse) o;
+    return limit == that.limit &&
+      total == that.total &&
+      Objects.equals(results, that.results) &&
+      Objects.equals(cursor, that.cursor);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(limit, total, results, cursor);
+  }
+
+  @Override
+  public String toString() {
+    return "MetadataSearchResponse{" +
+      "limit=" + limit +
+      ", total=" + total +
+      ", results=" + results +
+      ", cursor=" + cursor +
+      '}';
+  }
+}
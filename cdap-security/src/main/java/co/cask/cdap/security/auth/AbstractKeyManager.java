@@ -97,11 +97,6 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
    */
   protected abstract boolean hasKey(int id);
 
-  /**
-   * Returns the key instance matching a given unique ID.
-   */
-  protected abstract KeyIdentifier getKey(int id);
-
   /**
    * Adds a given key instance.
    */
@@ -16,7 +16,19 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.MetricsDistribution;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
@@ -24,20 +36,55 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class validates the accessToken and returns the different states
  * of accessToken validation.
+ * <p>
+ * Valid tokens are remembered in a bounded cache, so that a token reused by a client is not decoded and its digest
+ * not recomputed on every request. A cached token is only considered valid until it expires, and as long as the
+ * secret key that validated it is still the one known by its key ID, so that key rotation and removal are honored.
  */
 public class AccessTokenValidator extends AbstractIdleService implements TokenValidator {
   private static final Logger LOG = LoggerFactory.getLogger(AccessTokenValidator.class);
   private final TokenManager tokenManager;
   private final Codec<AccessToken> accessTokenCodec;
+  // Null if the cache is disabled
+  private final Cache<String, ValidatedToken> validatedTokens;
+
+  private MetricsCounter cacheHits;
+  private MetricsCounter cacheMisses;
+  private MetricsDistribution validationLatency;
 
   @Inject
-  public AccessTokenValidator(TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
+  public AccessTokenValidator(CConfiguration cConf, TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
     this.tokenManager = tokenManager;
     this.accessTokenCodec = accessTokenCodec;
+    int cacheSize = cConf.getInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE,
+                                 Constants.Security.DEFAULT_TOKEN_VALIDATION_CACHE_SIZE);
+    this.validatedTokens = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize)
+                                                      .<String, ValidatedToken>build() : null;
+    setMetricsContext(new NoopMetricsContext());
+  }
+
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting metrics of the token cache and of the validation
+   * latency. No metrics are emitted if it is not set.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Tokens are validated by the router
+    setMetricsContext(metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.ROUTER)));
+  }
+
+  private void setMetricsContext(MetricsContext metricsContext) {
+    this.cacheHits = metricsContext.getCounter("token.cache.hits");
+    this.cacheMisses = metricsContext.getCounter("token.cache.misses");
+    this.validationLatency = metricsContext.getDistribution("token.validation.latency.us");
   }
 
   @Override
@@ -52,17 +99,46 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
 
   @Override
   public TokenState validate(String token) {
-    AccessToken accessToken;
-    TokenState state = TokenState.VALID;
     if (token == null) {
       LOG.debug("Token is missing");
       return TokenState.MISSING;
     }
+    long startTime = System.nanoTime();
+    try {
+      if (validatedTokens == null) {
+        return decodeAndValidate(token);
+      }
+      ValidatedToken validatedToken = validatedTokens.getIfPresent(token);
+      if (validatedToken != null && validatedToken.isValid(tokenManager)) {
+        cacheHits.increment(1);
+        return TokenState.VALID;
+      }
+      cacheMisses.increment(1);
+      if (validatedToken != null) {
+        validatedTokens.invalidate(token);
+      }
+      return decodeAndValidate(token);
+    } finally {
+      validationLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+    }
+  }
+
+  /**
+   * Validates the given token, and adds it to the cache if it is valid.
+   */
+  private TokenState decodeAndValidate(String token) {
+    AccessToken accessToken;
+    TokenState state = TokenState.VALID;
     byte[] decodedToken = Base64.decodeBase64(token);
 
     try {
       accessToken = accessTokenCodec.decode(decodedToken);
+      // Get the key before validating, so that a key changed in between invalidates the cache entry
+      KeyIdentifier key = tokenManager.getKey(accessToken.getKeyId());
       tokenManager.validateSecret(accessToken);
+      if (validatedTokens != null && key != null) {
+        validatedTokens.put(token, new ValidatedToken(accessToken, key));
+      }
     } catch (IOException ioe) {
       state = TokenState.INVALID;
       LOG.debug("Unknown Schema version for Access Token. {}", ioe);
@@ -72,4 +148,26 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
     }
     return state;
   }
+
+  /**
+   * A token that was found valid.
+   */
+  private static final class ValidatedToken {
+    private final long expireTimestamp;
+    private final int keyId;
+    private final KeyIdentifier key;
+
+    private ValidatedToken(AccessToken accessToken, KeyIdentifier key) {
+      this.expireTimestamp = accessToken.getIdentifier().getExpireTimestamp();
+      this.keyId = accessToken.getKeyId();
+      this.key = key;
+    }
+
+    /**
+     * Returns {@code true} if the token has not expired and the key that validated it has not changed.
+     */
+    private boolean isValid(TokenManager tokenManager) {
+      return expireTimestamp >= System.currentTimeMillis() && Objects.equal(key, tokenManager.getKey(keyId));
+    }
+  }
 }
@@ -126,7 +126,7 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
   }
 
   @Override
-  protected KeyIdentifier getKey(int id) {
+  public KeyIdentifier getKey(int id) {
     return keyCache.get(Integer.toString(id));
   }
 
@@ -20,6 +20,7 @@ import co.cask.cdap.common.io.Codec;
 import com.google.common.util.concurrent.Service;
 
 import java.security.InvalidKeyException;
+import javax.annotation.Nullable;
 
 /**
  * Maintains secret keys used to sign and validate authentication tokens.
@@ -64,4 +65,11 @@ public interface KeyManager extends Service {
   <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException;
 
+  /**
+   * Returns the secret key with the given ID, or {@code null} if there is no such key, such as after it was removed
+   * following its expiration.
+   */
+  @Nullable
+  KeyIdentifier getKey(int id);
+
 }
@@ -37,7 +37,7 @@ public abstract class MapBackedKeyManager extends AbstractKeyManager {
   }
 
   @Override
-  protected KeyIdentifier getKey(int id) {
+  public KeyIdentifier getKey(int id) {
     return allKeys.get(id);
   }
 
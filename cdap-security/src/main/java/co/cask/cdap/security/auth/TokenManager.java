@@ -23,6 +23,7 @@ import com.google.inject.Inject;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
+import javax.annotation.Nullable;
 
 /**
  * Provides a simple interface to generate and validate {@link AccessToken}s.
@@ -64,6 +65,14 @@ public class TokenManager extends AbstractIdleService {
     }
   }
 
+  /**
+   * Returns the secret key with the given ID, or {@code null} if there is no such key.
+   */
+  @Nullable
+  public KeyIdentifier getKey(int keyId) {
+    return keyManager.getKey(keyId);
+  }
+
   /**
    * Given an {@link AccessToken} instance, checks that the token has not yet expired and that the digest matches
    * the expected value. To validate the token digest, we recompute the digest value, based on the asserted identity
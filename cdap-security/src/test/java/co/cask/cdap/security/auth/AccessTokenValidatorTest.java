@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.security.auth;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.IOModule;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link AccessTokenValidator}.
+ */
+public class AccessTokenValidatorTest {
+
+  @Test
+  public void testCachedValidation() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE, 10);
+    Injector injector = Guice.createInjector(new IOModule());
+    AccessTokenCodec tokenCodec = injector.getInstance(AccessTokenCodec.class);
+    InMemoryKeyManager keyManager = new InMemoryKeyManager(cConf);
+    TokenManager tokenManager = new TokenManager(keyManager, injector.getInstance(AccessTokenIdentifierCodec.class));
+    AccessTokenValidator validator = new AccessTokenValidator(cConf, tokenManager, tokenCodec);
+    validator.startAndWait();
+    try {
+      long now = System.currentTimeMillis();
+      List<String> groups = ImmutableList.of("users");
+      AccessToken accessToken = tokenManager.signIdentifier(
+        new AccessTokenIdentifier("user", groups, now, now + 3600 * 1000));
+      String token = Base64.encodeBase64String(tokenCodec.encode(accessToken));
+
+      // Validating again is served by the cache
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+
+      // Tokens signed with a previous key stay valid after key rotation
+      keyManager.generateKey();
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+
+      // But not once the key is removed
+      keyManager.allKeys.remove(accessToken.getKeyId());
+      Assert.assertEquals(TokenState.INTERNAL, validator.validate(token));
+
+      // Invalid tokens are never valid
+      AccessToken expiredToken = tokenManager.signIdentifier(
+        new AccessTokenIdentifier("user", groups, now - 2, now - 1));
+      String expired = Base64.encodeBase64String(tokenCodec.encode(expiredToken));
+      Assert.assertEquals(TokenState.EXPIRED, validator.validate(expired));
+      Assert.assertEquals(TokenState.EXPIRED, validator.validate(expired));
+
+      AccessToken validToken = tokenManager.signIdentifier(
+        new AccessTokenIdentifier("user", groups, now, now + 3600 * 1000));
+      byte[] digest = validToken.getDigestBytes();
+      digest[0]++;
+      String invalid = Base64.encodeBase64String(
+        tokenCodec.encode(new AccessToken(validToken.getIdentifier(), validToken.getKeyId(), digest)));
+      Assert.assertEquals(TokenState.INVALID, validator.validate(invalid));
+      Assert.assertEquals(TokenState.INVALID, validator.validate(invalid));
+      Assert.assertEquals(TokenState.MISSING, validator.validate(null));
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+}
@@ -19,7 +19,7 @@ package co.cask.cdap.app.runtime.spark;
 import co.cask.cdap.api.Admin;
 import co.cask.cdap.api.RuntimeContext;
 import co.cask.cdap.api.app.ApplicationSpecification;
-import co.cask.cdap.api.metrics.Metrics;
+import co.cask.cdap.api.metrics.DistributionMetrics;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.plugin.PluginContext;
@@ -66,7 +66,7 @@ import javax.annotation.Nullable;
  * the executors.
  */
 public final class SparkRuntimeContext extends AbstractServiceDiscoverer
-                                       implements RuntimeContext, Metrics, PluginContext, Closeable {
+                                       implements RuntimeContext, DistributionMetrics, PluginContext, Closeable {
 
   private final Configuration hConf;
   private final Program program;
@@ -77,7 +77,7 @@ public final class SparkRuntimeContext extends AbstractServiceDiscoverer
   private final MultiThreadDatasetCache datasetCache;
   private final DiscoveryServiceClient discoveryServiceClient;
   private final MetricsContext metricsContext;
-  private final Metrics userMetrics;
+  private final DistributionMetrics userMetrics;
   private final StreamAdmin streamAdmin;
   private final WorkflowProgramInfo workflowProgramInfo;
   private final PluginInstantiator pluginInstantiator;
@@ -173,6 +173,11 @@ public final class SparkRuntimeContext extends AbstractServiceDiscoverer
     userMetrics.gauge(metricName, value);
   }
 
+  @Override
+  public void distribution(String metricName, long value) {
+    userMetrics.distribution(metricName, value);
+  }
+
   @Override
   public PluginProperties getPluginProperties(String pluginId) {
     return pluginContext.getPluginProperties(pluginId);
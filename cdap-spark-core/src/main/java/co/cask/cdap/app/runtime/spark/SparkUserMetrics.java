@@ -16,7 +16,7 @@
 
 package co.cask.cdap.app.runtime.spark;
 
-import co.cask.cdap.api.metrics.Metrics;
+import co.cask.cdap.api.metrics.DistributionMetrics;
 
 import java.io.Externalizable;
 import java.io.IOException;
@@ -24,13 +24,13 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 /**
- * A {@link Externalizable} implementation of {@link Metrics} used in Spark program execution.
+ * A {@link Externalizable} implementation of {@link DistributionMetrics} used in Spark program execution.
  * It has no-op for serialize/deserialize operation, with all operations delegated to the {@link SparkRuntimeContext}
  * of the current execution context.
  */
-public final class SparkUserMetrics implements Metrics, Externalizable {
+public final class SparkUserMetrics implements DistributionMetrics, Externalizable {
 
-  private final Metrics delegate;
+  private final DistributionMetrics delegate;
 
   /**
    * Constructor. It delegates metrics operations to the current {@link SparkRuntimeContext}.
@@ -40,9 +40,9 @@ public final class SparkUserMetrics implements Metrics, Externalizable {
   }
 
   /**
-   * Creates an instance that delegates all metrics operations to the give {@link Metrics} delegate.
+   * Creates an instance that delegates all metrics operations to the give {@link DistributionMetrics} delegate.
    */
-  SparkUserMetrics(Metrics delegate) {
+  SparkUserMetrics(DistributionMetrics delegate) {
     this.delegate = delegate;
   }
 
@@ -56,6 +56,11 @@ public final class SparkUserMetrics implements Metrics, Externalizable {
     delegate.gauge(metricName, value);
   }
 
+  @Override
+  public void distribution(String metricName, long value) {
+    delegate.distribution(metricName, value);
+  }
+
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
     // no-op
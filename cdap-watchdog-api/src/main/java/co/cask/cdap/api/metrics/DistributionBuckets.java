@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Defines the buckets that the values of a {@link MetricType#DISTRIBUTION} metric are counted in. Values from
+ * 0 to 7 have a bucket each, and the range of each larger power of two is split into 8 buckets of equal width,
+ * so that the upper bound of a bucket is at most 12.5% larger than any value in it. There are {@link #BUCKETS}
+ * buckets, covering all non-negative long values.
+ * <p>
+ * The count of a bucket is emitted as a metric named {@code [metric].le.[upper bound]}, and is stored as a counter,
+ * so that distributions are aggregated over time and across contexts like any other counter. A percentile
+ * of a distribution is queried with the metric name {@code percentile.[digits].[metric]}, where the digits are the
+ * fraction digits of the percentile, e.g. {@code percentile.50.}, {@code percentile.95.}, {@code percentile.99.} and
+ * {@code percentile.999.} for the 50th, 95th, 99th and 99.9th percentile. The {@code percentile.} prefix is reserved,
+ * since the names of stored metrics always start with their scope.
+ */
+public final class DistributionBuckets {
+
+  public static final int BUCKETS = 488;
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final String BUCKET_INFIX = ".le.";
+  private static final Pattern BUCKET_PATTERN = Pattern.compile("(.+)\\.le\\.(\\d{1,19})");
+  private static final Pattern PERCENTILE_PATTERN = Pattern.compile("percentile\\.(\\d{1,9})\\.(.+)");
+
+  /**
+   * Returns the bucket of the given value, with negative values in the bucket of zero.
+   */
+  public static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return value <= 0 ? 0 : (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+  }
+
+  /**
+   * Returns the smallest value in the given bucket.
+   */
+  public static long getLowerBound(int bucket) {
+    checkBucket(bucket);
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << ((bucket >> SUB_BUCKET_BITS) - 1);
+  }
+
+  /**
+   * Returns the largest value in the given bucket.
+   */
+  public static long getUpperBound(int bucket) {
+    checkBucket(bucket);
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return getLowerBound(bucket) + (1L << ((bucket >> SUB_BUCKET_BITS) - 1)) - 1;
+  }
+
+  /**
+   * Returns the name of the metric that carries the count of the given bucket of a distribution metric.
+   */
+  public static String getBucketMetricName(String metricName, int bucket) {
+    return metricName + BUCKET_INFIX + getUpperBound(bucket);
+  }
+
+  /**
+   * Returns the bucket that the given metric carries the count of, or {@code -1} if the metric is not a bucket of
+   * the given distribution metric.
+   */
+  public static int getBucket(String distributionName, String metricName) {
+    Matcher matcher = BUCKET_PATTERN.matcher(metricName);
+    if (!matcher.matches() || !distributionName.equals(matcher.group(1))) {
+      return -1;
+    }
+    return getBucketOfUpperBound(matcher.group(2));
+  }
+
+  /**
+   * Returns {@code true} if the given metric carries the count of a bucket of a distribution metric.
+   */
+  public static boolean isBucketMetricName(String metricName) {
+    Matcher matcher = BUCKET_PATTERN.matcher(metricName);
+    return matcher.matches() && getBucketOfUpperBound(matcher.group(2)) >= 0;
+  }
+
+  /**
+   * Returns the name of the distribution metric if the given metric name refers to a percentile of it,
+   * or {@code null} otherwise.
+   */
+  @Nullable
+  public static String getPercentileDistribution(String metricName) {
+    Matcher matcher = PERCENTILE_PATTERN.matcher(metricName);
+    return matcher.matches() ? matcher.group(2) : null;
+  }
+
+  /**
+   * Returns the percentile, as a fraction between 0 and 1, that the given metric name refers to.
+   *
+   * @throws IllegalArgumentException if the metric name doesn't refer to a percentile
+   */
+  public static double getPercentileFraction(String metricName) {
+    Matcher matcher = PERCENTILE_PATTERN.matcher(metricName);
+    Preconditions.checkArgument(matcher.matches(), "Not a percentile metric name: %s", metricName);
+    return Double.parseDouble("0." + matcher.group(1));
+  }
+
+  /**
+   * Returns the given percentile of a distribution. The result is the upper bound of the bucket that contains
+   * the percentile, hence it is never smaller than the exact percentile of the values recorded.
+   *
+   * @param counts the count of each bucket, indexed by bucket, which may have less than {@link #BUCKETS} elements
+   * @param fraction the percentile as a fraction between 0 and 1
+   * @return the percentile, or {@code 0} if the distribution is empty
+   */
+  public static long getPercentile(long[] counts, double fraction) {
+    Preconditions.checkArgument(fraction >= 0 && fraction <= 1, "Percentile must be between 0 and 1: %s", fraction);
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return getUpperBound(bucket);
+      }
+    }
+    return getUpperBound(counts.length - 1);
+  }
+
+  /**
+   * Returns the bucket with the given upper bound, or {@code -1} if there is no such bucket.
+   */
+  private static int getBucketOfUpperBound(String upperBound) {
+    long value;
+    try {
+      value = Long.parseLong(upperBound);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+    int bucket = getBucket(value);
+    return getUpperBound(bucket) == value ? bucket : -1;
+  }
+
+  private static void checkBucket(int bucket) {
+    Preconditions.checkArgument(bucket >= 0 && bucket < BUCKETS, "Invalid bucket %s", bucket);
+  }
+
+  private DistributionBuckets() {
+  }
+}
@@ -37,6 +37,7 @@ import javax.annotation.Nullable;
  * FROM Cube
  * GROUP BY dataset,                                            << groupByTags
  * WHERE namespace='ns1' AND app='myApp' AND program='myFlow'   << sliceByTags
+ * ORDER BY count('read.ops') DESC LIMIT 10                     << seriesLimit
  *
  * </pre>
  */
@@ -57,6 +58,7 @@ public final class MetricDataQuery {
    */
   private final int resolution;
   private final int limit;
+  private final int seriesLimit;
   private final Map<String, AggregationFunction> metrics;
   private final Map<String, String> sliceByTagValues;
   private final List<String> groupByTags;
@@ -94,10 +96,25 @@ public final class MetricDataQuery {
                          Map<String, AggregationFunction> metrics,
                          Map<String, String> sliceByTagValues, List<String> groupByTags,
                          @Nullable Interpolator interpolator) {
+    this(startTs, endTs, resolution, limit, 0, metrics, sliceByTagValues, groupByTags, interpolator);
+  }
+
+  /**
+   * @param startTs Start timestamp, in seconds.
+   * @param endTs End timestamp, in seconds.
+   * @param resolution Resolution in seconds.
+   * @param seriesLimit Maximum number of time series to return per metric, ordered by their aggregated value in
+   *                    descending order. {@code 0} returns all time series, unordered.
+   */
+  public MetricDataQuery(long startTs, long endTs, int resolution, int limit, int seriesLimit,
+                         Map<String, AggregationFunction> metrics,
+                         Map<String, String> sliceByTagValues, List<String> groupByTags,
+                         @Nullable Interpolator interpolator) {
     this.startTs = startTs;
     this.endTs = endTs;
     this.resolution = resolution;
     this.limit = limit;
+    this.seriesLimit = seriesLimit;
     this.metrics = metrics;
     this.sliceByTagValues = Maps.newHashMap(sliceByTagValues);
     this.groupByTags = ImmutableList.copyOf(groupByTags);
@@ -105,23 +122,23 @@ public final class MetricDataQuery {
   }
 
   public MetricDataQuery(MetricDataQuery query, String metricName, AggregationFunction func) {
-    this(query.startTs, query.endTs, query.resolution, query.limit,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.seriesLimit,
          ImmutableMap.of(metricName, func),
          query.sliceByTagValues, query.groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, Map<String, String> sliceByTagValues, List<String> groupByTags) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.seriesLimit, query.metrics,
          sliceByTagValues, groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, Map<String, String> sliceByTagValues) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.seriesLimit, query.metrics,
          sliceByTagValues, query.groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, List<String> groupByTags) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.seriesLimit, query.metrics,
          query.sliceByTagValues, groupByTags, query.getInterpolator());
   }
 
@@ -154,6 +171,13 @@ public final class MetricDataQuery {
     return limit;
   }
 
+  /**
+   * Returns the maximum number of time series to return per metric, or {@code 0} if there is no limit.
+   */
+  public int getSeriesLimit() {
+    return seriesLimit;
+  }
+
   public Interpolator getInterpolator() {
     return interpolator;
   }
@@ -164,6 +188,7 @@ public final class MetricDataQuery {
       .add("startTs", startTs)
       .add("endTs", endTs)
       .add("resolution", resolution)
+      .add("seriesLimit", seriesLimit)
       .add("metrics", metrics)
       .add("sliceByTags", Joiner.on(",").withKeyValueSeparator(":").useForNull("null").join(sliceByTagValues))
       .add("groupByTags", Joiner.on(",").join(groupByTags)).toString();
@@ -17,6 +17,8 @@
 package co.cask.cdap.api.metrics;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Stores and provides access to metrics data.
@@ -50,6 +52,21 @@ public interface MetricStore {
    */
   Collection<MetricTimeSeries> query(MetricDataQuery query);
 
+  /**
+   * Queries metrics data with multiple queries, which may be executed in parallel.
+   * @param queries queries to execute
+   * @param executor executor to execute the queries with
+   * @return time series that satisfy each of the queries, in the order of the queries
+   */
+  List<Collection<MetricTimeSeries>> query(List<MetricDataQuery> queries, Executor executor);
+
+  /**
+   * Rolls up the metrics data of the resolutions that are configured to be derived from finer resolutions, rather
+   * than written directly. Should be called periodically by the service that adds metrics to this store.
+   * Does nothing if no resolution is configured to be rolled up.
+   */
+  void rollup() throws Exception;
+
   /**
    * Deletes all metric data before given timestamp. Used for applying TTL policy.
    * @param timestamp time up to which to delete metrics data, in ms since epoch
@@ -16,9 +16,13 @@
 package co.cask.cdap.api.metrics;
 
 /**
- * MetricType - COUNTER or GAUGE type
+ * MetricType - COUNTER, GAUGE or DISTRIBUTION type.
+ * A {@link MetricValue} of DISTRIBUTION type carries the count of values recorded in one bucket of a distribution,
+ * and is named as described in {@link DistributionBuckets}.
  */
 public enum MetricType {
   COUNTER,
-  GAUGE
+  GAUGE,
+  // New types must be added last, since the metrics pipeline serializes this enum by position
+  DISTRIBUTION
 }
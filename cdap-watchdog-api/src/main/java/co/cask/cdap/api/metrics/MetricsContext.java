@@ -38,4 +38,25 @@ public interface MetricsContext extends MetricsCollector {
    * @return tags that identify the context.
    */
   Map<String, String> getTags();
+
+  /**
+   * Returns a {@link MetricsCounter} for incrementing the given metric in this context. The returned counter can be
+   * kept and used for as long as this context is used.
+   * @param metricName Name of the metric.
+   */
+  MetricsCounter getCounter(String metricName);
+
+  /**
+   * Returns a {@link MetricsGauge} for gauging the given metric in this context. The returned gauge can be
+   * kept and used for as long as this context is used.
+   * @param metricName Name of the metric.
+   */
+  MetricsGauge getGauge(String metricName);
+
+  /**
+   * Returns a {@link MetricsDistribution} for recording values in the distribution of the given metric in this
+   * context. The returned distribution can be kept and used for as long as this context is used.
+   * @param metricName Name of the metric.
+   */
+  MetricsDistribution getDistribution(String metricName);
 }
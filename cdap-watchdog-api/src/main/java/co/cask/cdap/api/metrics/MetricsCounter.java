@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.metrics;
+
+/**
+ * A counter metric bound to a metric name in a {@link MetricsContext}. Incrementing through a bound counter skips
+ * the lookup of the metric by name, so it should be preferred over {@link MetricsContext#increment(String, long)}
+ * for metrics that are updated frequently.
+ */
+public interface MetricsCounter {
+
+  /**
+   * Increment the metric value at the current time.
+   * @param value value to add to the metric.
+   */
+  void increment(long value);
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.metrics;
+
+/**
+ * A distribution metric bound to a metric name in a {@link MetricsContext}, as returned by
+ * {@link MetricsContext#getDistribution(String)}. Recording through a bound distribution skips the lookup of the
+ * metric by name, so it should be kept and reused for metrics that are updated frequently.
+ */
+public interface MetricsDistribution {
+
+  /**
+   * Record a value in the distribution at the current time.
+   * @param value value to record, with negative values recorded as zero.
+   */
+  void record(long value);
+}
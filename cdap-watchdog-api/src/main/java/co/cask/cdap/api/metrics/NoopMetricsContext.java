@@ -25,6 +25,27 @@ import java.util.Map;
  */
 public final class NoopMetricsContext implements MetricsContext {
 
+  private static final MetricsCounter NOOP_COUNTER = new MetricsCounter() {
+    @Override
+    public void increment(long value) {
+      // no-op
+    }
+  };
+
+  private static final MetricsGauge NOOP_GAUGE = new MetricsGauge() {
+    @Override
+    public void set(long value) {
+      // no-op
+    }
+  };
+
+  private static final MetricsDistribution NOOP_DISTRIBUTION = new MetricsDistribution() {
+    @Override
+    public void record(long value) {
+      // no-op
+    }
+  };
+
   private final Map<String, String> tags;
 
   public NoopMetricsContext() {
@@ -59,4 +80,19 @@ public final class NoopMetricsContext implements MetricsContext {
   public void gauge(String metricName, long value) {
     // no-op
   }
+
+  @Override
+  public MetricsCounter getCounter(String metricName) {
+    return NOOP_COUNTER;
+  }
+
+  @Override
+  public MetricsGauge getGauge(String metricName) {
+    return NOOP_GAUGE;
+  }
+
+  @Override
+  public MetricsDistribution getDistribution(String metricName) {
+    return NOOP_DISTRIBUTION;
+  }
 }
@@ -21,6 +21,7 @@ import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -40,7 +41,8 @@ import java.util.Collection;
 import java.util.List;
 
 /**
- * Reads log events from an Avro file.
+ * Reads log events from an Avro file. The {@link LogFileIndex} at the end of the file is used to seek to the events
+ * of the requested time if the file has one, otherwise the blocks of the file are probed.
  */
 public class AvroFileReader {
   private static final Logger LOG = LoggerFactory.getLogger(AvroFileReader.class);
@@ -55,35 +57,27 @@ public class AvroFileReader {
   public void readLog(Location file, Filter logFilter, long fromTimeMs, long toTimeMs,
                       int maxEvents, Callback callback) {
     try {
-      DataFileReader<GenericRecord> dataFileReader = createReader(file);
+      LocationSeekableInput input = new LocationSeekableInput(file);
+      DataFileReader<GenericRecord> dataFileReader = createReader(input);
       try {
-        ILoggingEvent loggingEvent;
-        GenericRecord datum;
         if (dataFileReader.hasNext()) {
-          datum = dataFileReader.next();
-          loggingEvent = LoggingEvent.decode(datum);
-          long prevPrevSyncPos = 0;
-          long prevSyncPos = 0;
-          // Seek to time fromTimeMs
-          while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
-            // Seek to the next sync point
-            long curPos = dataFileReader.tell();
-            prevPrevSyncPos = prevSyncPos;
-            prevSyncPos = dataFileReader.previousSync();
-            dataFileReader.sync(curPos);
-            if (dataFileReader.hasNext()) {
-              loggingEvent = LoggingEvent.decode(dataFileReader.next(datum));
+          LogFileIndex index = LogFileIndex.read(input);
+          if (index == null) {
+            skipToTime(dataFileReader, fromTimeMs);
+          } else {
+            long position = index.getPositionBefore(fromTimeMs);
+            if (position >= 0) {
+              dataFileReader.seek(position);
             }
           }
 
-          // We're now likely past the record with fromTimeMs, rewind to the previous sync point
-          dataFileReader.sync(prevPrevSyncPos);
-
           // Start reading events from file
           int count = 0;
           long prevTimestamp = -1;
+          GenericRecord datum = null;
           while (dataFileReader.hasNext()) {
-            loggingEvent = LoggingEvent.decode(dataFileReader.next(datum));
+            datum = dataFileReader.next(datum);
+            ILoggingEvent loggingEvent = LoggingEvent.decode(datum);
             if (loggingEvent.getTimeStamp() >= fromTimeMs && logFilter.match(loggingEvent)) {
               ++count;
               if ((count > maxEvents || loggingEvent.getTimeStamp() >= toTimeMs)
@@ -111,20 +105,26 @@ public class AvroFileReader {
 
   public Collection<LogEvent> readLogPrev(Location file, Filter logFilter, long fromTimeMs, final int maxEvents) {
     try {
-      DataFileReader<GenericRecord> dataFileReader = createReader(file);
+      LocationSeekableInput input = new LocationSeekableInput(file);
+      DataFileReader<GenericRecord> dataFileReader = createReader(input);
 
       try {
         if (!dataFileReader.hasNext()) {
           return ImmutableList.of();
         }
 
+        long length = input.length();
+        LOG.trace("Got file length {}", length);
+        LogFileIndex index = LogFileIndex.read(input);
+        if (index != null) {
+          return readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents);
+        }
+
         List<List<LogEvent>> logSegments = Lists.newArrayList();
         List<LogEvent> logSegment;
         int count = 0;
 
         // Calculate skipLen based on fileLength
-        long length = file.length();
-        LOG.trace("Got file length {}", length);
         long skipLen = length / 10;
         if (skipLen > DEFAULT_SKIP_LEN || skipLen <= 0) {
           skipLen = DEFAULT_SKIP_LEN;
@@ -161,8 +161,7 @@ public class AvroFileReader {
           endPosition = currentSync;
         }
 
-        int skip = count >= maxEvents ? count - maxEvents : 0;
-        return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+        return getLastEvents(logSegments, count, maxEvents);
       } finally {
         try {
           dataFileReader.close();
@@ -176,6 +175,75 @@ public class AvroFileReader {
     }
   }
 
+  /**
+   * Reads the last events up to fromTimeMs by reading the indexed blocks backward, starting from the first indexed
+   * block that has events after fromTimeMs.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           Filter logFilter, long fromTimeMs, int maxEvents) throws IOException {
+    List<List<LogEvent>> logSegments = Lists.newArrayList();
+    int count = 0;
+
+    // Read till the actual eof if there is no indexed block after fromTimeMs
+    long endPosition = index.getPositionAfter(fromTimeMs);
+    for (long position : index.getPositionsBefore(endPosition)) {
+      dataFileReader.seek(position);
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+      if (!logSegment.isEmpty()) {
+        logSegments.add(logSegment);
+        count = count + logSegment.size();
+      }
+      LOG.trace("Read logevents {} from position {} to endPosition {}", count, position, endPosition);
+
+      endPosition = position;
+      if (count >= maxEvents) {
+        return getLastEvents(logSegments, count, maxEvents);
+      }
+    }
+
+    // Read the events before the first indexed block
+    dataFileReader.sync(0);
+    List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+    if (!logSegment.isEmpty()) {
+      logSegments.add(logSegment);
+      count = count + logSegment.size();
+    }
+    return getLastEvents(logSegments, count, maxEvents);
+  }
+
+  /**
+   * Returns the last maxEvents events of the given segments, which are in reverse order of position.
+   */
+  private Collection<LogEvent> getLastEvents(List<List<LogEvent>> logSegments, int count, int maxEvents) {
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+  }
+
+  /**
+   * Moves the reader to a block at or before the first event with timestamp fromTimeMs, by decoding the first
+   * event of each block from the current position. The reader must have a next event.
+   */
+  private void skipToTime(DataFileReader<GenericRecord> dataFileReader, long fromTimeMs) throws IOException {
+    GenericRecord datum = dataFileReader.next();
+    ILoggingEvent loggingEvent = LoggingEvent.decode(datum);
+    long prevPrevSyncPos = 0;
+    long prevSyncPos = 0;
+    // Seek to time fromTimeMs
+    while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
+      // Seek to the next sync point
+      long curPos = dataFileReader.tell();
+      prevPrevSyncPos = prevSyncPos;
+      prevSyncPos = dataFileReader.previousSync();
+      dataFileReader.sync(curPos);
+      if (dataFileReader.hasNext()) {
+        loggingEvent = LoggingEvent.decode(dataFileReader.next(datum));
+      }
+    }
+
+    // We're now likely past the record with fromTimeMs, rewind to the previous sync point
+    dataFileReader.sync(prevPrevSyncPos);
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -222,10 +290,8 @@ public class AvroFileReader {
     return startPosition;
   }
 
-  private DataFileReader<GenericRecord> createReader(Location location) throws IOException {
-    return new DataFileReader<>(new LocationSeekableInput(location),
-                                new GenericDatumReader<GenericRecord>(schema));
-
+  private DataFileReader<GenericRecord> createReader(SeekableInput input) throws IOException {
+    return new DataFileReader<>(input, new GenericDatumReader<GenericRecord>(schema));
   }
 
   /**
@@ -19,6 +19,7 @@ package co.cask.cdap.logging.write;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.logging.LoggingConfiguration;
 import com.google.common.collect.Maps;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
@@ -52,6 +53,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
   private final String logBaseDir;
   private final Schema schema;
   private final int syncIntervalBytes;
+  private final long indexIntervalBytes;
   private final Map<String, AvroFile> fileMap;
   private final long maxFileSize;
   private final long inactiveIntervalMs;
@@ -78,6 +80,8 @@ public final class AvroFileWriter implements Closeable, Flushable {
     this.logBaseDir = logBaseDir;
     this.schema = schema;
     this.syncIntervalBytes = syncIntervalBytes;
+    this.indexIntervalBytes = cConf.getLong(LoggingConfiguration.LOG_FILE_INDEX_INTERVAL_BYTES,
+                                            LoggingConfiguration.DEFAULT_LOG_FILE_INDEX_INTERVAL_BYTES);
     this.fileMap = Maps.newHashMap();
     this.maxFileSize = maxFileSize;
     this.inactiveIntervalMs = inactiveIntervalMs;
@@ -212,12 +216,16 @@ public final class AvroFileWriter implements Closeable, Flushable {
   }
 
   /**
-   * Represents an Avro file.
+   * Represents an Avro file. If indexing is enabled, the {@link LogFileIndex} of the file is written to its end
+   * when it is closed.
    */
   public class AvroFile implements Closeable {
     private final Location location;
     private FSDataOutputStream outputStream;
     private DataFileWriter<GenericRecord> dataFileWriter;
+    private LogFileIndex.Writer indexWriter;
+    private long indexedPos;
+    private long maxTimestamp = Long.MIN_VALUE;
     private long lastModifiedTs;
     private boolean isOpen = false;
 
@@ -233,7 +241,12 @@ public final class AvroFileWriter implements Closeable, Flushable {
     void open() throws IOException {
       this.outputStream = new FSDataOutputStream(location.getOutputStream(), null);
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
-      this.dataFileWriter.create(schema, this.outputStream);
+      if (indexIntervalBytes > 0) {
+        this.indexWriter = new LogFileIndex.Writer();
+        this.dataFileWriter.create(schema, indexWriter.wrap(this.outputStream));
+      } else {
+        this.dataFileWriter.create(schema, this.outputStream);
+      }
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.lastModifiedTs = System.currentTimeMillis();
       this.isOpen = true;
@@ -244,7 +257,13 @@ public final class AvroFileWriter implements Closeable, Flushable {
     }
 
     public void append(LogWriteEvent event) throws IOException {
+      if (indexWriter != null && outputStream.getPos() - indexedPos >= indexIntervalBytes) {
+        // Start a new block, so that the event is at the beginning of a block that readers can seek to
+        indexedPos = dataFileWriter.sync();
+        indexWriter.add(maxTimestamp, indexedPos);
+      }
       dataFileWriter.append(event.getGenericRecord());
+      maxTimestamp = Math.max(maxTimestamp, event.getLogEvent().getTimeStamp());
       lastModifiedTs = System.currentTimeMillis();
     }
 
@@ -274,6 +293,11 @@ public final class AvroFileWriter implements Closeable, Flushable {
 
       try {
         if (dataFileWriter != null) {
+          if (indexWriter != null) {
+            // The index goes after the last block of log events
+            dataFileWriter.flush();
+            indexWriter.write(outputStream);
+          }
           dataFileWriter.close();
         }
       } finally {
@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.apache.avro.file.SeekableInput;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A sparse index of an Avro log file, stored in the log file itself. Each entry of the index is the position of a
+ * block in the log file, together with the largest timestamp of the events written before that block. Since the
+ * timestamps are the maximum so far, they never decrease, and events after a position never have a timestamp
+ * smaller than the one of its entry. This lets readers seek to the blocks of a time range without decoding the log
+ * file from its beginning.
+ * <p>
+ * The index is written when the log file is closed, as the last block of the file. The block has no records, so
+ * Avro readers iterating over the file stop at it, and its data is the version number, the pairs of timestamp and
+ * position, the number of entries and a magic number. Readers locate the index from the end of the file. Files that
+ * are still being written, or that were not closed properly, have no index.
+ */
+public final class LogFileIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(LogFileIndex.class);
+
+  private static final int VERSION = 1;
+  private static final byte[] MAGIC = { 'C', 'D', 'A', 'P', 'L', 'I', 'D', 'X' };
+  private static final int SYNC_SIZE = 16;
+  private static final int ENTRY_SIZE = 2 * Longs.BYTES;
+  // number of entries, magic number and sync marker at the end of the file
+  private static final int TRAILER_SIZE = Longs.BYTES + MAGIC.length + SYNC_SIZE;
+
+  private final long[] timestamps;
+  private final long[] positions;
+
+  private LogFileIndex(long[] timestamps, long[] positions) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+  }
+
+  /**
+   * Reads the index of a log file. The position of the given input is restored before returning.
+   *
+   * @param input input of the log file
+   * @return the index, or {@code null} if the log file has no index, or the index cannot be read.
+   */
+  @Nullable
+  public static LogFileIndex read(SeekableInput input) {
+    try {
+      long position = input.tell();
+      try {
+        return read(input, input.length());
+      } finally {
+        input.seek(position);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to read index of log file, reading without index", e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private static LogFileIndex read(SeekableInput input, long length) throws IOException {
+    if (length < TRAILER_SIZE + Ints.BYTES) {
+      return null;
+    }
+    ByteBuffer trailer = ByteBuffer.wrap(readFully(input, length - TRAILER_SIZE, Longs.BYTES + MAGIC.length));
+    long size = trailer.getLong();
+    byte[] magic = new byte[MAGIC.length];
+    trailer.get(magic);
+    // The end of a file without index is the end of a block of log events
+    if (!Arrays.equals(MAGIC, magic) || size < 0 || size > (length - TRAILER_SIZE - Ints.BYTES) / ENTRY_SIZE) {
+      return null;
+    }
+
+    long start = length - TRAILER_SIZE - size * ENTRY_SIZE - Ints.BYTES;
+    ByteBuffer buffer = ByteBuffer.wrap(readFully(input, start, (int) (size * ENTRY_SIZE) + Ints.BYTES));
+    if (buffer.getInt() != VERSION) {
+      LOG.warn("Ignoring index of log file with unknown version");
+      return null;
+    }
+    long[] timestamps = new long[(int) size];
+    long[] positions = new long[(int) size];
+    for (int i = 0; i < size; i++) {
+      timestamps[i] = buffer.getLong();
+      positions[i] = buffer.getLong();
+    }
+    return new LogFileIndex(timestamps, positions);
+  }
+
+  private static byte[] readFully(SeekableInput input, long position, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    input.seek(position);
+    int offset = 0;
+    while (offset < length) {
+      int read = input.read(bytes, offset, length - offset);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of log file at " + (position + offset));
+      }
+      offset += read;
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the position of the last indexed block before which all events have timestamps smaller than the given
+   * time, or {@code -1} if there is no such block. Reading forward from the returned position, or from the first
+   * block if it is {@code -1}, yields every event with timestamp greater than or equal to the given time.
+   */
+  public long getPositionBefore(long timeMs) {
+    // Index of the first entry with timestamp >= timeMs, minus one
+    int idx = search(timeMs) - 1;
+    return idx < 0 ? -1 : positions[idx];
+  }
+
+  /**
+   * Returns the position of the first indexed block before which some event has a timestamp greater than the given
+   * time, or {@code -1} if there is no such block. If events are written in timestamp order, events after the returned
+   * position all have timestamps greater than the given time.
+   */
+  public long getPositionAfter(long timeMs) {
+    // Index of the first entry with timestamp > timeMs
+    int idx = timeMs == Long.MAX_VALUE ? positions.length : search(timeMs + 1);
+    return idx < positions.length ? positions[idx] : -1;
+  }
+
+  /**
+   * Returns the positions of the indexed blocks that are before the given position in descending order, or of all
+   * indexed blocks if the given position is {@code -1}.
+   */
+  public long[] getPositionsBefore(long position) {
+    int idx = position < 0 ? positions.length : Arrays.binarySearch(positions, position);
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+    long[] result = new long[idx];
+    for (int i = 0; i < idx; i++) {
+      result[i] = positions[idx - i - 1];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of the first entry with timestamp greater than or equal to the given time.
+   */
+  private int search(long timeMs) {
+    int low = 0;
+    int high = timestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[mid] < timeMs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Collects the index of a log file while it is written, and writes the index to the end of the file when it is
+   * closed. This class is not thread-safe.
+   */
+  public static final class Writer {
+    private final ByteArrayDataOutput entries;
+    private long size;
+    private byte[] syncMarker;
+
+    public Writer() {
+      this.entries = ByteStreams.newDataOutput();
+      this.entries.writeInt(VERSION);
+    }
+
+    /**
+     * Returns an {@link OutputStream} that writes to the given stream of a log file. The Avro file writer
+     * must write the header of the log file to the returned stream, so that the sync marker of the file, which is
+     * at the end of the header, can be captured.
+     */
+    public OutputStream wrap(OutputStream outputStream) {
+      return new FilterOutputStream(outputStream) {
+        private final byte[] lastBytes = new byte[SYNC_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          if (syncMarker == null) {
+            System.arraycopy(lastBytes, 1, lastBytes, 0, SYNC_SIZE - 1);
+            lastBytes[SYNC_SIZE - 1] = (byte) b;
+            count++;
+          }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          if (syncMarker == null) {
+            int copied = Math.min(len, SYNC_SIZE);
+            System.arraycopy(lastBytes, copied, lastBytes, 0, SYNC_SIZE - copied);
+            System.arraycopy(b, off + len - copied, lastBytes, SYNC_SIZE - copied, copied);
+            count += len;
+          }
+        }
+
+        @Override
+        public void flush() throws IOException {
+          out.flush();
+          if (syncMarker == null && count >= SYNC_SIZE) {
+            syncMarker = lastBytes;
+          }
+        }
+      };
+    }
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param timestamp the largest timestamp of the events written to the log file before the given position
+     * @param position position of a block in the log file
+     */
+    public void add(long timestamp, long position) {
+      entries.writeLong(timestamp);
+      entries.writeLong(position);
+      size++;
+    }
+
+    /**
+     * Writes the index as the last block of the log file. All blocks of log events must have been flushed to the
+     * given stream.
+     *
+     * @param outputStream the stream given to {@link #wrap(OutputStream)}
+     */
+    public void write(OutputStream outputStream) throws IOException {
+      Preconditions.checkState(syncMarker != null, "Header of the log file was not flushed");
+      ByteArrayDataOutput data = ByteStreams.newDataOutput();
+      data.write(entries.toByteArray());
+      data.writeLong(size);
+      data.write(MAGIC);
+      byte[] bytes = data.toByteArray();
+
+      BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+      encoder.writeLong(0L);
+      encoder.writeLong(bytes.length);
+      encoder.writeFixed(bytes);
+      encoder.writeFixed(syncMarker);
+      encoder.flush();
+    }
+  }
+}
@@ -20,6 +20,9 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.MetricsDistribution;
+import co.cask.cdap.api.metrics.MetricsGauge;
 import co.cask.cdap.common.conf.Constants;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -36,6 +39,8 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -43,15 +48,24 @@ import java.util.concurrent.TimeUnit;
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ * <p>
+ * Emitters are grouped by the tags of the context. A {@link MetricsContext} keeps a reference to the group of its
+ * tags, and {@link MetricsCounter}, {@link MetricsGauge} and {@link MetricsDistribution} keep a reference to the
+ * emitter of their metric, so that updating a metric doesn't need to look up the tags. Emitters and groups that
+ * have not been updated for a minute are removed when metrics are collected, and contexts and bound metrics
+ * holding a removed one look it up again on the next update.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractScheduledService
                                                          implements MetricsCollectionService {
 
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
   private static final long CACHE_EXPIRE_MINUTES = 1;
+  // Number of consecutive collections without update after which an emitter is removed
+  private static final long MAX_IDLE_EMITS =
+    TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_MINUTES) / Constants.MetricsCollector.DEFAULT_FREQUENCY_SECONDS;
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, EmitterGroup> emitters;
 
   private ScheduledExecutorService executorService;
 
@@ -60,24 +74,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
 
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.emitters = new ConcurrentHashMap<>();
   }
 
   /**
@@ -145,27 +142,33 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final Iterator<EmitterGroup> iterator = emitters.values().iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
+          EmitterGroup group = iterator.next();
+          Map<String, AggregatedMetricsEmitter> metricEmitters = group.emitters;
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
           for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
+            AggregatedMetricsEmitter emitter = emitterEntry.getValue();
+            MetricValue metricValue = emitter.emit();
+            emitter.emitDistribution(metricValues);
             // skip increment by 0
             if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+              if (emitter.getIdleEmits() >= MAX_IDLE_EMITS && metricEmitters.remove(emitterEntry.getKey(), emitter)) {
+                emitter.setRemoved();
+              }
               continue;
             }
             metricValues.add(metricValue);
           }
 
+          if (metricEmitters.isEmpty() && emitters.remove(group.tags, group)) {
+            group.setRemoved();
+          }
+
           if (metricValues.isEmpty()) {
             // skip if there are no metric values to send
             continue;
@@ -175,13 +178,28 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(group.tags, timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
+  /**
+   * Returns the {@link EmitterGroup} of the given tags, creating it if it doesn't exist.
+   */
+  private EmitterGroup getEmitterGroup(Map<String, String> tags) {
+    EmitterGroup group = emitters.get(tags);
+    if (group == null) {
+      group = new EmitterGroup(tags);
+      EmitterGroup existing = emitters.putIfAbsent(tags, group);
+      if (existing != null) {
+        group = existing;
+      }
+    }
+    return group;
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -194,19 +212,36 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private volatile EmitterGroup group;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.group = getEmitterGroup(this.tags);
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      getEmitter(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getEmitter(metricName).gauge(value);
+    }
+
+    @Override
+    public MetricsCounter getCounter(String metricName) {
+      return new BoundMetric(this, metricName);
+    }
+
+    @Override
+    public MetricsGauge getGauge(String metricName) {
+      return new BoundMetric(this, metricName);
+    }
+
+    @Override
+    public MetricsDistribution getDistribution(String metricName) {
+      return new BoundMetric(this, metricName);
     }
 
     @Override
@@ -232,5 +267,99 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       allTags.putAll(tags);
       return collectors.getUnchecked(allTags);
     }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      EmitterGroup group = this.group;
+      if (group.isRemoved()) {
+        group = getEmitterGroup(tags);
+        this.group = group;
+      }
+      return group.getEmitter(metricName);
+    }
+  }
+
+  /**
+   * The emitters of all metrics of the contexts with the same tags.
+   */
+  private static final class EmitterGroup {
+
+    private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    private volatile boolean removed;
+
+    private EmitterGroup(Map<String, String> tags) {
+      this.tags = tags;
+      this.emitters = new ConcurrentHashMap<>();
+    }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      if (emitter == null) {
+        emitter = new AggregatedMetricsEmitter(metricName);
+        AggregatedMetricsEmitter existing = emitters.putIfAbsent(metricName, emitter);
+        if (existing != null) {
+          emitter = existing;
+        }
+      }
+      if (removed) {
+        // The group was removed concurrently, which may have missed the emitter when marking them as removed
+        emitter.setRemoved();
+      }
+      return emitter;
+    }
+
+    private boolean isRemoved() {
+      return removed;
+    }
+
+    private void setRemoved() {
+      removed = true;
+      // An emitter may have been added after the group was found empty. Mark them as removed too, so that
+      // bound metrics holding them look them up again.
+      for (AggregatedMetricsEmitter emitter : emitters.values()) {
+        emitter.setRemoved();
+      }
+    }
+  }
+
+  /**
+   * A {@link MetricsCounter}, {@link MetricsGauge} and {@link MetricsDistribution} that updates the emitter of
+   * a metric directly.
+   */
+  private static final class BoundMetric implements MetricsCounter, MetricsGauge, MetricsDistribution {
+
+    private final MetricsContextImpl context;
+    private final String metricName;
+    private volatile AggregatedMetricsEmitter emitter;
+
+    private BoundMetric(MetricsContextImpl context, String metricName) {
+      this.context = context;
+      this.metricName = metricName;
+      this.emitter = context.getEmitter(metricName);
+    }
+
+    @Override
+    public void increment(long value) {
+      getEmitter().increment(value);
+    }
+
+    @Override
+    public void set(long value) {
+      getEmitter().gauge(value);
+    }
+
+    @Override
+    public void record(long value) {
+      getEmitter().distribution(value);
+    }
+
+    private AggregatedMetricsEmitter getEmitter() {
+      AggregatedMetricsEmitter emitter = this.emitter;
+      if (emitter.isRemoved()) {
+        emitter = context.getEmitter(metricName);
+        this.emitter = emitter;
+      }
+      return emitter;
+    }
   }
 }
@@ -15,26 +15,43 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.metrics.DistributionBuckets;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ * <p>
+ * Increments are aggregated in a {@link StripedCounter}, and the last gauged value is kept in a single reference,
+ * so that the value and the type of the metric are taken and reset together when emitting. As when the value was
+ * kept in a single counter, gauging replaces the increments made before it, and increments made after it are added
+ * to the gauged value.
+ * <p>
+ * Values recorded in the distribution of the metric are counted in the buckets defined by
+ * {@link DistributionBuckets}, which are emitted separately with {@link #emitDistribution(Collection)}.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
-  // specifies if the metric type is gauge or counter
-  private final AtomicBoolean gaugeUsed;
+  // sum of increments
+  private final StripedCounter counter;
+  // last gauged value, or null if the metric was not gauged since the last emit
+  private final AtomicReference<Long> gaugeValue;
+  // count of each distribution bucket, created when the first value is recorded in the distribution
+  private volatile AtomicLongArray bucketCounts;
+  // names of the bucket metrics, only accessed by the emitting thread
+  private String[] bucketNames;
+  // number of consecutive emits without any update, only accessed by the emitting thread
+  private int idleEmits;
+  private volatile boolean removed;
 
   public AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +59,94 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
-    this.gaugeUsed = new AtomicBoolean(false);
+    this.counter = new StripedCounter();
+    this.gaugeValue = new AtomicReference<>();
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    counter.add(value);
   }
 
+  public void gauge(long value) {
+    counter.sumThenReset();
+    gaugeValue.set(value);
+  }
+
+  void distribution(long value) {
+    AtomicLongArray bucketCounts = this.bucketCounts;
+    if (bucketCounts == null) {
+      bucketCounts = createBucketCounts();
+    }
+    bucketCounts.incrementAndGet(DistributionBuckets.getBucket(value));
+  }
 
   @Override
   public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    Long gauge = gaugeValue.getAndSet(null);
+    long value = counter.sumThenReset();
+    if (gauge == null) {
+      idleEmits = value == 0 ? idleEmits + 1 : 0;
+      return new MetricValue(name, MetricType.COUNTER, value);
+    }
+    idleEmits = 0;
+    return new MetricValue(name, MetricType.GAUGE, gauge + value);
   }
 
-  public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+  /**
+   * Adds a {@link MetricType#DISTRIBUTION} value for each bucket of the distribution that had values recorded
+   * since the last call, and resets the distribution.
+   *
+   * @return number of values added
+   */
+  int emitDistribution(Collection<MetricValue> values) {
+    AtomicLongArray bucketCounts = this.bucketCounts;
+    if (bucketCounts == null) {
+      return 0;
+    }
+    if (bucketNames == null) {
+      bucketNames = new String[DistributionBuckets.BUCKETS];
+    }
+    int added = 0;
+    for (int bucket = 0; bucket < DistributionBuckets.BUCKETS; bucket++) {
+      long count = bucketCounts.getAndSet(bucket, 0);
+      if (count == 0) {
+        continue;
+      }
+      if (bucketNames[bucket] == null) {
+        bucketNames[bucket] = DistributionBuckets.getBucketMetricName(name, bucket);
+      }
+      values.add(new MetricValue(bucketNames[bucket], MetricType.DISTRIBUTION, count));
+      added++;
+    }
+    if (added > 0) {
+      idleEmits = 0;
+    }
+    return added;
+  }
+
+  /**
+   * Returns the number of consecutive collections, each being a call to {@link #emit()} followed by a call to
+   * {@link #emitDistribution(Collection)}, that had no value to emit.
+   */
+  int getIdleEmits() {
+    return idleEmits;
+  }
+
+  /**
+   * Returns {@code true} if this emitter is no longer collected, in which case it shouldn't be updated anymore.
+   */
+  boolean isRemoved() {
+    return removed;
+  }
+
+  void setRemoved() {
+    removed = true;
+  }
+
+  private synchronized AtomicLongArray createBucketCounts() {
+    if (bucketCounts == null) {
+      bucketCounts = new AtomicLongArray(DistributionBuckets.BUCKETS);
+    }
+    return bucketCounts;
   }
 }
@@ -25,6 +25,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Iterator;
 import java.util.concurrent.Executors;
@@ -33,11 +35,13 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link co.cask.cdap.api.metrics.MetricsCollectionService} that writes to MetricsTable directly.
- * It also has a scheduling job that clean up old metrics periodically.
+ * It also has scheduling jobs that clean up old metrics and roll up metrics periodically.
  */
 @Singleton
 public final class LocalMetricsCollectionService extends AggregatedMetricsCollectionService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(LocalMetricsCollectionService.class);
+
   public static final ImmutableMap<String, String> METRICS_PROCESSOR_CONTEXT =
     ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
                     Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS_PROCESSOR);
@@ -70,6 +74,14 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
 
     // Try right away if there's anything to cleanup, then we'll schedule to do that periodically
     scheduler.schedule(createCleanupTask(retention), 1, TimeUnit.SECONDS);
+
+    // Roll up metrics periodically, if any resolution is configured to be derived from finer ones
+    if (cConf.getTrimmedStrings(Constants.Metrics.ROLLUP_RESOLUTIONS).length > 0) {
+      long rollupInterval = cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS,
+                                          Constants.Metrics.DEFAULT_ROLLUP_INTERVAL_SECONDS);
+      scheduler.scheduleWithFixedDelay(createRollupTask(rollupInterval), rollupInterval, rollupInterval,
+                                       TimeUnit.SECONDS);
+    }
   }
 
   @Override
@@ -101,4 +113,21 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
       }
     };
   }
+
+  /**
+   * Creates a task for rolling up metrics.
+   * @param interval Interval between roll ups in seconds.
+   */
+  private Runnable createRollupTask(final long interval) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          metricStore.rollup();
+        } catch (Throwable t) {
+          LOG.warn("Failed to roll up metrics, will retry in {} seconds.", interval, t);
+        }
+      }
+    };
+  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that stays cheap to update from many threads at the same time. It starts as a single
+ * {@link AtomicLong}, and switches to a set of cells, each in its own cache line, the first time two threads
+ * contend on it. Each thread then updates the cell picked by its thread id, so that threads don't invalidate
+ * each other's cache lines on every update. Counters that are only updated by one thread stay a single long.
+ * <p>
+ * The value is read and reset with {@link #sumThenReset()}, which atomically takes the value of every cell.
+ * Each update is therefore counted by exactly one call of it, even with concurrent updates.
+ */
+final class StripedCounter {
+
+  // Number of longs per cell, so that each cell is in its own 64 bytes cache line
+  private static final int PADDING = 8;
+  private static final int CELLS = cellCount(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong base = new AtomicLong();
+  private volatile AtomicLongArray cells;
+
+  void add(long value) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long current = base.get();
+      if (base.compareAndSet(current, current + value)) {
+        return;
+      }
+      cells = createCells();
+    }
+    cells.getAndAdd(cellIndex(), value);
+  }
+
+  /**
+   * Returns the sum of all updates since the last call of this method and resets the counter to zero.
+   */
+  long sumThenReset() {
+    long sum = base.getAndSet(0);
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.getAndSet(i, 0);
+      }
+    }
+    return sum;
+  }
+
+  private synchronized AtomicLongArray createCells() {
+    if (cells == null) {
+      cells = new AtomicLongArray(CELLS * PADDING);
+    }
+    return cells;
+  }
+
+  private static int cellIndex() {
+    // Thread ids are assigned sequentially, so threads created together get different cells
+    long id = Thread.currentThread().getId();
+    return ((int) (id ^ (id >>> 32)) & (CELLS - 1)) * PADDING;
+  }
+
+  /**
+   * Returns the smallest power of two that is at least the number of processors, but no more than 64.
+   */
+  private static int cellCount(int processors) {
+    int count = 1;
+    while (count < processors && count < 64) {
+      count <<= 1;
+    }
+    return count;
+  }
+}
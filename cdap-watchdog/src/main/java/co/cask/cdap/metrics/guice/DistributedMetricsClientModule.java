@@ -42,11 +42,26 @@ import com.google.inject.name.Named;
  */
 public final class DistributedMetricsClientModule extends PrivateModule {
 
+  private final boolean bindMetricStore;
+
+  public DistributedMetricsClientModule() {
+    this(true);
+  }
+
+  /**
+   * @param bindMetricStore whether to bind the {@link MetricStore}, which requires the dataset framework
+   */
+  DistributedMetricsClientModule(boolean bindMetricStore) {
+    this.bindMetricStore = bindMetricStore;
+  }
+
   @Override
   protected void configure() {
-    bind(MetricDatasetFactory.class).to(DefaultMetricDatasetFactory.class).in(Scopes.SINGLETON);
-    bind(MetricStore.class).to(DefaultMetricStore.class);
-    expose(MetricStore.class);
+    if (bindMetricStore) {
+      bind(MetricDatasetFactory.class).to(DefaultMetricDatasetFactory.class).in(Scopes.SINGLETON);
+      bind(MetricStore.class).to(DefaultMetricStore.class);
+      expose(MetricStore.class);
+    }
     bind(MetricsCollectionService.class).to(KafkaMetricsCollectionService.class).in(Scopes.SINGLETON);
     expose(MetricsCollectionService.class);
   }
@@ -69,6 +69,14 @@ public final class MetricsClientRuntimeModule extends RuntimeModule {
     return new DistributedMetricsClientModule();
   }
 
+  /**
+   * Returns a module that binds only the MetricsCollectionService for distributed mode, for processes that emit
+   * metrics without querying them, hence without the dataset framework that the MetricStore requires.
+   */
+  public Module getDistributedCollectionModules() {
+    return new DistributedMetricsClientModule(false);
+  }
+
   /**
    * Returns a module that bind MetricsCollectionService to a noop one.
    */
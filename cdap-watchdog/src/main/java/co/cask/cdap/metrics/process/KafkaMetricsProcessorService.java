@@ -16,7 +16,9 @@
 
 package co.cask.cdap.metrics.process;
 
+import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
@@ -24,6 +26,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.name.Named;
 import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.apache.twill.kafka.client.KafkaClientService;
 import org.apache.twill.kafka.client.KafkaConsumer;
 import org.apache.twill.kafka.client.TopicPartition;
@@ -31,6 +34,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -47,6 +52,9 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
   private final Set<Integer> partitions;
   private Cancellable unsubscribe;
   private final MetricDatasetFactory metricDatasetFactory;
+  private final MetricStore metricStore;
+  private final CConfiguration cConf;
+  private ScheduledExecutorService rollupExecutor;
 
   @Nullable
   private MetricsContext metricsContext;
@@ -59,6 +67,8 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
   public KafkaMetricsProcessorService(KafkaClientService kafkaClient,
                                       MetricDatasetFactory metricDatasetFactory,
                                       MessageCallbackFactory callbackFactory,
+                                      MetricStore metricStore,
+                                      CConfiguration cConf,
                                       @Named(Constants.Metrics.KAFKA_TOPIC_PREFIX) String topicPrefix,
                                       @Assisted Set<Integer> partitions) {
     this.kafkaClient = kafkaClient;
@@ -66,6 +76,8 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
     this.topicPrefix = topicPrefix;
     this.partitions = partitions;
     this.metricDatasetFactory = metricDatasetFactory;
+    this.metricStore = metricStore;
+    this.cConf = cConf;
   }
 
   public void setMetricsContext(MetricsContext metricsContext) {
@@ -77,6 +89,28 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
     return this.getClass().getSimpleName();
   }
 
+  @Override
+  protected void startUp() {
+    // Roll up the metrics written by this service periodically, if any resolution is configured to be derived
+    // from finer ones
+    if (cConf.getTrimmedStrings(Constants.Metrics.ROLLUP_RESOLUTIONS).length > 0) {
+      final long rollupInterval = cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS,
+                                                Constants.Metrics.DEFAULT_ROLLUP_INTERVAL_SECONDS);
+      rollupExecutor = Executors.newSingleThreadScheduledExecutor(
+        Threads.createDaemonThreadFactory("metrics-rollup"));
+      rollupExecutor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            metricStore.rollup();
+          } catch (Throwable t) {
+            LOG.warn("Failed to roll up metrics, will retry in {} seconds.", rollupInterval, t);
+          }
+        }
+      }, rollupInterval, rollupInterval, TimeUnit.SECONDS);
+    }
+  }
+
   @Override
   protected void run() {
     LOG.info("Starting Metrics Processing for partitions {}.", partitions);
@@ -111,6 +145,9 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
     if (unsubscribe != null) {
       unsubscribe.cancel();
     }
+    if (rollupExecutor != null) {
+      rollupExecutor.shutdownNow();
+    }
     LOG.info("Metrics Processing Service stopped.");
   }
 
@@ -165,7 +202,7 @@ public final class KafkaMetricsProcessorService extends AbstractExecutionThreadS
       }
     }
 
-    unsubscribe = preparer.consume(callbackFactory.create(getMetaTable(), metricsContext));
+    unsubscribe = preparer.consume(callbackFactory.create(getMetaTable(), metricsContext, metricStore));
     LOG.info("Consumer created for topic {}, partitions {}", topic, partitions);
     return true;
   }
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.metrics.process;
 
+import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricsContext;
 import org.apache.twill.kafka.client.KafkaConsumer;
 
@@ -24,5 +25,6 @@ import org.apache.twill.kafka.client.KafkaConsumer;
  */
 public interface MessageCallbackFactory {
 
-  KafkaConsumer.MessageCallback create(KafkaConsumerMetaTable metaTable, MetricsContext metricsContext);
+  KafkaConsumer.MessageCallback create(KafkaConsumerMetaTable metaTable, MetricsContext metricsContext,
+                                       MetricStore metricStore);
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines {@link MetricValues} that have the same tags and timestamp into one, so that the metric store
+ * writes one fact per metric for them, instead of one fact per emitted value.
+ * <p>
+ * Values of the same metric are combined the same way the metric store applies them in a single write, which
+ * puts gauges before applying increments: counters and distribution buckets are summed, and if there is a gauge,
+ * the metric becomes a gauge of the last gauge value plus that sum. Records are returned in the order their tags
+ * and timestamp first appeared.
+ * <p>
+ * This class is not thread safe.
+ */
+final class MetricValuesCombiner {
+
+  private final Map<TagsAndTimestamp, Map<String, CombinedValue>> combined = Maps.newLinkedHashMap();
+  private int inputCount;
+  private int outputCount;
+
+  /**
+   * Adds the values of the given record.
+   */
+  void add(MetricValues record) {
+    TagsAndTimestamp key = new TagsAndTimestamp(record.getTags(), record.getTimestamp());
+    Map<String, CombinedValue> values = combined.get(key);
+    if (values == null) {
+      values = Maps.newLinkedHashMap();
+      combined.put(key, values);
+    }
+    for (MetricValue value : record.getMetrics()) {
+      inputCount++;
+      CombinedValue combinedValue = values.get(value.getName());
+      if (combinedValue == null) {
+        combinedValue = new CombinedValue(value.getType());
+        values.put(value.getName(), combinedValue);
+        outputCount++;
+      }
+      combinedValue.add(value);
+    }
+  }
+
+  /**
+   * Returns the number of metric values added.
+   */
+  int getInputCount() {
+    return inputCount;
+  }
+
+  /**
+   * Returns the number of metric values after combining.
+   */
+  int getOutputCount() {
+    return outputCount;
+  }
+
+  boolean isEmpty() {
+    return combined.isEmpty();
+  }
+
+  /**
+   * Returns the combined records.
+   */
+  List<MetricValues> getCombined() {
+    List<MetricValues> records = Lists.newArrayListWithCapacity(combined.size());
+    for (Map.Entry<TagsAndTimestamp, Map<String, CombinedValue>> entry : combined.entrySet()) {
+      ImmutableList.Builder<MetricValue> values = ImmutableList.builder();
+      for (Map.Entry<String, CombinedValue> valueEntry : entry.getValue().entrySet()) {
+        values.add(valueEntry.getValue().toMetricValue(valueEntry.getKey()));
+      }
+      TagsAndTimestamp key = entry.getKey();
+      records.add(new MetricValues(key.tags, key.timestamp, values.build()));
+    }
+    return records;
+  }
+
+  /**
+   * Key of records that can be combined.
+   */
+  private static final class TagsAndTimestamp {
+    private final Map<String, String> tags;
+    private final long timestamp;
+    private final int hashCode;
+
+    TagsAndTimestamp(Map<String, String> tags, long timestamp) {
+      this.tags = tags;
+      this.timestamp = timestamp;
+      this.hashCode = 31 * tags.hashCode() + (int) (timestamp ^ (timestamp >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      TagsAndTimestamp other = (TagsAndTimestamp) o;
+      return timestamp == other.timestamp && hashCode == other.hashCode && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The combined value of one metric.
+   */
+  private static final class CombinedValue {
+    private MetricType type;
+    private long gauge;
+    private long increment;
+
+    CombinedValue(MetricType type) {
+      this.type = type;
+    }
+
+    void add(MetricValue metricValue) {
+      if (metricValue.getType() == MetricType.GAUGE) {
+        type = MetricType.GAUGE;
+        gauge = metricValue.getValue();
+      } else {
+        increment += metricValue.getValue();
+      }
+    }
+
+    MetricValue toMetricValue(String name) {
+      return new MetricValue(name, type, type == MetricType.GAUGE ? gauge + increment : increment);
+    }
+  }
+}
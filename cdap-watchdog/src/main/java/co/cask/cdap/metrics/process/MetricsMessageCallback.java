@@ -21,11 +21,10 @@ import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
-import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.internal.io.DatumReader;
-import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import org.apache.twill.kafka.client.FetchedMessage;
 import org.apache.twill.kafka.client.KafkaConsumer;
 import org.slf4j.Logger;
@@ -41,7 +40,8 @@ import javax.annotation.Nullable;
 
 /**
  * A {@link KafkaConsumer.MessageCallback} that decodes message into {@link co.cask.cdap.api.metrics.MetricValues}
- * and stores it in {@link MetricStore}.
+ * and stores it in {@link MetricStore}. Records of a fetched batch with the same tags and timestamp are combined
+ * with {@link MetricValuesCombiner} before being stored.
  */
 public final class MetricsMessageCallback implements KafkaConsumer.MessageCallback {
 
@@ -66,27 +66,32 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
 
   @Override
   public void onReceived(Iterator<FetchedMessage> messages) {
-    // Decode the metrics records.
-    final ByteBufferInputStream is = new ByteBufferInputStream(null);
-    List<MetricValues> records = Lists.newArrayList();
+    // Decode the metrics records, combining the ones with the same tags and timestamp.
+    ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffers.EMPTY_BUFFER);
+    MetricValuesCombiner combiner = new MetricValuesCombiner();
+    int count = 0;
+    long lastTimestamp = 0;
 
     while (messages.hasNext()) {
       FetchedMessage input = messages.next();
       try {
-        MetricValues metricValues = recordReader.read(new BinaryDecoder(is.reset(input.getPayload())), recordSchema);
-        records.add(metricValues);
+        MetricValues metricValues = recordReader.read(decoder.reset(input.getPayload()), recordSchema);
+        combiner.add(metricValues);
+        count++;
+        lastTimestamp = metricValues.getTimestamp();
       } catch (IOException e) {
         LOG.info("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
       }
     }
 
-    if (records.isEmpty()) {
+    if (combiner.isEmpty()) {
       LOG.info("No records to process.");
       return;
     }
 
+    List<MetricValues> records = combiner.getCombined();
     try {
-      addProcessingStats(records);
+      addProcessingStats(records, count, lastTimestamp, combiner);
       metricStore.add(records);
     } catch (Exception e) {
       String msg = "Failed to add metrics data to a store";
@@ -95,24 +100,26 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
       throw new RuntimeException(msg, e);
     }
 
-    recordProcessed += records.size();
+    recordProcessed += count;
     if (recordProcessed % 1000 == 0) {
       LOG.info("{} metrics records processed", recordProcessed);
-      LOG.info("Last record time: {}", records.get(records.size() - 1).getTimestamp());
+      LOG.info("Last record time: {}", lastTimestamp);
     }
   }
 
-  private void addProcessingStats(List<MetricValues> records) {
-    if (records.isEmpty()) {
-      return;
-    }
-    int count = records.size();
+  private void addProcessingStats(List<MetricValues> records, int count, long lastTimestamp,
+                                  MetricValuesCombiner combiner) {
     long now = System.currentTimeMillis();
-    long delay = now - TimeUnit.SECONDS.toMillis(records.get(records.size() - 1).getTimestamp());
+    long delay = now - TimeUnit.SECONDS.toMillis(lastTimestamp);
+    // The ratio of combined to processed values is the fraction of metric store writes saved by combining
     records.add(
       new MetricValues(metricsContext, TimeUnit.MILLISECONDS.toSeconds(now),
                        ImmutableList.of(new MetricValue("metrics.process.count", MetricType.COUNTER, count),
-                                        new MetricValue("metrics.process.delay.ms", MetricType.GAUGE, delay))));
+                                        new MetricValue("metrics.process.delay.ms", MetricType.GAUGE, delay),
+                                        new MetricValue("metrics.process.values.count", MetricType.COUNTER,
+                                                        combiner.getInputCount()),
+                                        new MetricValue("metrics.process.values.combined.count", MetricType.COUNTER,
+                                                        combiner.getInputCount() - combiner.getOutputCount()))));
   }
 
   @Override
@@ -38,18 +38,15 @@ public final class MetricsMessageCallbackFactory implements MessageCallbackFacto
 
   private final DatumReader<MetricValues> datumReader;
   private final Schema recordSchema;
-  private final MetricStore metricStore;
   private final int persistThreshold;
 
   @Inject
   public MetricsMessageCallbackFactory(SchemaGenerator schemaGenerator, DatumReaderFactory readerFactory,
-                                       MetricStore metricStore,
                                        @Named(Constants.Metrics.KAFKA_CONSUMER_PERSIST_THRESHOLD)
                                        int persistThreshold) {
     try {
       this.recordSchema = schemaGenerator.generate(MetricValues.class);
       this.datumReader = readerFactory.create(TypeToken.of(MetricValues.class), recordSchema);
-      this.metricStore = metricStore;
       this.persistThreshold = persistThreshold;
 
     } catch (UnsupportedTypeException e) {
@@ -58,7 +55,8 @@ public final class MetricsMessageCallbackFactory implements MessageCallbackFacto
   }
 
   @Override
-  public KafkaConsumer.MessageCallback create(KafkaConsumerMetaTable metaTable, MetricsContext metricsContext) {
+  public KafkaConsumer.MessageCallback create(KafkaConsumerMetaTable metaTable, MetricsContext metricsContext,
+                                              MetricStore metricStore) {
     metricStore.setMetricsContext(metricsContext);
     return new PersistedMessageCallback(
       new MetricsMessageCallback(datumReader, recordSchema, metricStore, metricsContext), metaTable, persistThreshold);
@@ -25,12 +25,14 @@ import co.cask.cdap.api.metrics.MetricSearchQuery;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricTimeSeries;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.proto.MetricQueryRequest;
 import co.cask.cdap.proto.MetricQueryResult;
 import co.cask.cdap.proto.MetricTagValue;
 import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
@@ -44,6 +46,7 @@ import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -54,6 +57,9 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.ws.rs.POST;
@@ -79,10 +85,13 @@ public class MetricsHandler extends AbstractHttpHandler {
   private static final String PARAM_MAX_INTERPOLATE_GAP = "maxInterpolateGap";
   private static final String PARAM_AGGREGATE = "aggregate";
   private static final String PARAM_AUTO_RESOLUTION = "auto";
+  private static final String PARAM_SERIES_LIMIT = "seriesLimit";
 
   public static final String ANY_TAG_VALUE = "*";
 
   private final MetricStore metricStore;
+  private final CConfiguration cConf;
+  private ExecutorService queryExecutor;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -127,8 +136,27 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   @Inject
-  public MetricsHandler(MetricStore metricStore) {
+  public MetricsHandler(MetricStore metricStore, CConfiguration cConf) {
     this.metricStore = metricStore;
+    this.cConf = cConf;
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    int queryThreads = cConf.getInt(Constants.Metrics.QUERY_THREADS, Constants.Metrics.DEFAULT_QUERY_THREADS);
+    // Threads are only created for batch queries, and terminate when idle
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(queryThreads, queryThreads, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("metrics-query-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    queryExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    queryExecutor.shutdownNow();
+    super.destroy(context);
   }
 
   @POST
@@ -200,10 +228,21 @@ public class MetricsHandler extends AbstractHttpHandler {
 
         LOG.trace("Received Queries {}", queries);
 
-        Map<String, MetricQueryResult> queryFinalResponse = Maps.newHashMap();
+        // The queries are executed together, so that they can be executed in parallel
+        List<String> queryIds = Lists.newArrayListWithCapacity(queries.size());
+        List<MetricQueryRequest> queryRequests = Lists.newArrayListWithCapacity(queries.size());
+        List<MetricDataQuery> dataQueries = Lists.newArrayListWithCapacity(queries.size());
         for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
           MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
-          queryFinalResponse.put(query.getKey(), executeQuery(queryRequest));
+          queryIds.add(query.getKey());
+          queryRequests.add(queryRequest);
+          dataQueries.add(toMetricDataQuery(queryRequest));
+        }
+        List<Collection<MetricTimeSeries>> queryResults = metricStore.query(dataQueries, queryExecutor);
+
+        Map<String, MetricQueryResult> queryFinalResponse = Maps.newHashMap();
+        for (int i = 0; i < queryIds.size(); i++) {
+          queryFinalResponse.put(queryIds.get(i), decorate(queryRequests.get(i), queryResults.get(i)));
         }
         responder.sendJson(HttpResponseStatus.OK, queryFinalResponse);
       } catch (IllegalArgumentException e) {
@@ -228,6 +267,9 @@ public class MetricsHandler extends AbstractHttpHandler {
     MetricQueryRequest queryRequest = new MetricQueryRequest(queryRequestFormat.getTags(),
                                                  queryRequestFormat.getMetrics(), queryRequestFormat.getGroupBy());
     setTimeRangeInQueryRequest(queryRequest, queryParams);
+    if (queryRequestFormat.getSeriesLimit() != null) {
+      queryRequest.setSeriesLimit(getSeriesLimit(queryRequestFormat.getSeriesLimit()));
+    }
     return queryRequest;
   }
 
@@ -247,10 +289,21 @@ public class MetricsHandler extends AbstractHttpHandler {
   private MetricQueryResult executeQuery(HttpRequest request, Map<String, String> sliceByTags,
                                          List<String> groupByTags, List<String> metrics) throws Exception {
     MetricQueryRequest queryRequest = new MetricQueryRequest(sliceByTags, metrics, groupByTags);
-    setTimeRangeInQueryRequest(queryRequest, new QueryStringDecoder(request.getUri()).getParameters());
+    Map<String, List<String>> queryParams = new QueryStringDecoder(request.getUri()).getParameters();
+    setTimeRangeInQueryRequest(queryRequest, queryParams);
+    if (queryParams.containsKey(PARAM_SERIES_LIMIT)) {
+      queryRequest.setSeriesLimit(getSeriesLimit(Integer.parseInt(queryParams.get(PARAM_SERIES_LIMIT).get(0))));
+    }
     return executeQuery(queryRequest);
   }
 
+  private int getSeriesLimit(int seriesLimit) {
+    if (seriesLimit < 0) {
+      throw new IllegalArgumentException("Series limit must not be negative: " + seriesLimit);
+    }
+    return seriesLimit;
+  }
+
   private void setTimeRangeInQueryRequest(MetricQueryRequest request, Map<String, List<String>> queryTimeParams) {
     Long start =
       queryTimeParams.containsKey(PARAM_START_TIME) ?
@@ -326,6 +379,10 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   private MetricQueryResult executeQuery(MetricQueryRequest queryRequest) throws Exception {
+    return decorate(queryRequest, metricStore.query(toMetricDataQuery(queryRequest)));
+  }
+
+  private MetricDataQuery toMetricDataQuery(MetricQueryRequest queryRequest) {
     if (queryRequest.getMetrics().size() == 0) {
       throw new IllegalArgumentException("Missing metrics parameter in the query");
     }
@@ -334,13 +391,16 @@ public class MetricsHandler extends AbstractHttpHandler {
 
     MetricQueryRequest.TimeRange timeRange = queryRequest.getTimeRange();
 
-    MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
-                                                timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
-                                                tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
-                                                timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    return new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
+                               timeRange.getResolutionInSeconds(),
+                               timeRange.getCount(), queryRequest.getSeriesLimit(),
+                               toMetrics(queryRequest.getMetrics()),
+                               tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
+                               timeRange.getInterpolate());
+  }
 
+  private MetricQueryResult decorate(MetricQueryRequest queryRequest, Collection<MetricTimeSeries> queryResult) {
+    MetricQueryRequest.TimeRange timeRange = queryRequest.getTimeRange();
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
       // for aggregate query, we set the end time to be query time (current time)
@@ -504,6 +564,7 @@ public class MetricsHandler extends AbstractHttpHandler {
     List<String> metrics;
     List<String> groupBy;
     Map<String, String> timeRange;
+    Integer seriesLimit;
 
     public Map<String, String> getTags() {
       tags = (tags == null) ? Maps.<String, String>newHashMap() : tags;
@@ -530,5 +591,10 @@ public class MetricsHandler extends AbstractHttpHandler {
       timeRange = (timeRange == null || timeRange.size() == 0) ? ImmutableMap.of("aggregate", "true") : timeRange;
       return timeRange;
     }
+
+    @Nullable
+    public Integer getSeriesLimit() {
+      return seriesLimit;
+    }
   }
 }
@@ -114,6 +114,13 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
     }
   }
 
+  @Override
+  public MetricsTable getOrCreateRollupMetaTable() {
+    // shares the table with the kafka consumer offsets, which don't collide with the rollup keys
+    String tableName = cConf.get(Constants.Metrics.KAFKA_META_TABLE, Constants.Metrics.DEFAULT_KAFKA_META_TABLE);
+    return getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY);
+  }
+
   private MetricsTable getOrCreateMetricsTable(String tableName, DatasetProperties props) {
     MetricsTable table = null;
     // metrics tables are in the system namespace
@@ -16,7 +16,7 @@
 
 package co.cask.cdap.metrics.store;
 
-import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
@@ -25,6 +25,8 @@ import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
 import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.DistributionBuckets;
 import co.cask.cdap.api.metrics.MetricDataQuery;
 import co.cask.cdap.api.metrics.MetricDeleteQuery;
 import co.cask.cdap.api.metrics.MetricSearchQuery;
@@ -35,6 +37,7 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.AggregationAlias;
@@ -43,6 +46,7 @@ import co.cask.cdap.data2.dataset2.lib.cube.DefaultCube;
 import co.cask.cdap.data2.dataset2.lib.cube.FactTableSupplier;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
@@ -50,20 +54,27 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 
 /**
  * Default implementation of {@link MetricStore}.
  */
 public class DefaultMetricStore implements MetricStore {
+
   public static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
   static final Map<String, Aggregation> AGGREGATIONS;
 
@@ -85,7 +96,7 @@ public class DefaultMetricStore implements MetricStore {
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
   private final int resolutions[];
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private MetricsContext metricsContext;
 
 
@@ -198,13 +209,18 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Inject
-  public DefaultMetricStore(final MetricDatasetFactory dsFactory) {
+  public DefaultMetricStore(MetricDatasetFactory dsFactory, CConfiguration cConf) {
     // 1 sec, 1 min, 1 hour and "all time totals"
-    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION});
+    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION}, cConf);
   }
 
   // NOTE: should never be used apart from data migration during cdap upgrade
-  public DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[]) {
+  public DefaultMetricStore(MetricDatasetFactory dsFactory, int resolutions[]) {
+    this(dsFactory, resolutions, null);
+  }
+
+  private DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[],
+                             @Nullable CConfiguration cConf) {
     this.resolutions = resolutions;
     final FactTableSupplier factTableSupplier = new FactTableSupplier() {
       @Override
@@ -213,11 +229,37 @@ public class DefaultMetricStore implements MetricStore {
         return dsFactory.getOrCreateFactTable(resolution);
       }
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+
+    final int[] rollupResolutions = getRollupResolutions(cConf);
+    final long rollupDelaySeconds = cConf == null ? 0 : cConf.getLong(Constants.Metrics.ROLLUP_DELAY_SECONDS,
+                                                                      Constants.Metrics.DEFAULT_ROLLUP_DELAY_SECONDS);
+    long rollupIntervalSeconds = cConf == null ? 0 : cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS,
+                                                                   Constants.Metrics.DEFAULT_ROLLUP_INTERVAL_SECONDS);
+    final long queryCacheMaxValues = cConf == null ? 0 : cConf.getLong(
+      Constants.Metrics.QUERY_CACHE_MAX_VALUES, Constants.Metrics.DEFAULT_QUERY_CACHE_MAX_VALUES);
+    long mutableSeconds = cConf == null ? 0 : cConf.getLong(Constants.Metrics.QUERY_CACHE_MUTABLE_SECONDS,
+                                                            Constants.Metrics.DEFAULT_QUERY_CACHE_MUTABLE_SECONDS);
+    if (rollupResolutions.length > 0) {
+      // Rolled up resolutions keep changing until their windows are rolled up, which can take a pass per resolution
+      int maxResolution = rollupResolutions[rollupResolutions.length - 1];
+      mutableSeconds = Math.max(mutableSeconds, maxResolution + rollupDelaySeconds +
+        rollupIntervalSeconds * rollupResolutions.length);
+    }
+    final long queryCacheMutableSeconds = mutableSeconds;
+    final long queryCacheExpireSeconds = cConf == null ? 0 : cConf.getLong(
+      Constants.Metrics.QUERY_CACHE_EXPIRE_SECONDS, Constants.Metrics.DEFAULT_QUERY_CACHE_EXPIRE_SECONDS);
+
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
+      public DefaultCube get() {
         DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
         cube.setMetricsCollector(metricsContext);
+        if (queryCacheMaxValues > 0) {
+          cube.enableQueryCache(queryCacheMaxValues, queryCacheMutableSeconds, queryCacheExpireSeconds);
+        }
+        if (rollupResolutions.length > 0) {
+          cube.enableRollup(rollupResolutions, dsFactory.getOrCreateRollupMetaTable(), rollupDelaySeconds);
+        }
         return cube;
       }
     });
@@ -242,7 +284,8 @@ public class DefaultMetricStore implements MetricStore {
       // todo improve this logic?
       for (MetricValue metric : metricValue.getMetrics()) {
         String measureName = (scope == null ? "system." : scope + ".") + metric.getName();
-        MeasureType type = metric.getType() == MetricType.COUNTER ? MeasureType.COUNTER : MeasureType.GAUGE;
+        // Distribution buckets are counters, so that they are summed up when aggregated
+        MeasureType type = metric.getType() == MetricType.GAUGE ? MeasureType.GAUGE : MeasureType.COUNTER;
         metrics.add(new Measurement(measureName, type, metric.getValue()));
       }
 
@@ -254,25 +297,196 @@ public class DefaultMetricStore implements MetricStore {
     cube.get().add(facts);
   }
 
+  @Override
+  public void rollup() {
+    cube.get().rollup();
+  }
+
+  private static int[] getRollupResolutions(@Nullable CConfiguration cConf) {
+    if (cConf == null) {
+      return new int[0];
+    }
+    String[] values = cConf.getTrimmedStrings(Constants.Metrics.ROLLUP_RESOLUTIONS);
+    int[] resolutions = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      resolutions[i] = Integer.parseInt(values[i]);
+    }
+    Arrays.sort(resolutions);
+    return resolutions;
+  }
+
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
-    Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
+    return query(ImmutableList.of(query), MoreExecutors.sameThreadExecutor()).get(0);
+  }
+
+  @Override
+  public List<Collection<MetricTimeSeries>> query(List<MetricDataQuery> queries, Executor executor) {
+    List<Map<String, String>> percentileDistributions = Lists.newArrayListWithCapacity(queries.size());
+    List<CubeQuery> cubeQueries = Lists.newArrayListWithCapacity(queries.size());
+    for (MetricDataQuery query : queries) {
+      Map<String, String> distributions = getPercentileDistributions(query);
+      percentileDistributions.add(distributions);
+      cubeQueries.add(buildCubeQuery(query, distributions));
+    }
+
+    List<Collection<TimeSeries>> cubeResults = cube.get().query(cubeQueries, executor);
+    List<Collection<MetricTimeSeries>> results = Lists.newArrayListWithCapacity(queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      results.add(toMetricTimeSeries(queries.get(i), percentileDistributions.get(i), cubeResults.get(i)));
+    }
+    return results;
+  }
+
+  /**
+   * Returns the map from the percentile metric names in the given query to the name of their distribution metrics.
+   */
+  private Map<String, String> getPercentileDistributions(MetricDataQuery query) {
+    Map<String, String> percentileDistributions = Maps.newHashMap();
+    for (String metricName : query.getMetrics().keySet()) {
+      String distribution = DistributionBuckets.getPercentileDistribution(metricName);
+      if (distribution != null) {
+        percentileDistributions.put(metricName, distribution);
+      }
+    }
+    return percentileDistributions;
+  }
+
+  private Collection<MetricTimeSeries> toMetricTimeSeries(MetricDataQuery query,
+                                                          Map<String, String> percentileDistributions,
+                                                          Collection<TimeSeries> cubeResult) {
     List<MetricTimeSeries> result = Lists.newArrayList();
+    List<TimeSeries> bucketSeries = Lists.newArrayList();
     for (TimeSeries timeSeries : cubeResult) {
-      result.add(new MetricTimeSeries(timeSeries.getMeasureName(),
-                                      timeSeries.getDimensionValues(),
-                                      timeSeries.getTimeValues()));
+      if (query.getMetrics().containsKey(timeSeries.getMeasureName())) {
+        result.add(new MetricTimeSeries(timeSeries.getMeasureName(),
+                                        timeSeries.getDimensionValues(),
+                                        timeSeries.getTimeValues()));
+      } else {
+        bucketSeries.add(timeSeries);
+      }
+    }
+    if (!percentileDistributions.isEmpty()) {
+      result.addAll(computePercentiles(percentileDistributions, bucketSeries));
     }
     return result;
   }
 
-  private CubeQuery buildCubeQuery(MetricDataQuery query) {
+  /**
+   * Computes percentile time series from the time series of distribution buckets.
+   *
+   * @param percentileDistributions map from the percentile metric names to the name of their distribution metrics
+   * @param bucketSeries time series of the distribution buckets
+   */
+  private List<MetricTimeSeries> computePercentiles(Map<String, String> percentileDistributions,
+                                                    List<TimeSeries> bucketSeries) {
+    // distribution -> tag values -> time -> bucket counts
+    Map<String, Map<Map<String, String>, NavigableMap<Long, long[]>>> distributions = Maps.newHashMap();
+    for (TimeSeries timeSeries : bucketSeries) {
+      String distribution = null;
+      int bucket = -1;
+      for (String percentileDistribution : percentileDistributions.values()) {
+        bucket = DistributionBuckets.getBucket(percentileDistribution, timeSeries.getMeasureName());
+        if (bucket >= 0) {
+          distribution = percentileDistribution;
+          break;
+        }
+      }
+      if (distribution == null) {
+        continue;
+      }
+      Map<Map<String, String>, NavigableMap<Long, long[]>> byTags = distributions.get(distribution);
+      if (byTags == null) {
+        byTags = Maps.newHashMap();
+        distributions.put(distribution, byTags);
+      }
+      NavigableMap<Long, long[]> byTime = byTags.get(timeSeries.getDimensionValues());
+      if (byTime == null) {
+        byTime = Maps.newTreeMap();
+        byTags.put(timeSeries.getDimensionValues(), byTime);
+      }
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        long[] counts = byTime.get(timeValue.getTimestamp());
+        if (counts == null) {
+          counts = new long[DistributionBuckets.BUCKETS];
+          byTime.put(timeValue.getTimestamp(), counts);
+        }
+        counts[bucket] += timeValue.getValue();
+      }
+    }
+
+    List<MetricTimeSeries> result = Lists.newArrayList();
+    for (Map.Entry<String, String> percentile : percentileDistributions.entrySet()) {
+      Map<Map<String, String>, NavigableMap<Long, long[]>> byTags = distributions.get(percentile.getValue());
+      if (byTags == null) {
+        continue;
+      }
+      double fraction = DistributionBuckets.getPercentileFraction(percentile.getKey());
+      for (Map.Entry<Map<String, String>, NavigableMap<Long, long[]>> entry : byTags.entrySet()) {
+        List<TimeValue> timeValues = Lists.newArrayListWithCapacity(entry.getValue().size());
+        for (Map.Entry<Long, long[]> counts : entry.getValue().entrySet()) {
+          long value = DistributionBuckets.getPercentile(counts.getValue(), fraction);
+          timeValues.add(new TimeValue(counts.getKey(), value));
+        }
+        result.add(new MetricTimeSeries(percentile.getKey(), entry.getKey(), timeValues));
+      }
+    }
+    return result;
+  }
+
+  private CubeQuery buildCubeQuery(MetricDataQuery query, Map<String, String> percentileDistributions) {
     String aggregation = getAggregation(query);
+    // Percentiles of a distribution are computed from the counters of the distribution buckets,
+    // hence the query is for the buckets of the distributions that have been recorded.
+    Map<String, AggregationFunction> measures = query.getMetrics();
+    if (!percentileDistributions.isEmpty()) {
+      // Limiting the series of every bucket on its own would leave the buckets of a series incomplete
+      Preconditions.checkArgument(query.getSeriesLimit() == 0,
+                                  "Series limit is not supported for percentile metrics: %s",
+                                  percentileDistributions.keySet());
+      measures = Maps.newHashMap(measures);
+      for (String bucketMetricName : findBucketMetricNames(query, percentileDistributions.values())) {
+        measures.put(bucketMetricName, AggregationFunction.SUM);
+      }
+    }
     return new CubeQuery(aggregation, query.getStartTs(), query.getEndTs(),
-                         query.getResolution(), query.getLimit(), query.getMetrics(),
+                         query.getResolution(), query.getLimit(), query.getSeriesLimit(), measures,
                          query.getSliceByTags(), query.getGroupByTags(), query.getInterpolator());
   }
 
+  /**
+   * Returns the names of the bucket metrics of the given distributions that have been recorded in the context of
+   * the given query. Only few of the buckets of a distribution are recorded in practice, hence those are looked up
+   * in the totals, rather than querying all the buckets of the distributions.
+   */
+  private Collection<String> findBucketMetricNames(MetricDataQuery query, Collection<String> distributions) {
+    Set<String> bucketMetricNames = Sets.newHashSet();
+    if (!Ints.contains(resolutions, TOTALS_RESOLUTION)) {
+      for (String distribution : distributions) {
+        for (int bucket = 0; bucket < DistributionBuckets.BUCKETS; bucket++) {
+          bucketMetricNames.add(DistributionBuckets.getBucketMetricName(distribution, bucket));
+        }
+      }
+      return bucketMetricNames;
+    }
+
+    List<DimensionValue> sliceByTags = Lists.newArrayList();
+    for (Map.Entry<String, String> tag : query.getSliceByTags().entrySet()) {
+      sliceByTags.add(new DimensionValue(tag.getKey(), tag.getValue()));
+    }
+    CubeExploreQuery exploreQuery = new CubeExploreQuery(0, Integer.MAX_VALUE, TOTALS_RESOLUTION,
+                                                         Integer.MAX_VALUE, sliceByTags);
+    for (String measureName : cube.get().findMeasureNames(exploreQuery)) {
+      for (String distribution : distributions) {
+        if (DistributionBuckets.getBucket(distribution, measureName) >= 0) {
+          bucketMetricNames.add(measureName);
+          break;
+        }
+      }
+    }
+    return bucketMetricNames;
+  }
+
   @Nullable
   private String getAggregation(MetricDataQuery query) {
     // We mostly rely on auto-selection of aggregation during query (in which case null is returned from
@@ -340,7 +554,14 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public Collection<String> findMetricNames(MetricSearchQuery query) throws Exception {
-    return cube.get().findMeasureNames(buildCubeSearchQuery(query));
+    // The buckets of distributions are internal to percentile queries, hence they are not listed
+    Collection<String> metricNames = Lists.newArrayList();
+    for (String metricName : cube.get().findMeasureNames(buildCubeSearchQuery(query))) {
+      if (!DistributionBuckets.isBucketMetricName(metricName)) {
+        metricNames.add(metricName);
+      }
+    }
+    return metricNames;
   }
 
   private List<DimensionValue> toTagValues(List<co.cask.cdap.api.metrics.TagValue> input) {
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.metrics.store;
 
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import co.cask.cdap.metrics.process.KafkaConsumerMetaTable;
 
@@ -34,4 +35,9 @@ public interface MetricDatasetFactory {
    * @return A new instance of {@link KafkaConsumerMetaTable}.
    */
   KafkaConsumerMetaTable createKafkaConsumerMeta();
+
+  /**
+   * @return A {@link MetricsTable} for storing the progress of rolling up metrics.
+   */
+  MetricsTable getOrCreateRollupMetaTable();
 }
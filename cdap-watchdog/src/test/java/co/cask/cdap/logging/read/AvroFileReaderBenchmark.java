@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.logging.LoggingConfiguration;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.write.LogFileIndex;
+import com.google.common.io.Files;
+import org.apache.avro.Schema;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Benchmark for measuring the latency of reading the events around a random time from a large log file with
+ * {@link AvroFileReader}, with and without the {@link LogFileIndex} of the file. The files are written with the
+ * default sync and index intervals of the log writers, with one event per millisecond. The default number of
+ * events makes log files of a few gigabytes.
+ *
+ * Usage: {@code AvroFileReaderBenchmark [events] [reads] [rounds]}
+ */
+public final class AvroFileReaderBenchmark {
+
+  private static final int SYNC_INTERVAL_BYTES = 50 * 1024;
+  private static final int MAX_EVENTS = 100;
+
+  public static void main(String[] args) throws Exception {
+    long events = args.length > 0 ? Long.parseLong(args[0]) : 20000000L;
+    int reads = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    File baseDir = Files.createTempDir();
+    try {
+      Schema schema = new LogSchema().getAvroSchema();
+      Location file = new LocalLocationFactory().create(baseDir.toURI()).append("1.avro");
+      AvroFileReaderTest.writeLog(schema, file, events, SYNC_INTERVAL_BYTES,
+                                  LoggingConfiguration.DEFAULT_LOG_FILE_INDEX_INTERVAL_BYTES);
+      Location fileWithoutIndex = new LocalLocationFactory().create(baseDir.toURI()).append("2.avro");
+      AvroFileReaderTest.writeLog(schema, fileWithoutIndex, events, SYNC_INTERVAL_BYTES, 0);
+      System.out.printf("%-16s %20d%n", "file bytes", file.length());
+      System.out.printf("%-16s %20d%n", "index overhead", file.length() - fileWithoutIndex.length());
+
+      AvroFileReader reader = new AvroFileReader(schema);
+      long[] times = new long[reads];
+      Random random = new Random(0);
+      for (int i = 0; i < reads; i++) {
+        // Away from the ends of the file, so that every read returns the maximum number of events
+        times[i] = MAX_EVENTS + (long) (random.nextDouble() * (events - 2 * MAX_EVENTS));
+      }
+
+      System.out.printf("%-16s %20s %20s%n", "", "readLog ms/read", "readLogPrev ms/read");
+      // First round is warm up
+      printLatencies("with index", bestLatencies(reader, file, times, rounds));
+      printLatencies("without index", bestLatencies(reader, fileWithoutIndex, times, rounds));
+    } finally {
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+  }
+
+  private static void printLatencies(String name, double[] latencies) {
+    System.out.printf("%-16s %20.2f %20.2f%n", name, latencies[0], latencies[1]);
+  }
+
+  private static double[] bestLatencies(AvroFileReader reader, Location file, long[] times, int rounds) {
+    double[] best = { Double.MAX_VALUE, Double.MAX_VALUE };
+    for (int round = 0; round <= rounds; round++) {
+      long startTime = System.nanoTime();
+      long count = 0;
+      for (long time : times) {
+        count += readLog(reader, file, time);
+      }
+      long readLogNanos = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      for (long time : times) {
+        count += reader.readLogPrev(file, Filter.EMPTY_FILTER, time, MAX_EVENTS).size();
+      }
+      long readLogPrevNanos = System.nanoTime() - startTime;
+
+      if (count != 2L * MAX_EVENTS * times.length) {
+        throw new IllegalStateException("Unexpected number of events read: " + count);
+      }
+      if (round > 0) {
+        best[0] = Math.min(best[0], readLogNanos / 1000000d / times.length);
+        best[1] = Math.min(best[1], readLogPrevNanos / 1000000d / times.length);
+      }
+    }
+    return best;
+  }
+
+  private static int readLog(AvroFileReader reader, Location file, long time) {
+    final int[] count = { 0 };
+    reader.readLog(file, Filter.EMPTY_FILTER, time, Long.MAX_VALUE, MAX_EVENTS, new Callback() {
+      @Override
+      public void init() {
+        // No-op
+      }
+
+      @Override
+      public void handle(LogEvent event) {
+        count[0]++;
+      }
+
+      @Override
+      public int getCount() {
+        return count[0];
+      }
+
+      @Override
+      public void close() {
+        // No-op
+      }
+    });
+    return count[0];
+  }
+
+  private AvroFileReaderBenchmark() {
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.logging.logback.TestLoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.write.LogFileIndex;
+import com.google.common.collect.Lists;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableFileInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests for {@link AvroFileReader} reading log files with and without {@link LogFileIndex}.
+ */
+public class AvroFileReaderTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final int EVENTS = 10000;
+
+  @Test
+  public void testReadWithIndex() throws Exception {
+    Schema schema = new LogSchema().getAvroSchema();
+    Location file = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI()).append("1.avro");
+    writeLog(schema, file, EVENTS, 1024, 4096);
+
+    LogFileIndex index = readIndex(file);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.getPositionsBefore(-1).length > 10);
+    Assert.assertEquals(-1, index.getPositionBefore(0));
+    Assert.assertEquals(-1, index.getPositionAfter(EVENTS));
+
+    // The index is invisible to Avro readers
+    try (DataFileStream<GenericRecord> stream =
+           new DataFileStream<>(file.getInputStream(), new GenericDatumReader<GenericRecord>(schema))) {
+      long count = 0;
+      while (stream.hasNext()) {
+        Assert.assertEquals(count, co.cask.cdap.logging.serialize.LoggingEvent.decode(stream.next()).getTimeStamp());
+        count++;
+      }
+      Assert.assertEquals(EVENTS, count);
+    }
+
+    assertReads(new AvroFileReader(schema), file);
+  }
+
+  @Test
+  public void testReadWithoutIndex() throws Exception {
+    // Files without index, such as files that are still being written, are read by probing the blocks
+    Schema schema = new LogSchema().getAvroSchema();
+    Location file = new LocalLocationFactory().create(TEMP_FOLDER.newFolder().toURI()).append("1.avro");
+    writeLog(schema, file, EVENTS, 1024, 0);
+
+    Assert.assertNull(readIndex(file));
+    assertReads(new AvroFileReader(schema), file);
+  }
+
+  private LogFileIndex readIndex(Location file) throws IOException {
+    try (SeekableFileInput input = new SeekableFileInput(new File(file.toURI()))) {
+      return LogFileIndex.read(input);
+    }
+  }
+
+  private void assertReads(AvroFileReader reader, Location file) {
+    for (long time : new long[] { 0, 1, 49, 2500, 5000, 7777, EVENTS - 1, EVENTS, EVENTS * 2 }) {
+      List<Long> expected = Lists.newArrayList();
+      for (long i = time; i < Math.min(time + 50, EVENTS); i++) {
+        expected.add(i);
+      }
+      Assert.assertEquals(expected, readLog(reader, file, time, time + 50, 100));
+
+      expected.clear();
+      long last = Math.min(time, EVENTS - 1);
+      for (long i = Math.max(0, last - 49); i <= last; i++) {
+        expected.add(i);
+      }
+      List<Long> actual = Lists.newArrayList();
+      for (LogEvent event : reader.readLogPrev(file, Filter.EMPTY_FILTER, time, 50)) {
+        actual.add(event.getLoggingEvent().getTimeStamp());
+      }
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  private List<Long> readLog(AvroFileReader reader, Location file, long fromTimeMs, long toTimeMs, int maxEvents) {
+    final List<Long> timestamps = Lists.newArrayList();
+    reader.readLog(file, Filter.EMPTY_FILTER, fromTimeMs, toTimeMs, maxEvents, new Callback() {
+      @Override
+      public void init() {
+        // No-op
+      }
+
+      @Override
+      public void handle(LogEvent event) {
+        timestamps.add(event.getLoggingEvent().getTimeStamp());
+      }
+
+      @Override
+      public int getCount() {
+        return timestamps.size();
+      }
+
+      @Override
+      public void close() {
+        // No-op
+      }
+    });
+    return timestamps;
+  }
+
+  /**
+   * Writes a log file with its index the same way the log writer does, with one event per millisecond starting from
+   * time zero. No index is written if the index interval is zero.
+   */
+  static void writeLog(Schema schema, Location file, long events,
+                       int syncIntervalBytes, long indexIntervalBytes) throws Exception {
+    LoggingContext loggingContext = new TestLoggingContext("TEST_NS", "TEST_APP", "RUN1", "INSTANCE1");
+    try (
+      FSDataOutputStream outputStream = new FSDataOutputStream(file.getOutputStream(), null);
+      DataFileWriter<GenericRecord> dataFileWriter =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))
+    ) {
+      LogFileIndex.Writer indexWriter = indexIntervalBytes > 0 ? new LogFileIndex.Writer() : null;
+      dataFileWriter.create(schema, indexWriter == null ? outputStream : indexWriter.wrap(outputStream));
+      dataFileWriter.setSyncInterval(syncIntervalBytes);
+      long indexedPos = 0;
+      for (long i = 0; i < events; i++) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("logger");
+        event.setThreadName("thread");
+        event.setMessage("Log message " + i);
+        event.setTimeStamp(i);
+
+        if (indexWriter != null && outputStream.getPos() - indexedPos >= indexIntervalBytes) {
+          indexedPos = dataFileWriter.sync();
+          indexWriter.add(i - 1, indexedPos);
+        }
+        dataFileWriter.append(co.cask.cdap.logging.serialize.LoggingEvent.encode(schema, event, loggingContext));
+      }
+      if (indexWriter != null) {
+        dataFileWriter.flush();
+        indexWriter.write(outputStream);
+      }
+    }
+  }
+}
@@ -15,13 +15,19 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.metrics.DistributionBuckets;
+import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.api.metrics.MetricsDistribution;
+import co.cask.cdap.api.metrics.MetricsGauge;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -29,8 +35,10 @@ import org.junit.experimental.categories.Category;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -155,6 +163,136 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testBoundMetrics() throws Exception {
+    final List<MetricValues> published = Lists.newArrayList();
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+    final MetricsCounter counter = context.getCounter(METRIC);
+    MetricsGauge gauge = context.getGauge("gauge");
+
+    // Increments from concurrent threads must all be counted
+    int threadCount = 8;
+    final int increments = 100000;
+    final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+          for (int j = 0; j < increments; j++) {
+            counter.increment(1);
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    gauge.set(10);
+    gauge.set(5);
+    context.increment(METRIC, 1);
+    // A gauge replaces the earlier increments, and later increments are added to it
+    context.increment("mixed", 4);
+    context.gauge("mixed", 10);
+    context.increment("mixed", 2);
+
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    Assert.assertEquals((long) threadCount * increments + 1, getMetricValue(published.get(0).getMetrics(), METRIC));
+    for (MetricValue metricValue : published.get(0).getMetrics()) {
+      if (metricValue.getName().equals("gauge")) {
+        Assert.assertEquals(MetricType.GAUGE, metricValue.getType());
+        Assert.assertEquals(5L, metricValue.getValue());
+      }
+      if (metricValue.getName().equals("mixed")) {
+        Assert.assertEquals(MetricType.GAUGE, metricValue.getType());
+      }
+    }
+    Assert.assertEquals(12L, getMetricValue(published.get(0).getMetrics(), "mixed"));
+
+    // Collect until the emitters are removed for being idle, bound metrics must still be collected after that
+    published.clear();
+    for (int i = 0; i <= 60; i++) {
+      service.runOneIteration();
+    }
+    Assert.assertTrue(published.isEmpty());
+    counter.increment(3);
+    gauge.set(7);
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    Assert.assertEquals(3L, getMetricValue(published.get(0).getMetrics(), METRIC));
+    Assert.assertEquals(7L, getMetricValue(published.get(0).getMetrics(), "gauge"));
+  }
+
+  @Test
+  public void testDistribution() throws Exception {
+    final List<MetricValues> published = Lists.newArrayList();
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+    MetricsDistribution distribution = context.getDistribution(METRIC);
+    for (int i = 1; i <= 100; i++) {
+      distribution.record(i);
+    }
+    context.getDistribution(METRIC).record(1000);
+    context.getDistribution(METRIC).record(-1);
+
+    service.runOneIteration();
+    Assert.assertEquals(1, published.size());
+    long[] counts = new long[DistributionBuckets.BUCKETS];
+    for (MetricValue metricValue : published.get(0).getMetrics()) {
+      if (metricValue.getType() != MetricType.DISTRIBUTION) {
+        continue;
+      }
+      int bucket = -1;
+      for (int i = 0; i < DistributionBuckets.BUCKETS; i++) {
+        if (DistributionBuckets.getBucketMetricName(METRIC, i).equals(metricValue.getName())) {
+          bucket = i;
+        }
+      }
+      Assert.assertTrue("Unexpected metric " + metricValue.getName(), bucket >= 0);
+      counts[bucket] += metricValue.getValue();
+    }
+
+    // 102 values, each in the bucket of its value
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    Assert.assertEquals(102, total);
+    Assert.assertEquals(1, counts[DistributionBuckets.getBucket(0)]);
+    Assert.assertEquals(1, counts[DistributionBuckets.getBucket(1000)]);
+    // Values up to 15 have a bucket each
+    Assert.assertEquals(1, counts[DistributionBuckets.getBucket(15)]);
+    Assert.assertEquals(51, DistributionBuckets.getPercentile(counts, 0.5));
+    Assert.assertEquals(103, DistributionBuckets.getPercentile(counts, 0.99));
+    Assert.assertEquals(1023, DistributionBuckets.getPercentile(counts, 1));
+
+    // Distribution is reset after being emitted
+    published.clear();
+    service.runOneIteration();
+    Assert.assertTrue(published.isEmpty());
+  }
+
   private void verifyCounterMetricsValue(MetricValues metricValues) {
     Assert.assertNotNull(metricValues);
     Map<String, String> tags = metricValues.getTags();
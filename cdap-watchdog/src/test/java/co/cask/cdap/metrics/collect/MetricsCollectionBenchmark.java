@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded benchmark of the increment throughput of {@link AggregatedMetricsCollectionService}. All threads
+ * increment the same metric in a context with the tags of a flowlet, either by metric name through the
+ * {@link MetricsContext}, or through a bound {@link MetricsCounter}. Metrics are collected every second while
+ * the benchmark runs, as the service does.
+ *
+ * Usage: {@code MetricsCollectionBenchmark [seconds_per_run]}
+ */
+public final class MetricsCollectionBenchmark {
+
+  private static final Map<String, String> TAGS = ImmutableMap.<String, String>builder()
+    .put(Constants.Metrics.Tag.NAMESPACE, "default")
+    .put(Constants.Metrics.Tag.APP, "app")
+    .put(Constants.Metrics.Tag.FLOW, "flow")
+    .put(Constants.Metrics.Tag.RUN_ID, "run")
+    .put(Constants.Metrics.Tag.FLOWLET, "flowlet")
+    .put(Constants.Metrics.Tag.INSTANCE_ID, "0")
+    .build();
+  private static final String METRIC = "process.events.processed";
+
+  public static void main(String[] args) throws Exception {
+    long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5L;
+
+    System.out.printf("%-8s %8s %16s%n", "mode", "threads", "increments/s");
+    for (boolean bound : new boolean[] { false, true }) {
+      for (int threads : new int[] { 1, 2, 4, 8, 16, 32 }) {
+        double throughput = run(threads, bound, seconds);
+        System.out.printf("%-8s %8d %16.0f%n", bound ? "bound" : "name", threads, throughput);
+      }
+    }
+  }
+
+  private static double run(int threads, final boolean bound, final long seconds) throws Exception {
+    final CountingMetricsCollectionService service = new CountingMetricsCollectionService();
+    service.startAndWait();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    try {
+      final MetricsContext context = service.getContext(TAGS);
+      List<Future<Long>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            MetricsCounter counter = context.getCounter(METRIC);
+            barrier.await();
+            long ops = 0;
+            long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < endTime) {
+              // Checking the time is more expensive than an increment, hence increments in batch of 100
+              for (int j = 0; j < 100; j++) {
+                if (bound) {
+                  counter.increment(1);
+                } else {
+                  context.increment(METRIC, 1);
+                }
+              }
+              ops += 100;
+            }
+            return ops;
+          }
+        }));
+      }
+
+      long totalOps = 0;
+      for (Future<Long> future : futures) {
+        totalOps += future.get();
+      }
+      service.stopAndWait();
+      if (service.collected != totalOps) {
+        throw new IllegalStateException("Collected " + service.collected + " increments instead of " + totalOps);
+      }
+      return (double) totalOps / seconds;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A {@link AggregatedMetricsCollectionService} that only sums up the values of the benchmark metric.
+   */
+  private static final class CountingMetricsCollectionService extends AggregatedMetricsCollectionService {
+
+    private long collected;
+
+    @Override
+    protected void publish(Iterator<MetricValues> metrics) throws Exception {
+      while (metrics.hasNext()) {
+        for (MetricValue metricValue : metrics.next().getMetrics()) {
+          if (metricValue.getName().equals(METRIC)) {
+            collected += metricValue.getValue();
+          }
+        }
+      }
+    }
+  }
+
+  private MetricsCollectionBenchmark() {
+  }
+}
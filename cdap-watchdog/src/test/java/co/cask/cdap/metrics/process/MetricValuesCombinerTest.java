@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link MetricValuesCombiner}.
+ */
+public class MetricValuesCombinerTest {
+
+  @Test
+  public void testCombine() {
+    Map<String, String> tags1 = ImmutableMap.of("ns", "ns1", "app", "app1");
+    // Equal to tags1, but a different map instance
+    Map<String, String> tags1Copy = Maps.newHashMap(tags1);
+    Map<String, String> tags2 = ImmutableMap.of("ns", "ns1", "app", "app2");
+
+    MetricValuesCombiner combiner = new MetricValuesCombiner();
+    Assert.assertTrue(combiner.isEmpty());
+    combiner.add(new MetricValues(tags1, 1L, ImmutableList.of(
+      new MetricValue("reads", MetricType.COUNTER, 1),
+      new MetricValue("size", MetricType.GAUGE, 10),
+      new MetricValue("latency.le.8", MetricType.DISTRIBUTION, 2))));
+    combiner.add(new MetricValues(tags2, "reads", 1L, 5, MetricType.COUNTER));
+    combiner.add(new MetricValues(tags1Copy, 1L, ImmutableList.of(
+      new MetricValue("reads", MetricType.COUNTER, 2),
+      new MetricValue("size", MetricType.GAUGE, 20),
+      new MetricValue("latency.le.8", MetricType.DISTRIBUTION, 3))));
+    // Different timestamp, not combined
+    combiner.add(new MetricValues(tags1, "reads", 2L, 4, MetricType.COUNTER));
+    // A counter after a gauge, and a gauge after a counter are added to the gauge
+    combiner.add(new MetricValues(tags1, 1L, ImmutableList.of(
+      new MetricValue("size", MetricType.COUNTER, 1),
+      new MetricValue("reads", MetricType.GAUGE, 100))));
+
+    Assert.assertFalse(combiner.isEmpty());
+    Assert.assertEquals(10, combiner.getInputCount());
+    Assert.assertEquals(5, combiner.getOutputCount());
+
+    List<MetricValues> records = combiner.getCombined();
+    Assert.assertEquals(3, records.size());
+
+    assertRecord(records.get(0), tags1, 1L, ImmutableMap.of(
+      "reads", new MetricValue("reads", MetricType.GAUGE, 103),
+      "size", new MetricValue("size", MetricType.GAUGE, 21),
+      "latency.le.8", new MetricValue("latency.le.8", MetricType.DISTRIBUTION, 5)));
+    assertRecord(records.get(1), tags2, 1L, ImmutableMap.of(
+      "reads", new MetricValue("reads", MetricType.COUNTER, 5)));
+    assertRecord(records.get(2), tags1, 2L, ImmutableMap.of(
+      "reads", new MetricValue("reads", MetricType.COUNTER, 4)));
+  }
+
+  private void assertRecord(MetricValues record, Map<String, String> tags, long timestamp,
+                            Map<String, MetricValue> expected) {
+    Assert.assertEquals(tags, record.getTags());
+    Assert.assertEquals(timestamp, record.getTimestamp());
+    Assert.assertEquals(expected.size(), record.getMetrics().size());
+    for (MetricValue value : record.getMetrics()) {
+      MetricValue expectedValue = expected.get(value.getName());
+      Assert.assertNotNull(expectedValue);
+      Assert.assertEquals(expectedValue.getType(), value.getType());
+      Assert.assertEquals(expectedValue.getValue(), value.getValue());
+    }
+  }
+}